@@ -0,0 +1,52 @@
+package com.zemnitskiy.aggregatehub;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.strategy.naming.CustomPhysicalNamingStrategy;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Runtime hints for what the AOT engine cannot infer from bean definitions, because the hub builds one
+ * EntityManagerFactory per database programmatically instead of through Spring Boot's JPA auto-configuration.
+ */
+public class AggregateHubRuntimeHints implements RuntimeHintsRegistrar {
+
+    /**
+     * Drivers and dialects configured by class name under {@code database-strategies}.
+     */
+    private static final List<String> CONFIGURED_CLASSES = List.of(
+            "org.postgresql.Driver",
+            "com.mysql.cj.jdbc.Driver",
+            "org.hibernate.dialect.PostgreSQLDialect",
+            "org.hibernate.dialect.MySQL8Dialect",
+            "org.hibernate.dialect.MySQLDialect");
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Hibernate instantiates the entity and accesses its fields reflectively
+        hints.reflection().registerType(User.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        // Users are also read with Jackson by the hub strategy
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), User.class);
+
+        // Passed to Hibernate as an instance, whose class Hibernate still introspects
+        hints.reflection().registerType(CustomPhysicalNamingStrategy.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        for (String className : CONFIGURED_CLASSES) {
+            hints.reflection().registerTypeIfPresent(classLoader, className, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+
+        // The slow-query recorder wraps connections and statements in JDK proxies
+        hints.proxies().registerJdkProxy(Connection.class);
+        hints.proxies().registerJdkProxy(PreparedStatement.class);
+        hints.proxies().registerJdkProxy(CallableStatement.class);
+    }
+}
@@ -0,0 +1,272 @@
+package com.zemnitskiy.aggregatehub.admission;
+
+import com.zemnitskiy.aggregatehub.config.AdmissionProperties;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+import com.zemnitskiy.aggregatehub.limit.QueryConcurrencyLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deadline-aware admission control for requests fanning out to the databases.
+ * <p>
+ * Every request belongs to a priority lane with a bounded number of concurrent requests. Before queueing a
+ * request behind others, its wait is estimated from the lane's backlog and recent fan-out latencies; a request
+ * that cannot finish before its deadline is rejected right away, so it fails fast instead of timing out after
+ * it has already loaded the databases. Batch requests are shed outright while interactive requests are
+ * queueing or the databases are at their concurrency limits.
+ * </p>
+ */
+@Component
+public class AdmissionGate {
+
+    /**
+     * Header selecting the lane of a request, {@code interactive} or {@code batch}.
+     */
+    public static final String PRIORITY_HEADER = "X-Request-Priority";
+
+    /**
+     * Header with the time in milliseconds the client is willing to wait for the response.
+     */
+    public static final String DEADLINE_HEADER = "X-Request-Deadline-Ms";
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionGate.class);
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final Duration ESTIMATE_HALF_LIFE = Duration.ofSeconds(30);
+
+    private final boolean enabled;
+    private final QueryConcurrencyLimiter concurrencyLimiter;
+    private final Map<RequestPriority, Lane> lanes = new EnumMap<>(RequestPriority.class);
+
+    public AdmissionGate(AdmissionProperties properties, QueryConcurrencyLimiter concurrencyLimiter) {
+        this.enabled = properties.enabled();
+        this.concurrencyLimiter = concurrencyLimiter;
+        lanes.put(RequestPriority.INTERACTIVE, new Lane(
+                properties.interactive().maxConcurrent(), properties.interactive().defaultDeadline()));
+        lanes.put(RequestPriority.BATCH, new Lane(
+                properties.batch().maxConcurrent(), properties.batch().defaultDeadline()));
+    }
+
+    /**
+     * Parses the deadline header.
+     *
+     * @param value the header value in milliseconds, or {@code null}
+     * @return the deadline, or {@code null} if the header is absent
+     * @throws AggregateHubServiceException if the value is not a positive number
+     */
+    public static Duration deadlineFromHeader(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(value.trim());
+            if (millis > 0) {
+                return Duration.ofMillis(millis);
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new AggregateHubServiceException("Invalid " + DEADLINE_HEADER + ": " + value);
+    }
+
+    /**
+     * Returns the deadline a request of the lane gets. Without admission control, only requests that send a
+     * deadline get one.
+     *
+     * @param priority the lane of the request
+     * @param deadline how long the client is willing to wait, or {@code null} for the lane's default
+     * @return the requested deadline, the lane's default, or {@code null} if the request has no deadline
+     */
+    public Duration deadlineOf(RequestPriority priority, Duration deadline) {
+        if (deadline != null || !enabled) {
+            return deadline;
+        }
+        return lanes.get(priority).defaultDeadline;
+    }
+
+    /**
+     * Admits a request, waiting for a free slot of its lane if needed. The admission must be closed once the
+     * request has finished reading from the databases.
+     * <p>
+     * A request is only rejected for its expected latency while requests are queueing ahead of it; with a free
+     * slot it is always admitted, so a lane whose estimate is too high keeps taking in the requests that correct it.
+     * </p>
+     *
+     * @param priority the lane of the request
+     * @param deadline how long the client is willing to wait, as returned by {@link #deadlineOf}
+     * @param fullScan whether the request reads whole tables rather than looking up a few rows, which takes its
+     *                 latency from a separate estimate
+     * @return the admission
+     * @throws AggregateHubOverloadedException if the request is shed or cannot meet its deadline
+     */
+    public Admission admit(RequestPriority priority, Duration deadline, boolean fullScan) {
+        Lane lane = lanes.get(priority);
+        long start = System.nanoTime();
+        if (!enabled || deadline == null) {
+            return new Admission(null, fullScan, start, deadline != null ? start + deadline.toNanos() : null);
+        }
+        long deadlineNanos = start + deadline.toNanos();
+
+        if (priority == RequestPriority.BATCH
+                && (lanes.get(RequestPriority.INTERACTIVE).waiting.get() > 0 || concurrencyLimiter.isCongested())) {
+            logger.warn("Shedding batch request while interactive requests are waiting or the databases are congested");
+            throw new AggregateHubOverloadedException("Batch requests are shed while the hub is under load",
+                    lane.retryAfter(0));
+        }
+
+        long latency = lane.latencyNanos(fullScan);
+        long estimatedWait = lane.estimatedWaitNanos();
+        if (estimatedWait > 0 && estimatedWait + latency > deadline.toNanos()) {
+            logger.warn("Rejecting {} request: estimated {} ms exceed its deadline of {} ms", priority,
+                    TimeUnit.NANOSECONDS.toMillis(estimatedWait + latency), deadline.toMillis());
+            throw new AggregateHubOverloadedException("The request cannot be served within its deadline of "
+                    + deadline.toMillis() + " ms", lane.retryAfter(estimatedWait));
+        }
+
+        // Give up waiting once the remaining time no longer fits a typical fan-out of this shape
+        if (!lane.acquire(deadlineNanos - latency - System.nanoTime())) {
+            logger.warn("Rejecting {} request: no slot became free before its deadline", priority);
+            throw new AggregateHubOverloadedException("The request cannot be served within its deadline of "
+                    + deadline.toMillis() + " ms", lane.retryAfter(estimatedWait));
+        }
+        return new Admission(lane, fullScan, System.nanoTime(), deadlineNanos);
+    }
+
+    /**
+     * A request admitted into a lane. Reports its fan-out latency to the lane when marked completed. May be closed
+     * from another thread, e.g. when the request times out while its fan-out is still running.
+     */
+    public static final class Admission implements AutoCloseable {
+
+        private final Lane lane;
+        private final boolean fullScan;
+        private final long start;
+        private final Long deadlineNanos;
+        private boolean completed;
+        private boolean closed;
+
+        private Admission(Lane lane, boolean fullScan, long start, Long deadlineNanos) {
+            this.lane = lane;
+            this.fullScan = fullScan;
+            this.start = start;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Returns the time left until the request's deadline.
+         *
+         * @return the remaining time, negative once the deadline has passed, or {@code null} if the request has
+         * no deadline
+         */
+        public Duration remaining() {
+            return deadlineNanos != null ? Duration.ofNanos(deadlineNanos - System.nanoTime()) : null;
+        }
+
+        /**
+         * Marks the fan-out as successfully completed, so its latency feeds the lane's estimates.
+         */
+        public synchronized void completed() {
+            completed = true;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed || lane == null) {
+                return;
+            }
+            closed = true;
+            lane.release(fullScan, completed ? System.nanoTime() - start : -1);
+        }
+    }
+
+    private static final class Lane {
+
+        private final int maxConcurrent;
+        private final Duration defaultDeadline;
+        private final Semaphore slots;
+        private final AtomicInteger waiting = new AtomicInteger();
+        // How fast slots turn over, from every fan-out of the lane
+        private final LatencyEstimate turnover = new LatencyEstimate();
+        // How long a request itself takes, by shape, so lookups are not judged by full scans
+        private final LatencyEstimate lookups = new LatencyEstimate();
+        private final LatencyEstimate scans = new LatencyEstimate();
+
+        Lane(int maxConcurrent, Duration defaultDeadline) {
+            this.maxConcurrent = maxConcurrent;
+            this.defaultDeadline = defaultDeadline;
+            this.slots = new Semaphore(maxConcurrent, true);
+        }
+
+        boolean acquire(long timeoutNanos) {
+            waiting.incrementAndGet();
+            try {
+                return slots.tryAcquire(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AggregateHubServiceException("Interrupted while waiting for admission", e);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        void release(boolean fullScan, long latency) {
+            if (latency >= 0) {
+                long now = System.nanoTime();
+                turnover.add(latency, now);
+                (fullScan ? scans : lookups).add(latency, now);
+            }
+            slots.release();
+        }
+
+        long latencyNanos(boolean fullScan) {
+            return (fullScan ? scans : lookups).get(System.nanoTime());
+        }
+
+        /**
+         * Estimates the wait for a slot: every full round of requests ahead of this one takes about one fan-out.
+         * Zero while a slot is free.
+         */
+        long estimatedWaitNanos() {
+            int ahead = waiting.get() + (maxConcurrent - slots.availablePermits()) - maxConcurrent + 1;
+            if (ahead <= 0) {
+                return 0;
+            }
+            return ((ahead + maxConcurrent - 1) / maxConcurrent) * turnover.get(System.nanoTime());
+        }
+
+        Duration retryAfter(long estimatedWaitNanos) {
+            return Duration.ofNanos(Math.max(estimatedWaitNanos, turnover.get(System.nanoTime())));
+        }
+    }
+
+    /**
+     * An exponentially weighted moving average of fan-out latencies that halves every
+     * {@link #ESTIMATE_HALF_LIFE} without a new sample, so a spike is forgotten even if no request completes.
+     */
+    private static final class LatencyEstimate {
+
+        private double nanos = Double.NaN;
+        private long sampledAt;
+
+        synchronized void add(long latency, long now) {
+            nanos = Double.isNaN(nanos) ? latency : decayed(now) + (latency - decayed(now)) * LATENCY_SMOOTHING;
+            sampledAt = now;
+        }
+
+        synchronized long get(long now) {
+            return Double.isNaN(nanos) ? 0 : (long) decayed(now);
+        }
+
+        private double decayed(long now) {
+            return nanos * Math.pow(0.5, (double) (now - sampledAt) / ESTIMATE_HALF_LIFE.toNanos());
+        }
+    }
+}
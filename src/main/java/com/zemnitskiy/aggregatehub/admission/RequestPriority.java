@@ -0,0 +1,44 @@
+package com.zemnitskiy.aggregatehub.admission;
+
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+
+/**
+ * Admission lane of a request, selected by the {@code X-Request-Priority} header.
+ */
+public enum RequestPriority {
+
+    /**
+     * Latency-sensitive requests of interactive users; admitted first.
+     */
+    INTERACTIVE("interactive"),
+
+    /**
+     * Bulk requests that can be retried later; shed first under load.
+     */
+    BATCH("batch");
+
+    private final String header;
+
+    RequestPriority(String header) {
+        this.header = header;
+    }
+
+    /**
+     * Resolves the priority from its header value.
+     *
+     * @param value the header value, e.g. {@code interactive} or {@code batch}
+     * @return the matching priority, {@link #INTERACTIVE} if the value is empty
+     * @throws AggregateHubServiceException if the value is not supported
+     */
+    public static RequestPriority fromHeader(String value) {
+        if (value == null || value.isBlank()) {
+            return INTERACTIVE;
+        }
+        for (RequestPriority priority : values()) {
+            if (priority.header.equalsIgnoreCase(value.trim())) {
+                return priority;
+            }
+        }
+        throw new AggregateHubServiceException("Unsupported request priority: " + value);
+    }
+}
@@ -0,0 +1,44 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+
+/**
+ * Decides which row is kept when several databases return a user with the same deduplication key.
+ */
+public enum ConflictResolution {
+
+    /**
+     * The first row that reaches the hub wins.
+     */
+    FIRST_WINS("first-wins"),
+
+    /**
+     * The row from the database with the highest configured priority wins.
+     */
+    SOURCE_PRIORITY("source-priority");
+
+    private final String parameter;
+
+    ConflictResolution(String parameter) {
+        this.parameter = parameter;
+    }
+
+    /**
+     * Resolves the conflict resolution from its request parameter value.
+     *
+     * @param value the parameter value, e.g. {@code first-wins} or {@code source-priority}
+     * @return the matching resolution, or {@code null} if the value is empty
+     * @throws AggregateHubServiceException if the value is not supported
+     */
+    public static ConflictResolution fromParameter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        for (ConflictResolution resolution : values()) {
+            if (resolution.parameter.equalsIgnoreCase(value.trim())) {
+                return resolution;
+            }
+        }
+        throw new AggregateHubServiceException("Unsupported conflict resolution: " + value);
+    }
+}
@@ -0,0 +1,44 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+
+/**
+ * Where a request reads its rows from.
+ */
+public enum Consistency {
+
+    /**
+     * Query every database directly.
+     */
+    LIVE("live"),
+
+    /**
+     * Serve from the local materialized replica, falling back to the database for sources not loaded yet.
+     */
+    LOCAL("local");
+
+    private final String parameter;
+
+    Consistency(String parameter) {
+        this.parameter = parameter;
+    }
+
+    /**
+     * Resolves the consistency from its request parameter value.
+     *
+     * @param value the parameter value, e.g. {@code live} or {@code local}
+     * @return the matching consistency, {@link #LIVE} if the value is empty
+     * @throws AggregateHubServiceException if the value is not supported
+     */
+    public static Consistency fromParameter(String value) {
+        if (value == null || value.isBlank()) {
+            return LIVE;
+        }
+        for (Consistency consistency : values()) {
+            if (consistency.parameter.equalsIgnoreCase(value.trim())) {
+                return consistency;
+            }
+        }
+        throw new AggregateHubServiceException("Unsupported consistency: " + value);
+    }
+}
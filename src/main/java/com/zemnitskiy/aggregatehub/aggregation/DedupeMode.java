@@ -0,0 +1,52 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+import com.zemnitskiy.aggregatehub.model.User;
+
+import java.util.function.Function;
+
+/**
+ * Key used to recognise the same user coming from several databases.
+ */
+public enum DedupeMode {
+
+    ID("id", User::getId),
+    USERNAME("username", User::getUsername);
+
+    private final String parameter;
+    private final Function<User, String> keyExtractor;
+
+    DedupeMode(String parameter, Function<User, String> keyExtractor) {
+        this.parameter = parameter;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Extracts the deduplication key of the given user.
+     *
+     * @param user the user
+     * @return the key, or {@code null} if the user has no value for it
+     */
+    public String keyOf(User user) {
+        return keyExtractor.apply(user);
+    }
+
+    /**
+     * Resolves the mode from its request parameter value.
+     *
+     * @param value the parameter value, e.g. {@code id} or {@code username}
+     * @return the matching mode, or {@code null} if the value is empty
+     * @throws AggregateHubServiceException if the value is not supported
+     */
+    public static DedupeMode fromParameter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        for (DedupeMode mode : values()) {
+            if (mode.parameter.equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        throw new AggregateHubServiceException("Unsupported dedupe mode: " + value);
+    }
+}
@@ -0,0 +1,76 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.config.AggregationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks heap used by aggregated rows across all concurrent requests.
+ * <p>
+ * Requests reserve memory before buffering rows. When a reservation would exceed the global budget it is
+ * refused, and the request spills to disk instead, so concurrent large queries slow down rather than
+ * exhausting the heap.
+ * </p>
+ */
+@Component
+public class MemoryGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryGovernor.class);
+
+    private final long globalBudget;
+    private final long requestBudget;
+    private final AtomicLong reserved = new AtomicLong();
+
+    public MemoryGovernor(AggregationProperties aggregationProperties) {
+        this.globalBudget = aggregationProperties.memory().globalBudget().toBytes();
+        this.requestBudget = aggregationProperties.memory().requestBudget().toBytes();
+        logger.info("Aggregation memory budget: {} bytes per request, {} bytes global", requestBudget, globalBudget);
+    }
+
+    /**
+     * Reserves memory from the global budget.
+     *
+     * @param bytes the number of bytes to reserve
+     * @return {@code true} if the reservation was granted
+     */
+    public boolean tryReserve(long bytes) {
+        long current;
+        do {
+            current = reserved.get();
+            if (current + bytes > globalBudget) {
+                return false;
+            }
+        } while (!reserved.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    /**
+     * Returns previously reserved memory to the global budget.
+     *
+     * @param bytes the number of bytes to release
+     */
+    public void release(long bytes) {
+        reserved.addAndGet(-bytes);
+    }
+
+    /**
+     * Returns the maximum number of bytes a single request may buffer in memory.
+     *
+     * @return the per-request budget in bytes
+     */
+    public long requestBudget() {
+        return requestBudget;
+    }
+
+    /**
+     * Returns the number of bytes currently reserved by all requests.
+     *
+     * @return the reserved bytes
+     */
+    public long reservedBytes() {
+        return reserved.get();
+    }
+}
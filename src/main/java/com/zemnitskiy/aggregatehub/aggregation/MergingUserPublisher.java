@@ -0,0 +1,141 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link Flow.Publisher} merging the users of several databases into one stream, with backpressure.
+ * <p>
+ * Each database is read on its own thread, virtual unless the caller supplies the executors, and its rows are
+ * submitted into a bounded buffer as they arrive, in whatever order the databases answer. When the subscriber falls behind, the buffer fills up and the
+ * reading threads block, which stops pulling rows from the database cursors until the subscriber requests more.
+ * No result is ever buffered beyond that bound. Cancelling the subscription stops every database read.
+ * </p>
+ * <p>
+ * With a stall timeout, a reading thread waits at most that long for room in the buffer; a subscriber that takes
+ * no row for that long fails the stream, so a client that stopped reading does not hold the database cursors open.
+ * </p>
+ * The publisher supports a single subscriber.
+ */
+public final class MergingUserPublisher implements Flow.Publisher<User> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MergingUserPublisher.class);
+
+    private final List<String> databaseNames;
+    private final BiConsumer<String, Consumer<User>> source;
+    private final int bufferSize;
+    private final Function<String, Executor> readers;
+    private final Duration stallTimeout;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * @param databaseNames the databases to merge
+     * @param source        reads the rows of a database into a consumer on the calling thread
+     * @param bufferSize    number of rows buffered ahead of the subscriber
+     */
+    public MergingUserPublisher(List<String> databaseNames, BiConsumer<String, Consumer<User>> source, int bufferSize) {
+        this(databaseNames, source, bufferSize, null, null);
+    }
+
+    /**
+     * @param databaseNames the databases to merge
+     * @param source        reads the rows of a database into a consumer on the calling thread
+     * @param bufferSize    number of rows buffered ahead of the subscriber
+     * @param readers       returns the executor reading a database, or {@code null} to read every database on a
+     *                      virtual thread
+     * @param stallTimeout  how long a reading thread waits for the subscriber to make room in the buffer before
+     *                      the stream fails, or {@code null} to wait as long as it takes
+     */
+    public MergingUserPublisher(List<String> databaseNames, BiConsumer<String, Consumer<User>> source, int bufferSize,
+                                Function<String, Executor> readers, Duration stallTimeout) {
+        this.databaseNames = databaseNames;
+        this.source = source;
+        this.bufferSize = bufferSize;
+        this.readers = readers;
+        this.stallTimeout = stallTimeout;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super User> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("MergingUserPublisher supports a single subscriber"));
+            return;
+        }
+
+        // Not shut down: the buffer keeps using it to deliver rows after every database has been read
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        SubmissionPublisher<User> buffer = new SubmissionPublisher<>(executor, bufferSize);
+        buffer.subscribe(subscriber);
+
+        AtomicInteger remaining = new AtomicInteger(databaseNames.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        if (databaseNames.isEmpty()) {
+            complete(buffer, failure);
+            return;
+        }
+        for (String dbName : databaseNames) {
+            Executor reader = readers != null ? readers.apply(dbName) : executor;
+            reader.execute(() -> {
+                try {
+                    source.accept(dbName, user -> {
+                        if (buffer.isClosed() || !buffer.hasSubscribers() || failure.get() != null) {
+                            throw new CancellationException("Stream of database " + dbName + " was cancelled");
+                        }
+                        // Blocks while the buffer is full, which is the backpressure on the database cursor
+                        if (stallTimeout == null) {
+                            buffer.submit(user);
+                        } else if (buffer.offer(user, stallTimeout.toNanos(), TimeUnit.NANOSECONDS,
+                                (target, dropped) -> false) < 0) {
+                            failure.compareAndSet(null, new TimeoutException("The subscriber took no row within "
+                                    + stallTimeout.toMillis() + " ms"));
+                            throw new CancellationException("Stream of database " + dbName + " stalled");
+                        }
+                    });
+                } catch (CancellationException e) {
+                    logger.debug("Stopped reading database '{}': {}", dbName, e.getMessage());
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    complete(buffer, failure);
+                }
+            });
+        }
+    }
+
+    private static void complete(SubmissionPublisher<User> buffer, AtomicReference<Throwable> failure) {
+        Throwable error = failure.get();
+        if (error != null) {
+            buffer.closeExceptionally(error);
+        } else {
+            buffer.close();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Temporary file holding user rows in a compact binary format.
+ * <p>
+ * Every row is stored as {@code [int length][int tag][id][username][name][surname]}, where each string is
+ * written as its UTF-8 byte length ({@code -1} for {@code null}) followed by the bytes. The tag is an
+ * arbitrary value supplied by the caller, e.g. the priority of the database the row came from.
+ * The file is deleted when it is closed.
+ * </p>
+ */
+public class SpillFile implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NULL_LENGTH = -1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long rowCount;
+
+    private SpillFile(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a new empty spill file in the given directory.
+     *
+     * @param directory the directory for temporary files
+     * @param prefix    the file name prefix
+     * @return the created spill file
+     * @throws IOException if the file cannot be created
+     */
+    public static SpillFile create(Path directory, String prefix) throws IOException {
+        Files.createDirectories(directory);
+        Path path = Files.createTempFile(directory, prefix, ".spill");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new SpillFile(path, channel);
+    }
+
+    /**
+     * Appends a row to the file.
+     *
+     * @param tag  the caller-defined tag stored with the row
+     * @param user the user to store
+     * @throws IOException if the row cannot be written
+     */
+    public void write(int tag, User user) throws IOException {
+        byte[][] fields = {
+                encode(user.getId()), encode(user.getUsername()), encode(user.getName()), encode(user.getSurname())
+        };
+        int length = Integer.BYTES;
+        for (byte[] field : fields) {
+            length += Integer.BYTES + (field != null ? field.length : 0);
+        }
+
+        ByteBuffer target = writeBuffer;
+        if (Integer.BYTES + length > writeBuffer.remaining()) {
+            flush();
+            if (Integer.BYTES + length > writeBuffer.capacity()) {
+                target = ByteBuffer.allocate(Integer.BYTES + length);
+            }
+        }
+
+        target.putInt(length).putInt(tag);
+        for (byte[] field : fields) {
+            if (field == null) {
+                target.putInt(NULL_LENGTH);
+            } else {
+                target.putInt(field.length).put(field);
+            }
+        }
+
+        if (target != writeBuffer) {
+            target.flip();
+            writeFully(target);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Writes any buffered rows to the file.
+     *
+     * @throws IOException if the rows cannot be written
+     */
+    public void flush() throws IOException {
+        writeBuffer.flip();
+        writeFully(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    /**
+     * Reads all rows from the beginning of the file in the order they were written.
+     *
+     * @param consumer the consumer receiving each row
+     * @throws IOException if the file cannot be read
+     */
+    public void forEach(RowConsumer consumer) throws IOException {
+        flush();
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long position = 0;
+        long size = channel.size();
+        readBuffer.limit(0);
+
+        while (position < size || readBuffer.hasRemaining()) {
+            if (readBuffer.remaining() < Integer.BYTES) {
+                position = fill(readBuffer, position);
+            }
+            int length = readBuffer.getInt();
+            ByteBuffer row = readBuffer;
+            if (readBuffer.remaining() < length) {
+                position = fill(readBuffer, position);
+                if (readBuffer.remaining() < length) {
+                    row = ByteBuffer.allocate(length);
+                    row.put(readBuffer);
+                    while (row.hasRemaining()) {
+                        position += channel.read(row, position);
+                    }
+                    row.flip();
+                }
+            }
+            int tag = row.getInt();
+            User user = new User(decode(row), decode(row), decode(row), decode(row));
+            consumer.accept(tag, user);
+        }
+    }
+
+    /**
+     * Returns the number of rows written to the file.
+     *
+     * @return the row count
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of bytes written to the file, including buffered rows.
+     *
+     * @return the file size in bytes
+     * @throws IOException if the size cannot be determined
+     */
+    public long size() throws IOException {
+        return channel.size() + writeBuffer.position();
+    }
+
+    /**
+     * Closes the channel and deletes the file.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private long fill(ByteBuffer buffer, long position) throws IOException {
+        buffer.compact();
+        int read = channel.read(buffer, position);
+        buffer.flip();
+        return read > 0 ? position + read : position;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String decode(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Receives rows read back from a {@link SpillFile}.
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(int tag, User user) throws IOException;
+    }
+}
@@ -0,0 +1,203 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Collects the rows of one aggregation within a memory budget.
+ * <p>
+ * Rows are kept on the heap while the request stays within its own budget and the {@link MemoryGovernor}
+ * grants memory from the global budget. Once either budget is exhausted, the buffered rows are moved to a
+ * {@link SpillFile}, the memory is released, and every following row is written to disk. Reading the
+ * buffer then streams the rows back from the file.
+ * </p>
+ * Rows may be added concurrently; the buffer must be closed to release memory and delete the spill file.
+ */
+public class SpillableUserBuffer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillableUserBuffer.class);
+
+    /**
+     * Memory is reserved from the governor in chunks to avoid contention on every row.
+     */
+    private static final long RESERVATION_CHUNK = 256 * 1024;
+    private static final int OBJECT_OVERHEAD = 48;
+    private static final int STRING_OVERHEAD = 40;
+
+    private final MemoryGovernor governor;
+    private final Path spillDirectory;
+    private final long requestBudget;
+
+    // A lock rather than a monitor: rows are written to disk and, by forEach, to the client while it is held,
+    // and a virtual thread blocking on I/O inside synchronized pins its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayList<User> rows = new ArrayList<>();
+    private long reservedBytes;
+    private long usedBytes;
+    private SpillFile spillFile;
+    private long size;
+
+    public SpillableUserBuffer(MemoryGovernor governor, Path spillDirectory) {
+        this.governor = governor;
+        this.spillDirectory = spillDirectory;
+        this.requestBudget = governor.requestBudget();
+    }
+
+    /**
+     * Adds a row, spilling to disk if the memory budget is exhausted.
+     *
+     * @param user the row to add
+     */
+    public void add(User user) {
+        lock.lock();
+        try {
+            size++;
+            if (spillFile == null) {
+                long rowBytes = estimateSize(user);
+                if (usedBytes + rowBytes <= reservedBytes || reserve(usedBytes + rowBytes)) {
+                    rows.add(user);
+                    usedBytes += rowBytes;
+                    return;
+                }
+                spill();
+            }
+            try {
+                spillFile.write(0, user);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to spill users to disk", e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Emits all rows in the order they were buffered, reading spilled rows back from disk.
+     *
+     * @param consumer the consumer receiving each row
+     */
+    public void forEach(Consumer<User> consumer) {
+        lock.lock();
+        try {
+            rows.forEach(consumer);
+            if (spillFile != null) {
+                try {
+                    spillFile.forEach((tag, user) -> consumer.accept(user));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read spilled users", e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of buffered rows.
+     *
+     * @return the row count
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether rows have been spilled to disk.
+     *
+     * @return {@code true} if the buffer spilled
+     */
+    public boolean isSpilled() {
+        lock.lock();
+        try {
+            return spillFile != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            rows.clear();
+            rows.trimToSize();
+            releaseMemory();
+            if (spillFile != null) {
+                try {
+                    spillFile.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to delete spill file: {}", e.getMessage());
+                }
+                spillFile = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean reserve(long required) {
+        long target = Math.max(required, reservedBytes + RESERVATION_CHUNK);
+        if (target > requestBudget) {
+            target = required;
+            if (target > requestBudget) {
+                return false;
+            }
+        }
+        if (!governor.tryReserve(target - reservedBytes)) {
+            return false;
+        }
+        reservedBytes = target;
+        return true;
+    }
+
+    private void spill() {
+        logger.info("Aggregation exceeded its memory budget after {} rows ({} bytes), spilling to disk",
+                rows.size(), usedBytes);
+        try {
+            spillFile = SpillFile.create(spillDirectory, "aggregation-");
+            for (User row : rows) {
+                spillFile.write(0, row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill users to disk", e);
+        }
+        rows.clear();
+        rows.trimToSize();
+        releaseMemory();
+    }
+
+    private void releaseMemory() {
+        governor.release(reservedBytes);
+        reservedBytes = 0;
+        usedBytes = 0;
+    }
+
+    /**
+     * Estimates the heap retained by a row.
+     *
+     * @param user the row
+     * @return the estimated size in bytes
+     */
+    public static long estimateSize(User user) {
+        return OBJECT_OVERHEAD + estimateSize(user.getId()) + estimateSize(user.getUsername())
+                + estimateSize(user.getName()) + estimateSize(user.getSurname());
+    }
+
+    private static long estimateSize(String value) {
+        return value != null ? STRING_OVERHEAD + value.length() * 2L : 0;
+    }
+}
@@ -0,0 +1,262 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Streaming hash-based merge that removes duplicate users coming from several databases.
+ * <p>
+ * Rows are merged into an in-memory hash table keyed by the {@link DedupeMode} key. The heap of the table is
+ * reserved from the {@link MemoryGovernor} like the rows of a {@link SpillableUserBuffer}. When the table grows
+ * beyond {@code maxKeysInMemory} or the governor refuses more memory, all buffered rows and every following row
+ * are hash-partitioned into
+ * {@link SpillFile}s. Each partition is then merged on its own while draining, recursing with a different
+ * hash seed if a partition is still too large. Rows without a key cannot be matched and are always kept.
+ * </p>
+ * Instances are thread-safe, so rows from several databases can be added concurrently.
+ */
+public class UserDeduplicator implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDeduplicator.class);
+    private static final int MAX_DEPTH = 4;
+    private static final long RESERVATION_CHUNK = 256 * 1024;
+    /**
+     * Hash table entry, candidate record and key reference, on top of the row itself.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final DedupeMode mode;
+    private final ConflictResolution resolution;
+    private final int maxKeysInMemory;
+    private final int partitionCount;
+    private final Path spillDirectory;
+    private final MemoryGovernor governor;
+    private final int depth;
+
+    // A lock rather than a monitor, since partitions are written and read back while it is held
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Candidate> candidates = new LinkedHashMap<>();
+    private final List<Candidate> keyless = new ArrayList<>();
+    private List<SpillFile> partitions;
+    private long reservedBytes;
+    private long usedBytes;
+
+    /**
+     * Creates a deduplicator.
+     *
+     * @param mode            the key used to detect duplicates
+     * @param resolution      how to choose between rows with the same key
+     * @param maxKeysInMemory the number of rows kept in memory before spilling to disk
+     * @param partitionCount  the number of spill partitions
+     * @param spillDirectory  the directory for spill files
+     * @param governor        the memory budgets the in-memory table is charged to
+     */
+    public UserDeduplicator(DedupeMode mode, ConflictResolution resolution, int maxKeysInMemory,
+                            int partitionCount, Path spillDirectory, MemoryGovernor governor) {
+        this(mode, resolution, maxKeysInMemory, partitionCount, spillDirectory, governor, 0);
+    }
+
+    private UserDeduplicator(DedupeMode mode, ConflictResolution resolution, int maxKeysInMemory,
+                             int partitionCount, Path spillDirectory, MemoryGovernor governor, int depth) {
+        this.mode = mode;
+        this.resolution = resolution;
+        this.maxKeysInMemory = maxKeysInMemory;
+        this.partitionCount = partitionCount;
+        this.spillDirectory = spillDirectory;
+        this.governor = governor;
+        this.depth = depth;
+    }
+
+    /**
+     * Adds all users returned by one database.
+     *
+     * @param priority the priority of the database, lower values win under {@link ConflictResolution#SOURCE_PRIORITY}
+     * @param users    the users to add
+     */
+    public void addAll(int priority, List<User> users) {
+        lock.lock();
+        try {
+            for (User user : users) {
+                add(priority, user);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a single user.
+     *
+     * @param priority the priority of the database, lower values win under {@link ConflictResolution#SOURCE_PRIORITY}
+     * @param user     the user to add
+     */
+    public void add(int priority, User user) {
+        lock.lock();
+        try {
+            String key = mode.keyOf(user);
+            if (partitions != null) {
+                writeToPartition(key, priority, user);
+                return;
+            }
+
+            Candidate candidate = new Candidate(priority, user);
+            int size = candidates.size() + keyless.size();
+            if (key == null) {
+                keyless.add(candidate);
+            } else {
+                candidates.merge(key, candidate, this::resolve);
+            }
+            if (candidates.size() + keyless.size() > size) {
+                usedBytes += ENTRY_OVERHEAD + SpillableUserBuffer.estimateSize(user);
+            }
+
+            if (depth < MAX_DEPTH && (candidates.size() + keyless.size() > maxKeysInMemory
+                    || usedBytes > reservedBytes && !reserve(usedBytes))) {
+                spill();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Emits the merged users. The deduplicator must not be used after draining.
+     *
+     * @param sink the consumer receiving each unique user
+     */
+    public void drainTo(Consumer<User> sink) {
+        lock.lock();
+        try {
+            if (partitions == null) {
+                candidates.values().forEach(candidate -> sink.accept(candidate.user()));
+                keyless.forEach(candidate -> sink.accept(candidate.user()));
+                candidates.clear();
+                keyless.clear();
+                releaseMemory();
+                return;
+            }
+
+            for (SpillFile partition : partitions) {
+                try (UserDeduplicator child = new UserDeduplicator(
+                        mode, resolution, maxKeysInMemory, partitionCount, spillDirectory, governor, depth + 1)) {
+                    partition.forEach(child::add);
+                    partition.close();
+                    child.drainTo(sink);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to merge spilled users", e);
+                }
+            }
+            partitions = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            candidates.clear();
+            keyless.clear();
+            releaseMemory();
+            if (partitions == null) {
+                return;
+            }
+            for (SpillFile partition : partitions) {
+                try {
+                    partition.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to delete spill file: {}", e.getMessage());
+                }
+            }
+            partitions = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Candidate resolve(Candidate existing, Candidate incoming) {
+        if (resolution == ConflictResolution.SOURCE_PRIORITY && incoming.priority() < existing.priority()) {
+            return incoming;
+        }
+        return existing;
+    }
+
+    private boolean reserve(long required) {
+        long requestBudget = governor.requestBudget();
+        long target = Math.max(required, reservedBytes + RESERVATION_CHUNK);
+        if (target > requestBudget) {
+            target = required;
+            if (target > requestBudget) {
+                return false;
+            }
+        }
+        if (!governor.tryReserve(target - reservedBytes)) {
+            return false;
+        }
+        reservedBytes = target;
+        return true;
+    }
+
+    private void releaseMemory() {
+        governor.release(reservedBytes);
+        reservedBytes = 0;
+        usedBytes = 0;
+    }
+
+    private void spill() {
+        logger.debug("Deduplication key set exceeded {} entries or its memory budget ({} bytes) at depth {}, "
+                + "spilling to disk", maxKeysInMemory, usedBytes, depth);
+        partitions = new ArrayList<>(partitionCount);
+        try {
+            for (int i = 0; i < partitionCount; i++) {
+                partitions.add(SpillFile.create(spillDirectory, "dedupe-"));
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Failed to create spill files", e);
+        }
+
+        candidates.forEach((key, candidate) -> writeToPartition(key, candidate.priority(), candidate.user()));
+        keyless.forEach(candidate -> writeToPartition(null, candidate.priority(), candidate.user()));
+        candidates.clear();
+        keyless.clear();
+        releaseMemory();
+    }
+
+    private void writeToPartition(String key, int priority, User user) {
+        try {
+            partitions.get(partitionOf(key)).write(priority, user);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill users to disk", e);
+        }
+    }
+
+    private int partitionOf(String key) {
+        if (key == null) {
+            return 0;
+        }
+        // Each level uses its own seed so that keys sharing a partition are split again one level down
+        int hash = key.hashCode() ^ (depth * 0x9E3779B9);
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, partitionCount);
+    }
+
+    private record Candidate(int priority, User user) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.zemnitskiy.aggregatehub.cache;
+
+import com.zemnitskiy.aggregatehub.config.CacheProperties;
+import com.zemnitskiy.aggregatehub.executor.SourceExecutor;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Background poller of the change watermark of every database.
+ * <p>
+ * Each check runs the database's cheap change detection query. When a watermark moves, a
+ * {@link SourceChangedEvent} is published for that database only. Databases whose check fails or whose
+ * change detection is disabled have no known watermark, so nothing derived from them is trusted.
+ * </p>
+ */
+@Component
+public class SourceChangeTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceChangeTracker.class);
+
+    private final MultiDatabaseUserDao userDao;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SourceExecutor sourceExecutor;
+    private final boolean enabled;
+    private final Map<String, String> watermarks = new ConcurrentHashMap<>();
+
+    public SourceChangeTracker(MultiDatabaseUserDao userDao, ApplicationEventPublisher eventPublisher,
+                               CacheProperties cacheProperties, SourceExecutor sourceExecutor) {
+        this.userDao = userDao;
+        this.eventPublisher = eventPublisher;
+        this.enabled = cacheProperties.enabled();
+        this.sourceExecutor = sourceExecutor;
+    }
+
+    /**
+     * Returns the last observed watermark of a database.
+     *
+     * @param dbName the database name
+     * @return the watermark, or {@code null} if it is unknown
+     */
+    public String watermark(String dbName) {
+        return watermarks.get(dbName);
+    }
+
+    /**
+     * Checks the watermark of every database and publishes an event for each database that changed.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${aggregate-hub.cache.poll-interval:5s}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        List<String> databaseNames = userDao.getDatabaseNames();
+        watermarks.keySet().retainAll(databaseNames);
+
+        try (SourceExecutor.Fanout fanout = sourceExecutor.fanout()) {
+            List<CompletableFuture<Void>> futures = databaseNames.stream()
+                    .map(dbName -> CompletableFuture.runAsync(() -> check(dbName), fanout.executorFor(dbName)))
+                    .toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        }
+    }
+
+    /**
+     * Forgets the watermark of a reconfigured database, so nothing is cached for it until it is checked again.
+     *
+     * @param event the change event
+     */
+    @EventListener(condition = "#event.reconfigured")
+    public void onSourceReconfigured(SourceChangedEvent event) {
+        watermarks.remove(event.dbName());
+    }
+
+    private void check(String dbName) {
+        String watermark;
+        try {
+            watermark = userDao.fetchWatermark(dbName);
+        } catch (Exception e) {
+            logger.warn("Failed to check database '{}' for changes: {}", dbName, e.getMessage());
+            watermark = null;
+        }
+
+        String previous = watermark != null ? watermarks.put(dbName, watermark) : watermarks.remove(dbName);
+        if (!Objects.equals(previous, watermark)) {
+            logger.debug("Database '{}' changed: watermark {} -> {}", dbName, previous, watermark);
+            eventPublisher.publishEvent(new SourceChangedEvent(dbName, false));
+        }
+    }
+}
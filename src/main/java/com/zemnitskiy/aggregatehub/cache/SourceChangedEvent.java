@@ -0,0 +1,11 @@
+package com.zemnitskiy.aggregatehub.cache;
+
+/**
+ * Published when the users of a database changed, so that state derived from the database can be dropped.
+ *
+ * @param dbName       the database name
+ * @param reconfigured {@code true} if the database was added, updated or removed at runtime rather than
+ *                     its data having changed
+ */
+public record SourceChangedEvent(String dbName, boolean reconfigured) {
+}
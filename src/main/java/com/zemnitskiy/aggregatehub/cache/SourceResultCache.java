@@ -0,0 +1,281 @@
+package com.zemnitskiy.aggregatehub.cache;
+
+import com.zemnitskiy.aggregatehub.aggregation.MemoryGovernor;
+import com.zemnitskiy.aggregatehub.aggregation.SpillableUserBuffer;
+import com.zemnitskiy.aggregatehub.config.CacheProperties;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.ChangeDetection;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Cache of per-database query results in front of {@link MultiDatabaseUserDao}.
+ * <p>
+ * Every entry remembers the watermark its database had when the query started, and is only served while
+ * {@link SourceChangeTracker} still reports that watermark. Entries of unchanged databases therefore stay valid
+ * indefinitely, while a change of one database drops only that database's entries. Entries of databases
+ * detecting changes by checksum, which misses rows updated in place, expire after {@code checksum-max-age}.
+ * </p>
+ * <p>
+ * Cached rows are held on the heap, so the estimated size of every entry is reserved from the
+ * {@link MemoryGovernor}, the budget that also bounds the rows buffered by requests, and all entries together are
+ * capped at {@code max-bytes}. To make room for a new entry the least recently used entries of its database are
+ * evicted; an entry that still does not fit, or that the governor refuses, is not cached.
+ * </p>
+ */
+@Component
+public class SourceResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceResultCache.class);
+    private static final long ENTRY_OVERHEAD = 128;
+    private static final long ROW_REFERENCE = 8;
+
+    private final MultiDatabaseUserDao userDao;
+    private final SourceChangeTracker changeTracker;
+    private final CacheProperties cacheProperties;
+    private final MemoryGovernor memoryGovernor;
+    private final Map<String, SourceEntries> entries = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    public SourceResultCache(MultiDatabaseUserDao userDao, SourceChangeTracker changeTracker,
+                             CacheProperties cacheProperties, MemoryGovernor memoryGovernor) {
+        this.userDao = userDao;
+        this.changeTracker = changeTracker;
+        this.cacheProperties = cacheProperties;
+        this.memoryGovernor = memoryGovernor;
+    }
+
+    /**
+     * Emits the users of a database that match the filter, from the cache if the database has not changed since
+     * the result was cached, otherwise from the database.
+     *
+     * @param dbName   the database name
+     * @param filter   the filter criteria
+     * @param consumer the consumer receiving each matching user
+     */
+    public void streamUsers(String dbName, UserFilter filter, Consumer<User> consumer) {
+        String watermark = changeTracker.watermark(dbName);
+        if (!cacheProperties.enabled() || watermark == null) {
+            userDao.streamUsers(dbName, filter, consumer);
+            return;
+        }
+
+        Entry entry = entries.computeIfAbsent(dbName, key -> new SourceEntries()).get(filter);
+        if (entry != null && entry.isValid(watermark)) {
+            entry.users().forEach(consumer);
+            return;
+        }
+
+        List<User> users = new ArrayList<>();
+        userDao.streamUsers(dbName, filter, user -> {
+            collect(users, user);
+            consumer.accept(user);
+        });
+        store(dbName, filter, watermark, users);
+    }
+
+    /**
+     * Emits the users of several co-located databases that match the filter. Databases with a valid cached result
+     * are served from the cache; the others are read together with one statement, see
+     * {@link MultiDatabaseUserDao#streamColocatedUsers}, and their results are cached per database.
+     *
+     * @param dbNames  the databases, as grouped by {@link MultiDatabaseUserDao#colocatedGroups}
+     * @param filter   the filter criteria
+     * @param consumer the consumer receiving the database name and each matching user
+     */
+    public void streamUsers(List<String> dbNames, UserFilter filter, BiConsumer<String, User> consumer) {
+        if (!cacheProperties.enabled()) {
+            userDao.streamColocatedUsers(dbNames, filter, consumer);
+            return;
+        }
+
+        List<String> live = new ArrayList<>();
+        Map<String, String> watermarks = new HashMap<>();
+        Map<String, List<User>> results = new HashMap<>();
+        for (String dbName : dbNames) {
+            String watermark = changeTracker.watermark(dbName);
+            Entry entry = watermark != null
+                    ? entries.computeIfAbsent(dbName, key -> new SourceEntries()).get(filter)
+                    : null;
+            if (entry != null && entry.isValid(watermark)) {
+                entry.users().forEach(user -> consumer.accept(dbName, user));
+                continue;
+            }
+            live.add(dbName);
+            if (watermark != null) {
+                watermarks.put(dbName, watermark);
+                results.put(dbName, new ArrayList<>());
+            }
+        }
+        if (live.isEmpty()) {
+            return;
+        }
+
+        userDao.streamColocatedUsers(live, filter, (dbName, user) -> {
+            List<User> users = results.get(dbName);
+            if (users != null) {
+                collect(users, user);
+            }
+            consumer.accept(dbName, user);
+        });
+        results.forEach((dbName, users) -> store(dbName, filter, watermarks.get(dbName), users));
+    }
+
+    /**
+     * Returns the watermark under which cached results of a database are currently served.
+     *
+     * @param dbName the database name
+     * @return the watermark, or {@code null} if results of the database are not cached
+     */
+    public String servedWatermark(String dbName) {
+        return cacheProperties.enabled() ? changeTracker.watermark(dbName) : null;
+    }
+
+    /**
+     * Returns the estimated heap held by all cached results.
+     *
+     * @return the cached bytes, all of them reserved from the {@link MemoryGovernor}
+     */
+    public long cachedBytes() {
+        return cachedBytes.get();
+    }
+
+    /**
+     * Drops the cached results of a database that changed.
+     *
+     * @param event the change event
+     */
+    @EventListener
+    public void onSourceChanged(SourceChangedEvent event) {
+        SourceEntries removed = entries.remove(event.dbName());
+        if (removed != null) {
+            int count = removed.clear();
+            if (count > 0) {
+                logger.debug("Invalidated {} cached results of database '{}'", count, event.dbName());
+            }
+        }
+    }
+
+    private void collect(List<User> users, User user) {
+        // Keep one row more than the limit, which marks the result as too large to cache
+        if (users.size() <= cacheProperties.maxRowsPerEntry()) {
+            users.add(user);
+        }
+    }
+
+    private void store(String dbName, UserFilter filter, String watermark, List<User> users) {
+        // Only cache results that are known to be complete for the watermark they are stored under
+        if (users.size() <= cacheProperties.maxRowsPerEntry() && watermark.equals(changeTracker.watermark(dbName))) {
+            long bytes = ENTRY_OVERHEAD;
+            for (User user : users) {
+                bytes += ROW_REFERENCE + SpillableUserBuffer.estimateSize(user);
+            }
+            SourceEntries sourceEntries = entries.computeIfAbsent(dbName, key -> new SourceEntries());
+            sourceEntries.put(dbName, filter, new Entry(watermark, List.copyOf(users), expiry(dbName), bytes));
+        }
+    }
+
+    private long expiry(String dbName) {
+        boolean checksum = userDao.getDatabaseConfig(dbName)
+                .map(dbConfig -> dbConfig.changeDetectionOrDefault().mode() == ChangeDetection.Mode.CHECKSUM)
+                .orElse(false);
+        return checksum ? System.nanoTime() + cacheProperties.checksumMaxAge().toNanos() : Long.MAX_VALUE;
+    }
+
+    private boolean reserve(long bytes) {
+        long current;
+        do {
+            current = cachedBytes.get();
+            if (current + bytes > cacheProperties.maxBytes().toBytes()) {
+                return false;
+            }
+        } while (!cachedBytes.compareAndSet(current, current + bytes));
+        if (!memoryGovernor.tryReserve(bytes)) {
+            cachedBytes.addAndGet(-bytes);
+            return false;
+        }
+        return true;
+    }
+
+    private void release(long bytes) {
+        cachedBytes.addAndGet(-bytes);
+        memoryGovernor.release(bytes);
+    }
+
+    /**
+     * The cached results of one database, least recently used first. Every entry holds its bytes reserved until
+     * it is evicted, replaced or cleared.
+     */
+    private final class SourceEntries {
+
+        private final LinkedHashMap<UserFilter, Entry> byFilter = new LinkedHashMap<>(16, 0.75f, true);
+        private boolean cleared;
+
+        synchronized Entry get(UserFilter filter) {
+            return byFilter.get(filter);
+        }
+
+        synchronized void put(String dbName, UserFilter filter, Entry entry) {
+            // Cleared after the database changed; the entry would never be served nor released
+            if (cleared || entries.get(dbName) != this) {
+                return;
+            }
+            Entry replaced = byFilter.remove(filter);
+            if (replaced != null) {
+                release(replaced.bytes());
+            }
+            Iterator<Entry> eldest = byFilter.values().iterator();
+            while (!reserve(entry.bytes())) {
+                if (!eldest.hasNext()) {
+                    logger.debug("Not caching {} bytes of results of database '{}', the cache is full",
+                            entry.bytes(), dbName);
+                    return;
+                }
+                release(eldest.next().bytes());
+                eldest.remove();
+            }
+            byFilter.put(filter, entry);
+            if (byFilter.size() > cacheProperties.maxEntriesPerSource()) {
+                eldest = byFilter.values().iterator();
+                release(eldest.next().bytes());
+                eldest.remove();
+            }
+        }
+
+        synchronized int clear() {
+            cleared = true;
+            int count = byFilter.size();
+            byFilter.values().forEach(entry -> release(entry.bytes()));
+            byFilter.clear();
+            return count;
+        }
+    }
+
+    /**
+     * @param expiresAt the {@link System#nanoTime} after which the entry is no longer served, {@link Long#MAX_VALUE}
+     *                  if it never expires
+     * @param bytes     the estimated heap held by the entry
+     */
+    private record Entry(String watermark, List<User> users, long expiresAt, long bytes) {
+
+        boolean isValid(String currentWatermark) {
+            return watermark.equals(currentWatermark)
+                    && (expiresAt == Long.MAX_VALUE || System.nanoTime() - expiresAt < 0);
+        }
+    }
+}
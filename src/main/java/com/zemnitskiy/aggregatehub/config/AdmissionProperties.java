@@ -0,0 +1,36 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for admission control of {@code /users} requests.
+ *
+ * @param enabled     whether requests are admitted through priority lanes and get the lane's default deadline;
+ *                    otherwise only requests sending {@code X-Request-Deadline-Ms} have a deadline
+ * @param interactive lane of {@code interactive} requests, the default
+ * @param batch       lane of {@code batch} requests, which are shed first under load
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.admission")
+public record AdmissionProperties(@DefaultValue("false") boolean enabled,
+                                  @DefaultValue Interactive interactive,
+                                  @DefaultValue Batch batch) {
+
+    /**
+     * @param maxConcurrent   number of requests of this lane fetching from the databases at the same time
+     * @param defaultDeadline deadline of requests that do not send {@code X-Request-Deadline-Ms}
+     */
+    public record Interactive(@DefaultValue("32") int maxConcurrent,
+                              @DefaultValue("5s") Duration defaultDeadline) {
+    }
+
+    /**
+     * @param maxConcurrent   number of requests of this lane fetching from the databases at the same time
+     * @param defaultDeadline deadline of requests that do not send {@code X-Request-Deadline-Ms}
+     */
+    public record Batch(@DefaultValue("4") int maxConcurrent,
+                        @DefaultValue("60s") Duration defaultDeadline) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import com.zemnitskiy.aggregatehub.aggregation.ConflictResolution;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Settings for merging the results of several databases into a single response.
+ *
+ * @param spillDirectory     directory for temporary files, defaults to {@code java.io.tmpdir}
+ * @param dedupe             settings for cross-database deduplication
+ * @param memory             heap budgets for buffering aggregated rows
+ * @param fetchSize          number of rows the JDBC driver fetches per round trip while streaming a database
+ * @param fuseColocated      whether databases on the same server are read with one {@code UNION ALL} statement
+ * @param streamStallTimeout how long a stream waits for a client that reads nothing before it fails, releasing
+ *                           its database cursors
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.aggregation")
+public record AggregationProperties(Path spillDirectory, @DefaultValue Dedupe dedupe, @DefaultValue Memory memory,
+                                    @DefaultValue("1000") int fetchSize,
+                                    @DefaultValue("true") boolean fuseColocated,
+                                    @DefaultValue("30s") Duration streamStallTimeout) {
+
+    public AggregationProperties {
+        if (spillDirectory == null) {
+            spillDirectory = Path.of(System.getProperty("java.io.tmpdir"), "aggregate-hub");
+        }
+    }
+
+    /**
+     * @param conflictResolution default conflict resolution when the request does not specify one
+     * @param sourcePriority     database names from highest to lowest priority; unlisted databases follow
+     *                           in configuration order
+     * @param maxKeysInMemory    number of rows merged in memory before spilling to disk
+     * @param spillPartitions    number of partitions used when spilling
+     */
+    public record Dedupe(@DefaultValue("first-wins") ConflictResolution conflictResolution,
+                         @DefaultValue List<String> sourcePriority,
+                         @DefaultValue("500000") int maxKeysInMemory,
+                         @DefaultValue("32") int spillPartitions) {
+    }
+
+    /**
+     * @param requestBudget heap a single request may use for buffered rows before spilling to disk
+     * @param globalBudget  heap all concurrent requests together may use for buffered rows
+     */
+    public record Memory(@DefaultValue("64MB") DataSize requestBudget,
+                         @DefaultValue("512MB") DataSize globalBudget) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for caching per-database query results between changes of a database.
+ *
+ * @param enabled             whether results of live queries are cached
+ * @param pollInterval        delay between change detection checks of each database
+ * @param maxEntriesPerSource number of distinct filters cached per database; least recently used ones are evicted
+ * @param maxRowsPerEntry     results with more rows are not cached
+ * @param maxBytes            estimated heap all cached results together may use; least recently used results of
+ *                            a database are evicted to make room for a new one
+ * @param checksumMaxAge      how long results of databases detecting changes by checksum are served, since the
+ *                            checksum does not notice rows updated in place
+ * @param columnTagMaxAge     how long a weak entity tag built from the watermark of a database detecting changes
+ *                            by column matches, since the watermark does not notice transactions committed late
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.cache")
+public record CacheProperties(@DefaultValue("false") boolean enabled,
+                              @DefaultValue("5s") Duration pollInterval,
+                              @DefaultValue("1000") int maxEntriesPerSource,
+                              @DefaultValue("10000") int maxRowsPerEntry,
+                              @DefaultValue("64MB") DataSize maxBytes,
+                              @DefaultValue("30s") Duration checksumMaxAge,
+                              @DefaultValue("1m") Duration columnTagMaxAge) {
+}
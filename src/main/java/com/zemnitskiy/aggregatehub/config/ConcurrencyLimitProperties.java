@@ -0,0 +1,48 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the adaptive limits on concurrent database queries.
+ *
+ * @param enabled          whether database queries are limited
+ * @param perSource        limit of concurrent queries against a single database
+ * @param global           limit of concurrent queries against all databases together
+ * @param backoffRatio     factor applied to a limit when a query was slow or failed
+ * @param latencyTolerance a query counts as slow when its latency exceeds the lowest recently observed latency
+ *                         of its database by this factor
+ * @param minSlowLatency   queries faster than this never count as slow
+ * @param maxQueueWait     how long a query may wait for a free slot before the request is rejected
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.limits")
+public record ConcurrencyLimitProperties(@DefaultValue("true") boolean enabled,
+                                         @DefaultValue PerSource perSource,
+                                         @DefaultValue Global global,
+                                         @DefaultValue("0.9") double backoffRatio,
+                                         @DefaultValue("2.0") double latencyTolerance,
+                                         @DefaultValue("20ms") Duration minSlowLatency,
+                                         @DefaultValue("1s") Duration maxQueueWait) {
+
+    /**
+     * @param initialLimit limit before any latency was observed
+     * @param minLimit     lowest limit the algorithm may back off to
+     * @param maxLimit     highest limit the algorithm may grow to
+     */
+    public record PerSource(@DefaultValue("10") int initialLimit,
+                            @DefaultValue("1") int minLimit,
+                            @DefaultValue("100") int maxLimit) {
+    }
+
+    /**
+     * @param initialLimit limit before any latency was observed
+     * @param minLimit     lowest limit the algorithm may back off to
+     * @param maxLimit     highest limit the algorithm may grow to
+     */
+    public record Global(@DefaultValue("50") int initialLimit,
+                         @DefaultValue("4") int minLimit,
+                         @DefaultValue("400") int maxLimit) {
+    }
+}
@@ -0,0 +1,401 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import com.zemnitskiy.aggregatehub.cache.SourceChangedEvent;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.schema.SchemaVerifier;
+import com.zemnitskiy.aggregatehub.slowquery.SlowQueryRecorder;
+import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import com.zemnitskiy.aggregatehub.strategy.UserSourceStrategy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of the configured databases, each with its connection pool and EntityManagerFactory, or with the
+ * {@link UserSource} of a {@link UserSourceStrategy} for sources that are not relational databases.
+ * <p>
+ * Databases can be added, updated and removed at runtime. A change builds the new pool and EntityManagerFactory
+ * first, outside any lock and while queries keep using the current ones, then swaps them in by replacing an
+ * immutable map. Every change is numbered when it is requested, and a change only takes effect if no later change
+ * of the same database was applied while it was being built, so a slow update cannot overwrite a newer one or
+ * bring back a removed database. Table and column names of relational databases must be plain identifiers.
+ * Queries hold a {@link Lease} on the database they read; a replaced or removed database is closed in the
+ * background once its last lease is released, or after the drain timeout.
+ * </p>
+ */
+public class DataSourceRegistry implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceRegistry.class);
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_.]+");
+
+    private final Map<String, DatabaseStrategy> databaseStrategies;
+    private final Map<String, UserSourceStrategy> userSourceStrategies;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SlowQueryRecorder slowQueryRecorder;
+    private final SchemaVerifier schemaVerifier;
+    private final Duration drainTimeout;
+    private final Object updateLock = new Object();
+    private final AtomicLong changes = new AtomicLong();
+    // Guarded by updateLock: the number of the change that removed each database
+    private final Map<String, Long> removals = new HashMap<>();
+    private volatile Map<String, Handle> handles = Map.of();
+
+    public DataSourceRegistry(Map<String, DatabaseStrategy> databaseStrategies,
+                              Map<String, UserSourceStrategy> userSourceStrategies, ApplicationEventPublisher eventPublisher,
+                              SlowQueryRecorder slowQueryRecorder, SchemaVerifier schemaVerifier,
+                              Duration drainTimeout) {
+        this.databaseStrategies = databaseStrategies;
+        this.userSourceStrategies = userSourceStrategies;
+        this.eventPublisher = eventPublisher;
+        this.slowQueryRecorder = slowQueryRecorder;
+        this.schemaVerifier = schemaVerifier;
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Returns the names of the registered databases in configuration order.
+     *
+     * @return the database names
+     */
+    public List<String> getDatabaseNames() {
+        return new ArrayList<>(handles.keySet());
+    }
+
+    /**
+     * Returns the configuration of every registered database in configuration order.
+     *
+     * @return the database configurations
+     */
+    public List<DatabaseConfig> getDatabaseConfigs() {
+        return handles.values().stream().map(Handle::config).toList();
+    }
+
+    /**
+     * Leases a database for the duration of a query. The lease must be closed when the query is done.
+     *
+     * @param dbName the database name
+     * @return the lease, or empty if no such database is registered
+     */
+    public Optional<Lease> lease(String dbName) {
+        while (true) {
+            Handle handle = handles.get(dbName);
+            if (handle == null) {
+                return Optional.empty();
+            }
+            if (handle.tryAcquire()) {
+                return Optional.of(new Lease(handle));
+            }
+            // The handle was replaced and closed concurrently; the map already holds its successor
+        }
+    }
+
+    /**
+     * Adds a database, or replaces the database of the same name. Does nothing if a change of the same database
+     * requested later was applied in the meantime.
+     *
+     * @param dbConfig the database configuration
+     * @throws IllegalArgumentException if the configuration is invalid or its strategy is unknown
+     */
+    public void put(DatabaseConfig dbConfig) {
+        long change = changes.incrementAndGet();
+        if (isRegistered(dbConfig)) {
+            logger.info("Database '{}' is unchanged", dbConfig.name());
+            return;
+        }
+        // Connecting and building the EntityManagerFactory can take long, so it happens outside the lock
+        Handle created = create(dbConfig, change);
+        synchronized (updateLock) {
+            if (isRegistered(dbConfig)) {
+                logger.info("Database '{}' is unchanged", dbConfig.name());
+                created.close();
+                return;
+            }
+            Handle current = handles.get(dbConfig.name());
+            long applied = Math.max(current != null ? current.change() : 0, removals.getOrDefault(dbConfig.name(), 0L));
+            if (applied > change) {
+                logger.info("Discarding the update of database '{}': a later change was applied while it was built",
+                        dbConfig.name());
+                created.close();
+                return;
+            }
+            removals.remove(dbConfig.name());
+            Map<String, Handle> updated = new LinkedHashMap<>(handles);
+            updated.put(dbConfig.name(), created);
+            handles = Collections.unmodifiableMap(updated);
+            logger.info("{} database '{}'", current == null ? "Added" : "Updated", dbConfig.name());
+            retire(current);
+        }
+        eventPublisher.publishEvent(new SourceChangedEvent(dbConfig.name(), true));
+    }
+
+    private boolean isRegistered(DatabaseConfig dbConfig) {
+        Handle current = handles.get(dbConfig.name());
+        return current != null && current.config().equals(dbConfig);
+    }
+
+    /**
+     * Removes a database. Queries already reading it finish before its pool is closed.
+     *
+     * @param dbName the database name
+     * @return {@code false} if no such database is registered
+     */
+    public boolean remove(String dbName) {
+        long change = changes.incrementAndGet();
+        synchronized (updateLock) {
+            Handle current = handles.get(dbName);
+            if (current == null) {
+                return false;
+            }
+            removals.put(dbName, change);
+            Map<String, Handle> updated = new LinkedHashMap<>(handles);
+            updated.remove(dbName);
+            handles = Collections.unmodifiableMap(updated);
+            logger.info("Removed database '{}'", dbName);
+            retire(current);
+        }
+        eventPublisher.publishEvent(new SourceChangedEvent(dbName, true));
+        return true;
+    }
+
+    /**
+     * Closes every registered database immediately.
+     */
+    @Override
+    public void close() {
+        synchronized (updateLock) {
+            handles.values().forEach(Handle::close);
+            handles = Map.of();
+        }
+    }
+
+    private Handle create(DatabaseConfig dbConfig, long change) {
+        String type = dbConfig.strategy() != null ? dbConfig.strategy().toLowerCase() : null;
+        UserSourceStrategy userSourceStrategy = userSourceStrategies.get(type);
+        if (userSourceStrategy != null) {
+            logger.info("Configuring source: {} of type: {}", dbConfig.name(), type);
+            return new Handle(dbConfig, change, null, null, null, userSourceStrategy.open(dbConfig), Map.of());
+        }
+        DatabaseStrategy strategy = databaseStrategies.get(type);
+
+        if (strategy == null) {
+            logger.error("No strategy found for database type: {}", type);
+            throw new IllegalArgumentException("No strategy found for database type: " + type);
+        }
+
+        checkIdentifiers(dbConfig);
+        logger.info("Configuring database: {} of type: {}", dbConfig.name(), type);
+
+        // Create DataSource
+        DataSource dataSource = slowQueryRecorder.instrument(dbConfig.name(), strategy.createDataSource(dbConfig),
+                strategy::explainStatement);
+        logger.info("DataSource created for {}", dbConfig.name());
+
+        try {
+            // Prepare entity mapping
+            Map<String, String> mapping = dbConfig.mapping() != null ? new HashMap<>(dbConfig.mapping()) : new HashMap<>();
+
+            // Create EntityManagerFactory
+            LocalContainerEntityManagerFactoryBean emfBean = strategy.createEntityManagerFactory(
+                    dataSource, dbConfig.name() + "PU", mapping, dbConfig.tableName());
+            String schemaAction = schemaVerifier.schemaAction(dbConfig, dataSource);
+            emfBean.getJpaPropertyMap().put(DatabaseStrategy.HIBERNATE_HBM2DDL_AUTO, schemaAction);
+            emfBean.afterPropertiesSet();
+            EntityManagerFactory emf = emfBean.getObject();
+            schemaVerifier.verified(dbConfig, dataSource, schemaAction);
+            logger.info("Configured EntityManagerFactory for: {}", dbConfig.name());
+            Map<String, String> collations = columnCollations(dbConfig, strategy, dataSource);
+            return new Handle(dbConfig, change, strategy, dataSource, emf, null, collations);
+        } catch (RuntimeException e) {
+            closeDataSource(dbConfig.name(), dataSource);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the collations of the user table, so text conditions can leave out collations the columns already
+     * compare by. Conditions fall back to not knowing them if the catalog cannot be read.
+     */
+    private static Map<String, String> columnCollations(DatabaseConfig dbConfig, DatabaseStrategy strategy,
+                                                        DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return Map.copyOf(strategy.columnCollations(connection, dbConfig.tableName()));
+        } catch (SQLException e) {
+            logger.warn("Failed to read the column collations of database '{}': {}", dbConfig.name(), e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Rejects table and column names that are not plain identifiers, since they end up in native SQL.
+     */
+    private static void checkIdentifiers(DatabaseConfig dbConfig) {
+        List<String> identifiers = new ArrayList<>();
+        identifiers.add(dbConfig.tableName());
+        if (dbConfig.mapping() != null) {
+            identifiers.addAll(dbConfig.mapping().values());
+        }
+        for (String identifier : identifiers) {
+            if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+                throw new IllegalArgumentException("Invalid table or column name for database " + dbConfig.name()
+                        + ": " + identifier);
+            }
+        }
+    }
+
+    private void retire(Handle handle) {
+        if (handle != null) {
+            Thread.ofVirtual().name("drain-" + handle.config().name()).start(() -> handle.drainAndClose(drainTimeout));
+        }
+    }
+
+    private static void closeDataSource(String dbName, DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close the pool of database '{}': {}", dbName, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Access to one database for the duration of a query.
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final Handle handle;
+        private boolean released;
+
+        private Lease(Handle handle) {
+            this.handle = handle;
+        }
+
+        public DatabaseConfig config() {
+            return handle.config();
+        }
+
+        /**
+         * Returns the EntityManagerFactory of a relational database, {@code null} for other sources.
+         */
+        public EntityManagerFactory entityManagerFactory() {
+            return handle.entityManagerFactory();
+        }
+
+        /**
+         * Returns the pool of a relational database, {@code null} for other sources.
+         */
+        public DataSource dataSource() {
+            return handle.dataSource();
+        }
+
+        /**
+         * Returns the strategy of a relational database, {@code null} for other sources.
+         */
+        public DatabaseStrategy strategy() {
+            return handle.strategy();
+        }
+
+        /**
+         * Returns the collations of the columns of the user table, keyed by lower-case column name. Empty for
+         * other sources and for databases whose strategy does not read them.
+         */
+        public Map<String, String> columnCollations() {
+            return handle.columnCollations();
+        }
+
+        /**
+         * Returns the source opened by a {@link UserSourceStrategy}, {@code null} for relational databases.
+         */
+        public UserSource userSource() {
+            return handle.userSource();
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                handle.release();
+            }
+        }
+    }
+
+    /**
+     * A database with its pool and EntityManagerFactory, the number of the change that created it, and the number
+     * of queries currently using it. The lease count becomes {@code -1} once the handle is closed, after which it
+     * cannot be leased anymore.
+     */
+    private record Handle(DatabaseConfig config, long change, DatabaseStrategy strategy, DataSource dataSource,
+                          EntityManagerFactory entityManagerFactory, UserSource userSource,
+                          Map<String, String> columnCollations, AtomicInteger leases) {
+
+        Handle(DatabaseConfig config, long change, DatabaseStrategy strategy, DataSource dataSource,
+               EntityManagerFactory entityManagerFactory, UserSource userSource, Map<String, String> columnCollations) {
+            this(config, change, strategy, dataSource, entityManagerFactory, userSource, columnCollations,
+                    new AtomicInteger());
+        }
+
+        boolean tryAcquire() {
+            for (int count = leases.get(); count >= 0; count = leases.get()) {
+                if (leases.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void release() {
+            leases.decrementAndGet();
+        }
+
+        void drainAndClose(Duration timeout) {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (!leases.compareAndSet(0, -1)) {
+                if (System.nanoTime() > deadline) {
+                    logger.warn("Closing database '{}' with {} queries still running after {}",
+                            config.name(), leases.getAndSet(-1), timeout);
+                    break;
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            close();
+            logger.info("Closed retired pool of database '{}'", config.name());
+        }
+
+        void close() {
+            leases.set(-1);
+            if (userSource != null) {
+                userSource.close();
+                return;
+            }
+            try {
+                entityManagerFactory.close();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to close EntityManagerFactory of database '{}': {}", config.name(), e.getMessage());
+            }
+            closeDataSource(config.name(), dataSource);
+        }
+    }
+}
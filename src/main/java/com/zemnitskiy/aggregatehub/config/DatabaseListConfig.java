@@ -1,14 +1,76 @@
 package com.zemnitskiy.aggregatehub.config;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 
 @ConfigurationProperties(prefix = "aggregate-hub")
 public record DatabaseListConfig(List<DatabaseConfig> dataSources) {
-    public record DatabaseConfig(String name, String strategy, String url, String user, String table, String password,
-                                 Map<String, String> mapping) {
+    public record DatabaseConfig(String name, String strategy, String url, String user, String table,
+                                 @JsonProperty(access = JsonProperty.Access.WRITE_ONLY) String password,
+                                 Map<String, String> mapping, ChangeDetection changeDetection) {
+
+        /**
+         * Returns the configured user table, or {@code users} if none is configured.
+         *
+         * @return the table name
+         */
+        public String tableName() {
+            return table != null && !table.isEmpty() ? table : "users";
+        }
+
+        /**
+         * Returns how changes of this database are detected, {@link ChangeDetection.Mode#NONE} unless configured,
+         * since only a change column notices rows updated in place.
+         *
+         * @return the change detection settings
+         */
+        public ChangeDetection changeDetectionOrDefault() {
+            return changeDetection != null ? changeDetection : new ChangeDetection(ChangeDetection.Mode.NONE, null);
+        }
+    }
+
+    /**
+     * How the hub cheaply detects that the users of a database changed.
+     *
+     * @param mode   the detection mode
+     * @param column the column compared in {@link Mode#COLUMN} mode, e.g. an {@code updated_at} or version column
+     */
+    public record ChangeDetection(Mode mode, String column) {
+
+        public ChangeDetection {
+            if (mode == null) {
+                mode = column != null ? Mode.COLUMN : Mode.NONE;
+            }
+            if (mode == Mode.COLUMN && (column == null || !column.matches("[A-Za-z_][A-Za-z0-9_]*"))) {
+                throw new IllegalArgumentException("Change detection mode 'column' requires a valid column name, got: "
+                        + column);
+            }
+        }
+
+        public enum Mode {
+            /**
+             * Row count and highest ID; detects inserts and deletes but not updates.
+             */
+            CHECKSUM,
+            /**
+             * Row count and highest value of a column bumped on every write; also detects updates.
+             */
+            COLUMN,
+            /**
+             * No detection; the database is treated as changed on every check and never cached.
+             */
+            NONE;
+
+            @JsonCreator
+            public static Mode fromValue(String value) {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            }
+        }
     }
-}
\ No newline at end of file
+}
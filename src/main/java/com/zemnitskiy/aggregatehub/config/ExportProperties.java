@@ -0,0 +1,29 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for asynchronous export jobs.
+ *
+ * @param directory         directory holding finished export files, defaults to {@code java.io.tmpdir}
+ * @param maxConcurrentJobs number of export jobs running at the same time; further jobs wait in a queue
+ * @param maxPendingJobs    number of jobs that may wait in the queue; further submissions are rejected
+ * @param retention         how long finished jobs and their files are kept
+ * @param sweepInterval     delay between removals of expired jobs and files
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.export")
+public record ExportProperties(Path directory, @DefaultValue("2") int maxConcurrentJobs,
+                               @DefaultValue("16") int maxPendingJobs,
+                               @DefaultValue("24h") Duration retention,
+                               @DefaultValue("5m") Duration sweepInterval) {
+
+    public ExportProperties {
+        if (directory == null) {
+            directory = Path.of(System.getProperty("java.io.tmpdir"), "aggregate-hub", "exports");
+        }
+    }
+}
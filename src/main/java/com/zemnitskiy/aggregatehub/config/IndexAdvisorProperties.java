@@ -0,0 +1,15 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for checking that the columns behind the {@code /users} filters are indexed.
+ *
+ * @param checkOnStartup whether every database is checked once the application is ready, logging missing indexes
+ * @param createMissing  whether missing indexes found by the startup check are created
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.index-advisor")
+public record IndexAdvisorProperties(@DefaultValue("true") boolean checkOnStartup,
+                                     @DefaultValue("false") boolean createMissing) {
+}
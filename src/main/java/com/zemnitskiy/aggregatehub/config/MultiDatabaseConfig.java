@@ -1,104 +1,83 @@
 package com.zemnitskiy.aggregatehub.config;
 
 import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.schema.SchemaVerifier;
+import com.zemnitskiy.aggregatehub.slowquery.SlowQueryRecorder;
 import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
-import jakarta.annotation.PostConstruct;
-import jakarta.persistence.EntityManagerFactory;
+import com.zemnitskiy.aggregatehub.strategy.UserSourceStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 
-import javax.sql.DataSource;
-import java.util.Collections;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.Map;
 
 /**
  * Configuration class for managing multiple databases with specific strategies.
  * <p>
- * This class initializes DataSource and EntityManagerFactory instances for each database
- * defined in {@link DatabaseListConfig}. It uses the provided {@link DatabaseStrategy} implementations
- * to configure each database according to its specified strategy.
+ * This class creates the {@link DataSourceRegistry} and registers a DataSource and EntityManagerFactory for each
+ * database defined in {@link DatabaseListConfig}. It uses the provided {@link DatabaseStrategy} implementations
+ * to configure each database according to its specified strategy. Databases can later be added, updated or
+ * removed at runtime through the registry.
  * </p>
+ * The class is not proxied: it has no inter-bean method calls, and a CGLIB subclass would drop the generic types
+ * of the strategy maps from its constructor, which breaks their injection under AOT.
  */
-@Configuration
+@Configuration(proxyBeanMethods = false)
 public class MultiDatabaseConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(MultiDatabaseConfig.class);
 
     private final DatabaseListConfig databaseListConfig;
     private final Map<String, DatabaseStrategy> databaseStrategies;
-    private final Map<String, DataSource> dataSourceMap = new HashMap<>();
-    private final Map<String, EntityManagerFactory> entityManagerFactoryMap = new HashMap<>();
+    private final Map<String, UserSourceStrategy> userSourceStrategies;
 
     /**
      * Constructor for MultiDatabaseConfig.
      *
      * @param databaseListConfig Configuration for the list of databases.
      * @param databaseStrategies Map of available database strategies, keyed by strategy type.
+     * @param userSourceStrategies Map of available strategies for sources that are not relational databases,
+     *                             keyed by strategy type.
      */
-    public MultiDatabaseConfig(DatabaseListConfig databaseListConfig, Map<String, DatabaseStrategy> databaseStrategies) {
+    public MultiDatabaseConfig(DatabaseListConfig databaseListConfig, Map<String, DatabaseStrategy> databaseStrategies,
+                               Map<String, UserSourceStrategy> userSourceStrategies) {
         this.databaseListConfig = databaseListConfig;
         this.databaseStrategies = databaseStrategies;
+        this.userSourceStrategies = userSourceStrategies;
     }
 
     /**
-     * Initializes database configurations by creating DataSource and EntityManagerFactory instances
-     * for each defined database.
+     * Creates the registry of databases and registers every configured database.
+     *
+     * @param eventPublisher    publisher of database change events
+     * @param slowQueryRecorder recorder timing the statements of every database
+     * @param schemaVerifier    decides how the schema of every database is checked
+     * @param drainTimeout      how long a replaced or removed database may keep serving running queries
+     * @return the registry
      */
-    @PostConstruct
-    public void init() {
-        logger.info("Initializing MultiDatabaseConfig with available strategies: {}", databaseStrategies.keySet());
-
-        for (DatabaseConfig dbConfig : databaseListConfig.dataSources()) {
-            String type = dbConfig.strategy().toLowerCase();
-            DatabaseStrategy strategy = databaseStrategies.get(type);
+    @Bean(destroyMethod = "close")
+    public DataSourceRegistry dataSourceRegistry(ApplicationEventPublisher eventPublisher,
+                                                 SlowQueryRecorder slowQueryRecorder,
+                                                 SchemaVerifier schemaVerifier,
+                                                 @Value("${aggregate-hub.data-source-drain-timeout:30s}")
+                                                 Duration drainTimeout) {
+        logger.info("Initializing MultiDatabaseConfig with available strategies: {} and source strategies: {}",
+                databaseStrategies.keySet(), userSourceStrategies.keySet());
 
-            if (strategy == null) {
-                logger.error("No strategy found for database type: {}", type);
-                throw new IllegalArgumentException("No strategy found for database type: " + type);
+        DataSourceRegistry registry = new DataSourceRegistry(databaseStrategies, userSourceStrategies, eventPublisher,
+                slowQueryRecorder, schemaVerifier, drainTimeout);
+        try {
+            for (DatabaseConfig dbConfig : databaseListConfig.dataSources()) {
+                registry.put(dbConfig);
             }
-
-            logger.info("Configuring database: {} of type: {}", dbConfig.name(), type);
-
-            // Create and store DataSource
-            DataSource dataSource = strategy.createDataSource(dbConfig);
-            dataSourceMap.put(dbConfig.name(), dataSource);
-            logger.info("DataSource created for {}", dbConfig.name());
-
-            // Prepare entity mapping
-            Map<String, String> mapping = dbConfig.mapping() != null ? new HashMap<>(dbConfig.mapping()) : new HashMap<>();
-            String table = dbConfig.table()!= null && !dbConfig.table().isEmpty() ? dbConfig.table() : "users";
-
-            // Create and store EntityManagerFactory
-            LocalContainerEntityManagerFactoryBean emfBean = strategy.createEntityManagerFactory(
-                    dataSource, dbConfig.name() + "PU", mapping, table);
-            emfBean.afterPropertiesSet();
-            EntityManagerFactory emf = emfBean.getObject();
-            entityManagerFactoryMap.put(dbConfig.name(), emf);
-            logger.info("Configured EntityManagerFactory for: {}", dbConfig.name());
+        } catch (RuntimeException e) {
+            registry.close();
+            throw e;
         }
+        return registry;
     }
-
-    /**
-     * Provides an unmodifiable map of configured DataSources.
-     *
-     * @return Map of DataSource instances keyed by database name.
-     */
-    @Bean
-    public Map<String, DataSource> dataSources() {
-        return Collections.unmodifiableMap(dataSourceMap);
-    }
-
-    /**
-     * Provides an unmodifiable map of configured EntityManagerFactories.
-     *
-     * @return Map of EntityManagerFactory instances keyed by database name.
-     */
-    @Bean
-    public Map<String, EntityManagerFactory> entityManagerFactories() {
-        return Collections.unmodifiableMap(entityManagerFactoryMap);
-    }
-}
\ No newline at end of file
+}
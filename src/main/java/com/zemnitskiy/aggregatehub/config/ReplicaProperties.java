@@ -0,0 +1,39 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the local materialized replica used by {@code consistency=local} requests.
+ *
+ * @param enabled            whether every database is loaded into memory at startup and kept fresh
+ * @param refreshInterval    delay between watermark checks of each database
+ * @param fullReloadInterval longest time a database is only refreshed from its watermark and changed rows before it
+ *                           is reloaded in full, which bounds how long changes the watermark cannot see stay hidden
+ * @param loadTimeout        query timeout of each load or catch-up read of a database
+ * @param snapshot           settings for persisting the replica across restarts
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.replica")
+public record ReplicaProperties(@DefaultValue("false") boolean enabled,
+                                @DefaultValue("5s") Duration refreshInterval,
+                                @DefaultValue("15m") Duration fullReloadInterval,
+                                @DefaultValue("10m") Duration loadTimeout,
+                                @DefaultValue Snapshot snapshot) {
+
+    /**
+     * @param enabled   whether every reloaded database is written to a snapshot file and restored on startup
+     * @param directory directory for snapshot files, defaults to {@code java.io.tmpdir}; use a persistent volume
+     *                  so snapshots survive redeploys
+     */
+    public record Snapshot(@DefaultValue("true") boolean enabled, Path directory) {
+
+        public Snapshot {
+            if (directory == null) {
+                directory = Path.of(System.getProperty("java.io.tmpdir"), "aggregate-hub", "replica");
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for checking the user table of every database when its EntityManagerFactory is built.
+ *
+ * @param mode      how the schema is checked
+ * @param fallback  what Hibernate does in {@link Mode#VERIFY} mode when the fingerprint of a table changed
+ * @param directory directory for the fingerprints of verified tables. It has to persist across restarts and
+ *                  redeploys, since {@link Mode#VERIFY} can only skip the fallback for fingerprints found there;
+ *                  when unset, the fallback runs on every start
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.schema")
+public record SchemaProperties(@DefaultValue("verify") Mode mode,
+                               @DefaultValue("update") Fallback fallback,
+                               Path directory) {
+
+    public enum Mode {
+        /**
+         * Fingerprints the table's columns with one catalog query and runs the {@link Fallback} only when the
+         * fingerprint differs from the one recorded after the last successful check.
+         */
+        VERIFY,
+        /**
+         * Validates the mapping against the schema on every start.
+         */
+        VALIDATE,
+        /**
+         * Updates the schema to match the mapping on every start.
+         */
+        UPDATE,
+        /**
+         * Never checks the schema.
+         */
+        NONE
+    }
+
+    public enum Fallback {
+        /**
+         * Validates the mapping against the schema; a mismatch fails the database's configuration.
+         */
+        VALIDATE,
+        /**
+         * Updates the schema to match the mapping.
+         */
+        UPDATE
+    }
+}
@@ -0,0 +1,28 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Settings for recording slow database queries.
+ *
+ * @param enabled         whether statements are timed and slow ones recorded
+ * @param threshold       statements slower than this are recorded
+ * @param thresholds      per-database thresholds overriding {@code threshold}, keyed by database name
+ * @param capacity        number of recorded queries kept; the oldest ones are dropped first
+ * @param explainInterval minimum delay between two {@code EXPLAIN} runs against the same database;
+ *                        slow queries recorded in between are kept without a plan
+ * @param maskBinds       whether bind values, which hold user data, are hidden from {@code /admin/slow-queries};
+ *                        they are still used for {@code EXPLAIN}
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.slow-queries")
+public record SlowQueryProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("500ms") Duration threshold,
+                                  @DefaultValue Map<String, Duration> thresholds,
+                                  @DefaultValue("200") int capacity,
+                                  @DefaultValue("10s") Duration explainInterval,
+                                  @DefaultValue("true") boolean maskBinds) {
+}
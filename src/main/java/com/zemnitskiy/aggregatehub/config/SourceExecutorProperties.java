@@ -0,0 +1,33 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import com.zemnitskiy.aggregatehub.executor.ThreadMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Settings for the threads reading the databases during a fan-out.
+ *
+ * @param platformThreads       number of platform threads of each database whose driver pins virtual threads
+ * @param platformQueueCapacity number of reads of such a database queued for a thread before further reads are
+ *                              rejected
+ * @param threadModes           thread modes overriding the default of the strategy, keyed by strategy type
+ *                              ({@code mysql}, {@code postgres}, ...)
+ * @param pinning               settings for detecting pinned virtual threads
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.source-executor")
+public record SourceExecutorProperties(@DefaultValue("8") int platformThreads,
+                                       @DefaultValue("64") int platformQueueCapacity,
+                                       @DefaultValue Map<String, ThreadMode> threadModes,
+                                       @DefaultValue Pinning pinning) {
+
+    /**
+     * @param enabled   whether {@code jdk.VirtualThreadPinned} events are recorded
+     * @param threshold virtual threads pinned for less than this are not recorded
+     */
+    public record Pinning(@DefaultValue("true") boolean enabled,
+                          @DefaultValue("20ms") Duration threshold) {
+    }
+}
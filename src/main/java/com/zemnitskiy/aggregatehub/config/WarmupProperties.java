@@ -0,0 +1,22 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the warm-up run at startup, before the application reports itself ready for traffic.
+ *
+ * @param enabled      whether the application warms up before reporting readiness
+ * @param timeout      upper bound of the warm-up; the application becomes ready when it expires even if
+ *                     databases are still warming up
+ * @param connections  number of connections opened in the pool of each database
+ * @param aggregations number of synthetic aggregations run through the whole read path
+ */
+@ConfigurationProperties(prefix = "aggregate-hub.warmup")
+public record WarmupProperties(@DefaultValue("true") boolean enabled,
+                               @DefaultValue("60s") Duration timeout,
+                               @DefaultValue("2") int connections,
+                               @DefaultValue("20") int aggregations) {
+}
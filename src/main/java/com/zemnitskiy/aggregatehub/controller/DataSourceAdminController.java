@@ -0,0 +1,95 @@
+package com.zemnitskiy.aggregatehub.controller;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.exception.ErrorResponse;
+import com.zemnitskiy.aggregatehub.service.DataSourceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST controller for reconfiguring databases without restarting the hub. Only registered with
+ * {@code aggregate-hub.admin.data-sources.enabled=true}, since it lets callers point the hub at any host.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "aggregate-hub.admin.data-sources", name = "enabled", havingValue = "true")
+@RequestMapping("/admin/data-sources")
+public class DataSourceAdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceAdminController.class);
+
+    private final DataSourceService dataSourceService;
+
+    public DataSourceAdminController(DataSourceService dataSourceService) {
+        this.dataSourceService = dataSourceService;
+    }
+
+    /**
+     * Lists the registered databases. Passwords are never returned.
+     *
+     * @return the database configurations
+     */
+    @Operation(summary = "List the registered databases")
+    @GetMapping
+    public List<DatabaseConfig> getDataSources() {
+        return dataSourceService.getDataSources();
+    }
+
+    /**
+     * Adds a database, or replaces the configuration of an existing one.
+     *
+     * @param name     the database name
+     * @param dbConfig the database configuration, in the same shape as {@code aggregate-hub.data-sources}
+     * @return the registered configuration
+     */
+    @Operation(
+            summary = "Add or update a database",
+            description = "Builds the connection pool of the database in the background of running queries, then swaps it in. " +
+                    "A replaced pool is closed once its running queries are done."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Database registered",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = DatabaseConfig.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid database configuration",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PutMapping("/{name}")
+    public DatabaseConfig putDataSource(@PathVariable String name, @RequestBody DatabaseConfig dbConfig) {
+        logger.info("Received request to configure database '{}' of type {}", name, dbConfig.strategy());
+        return dataSourceService.putDataSource(name, dbConfig);
+    }
+
+    /**
+     * Removes a database.
+     *
+     * @param name the database name
+     * @return an empty response
+     */
+    @Operation(summary = "Remove a database")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Database removed"),
+            @ApiResponse(responseCode = "404", description = "Database not found",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> deleteDataSource(@PathVariable String name) {
+        logger.info("Received request to remove database '{}'", name);
+        dataSourceService.removeDataSource(name);
+        return ResponseEntity.noContent().build();
+    }
+}
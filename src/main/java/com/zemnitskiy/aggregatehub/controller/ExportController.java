@@ -0,0 +1,184 @@
+package com.zemnitskiy.aggregatehub.controller;
+
+import com.zemnitskiy.aggregatehub.exception.ErrorResponse;
+import com.zemnitskiy.aggregatehub.model.ExportJob;
+import com.zemnitskiy.aggregatehub.model.ExportJobStatus;
+import com.zemnitskiy.aggregatehub.model.ExportRequest;
+import com.zemnitskiy.aggregatehub.service.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * REST controller for asynchronous exports of users from all databases.
+ * Provides endpoints to submit export jobs, poll their status and download the finished files.
+ */
+@RestController
+@RequestMapping("/exports")
+public class ExportController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportController.class);
+
+    // Tomcat request attributes for serving a file with sendfile(2)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Submits an export job writing all users matching the filter into a gzip-compressed file.
+     *
+     * @param request the filter and file format
+     * @return the submitted job, with its status URL in the {@code Location} header
+     */
+    @Operation(
+            summary = "Submit an export job",
+            description = "Starts an asynchronous export of users from all configured databases into a gzip-compressed CSV or NDJSON file."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Export job accepted",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExportJob.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request due to invalid parameters",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Too many export jobs are waiting; retry after the Retry-After delay",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping
+    public ResponseEntity<ExportJob> submitExport(@RequestBody ExportRequest request) {
+        logger.info("Received export request: {}", request);
+        ExportJob job = exportService.submit(request);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(job.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    /**
+     * Lists all known export jobs.
+     *
+     * @return the jobs
+     */
+    @Operation(summary = "List export jobs")
+    @GetMapping
+    public Collection<ExportJob> getExports() {
+        return exportService.getJobs();
+    }
+
+    /**
+     * Returns the status of an export job.
+     *
+     * @param id the job identifier
+     * @return the job
+     */
+    @Operation(summary = "Get the status of an export job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export job status",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExportJob.class))),
+            @ApiResponse(responseCode = "404", description = "Export job not found",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/{id}")
+    public ExportJob getExport(@PathVariable String id) {
+        return exportService.getJob(id);
+    }
+
+    /**
+     * Downloads the file of a completed export job.
+     * <p>
+     * The file is handed to Tomcat's sendfile support when available, so it is copied from the page cache
+     * to the socket by the kernel. Otherwise it is copied with {@link FileChannel#transferTo}.
+     * </p>
+     *
+     * @param id       the job identifier
+     * @param request  the servlet request
+     * @param response the servlet response
+     * @throws IOException if the file cannot be sent
+     */
+    @Operation(summary = "Download the file of a completed export job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Gzip-compressed export file",
+                    content = @Content(mediaType = "application/gzip")),
+            @ApiResponse(responseCode = "404", description = "Export job not found",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Export job has not completed")
+    })
+    @GetMapping("/{id}/file")
+    public void downloadExport(@PathVariable String id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        ExportJob job = exportService.getJob(id);
+        if (job.getStatus() != ExportJobStatus.COMPLETED) {
+            response.sendError(HttpStatus.CONFLICT.value(), "Export job is " + job.getStatus());
+            return;
+        }
+
+        Path file = job.getFile();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            response.setContentType("application/gzip");
+            response.setContentLengthLong(size);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(job.getFileName()).build().toString());
+
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+            response.flushBuffer();
+        }
+    }
+
+    /**
+     * Deletes an export job and its file, cancelling the job if it has not finished.
+     *
+     * @param id the job identifier
+     * @return an empty response
+     */
+    @Operation(summary = "Delete an export job and its file")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteExport(@PathVariable String id) {
+        exportService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+}
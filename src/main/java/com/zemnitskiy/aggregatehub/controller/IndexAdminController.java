@@ -0,0 +1,38 @@
+package com.zemnitskiy.aggregatehub.controller;
+
+import com.zemnitskiy.aggregatehub.model.IndexAdvice;
+import com.zemnitskiy.aggregatehub.service.IndexAdvisorService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST controller reporting the indexes on the columns behind the {@code /users} filters. Creating them is left to
+ * {@link IndexCreationController}, which is only registered when enabled.
+ */
+@RestController
+@RequestMapping("/admin/indexes")
+public class IndexAdminController {
+
+    private final IndexAdvisorService indexAdvisorService;
+
+    public IndexAdminController(IndexAdvisorService indexAdvisorService) {
+        this.indexAdvisorService = indexAdvisorService;
+    }
+
+    /**
+     * Reports whether each filter column is indexed.
+     *
+     * @param database the database to check (optional, all databases by default)
+     * @return the index status of every filter column, with the row estimate of unindexed ones
+     */
+    @Operation(summary = "Show which filter columns are indexed in each database")
+    @GetMapping
+    public List<IndexAdvice> getIndexes(@RequestParam(required = false) String database) {
+        return database == null ? indexAdvisorService.adviseAll() : indexAdvisorService.advise(database);
+    }
+}
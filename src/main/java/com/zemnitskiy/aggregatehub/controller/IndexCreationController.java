@@ -0,0 +1,40 @@
+package com.zemnitskiy.aggregatehub.controller;
+
+import com.zemnitskiy.aggregatehub.model.IndexAdvice;
+import com.zemnitskiy.aggregatehub.service.IndexAdvisorService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST controller creating missing indexes on the columns behind the {@code /users} filters. Only registered with
+ * {@code aggregate-hub.admin.indexes.enabled=true}, since it runs DDL against production databases.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "aggregate-hub.admin.indexes", name = "enabled", havingValue = "true")
+@RequestMapping("/admin/indexes")
+public class IndexCreationController {
+
+    private final IndexAdvisorService indexAdvisorService;
+
+    public IndexCreationController(IndexAdvisorService indexAdvisorService) {
+        this.indexAdvisorService = indexAdvisorService;
+    }
+
+    /**
+     * Creates the missing indexes of a database, online where the database allows it.
+     *
+     * @param name the database name
+     * @return the index status of every filter column afterwards
+     */
+    @Operation(summary = "Create missing indexes on the filter columns of a database")
+    @PostMapping("/{name}")
+    public List<IndexAdvice> createMissingIndexes(@PathVariable String name) {
+        return indexAdvisorService.createMissingIndexes(name);
+    }
+}
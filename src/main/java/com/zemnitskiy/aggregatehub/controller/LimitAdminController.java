@@ -0,0 +1,35 @@
+package com.zemnitskiy.aggregatehub.controller;
+
+import com.zemnitskiy.aggregatehub.limit.LimiterState;
+import com.zemnitskiy.aggregatehub.limit.QueryConcurrencyLimiter;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * REST controller exposing the adaptive concurrency limits of database queries.
+ */
+@RestController
+@RequestMapping("/admin/limits")
+public class LimitAdminController {
+
+    private final QueryConcurrencyLimiter concurrencyLimiter;
+
+    public LimitAdminController(QueryConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Returns the current global limit and the limit of every database.
+     *
+     * @return the limiter states keyed by database name, plus {@code global}
+     */
+    @Operation(summary = "Show the current concurrency limits of database queries")
+    @GetMapping
+    public Map<String, LimiterState> getLimits() {
+        return concurrencyLimiter.getStates();
+    }
+}
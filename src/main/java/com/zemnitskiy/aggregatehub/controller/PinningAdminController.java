@@ -0,0 +1,64 @@
+package com.zemnitskiy.aggregatehub.controller;
+
+import com.zemnitskiy.aggregatehub.executor.PinningMonitor;
+import com.zemnitskiy.aggregatehub.executor.PinningReport;
+import com.zemnitskiy.aggregatehub.executor.SourceExecutor;
+import com.zemnitskiy.aggregatehub.executor.ThreadMode;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * REST controller exposing the thread mode each database is read with and the pinning of virtual threads.
+ */
+@RestController
+@RequestMapping("/admin/pinning")
+public class PinningAdminController {
+
+    private final PinningMonitor pinningMonitor;
+    private final SourceExecutor sourceExecutor;
+
+    public PinningAdminController(PinningMonitor pinningMonitor, SourceExecutor sourceExecutor) {
+        this.pinningMonitor = pinningMonitor;
+        this.sourceExecutor = sourceExecutor;
+    }
+
+    /**
+     * Returns the recorded pinning of virtual threads.
+     *
+     * @return the pinning per database and per driver frame
+     */
+    @Operation(summary = "Show how long virtual threads were pinned, per database and driver frame")
+    @GetMapping
+    public PinningReport getPinning() {
+        return pinningMonitor.report();
+    }
+
+    /**
+     * Returns the thread mode of every database.
+     *
+     * @return the thread modes keyed by database name
+     */
+    @Operation(summary = "List whether each database is read on virtual or platform threads")
+    @GetMapping("/thread-modes")
+    public Map<String, ThreadMode> getThreadModes() {
+        return sourceExecutor.threadModes();
+    }
+
+    /**
+     * Drops the recorded pinning.
+     *
+     * @return {@code 204 No Content}
+     */
+    @Operation(summary = "Clear the recorded pinning")
+    @DeleteMapping
+    public ResponseEntity<Void> resetPinning() {
+        pinningMonitor.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.zemnitskiy.aggregatehub.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * REST controller exposing the readiness of the application to load balancers and orchestrators.
+ */
+@RestController
+@RequestMapping("/admin")
+public class ReadinessController {
+
+    private final ApplicationAvailability applicationAvailability;
+
+    public ReadinessController(ApplicationAvailability applicationAvailability) {
+        this.applicationAvailability = applicationAvailability;
+    }
+
+    /**
+     * Reports whether the application accepts traffic. It does not until the startup warm-up has finished.
+     *
+     * @return {@code 200} with the readiness state once the application accepts traffic, {@code 503} before
+     */
+    @Operation(summary = "Show whether the application is ready for traffic")
+    @GetMapping("/readiness")
+    public ResponseEntity<Map<String, ReadinessState>> getReadiness() {
+        ReadinessState state = applicationAvailability.getReadinessState();
+        HttpStatus status = state == ReadinessState.ACCEPTING_TRAFFIC ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(Map.of("state", state));
+    }
+}
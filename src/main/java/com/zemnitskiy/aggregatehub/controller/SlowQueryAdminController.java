@@ -0,0 +1,54 @@
+package com.zemnitskiy.aggregatehub.controller;
+
+import com.zemnitskiy.aggregatehub.slowquery.SlowQuery;
+import com.zemnitskiy.aggregatehub.slowquery.SlowQueryRecorder;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST controller exposing the slow queries recorded for every database.
+ */
+@RestController
+@RequestMapping("/admin/slow-queries")
+public class SlowQueryAdminController {
+
+    private final SlowQueryRecorder slowQueryRecorder;
+
+    public SlowQueryAdminController(SlowQueryRecorder slowQueryRecorder) {
+        this.slowQueryRecorder = slowQueryRecorder;
+    }
+
+    /**
+     * Returns the recorded slow queries, the most recent first.
+     *
+     * @param database the database to show slow queries of (optional, all databases by default)
+     * @return the slow queries with their bind values (masked unless {@code mask-binds} is off), timing and sampled
+     * execution plans
+     */
+    @Operation(summary = "List recorded slow queries with their sampled execution plans")
+    @GetMapping
+    public List<SlowQuery> getSlowQueries(@RequestParam(required = false) String database) {
+        List<SlowQuery> slowQueries = slowQueryRecorder.getSlowQueries();
+        return database == null ? slowQueries
+                : slowQueries.stream().filter(slowQuery -> slowQuery.database().equals(database)).toList();
+    }
+
+    /**
+     * Drops every recorded slow query.
+     *
+     * @return {@code 204 No Content}
+     */
+    @Operation(summary = "Clear the recorded slow queries")
+    @DeleteMapping
+    public ResponseEntity<Void> clearSlowQueries() {
+        slowQueryRecorder.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,23 +1,55 @@
 package com.zemnitskiy.aggregatehub.controller;
 
+import com.zemnitskiy.aggregatehub.admission.AdmissionGate;
+import com.zemnitskiy.aggregatehub.admission.RequestPriority;
+import com.zemnitskiy.aggregatehub.aggregation.ConflictResolution;
+import com.zemnitskiy.aggregatehub.aggregation.Consistency;
+import com.zemnitskiy.aggregatehub.aggregation.DedupeMode;
+import com.zemnitskiy.aggregatehub.aggregation.SpillableUserBuffer;
+import com.zemnitskiy.aggregatehub.encoding.BinaryUserFormat;
+import com.zemnitskiy.aggregatehub.encoding.UserEncoding;
+import com.zemnitskiy.aggregatehub.encoding.UserJson;
+import com.zemnitskiy.aggregatehub.encoding.UserWriter;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
 import com.zemnitskiy.aggregatehub.exception.ErrorResponse;
+import com.zemnitskiy.aggregatehub.executor.HubPath;
+import com.zemnitskiy.aggregatehub.executor.QueryDeadline;
 import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
 import com.zemnitskiy.aggregatehub.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * REST controller for managing users across multiple databases.
@@ -28,11 +60,18 @@ import java.util.List;
 public class UserController {
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String TRAILER_HEADER = "X-Stream-Trailer";
+    private static final int STREAM_PREFETCH = 256;
 
     private final UserService userAggregationService;
+    private final AdmissionGate admissionGate;
+    private final ObjectMapper objectMapper;
 
-    public UserController(UserService userAggregationService) {
+    public UserController(UserService userAggregationService, AdmissionGate admissionGate, ObjectMapper objectMapper) {
         this.userAggregationService = userAggregationService;
+        this.admissionGate = admissionGate;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -42,18 +81,42 @@ public class UserController {
      * @param name     the name of the user to filter by (optional)
      * @param surname  the surname of the user to filter by (optional)
      * @param username the username of the user to filter by (optional)
-     * @return a list of users matching the provided criteria
+     * @param prefix   whether name, surname and username match values starting with them (optional)
+     * @param ignoreCase whether name, surname and username match regardless of case (optional)
+     * @param limit    the maximum number of users to return (optional)
+     * @param dedupe   the key used to merge users present in several databases, {@code id} or {@code username} (optional)
+     * @param conflict how to choose between merged users, {@code first-wins} or {@code source-priority} (optional)
+     * @param consistency {@code live} to query every database, {@code local} to serve from the materialized replica (optional)
+     * @param headers  the request headers, checked for {@code Accept}, {@code Accept-Encoding}, {@code If-None-Match},
+     *                 {@code X-Request-Priority}, {@code X-Request-Deadline-Ms} and {@code X-Aggregate-Hub-Path}
+     * @return the users matching the provided criteria as a JSON array, or in the binary format when the client
+     * prefers it, gzip-compressed if accepted, streamed from memory or from disk,
+     * or {@code 304 Not Modified} if no database changed since the entity tag sent by the client;
+     * computed asynchronously and answered with {@code 503} once the request's deadline has passed
      */
     @Operation(
             summary = "Retrieve all users aggregated from multiple databases",
-            description = "Fetches a list of users from all configured databases. Supports optional filtering by id, name, surname, and username."
+            description = "Fetches a list of users from all configured databases. Supports optional filtering by id, name, surname, and username, " +
+                    "and optional deduplication of users present in several databases. When every database tracks changes exactly " +
+                    "or by a change column, conditional requests and responses served from the cache or replica carry an ETag built " +
+                    "from the version of every database; sending it back in If-None-Match returns 304 while no database changed. " +
+                    "Tags involving change columns are weak and stop matching after aggregate-hub.cache.column-tag-max-age. " +
+                    "Clients may ask for the columnar binary format with Accept: " + BinaryUserFormat.MEDIA_TYPE +
+                    ", and for gzip compression with Accept-Encoding."
     )
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "200",
                     description = "Successfully retrieved list of users",
-                    content = @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = User.class))
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = User.class))),
+                            @Content(mediaType = BinaryUserFormat.MEDIA_TYPE)
+                    }
+            ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "No database changed since the entity tag sent in If-None-Match"
             ),
             @ApiResponse(
                     responseCode = "400",
@@ -61,6 +124,13 @@ public class UserController {
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = ErrorResponse.class))
             ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "The request was shed, cannot meet its deadline, or a database is at its concurrency limit; " +
+                            "retry after the Retry-After delay",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
             @ApiResponse(
                     responseCode = "500",
                     description = "Internal server error while retrieving users",
@@ -69,7 +139,150 @@ public class UserController {
             )
     })
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers(
+    public WebAsyncTask<ResponseEntity<StreamingResponseBody>> getAllUsers(
+            @Parameter(description = "ID of the user to filter by", example = "1")
+            @RequestParam(required = false) String id,
+
+            @Parameter(description = "Name of the user to filter by", example = "John")
+            @RequestParam(required = false) String name,
+
+            @Parameter(description = "Surname of the user to filter by", example = "Doe")
+            @RequestParam(required = false) String surname,
+
+            @Parameter(description = "Username of the user to filter by", example = "johndoe")
+            @RequestParam(required = false) String username,
+
+            @Parameter(description = "Match name, surname and username as prefixes", example = "true")
+            @RequestParam(defaultValue = "false") boolean prefix,
+
+            @Parameter(description = "Match name, surname and username regardless of case", example = "true")
+            @RequestParam(defaultValue = "false") boolean ignoreCase,
+
+            @Parameter(description = "Maximum number of users to return, applied in every database", example = "10")
+            @RequestParam(required = false) Integer limit,
+
+            @Parameter(description = "Merge users present in several databases by this key: id or username", example = "id")
+            @RequestParam(required = false) String dedupe,
+
+            @Parameter(description = "Conflict resolution for merged users: first-wins or source-priority", example = "source-priority")
+            @RequestParam(required = false) String conflict,
+
+            @Parameter(description = "Read path: live queries every database, local serves from the materialized replica", example = "live")
+            @RequestParam(required = false) String consistency,
+
+            @Parameter(hidden = true)
+            @RequestHeader HttpHeaders headers
+    ) {
+        logger.info("Received request to retrieve users with filters - id: {}, name: {}, surname: {}, username: {}, dedupe: {}",
+                id, name, surname, username, dedupe);
+        UserFilter filter = new UserFilter(id, name, surname, username, prefix, ignoreCase, limit);
+        Consistency readPath = Consistency.fromParameter(consistency);
+        DedupeMode dedupeMode = DedupeMode.fromParameter(dedupe);
+        ConflictResolution conflictResolution = ConflictResolution.fromParameter(conflict);
+
+        RequestPriority priority = RequestPriority.fromHeader(headers.getFirst(AdmissionGate.PRIORITY_HEADER));
+        Duration deadline = admissionGate.deadlineOf(priority,
+                AdmissionGate.deadlineFromHeader(headers.getFirst(AdmissionGate.DEADLINE_HEADER)));
+        UserEncoding encoding = UserEncoding.negotiate(headers);
+        boolean gzip = UserEncoding.acceptsGzip(headers);
+        String hubPath = HubPath.received(headers.getFirst(HubPath.HEADER));
+
+        // The fan-out runs on the async executor, so no request thread waits for the databases
+        ResultHandoff handoff = new ResultHandoff();
+        // A timeout of 0 lets requests without a deadline run until they finish
+        long timeoutMillis = deadline != null ? deadline.toMillis() : 0L;
+        WebAsyncTask<ResponseEntity<StreamingResponseBody>> task = new WebAsyncTask<>(timeoutMillis, () -> {
+            String eTag = null;
+            SpillableUserBuffer users;
+            try (AdmissionGate.Admission admission = handoff.admitted(
+                    admissionGate.admit(priority, deadline, filter.readsAllRows()));
+                 QueryDeadline ignored = QueryDeadline.within(admission.remaining());
+                 HubPath ignoredPath = HubPath.within(hubPath)) {
+                // Only conditional requests probe the databases; a tag must match their current versions
+                if (!headers.getIfNoneMatch().isEmpty()) {
+                    eTag = userAggregationService.currentETag(filter, readPath, dedupeMode, conflictResolution);
+                    if (eTag != null) {
+                        eTag = encoding.eTagOf(eTag, gzip);
+                    }
+                    if (eTag != null && matches(headers.getIfNoneMatch(), eTag)) {
+                        logger.info("No database changed since {}, answering 304", eTag);
+                        return handoff.offer(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag)
+                                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build(), null);
+                    }
+                }
+                // A response served from the cache or replica is tagged with the version it holds, which may lag
+                String served = userAggregationService.servedETag(filter, readPath, dedupeMode, conflictResolution);
+                if (served != null) {
+                    eTag = encoding.eTagOf(served, gzip);
+                }
+
+                users = userAggregationService.getAllUsersFromAllDatabases(filter, readPath, dedupeMode, conflictResolution);
+                admission.completed();
+            } finally {
+                handoff.detach();
+            }
+            logger.info("Successfully retrieved {} users", users.size());
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(encoding.mediaType())
+                    .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+            if (gzip) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            if (eTag != null) {
+                response.eTag(eTag);
+            }
+            return handoff.offer(response.body(out -> writeUsers(users, encoding,
+                    gzip ? UserEncoding.gzip(out) : out)), users);
+        });
+        task.onTimeout(() -> handoff.timeout(deadline));
+        task.onCompletion(handoff::release);
+        return task;
+    }
+
+    /**
+     * Streams users from all connected databases as newline-delimited JSON while they are read.
+     *
+     * @param id          the ID of the user to filter by (optional)
+     * @param name        the name of the user to filter by (optional)
+     * @param surname     the surname of the user to filter by (optional)
+     * @param username    the username of the user to filter by (optional)
+     * @param prefix      whether name, surname and username match values starting with them (optional)
+     * @param ignoreCase  whether name, surname and username match regardless of case (optional)
+     * @param limit       the maximum number of users to stream (optional)
+     * @param consistency {@code live} to query every database, {@code local} to serve from the materialized replica (optional)
+     * @param headers     the request headers, checked for {@code X-Request-Priority}, {@code X-Request-Deadline-Ms},
+     *                    {@code X-Aggregate-Hub-Path} and {@code X-Stream-Trailer}
+     * @return one JSON user per line, in the order the databases answer, followed by a line holding the number of
+     * users if {@code X-Stream-Trailer: count} was sent; the stream holds an admission slot of its lane until it ends
+     * and is cut off once the deadline sent by the client has passed
+     */
+    @Operation(
+            summary = "Stream users aggregated from multiple databases",
+            description = "Streams users from all configured databases as newline-delimited JSON, merged in arrival order. " +
+                    "The databases are only read as fast as the client consumes the response; a client that reads nothing " +
+                    "for the stall timeout, or a stream outliving its deadline, is cut off. With X-Stream-Trailer: count, a complete " +
+                    "stream ends with a line holding the number of users sent. Deduplication is not supported."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Stream of users, one JSON object per line",
+                    content = @Content(mediaType = NDJSON, schema = @Schema(implementation = User.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Bad request due to invalid parameters",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "The stream was shed or cannot meet its deadline; retry after the Retry-After delay",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamUsers(
             @Parameter(description = "ID of the user to filter by", example = "1")
             @RequestParam(required = false) String id,
 
@@ -80,11 +293,199 @@ public class UserController {
             @RequestParam(required = false) String surname,
 
             @Parameter(description = "Username of the user to filter by", example = "johndoe")
-            @RequestParam(required = false) String username
+            @RequestParam(required = false) String username,
+
+            @Parameter(description = "Match name, surname and username as prefixes", example = "true")
+            @RequestParam(defaultValue = "false") boolean prefix,
+
+            @Parameter(description = "Match name, surname and username regardless of case", example = "true")
+            @RequestParam(defaultValue = "false") boolean ignoreCase,
+
+            @Parameter(description = "Maximum number of users to stream, applied in every database", example = "10")
+            @RequestParam(required = false) Integer limit,
+
+            @Parameter(description = "Read path: live queries every database, local serves from the materialized replica", example = "live")
+            @RequestParam(required = false) String consistency,
+
+            @Parameter(hidden = true)
+            @RequestHeader HttpHeaders headers
     ) {
-        logger.info("Received request to retrieve users with filters - id: {}, name: {}, surname: {}, username: {}", id, name, surname, username);
-        List<User> users = userAggregationService.getAllUsersFromAllDatabases(id, name, surname, username);
-        logger.info("Successfully retrieved {} users", users.size());
-        return ResponseEntity.ok(users);
+        logger.info("Received request to stream users with filters - id: {}, name: {}, surname: {}, username: {}",
+                id, name, surname, username);
+        UserFilter filter = new UserFilter(id, name, surname, username, prefix, ignoreCase, limit);
+        String hubPath = HubPath.received(headers.getFirst(HubPath.HEADER));
+        Flow.Publisher<User> users = userAggregationService.streamUsersFromAllDatabases(filter,
+                Consistency.fromParameter(consistency));
+        boolean trailer = "count".equalsIgnoreCase(headers.getFirst(TRAILER_HEADER));
+
+        RequestPriority priority = RequestPriority.fromHeader(headers.getFirst(AdmissionGate.PRIORITY_HEADER));
+        Duration requested = AdmissionGate.deadlineFromHeader(headers.getFirst(AdmissionGate.DEADLINE_HEADER));
+        // Held until the stream ends; never marked completed, since its duration is set by the client's reading
+        AdmissionGate.Admission admission = admissionGate.admit(priority, admissionGate.deadlineOf(priority, requested),
+                filter.readsAllRows());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(out -> {
+                    // The lane's default deadline only bounds the wait for a slot; a stream is cut off by the client's
+                    try (admission; QueryDeadline ignored = QueryDeadline.within(
+                            requested != null ? admission.remaining() : null);
+                         HubPath ignoredPath = HubPath.within(hubPath)) {
+                        writeStream(users, out, trailer);
+                    }
+                });
+    }
+
+    /**
+     * Writes users as newline-delimited JSON while they are published, requesting the next user only after
+     * the previous one was written, so a slow client slows down the database reads. With a trailer, a stream that
+     * completed ends with the number of users written, so a client can tell it from one that was cut off.
+     */
+    private void writeStream(Flow.Publisher<User> users, OutputStream out, boolean trailer) throws IOException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicLong written = new AtomicLong();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            users.subscribe(new Flow.Subscriber<User>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(STREAM_PREFETCH);
+                }
+
+                @Override
+                public void onNext(User user) {
+                    try {
+                        UserJson.write(generator, user);
+                        generator.writeRaw('\n');
+                        written.incrementAndGet();
+                        subscription.request(1);
+                    } catch (IOException e) {
+                        subscription.cancel();
+                        done.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    done.complete(null);
+                }
+            });
+            done.join();
+            if (trailer) {
+                generator.writeNumber(written.get());
+                generator.writeRaw('\n');
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            logger.error("Streaming users failed: {}", e.getCause().getMessage(), e.getCause());
+            throw new AggregateHubServiceException("Error streaming users from databases", e.getCause());
+        }
+    }
+
+    /**
+     * Checks an {@code If-None-Match} header against the current entity tag, using weak comparison.
+     */
+    private static boolean matches(List<String> ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch) {
+            if (candidate.equals("*") || opaqueTag(candidate).equals(opaqueTag(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    /**
+     * Hands the response of an asynchronous request over to exactly one side: the task, or the timeout handler
+     * once the deadline has passed. A response ready before the timeout is still returned by the timeout
+     * handler, and a buffer completed after the timeout is released, so no buffer is ever dropped unreleased.
+     * A timeout also frees the request's admission slot and interrupts the task, which cancels its fan-out.
+     */
+    private static final class ResultHandoff {
+
+        private ResponseEntity<StreamingResponseBody> response;
+        private boolean timedOut;
+        private AdmissionGate.Admission admission;
+        private Thread worker;
+
+        synchronized AdmissionGate.Admission admitted(AdmissionGate.Admission admission) {
+            if (timedOut) {
+                admission.close();
+                throw new AggregateHubOverloadedException("The request did not complete within its deadline", Duration.ZERO);
+            }
+            this.admission = admission;
+            this.worker = Thread.currentThread();
+            return admission;
+        }
+
+        synchronized void detach() {
+            worker = null;
+        }
+
+        /**
+         * Frees the admission slot even if the fan-out is still unwinding.
+         */
+        synchronized void release() {
+            if (admission != null) {
+                admission.close();
+            }
+        }
+
+        synchronized ResponseEntity<StreamingResponseBody> offer(ResponseEntity<StreamingResponseBody> response,
+                                                                 SpillableUserBuffer users) {
+            if (timedOut) {
+                if (users != null) {
+                    users.close();
+                }
+                throw new AggregateHubOverloadedException("The request did not complete within its deadline", Duration.ZERO);
+            }
+            this.response = response;
+            return response;
+        }
+
+        synchronized ResponseEntity<StreamingResponseBody> timeout(Duration deadline) {
+            if (response != null) {
+                return response;
+            }
+            timedOut = true;
+            release();
+            if (worker != null) {
+                // Stops the fan-out, which cancels the reads still running
+                worker.interrupt();
+            }
+            logger.warn("Request did not complete within its deadline of {} ms", deadline.toMillis());
+            throw new AggregateHubOverloadedException("The request did not complete within its deadline of "
+                    + deadline.toMillis() + " ms", Duration.ZERO);
+        }
+    }
+
+    /**
+     * Streams the buffered users in the negotiated encoding, reading spilled rows back from disk, and releases
+     * the buffer.
+     */
+    private void writeUsers(SpillableUserBuffer users, UserEncoding encoding, OutputStream out) throws IOException {
+        try (users; UserWriter writer = encoding.writer(out, objectMapper.getFactory())) {
+            users.forEach(user -> {
+                try {
+                    writer.write(user);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 }
\ No newline at end of file
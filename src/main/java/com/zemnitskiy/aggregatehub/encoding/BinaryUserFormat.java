@@ -0,0 +1,190 @@
+package com.zemnitskiy.aggregatehub.encoding;
+
+import com.zemnitskiy.aggregatehub.model.User;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Length-prefixed columnar encoding of users, served as {@value #MEDIA_TYPE}.
+ * <p>
+ * The stream starts with the magic bytes {@code AHU1}, followed by blocks of up to {@value #BLOCK_ROWS} users and
+ * ends with an empty block:
+ * </p>
+ * <pre>
+ * varint row count (0 ends the stream),
+ * then for id, username, name and surname in turn: row count varint lengths (0 for null, byte length + 1 otherwise),
+ * followed by the UTF-8 bytes of the column's values
+ * </pre>
+ * Varints are unsigned LEB128. Writing a column's values next to each other keeps repeated names and surnames
+ * close together, which helps gzip on top of it.
+ */
+public final class BinaryUserFormat {
+
+    public static final String MEDIA_TYPE = "application/x-aggregatehub-users";
+    static final int BLOCK_ROWS = 1024;
+
+    private static final byte[] MAGIC = {'A', 'H', 'U', '1'};
+    private static final int COLUMNS = 4;
+
+    private BinaryUserFormat() {
+    }
+
+    /**
+     * Creates a writer encoding users to the stream.
+     *
+     * @param out the target stream
+     * @return the writer
+     * @throws IOException if the header cannot be written
+     */
+    public static UserWriter writer(OutputStream out) throws IOException {
+        return new Writer(out);
+    }
+
+    /**
+     * Decodes a whole stream.
+     *
+     * @param in       the encoded stream
+     * @param consumer the consumer receiving each user in order
+     * @throws IOException if the stream cannot be read or is not in this format
+     */
+    public static void read(InputStream in, Consumer<User> consumer) throws IOException {
+        byte[] magic = in.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not an AggregateHub binary user stream");
+        }
+        for (int rows = readVarint(in); rows > 0; rows = readVarint(in)) {
+            if (rows > BLOCK_ROWS) {
+                throw new IOException("Corrupt block of " + rows + " rows");
+            }
+            String[][] columns = new String[COLUMNS][rows];
+            int[] lengths = new int[rows];
+            for (String[] column : columns) {
+                for (int row = 0; row < rows; row++) {
+                    lengths[row] = readVarint(in);
+                }
+                for (int row = 0; row < rows; row++) {
+                    if (lengths[row] > 0) {
+                        byte[] bytes = in.readNBytes(lengths[row] - 1);
+                        if (bytes.length != lengths[row] - 1) {
+                            throw new EOFException("Truncated binary user stream");
+                        }
+                        column[row] = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                }
+            }
+            for (int row = 0; row < rows; row++) {
+                consumer.accept(new User(columns[0][row], columns[1][row], columns[2][row], columns[3][row]));
+            }
+        }
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated binary user stream");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Buffers a block of users, each column as its lengths and its concatenated UTF-8 bytes, and writes it
+     * column by column. ASCII values are copied char by char without allocating.
+     */
+    private static final class Writer implements UserWriter {
+
+        private final OutputStream out;
+        private final int[][] lengths = new int[COLUMNS][BLOCK_ROWS];
+        private final byte[][] data = new byte[COLUMNS][4096];
+        private final int[] dataSizes = new int[COLUMNS];
+        private int rows;
+
+        Writer(OutputStream out) throws IOException {
+            this.out = new BufferedOutputStream(out, 64 * 1024);
+            this.out.write(MAGIC);
+        }
+
+        @Override
+        public void write(User user) throws IOException {
+            append(0, user.getId());
+            append(1, user.getUsername());
+            append(2, user.getName());
+            append(3, user.getSurname());
+            if (++rows == BLOCK_ROWS) {
+                writeBlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (out) {
+                if (rows > 0) {
+                    writeBlock();
+                }
+                writeVarint(0);
+            }
+        }
+
+        private void append(int column, String value) {
+            if (value == null) {
+                lengths[column][rows] = 0;
+                return;
+            }
+            int size = dataSizes[column];
+            byte[] bytes = ensureCapacity(column, size + value.length());
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                    System.arraycopy(encoded, 0, ensureCapacity(column, size + encoded.length), size, encoded.length);
+                    length = encoded.length;
+                    break;
+                }
+                bytes[size + i] = (byte) c;
+            }
+            dataSizes[column] = size + length;
+            lengths[column][rows] = length + 1;
+        }
+
+        private byte[] ensureCapacity(int column, int capacity) {
+            if (capacity > data[column].length) {
+                data[column] = Arrays.copyOf(data[column], Math.max(capacity, data[column].length * 2));
+            }
+            return data[column];
+        }
+
+        private void writeBlock() throws IOException {
+            writeVarint(rows);
+            for (int column = 0; column < COLUMNS; column++) {
+                for (int row = 0; row < rows; row++) {
+                    writeVarint(lengths[column][row]);
+                }
+                out.write(data[column], 0, dataSizes[column]);
+                dataSizes[column] = 0;
+            }
+            rows = 0;
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.zemnitskiy.aggregatehub.encoding;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.zemnitskiy.aggregatehub.model.User;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Representations of a list of users, chosen from the {@code Accept} header of a request.
+ */
+public enum UserEncoding {
+
+    /**
+     * A JSON array of user objects, the default.
+     */
+    JSON(MediaType.APPLICATION_JSON, "") {
+        @Override
+        public UserWriter writer(OutputStream out, JsonFactory jsonFactory) throws IOException {
+            JsonGenerator generator = jsonFactory.createGenerator(out);
+            generator.writeStartArray();
+            return new UserWriter() {
+                @Override
+                public void write(User user) throws IOException {
+                    UserJson.write(generator, user);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try (generator) {
+                        generator.writeEndArray();
+                    }
+                }
+            };
+        }
+    },
+
+    /**
+     * The columnar {@link BinaryUserFormat}.
+     */
+    BINARY(MediaType.parseMediaType(BinaryUserFormat.MEDIA_TYPE), "-bin") {
+        @Override
+        public UserWriter writer(OutputStream out, JsonFactory jsonFactory) throws IOException {
+            return BinaryUserFormat.writer(out);
+        }
+    };
+
+    private static final String GZIP = "gzip";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final MediaType mediaType;
+    private final String eTagSuffix;
+
+    UserEncoding(MediaType mediaType, String eTagSuffix) {
+        this.mediaType = mediaType;
+        this.eTagSuffix = eTagSuffix;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Creates a writer for this representation.
+     *
+     * @param out         the response stream
+     * @param jsonFactory the factory of JSON generators
+     * @return the writer
+     * @throws IOException if the start of the document cannot be written
+     */
+    public abstract UserWriter writer(OutputStream out, JsonFactory jsonFactory) throws IOException;
+
+    /**
+     * Returns the entity tag of this representation of a result, so JSON, binary and compressed responses of the
+     * same result never share a strong entity tag.
+     *
+     * @param eTag the quoted entity tag of the result
+     * @param gzip whether the representation is gzip-compressed
+     * @return the entity tag of the representation
+     */
+    public String eTagOf(String eTag, boolean gzip) {
+        String suffix = eTagSuffix + (gzip ? "-" + GZIP : "");
+        return suffix.isEmpty() ? eTag : eTag.substring(0, eTag.length() - 1) + suffix + "\"";
+    }
+
+    /**
+     * Picks the representation preferred by the client, JSON if it accepts none of them more than the others
+     * or sends a malformed {@code Accept} header.
+     *
+     * @param headers the request headers
+     * @return the representation
+     */
+    public static UserEncoding negotiate(HttpHeaders headers) {
+        List<MediaType> accept;
+        try {
+            accept = headers.getAccept();
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        return accept.stream()
+                .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+                .filter(type -> type.getQualityValue() > 0)
+                .map(UserEncoding::of)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(JSON);
+    }
+
+    /**
+     * Checks the {@code Accept-Encoding} header for gzip.
+     *
+     * @param headers the request headers
+     * @return whether the client accepts gzip-compressed responses
+     */
+    public static boolean acceptsGzip(HttpHeaders headers) {
+        for (String value : headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.trim().split(";");
+                if (parts[0].trim().equalsIgnoreCase(GZIP) && !rejected(parts)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wraps a response stream in gzip compression at the fastest level, which costs about a third of the CPU
+     * of the default level for a slightly larger body. Closing the returned stream finishes the gzip trailer.
+     *
+     * @param out the response stream
+     * @return the compressing stream
+     * @throws IOException if the gzip header cannot be written
+     */
+    public static OutputStream gzip(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, GZIP_BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    private static UserEncoding of(MediaType type) {
+        if (type.includes(JSON.mediaType)) {
+            return JSON;
+        }
+        return type.includes(BINARY.mediaType) ? BINARY : null;
+    }
+
+    private static boolean rejected(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+package com.zemnitskiy.aggregatehub.encoding;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.zemnitskiy.aggregatehub.model.User;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link User} as a JSON object without going through Jackson's reflective bean serializer.
+ * <p>
+ * The field names are pre-encoded once, and the output is identical to {@code ObjectMapper.writeValue}
+ * for a user: {@code {"id":..,"username":..,"name":..,"surname":..}}, with {@code null} fields included.
+ * </p>
+ */
+public final class UserJson {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString USERNAME = new SerializedString("username");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString SURNAME = new SerializedString("surname");
+
+    private UserJson() {
+    }
+
+    /**
+     * Writes one user as a JSON object.
+     *
+     * @param generator the generator to write to
+     * @param user      the user
+     * @throws IOException if the user cannot be written
+     */
+    public static void write(JsonGenerator generator, User user) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeString(user.getId());
+        generator.writeFieldName(USERNAME);
+        generator.writeString(user.getUsername());
+        generator.writeFieldName(NAME);
+        generator.writeString(user.getName());
+        generator.writeFieldName(SURNAME);
+        generator.writeString(user.getSurname());
+        generator.writeEndObject();
+    }
+}
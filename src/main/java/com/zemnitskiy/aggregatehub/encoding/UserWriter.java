@@ -0,0 +1,21 @@
+package com.zemnitskiy.aggregatehub.encoding;
+
+import com.zemnitskiy.aggregatehub.model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes a sequence of users in one {@link UserEncoding}. Closing the writer ends the document and closes
+ * the underlying stream.
+ */
+public interface UserWriter extends Closeable {
+
+    /**
+     * Appends a user.
+     *
+     * @param user the user
+     * @throws IOException if the user cannot be written
+     */
+    void write(User user) throws IOException;
+}
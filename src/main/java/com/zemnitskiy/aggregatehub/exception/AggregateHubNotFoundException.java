@@ -0,0 +1,10 @@
+package com.zemnitskiy.aggregatehub.exception;
+
+/**
+ * Custom exception for requests referring to a resource that does not exist.
+ */
+public class AggregateHubNotFoundException extends RuntimeException {
+    public AggregateHubNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.zemnitskiy.aggregatehub.exception;
+
+import java.time.Duration;
+
+/**
+ * Custom exception for requests rejected because the hub or a database is at its concurrency limit.
+ */
+public class AggregateHubOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public AggregateHubOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns how long the client should wait before retrying.
+     *
+     * @return the suggested delay
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
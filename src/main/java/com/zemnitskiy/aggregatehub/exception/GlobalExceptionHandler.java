@@ -2,8 +2,10 @@ package com.zemnitskiy.aggregatehub.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
@@ -41,6 +43,48 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handle HttpMessageNotReadableException raised for malformed request bodies.
+     *
+     * @param ex the HttpMessageNotReadableException
+     * @return ResponseEntity with ErrorResponse and appropriate HTTP status
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<ErrorResponse> handleHttpMessageNotReadableException(HttpMessageNotReadableException ex) {
+        logger.warn("HttpMessageNotReadableException: {}", ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse("Malformed Request", ex.getMostSpecificCause().getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handle AggregateHubNotFoundException.
+     *
+     * @param ex the AggregateHubNotFoundException
+     * @return ResponseEntity with ErrorResponse and appropriate HTTP status
+     */
+    @ExceptionHandler(AggregateHubNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleAggregateHubNotFoundException(AggregateHubNotFoundException ex) {
+        logger.warn("AggregateHubNotFoundException: {}", ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse("Not Found", ex.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Handle AggregateHubOverloadedException.
+     *
+     * @param ex the AggregateHubOverloadedException
+     * @return ResponseEntity with ErrorResponse, a {@code Retry-After} header and appropriate HTTP status
+     */
+    @ExceptionHandler(AggregateHubOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleAggregateHubOverloadedException(AggregateHubOverloadedException ex) {
+        logger.warn("AggregateHubOverloadedException: {}", ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse("Service Overloaded", ex.getMessage());
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(errorResponse);
+    }
+
     /**
      * Handle all other exceptions.
      *
@@ -0,0 +1,83 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The hubs a request has passed through, so hub sources cannot forward a request around a cycle of hubs.
+ * <p>
+ * Every hub instance has a random id. A hub receiving a request appends its id to the path sent in
+ * {@link #HEADER} and refuses the request if its id is already on it; hub sources send the path of the request
+ * they read for. Like the {@link QueryDeadline}, the path is set for the duration of a try-with-resources block and
+ * carried over by {@link SourceExecutor} to the threads reading the databases. Reads started by the hub itself,
+ * such as change polls, start a new path.
+ * </p>
+ */
+public final class HubPath implements AutoCloseable {
+
+    /**
+     * Request header holding the comma-separated ids of the hubs a request has passed through.
+     */
+    public static final String HEADER = "X-Aggregate-Hub-Path";
+
+    private static final String SELF = UUID.randomUUID().toString();
+    private static final ThreadLocal<String> PATH = new ThreadLocal<>();
+
+    private final String previous;
+
+    private HubPath(String path) {
+        this.previous = PATH.get();
+        if (path != null) {
+            PATH.set(path);
+        } else {
+            PATH.remove();
+        }
+    }
+
+    /**
+     * Returns the path of a request received by this hub.
+     *
+     * @param header the {@link #HEADER} of the request, or {@code null} if it did not come from another hub
+     * @return the path with this hub appended
+     * @throws AggregateHubServiceException if the request has already passed through this hub
+     */
+    public static String received(String header) {
+        if (header == null || header.isBlank()) {
+            return SELF;
+        }
+        if (Arrays.stream(header.split(",")).map(String::trim).anyMatch(SELF::equals)) {
+            throw new AggregateHubServiceException("Request loops back through this hub, path: " + header);
+        }
+        return header + "," + SELF;
+    }
+
+    /**
+     * Sets the path of the current thread until the returned scope is closed.
+     *
+     * @param path the path, or {@code null} for none
+     * @return the scope restoring the previous path when closed
+     */
+    public static HubPath within(String path) {
+        return new HubPath(path);
+    }
+
+    /**
+     * Returns the path of the request the current thread works for.
+     *
+     * @return the path, or {@code null} if the thread works for no received request
+     */
+    public static String current() {
+        return PATH.get();
+    }
+
+    @Override
+    public void close() {
+        if (previous != null) {
+            PATH.set(previous);
+        } else {
+            PATH.remove();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+import com.zemnitskiy.aggregatehub.config.SourceExecutorProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records virtual threads pinned to their carrier, using the JFR {@code jdk.VirtualThreadPinned} event streamed
+ * in-process.
+ * <p>
+ * Each event is attributed to the database whose {@code source-<database>} thread was pinned, or to
+ * {@code other}, and to the first application frame of its stack trace, which is usually the driver method
+ * holding the monitor. The first time a database read on virtual threads pins one, a warning suggests switching
+ * its strategy to the platform thread mode.
+ * </p>
+ */
+@Component
+public class PinningMonitor {
+
+    static final String EVENT_NAME = "jdk.VirtualThreadPinned";
+    static final String OTHER = "other";
+
+    private static final Logger logger = LoggerFactory.getLogger(PinningMonitor.class);
+    private static final int MAX_FRAMES = 20;
+
+    private final SourceExecutorProperties.Pinning properties;
+    private final Map<String, Counter> bySource = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> byFrame = new ConcurrentHashMap<>();
+    private final Set<String> warned = ConcurrentHashMap.newKeySet();
+    private volatile RecordingStream stream;
+
+    public PinningMonitor(SourceExecutorProperties properties) {
+        this.properties = properties.pinning();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(EVENT_NAME).withThreshold(properties.threshold()).withStackTrace();
+            // Events are consumed as they are flushed; nothing needs to stay in the disk repository
+            recording.setMaxAge(Duration.ofSeconds(10));
+            recording.onEvent(EVENT_NAME, this::record);
+            recording.startAsync();
+            stream = recording;
+            logger.info("Recording virtual threads pinned for more than {}", properties.threshold());
+        } catch (RuntimeException e) {
+            logger.warn("Could not start recording pinned virtual threads: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        RecordingStream recording = stream;
+        if (recording != null) {
+            stream = null;
+            recording.close();
+        }
+    }
+
+    /**
+     * Returns the pinning recorded since startup or the last reset.
+     *
+     * @return the pinning per database and per frame
+     */
+    public PinningReport report() {
+        Map<String, PinningReport.SourcePinning> sources = new LinkedHashMap<>();
+        bySource.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> sources.put(entry.getKey(), entry.getValue().snapshot()));
+        Map<String, Long> frames = new LinkedHashMap<>();
+        byFrame.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                .limit(MAX_FRAMES)
+                .forEach(entry -> frames.put(entry.getKey(), entry.getValue().sum()));
+        long events = sources.values().stream().mapToLong(PinningReport.SourcePinning::events).sum();
+        double pinnedMillis = sources.values().stream().mapToDouble(PinningReport.SourcePinning::pinnedMillis).sum();
+        return new PinningReport(stream != null, properties.threshold().toNanos() / 1_000_000.0, events,
+                pinnedMillis, sources, frames);
+    }
+
+    /**
+     * Forgets the recorded pinning.
+     */
+    public void reset() {
+        bySource.clear();
+        byFrame.clear();
+    }
+
+    void record(RecordedEvent event) {
+        String source = sourceOf(event.getThread());
+        long nanos = event.getDuration().toNanos();
+        bySource.computeIfAbsent(source, key -> new Counter()).add(nanos);
+        byFrame.computeIfAbsent(frameOf(event.getStackTrace()), key -> new LongAdder()).increment();
+        if (!OTHER.equals(source) && warned.add(source)) {
+            logger.warn("A virtual thread reading database '{}' was pinned for {} ms; consider "
+                            + "aggregate-hub.source-executor.thread-modes.<strategy>=platform for its strategy",
+                    source, nanos / 1_000_000);
+        }
+    }
+
+    private static String sourceOf(RecordedThread thread) {
+        String name = thread != null ? thread.getJavaName() : null;
+        return name != null && name.startsWith(SourceExecutor.SOURCE_THREAD_PREFIX)
+                ? name.substring(SourceExecutor.SOURCE_THREAD_PREFIX.length())
+                : OTHER;
+    }
+
+    private static String frameOf(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        RecordedFrame top = stackTrace.getFrames().getFirst();
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                top = frame;
+                break;
+            }
+        }
+        return top.getMethod().getType().getName() + "." + top.getMethod().getName();
+    }
+
+    private static final class Counter {
+
+        private final LongAdder events = new LongAdder();
+        private final LongAdder pinnedNanos = new LongAdder();
+        private final AtomicLong maxPinnedNanos = new AtomicLong();
+
+        void add(long nanos) {
+            events.increment();
+            pinnedNanos.add(nanos);
+            maxPinnedNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        PinningReport.SourcePinning snapshot() {
+            return new PinningReport.SourcePinning(events.sum(), pinnedNanos.sum() / 1_000_000.0,
+                    maxPinnedNanos.get() / 1_000_000.0);
+        }
+    }
+}
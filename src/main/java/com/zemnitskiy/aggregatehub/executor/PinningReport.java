@@ -0,0 +1,25 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+import java.util.Map;
+
+/**
+ * Virtual thread pinning recorded by the {@link PinningMonitor}.
+ *
+ * @param recording       whether pinned threads are being recorded
+ * @param thresholdMillis pinning shorter than this is not recorded
+ * @param events          the number of recorded pinning events
+ * @param pinnedMillis    the total time virtual threads were pinned
+ * @param sources         the pinning per database read on virtual threads; {@code other} holds the remaining threads
+ * @param frames          the number of events per first application frame, the most frequent first
+ */
+public record PinningReport(boolean recording, double thresholdMillis, long events, double pinnedMillis,
+                            Map<String, SourcePinning> sources, Map<String, Long> frames) {
+
+    /**
+     * @param events          the number of recorded pinning events
+     * @param pinnedMillis    the total time threads were pinned
+     * @param maxPinnedMillis the longest pinning
+     */
+    public record SourcePinning(long events, double pinnedMillis, double maxPinnedMillis) {
+    }
+}
@@ -0,0 +1,94 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deadline of the request a thread is working for, so database queries can be given a timeout that ends with
+ * the request.
+ * <p>
+ * A deadline is set for the duration of a try-with-resources block. {@link SourceExecutor.Fanout} carries the
+ * deadline of the thread that opened it over to every task it runs, so the queries of a fan-out time out together
+ * with their request.
+ * </p>
+ */
+public final class QueryDeadline implements AutoCloseable {
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private final Long previous;
+
+    private QueryDeadline(Long deadlineNanos) {
+        this.previous = DEADLINE_NANOS.get();
+        if (deadlineNanos != null) {
+            DEADLINE_NANOS.set(deadlineNanos);
+        } else {
+            DEADLINE_NANOS.remove();
+        }
+    }
+
+    /**
+     * Sets the deadline of the current thread until the returned scope is closed.
+     *
+     * @param remaining the time left until the deadline, or {@code null} to run without a deadline
+     * @return the scope restoring the previous deadline when closed
+     */
+    public static QueryDeadline within(Duration remaining) {
+        return new QueryDeadline(remaining != null ? System.nanoTime() + remaining.toNanos() : null);
+    }
+
+    static QueryDeadline at(Long deadlineNanos) {
+        return new QueryDeadline(deadlineNanos);
+    }
+
+    static Long current() {
+        return DEADLINE_NANOS.get();
+    }
+
+    /**
+     * Returns the JDBC query timeout matching the deadline of the current thread.
+     *
+     * @return the remaining time in whole seconds, rounded up and at least one, or {@code 0} (no timeout) if the
+     * thread works for no deadline
+     */
+    public static int timeoutSeconds() {
+        Long deadlineNanos = DEADLINE_NANOS.get();
+        if (deadlineNanos == null) {
+            return 0;
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * Returns the time left until the deadline of the current thread, for timeouts of other kinds of requests.
+     *
+     * @return the remaining time, at least one millisecond, or {@code null} if the thread works for no deadline
+     */
+    public static Duration remaining() {
+        Long deadlineNanos = DEADLINE_NANOS.get();
+        if (deadlineNanos == null) {
+            return null;
+        }
+        return Duration.ofNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Tells whether the deadline of the current thread has passed.
+     *
+     * @return {@code true} if the thread works for a deadline that has passed
+     */
+    public static boolean hasPassed() {
+        Long deadlineNanos = DEADLINE_NANOS.get();
+        return deadlineNanos != null && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    @Override
+    public void close() {
+        if (previous != null) {
+            DEADLINE_NANOS.set(previous);
+        } else {
+            DEADLINE_NANOS.remove();
+        }
+    }
+}
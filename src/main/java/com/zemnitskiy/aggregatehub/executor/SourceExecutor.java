@@ -0,0 +1,255 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.SourceExecutorProperties;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
+import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the reads of a fan-out on the kind of thread each database's driver is safe on.
+ * <p>
+ * Most reads run on a new virtual thread named {@code source-<database>}, so pinned threads can be attributed to
+ * their database by the {@link PinningMonitor}. Drivers that block on socket I/O inside {@code synchronized}
+ * (see {@link DatabaseStrategy#pinsVirtualThreads()}) would pin the carrier thread for the whole round trip, and a
+ * few slow queries would then stall every virtual thread of the application. Their reads run on platform threads
+ * instead, from a bounded pool per database, so a slow database cannot take the threads of the others. Each pool
+ * queues a bounded number of reads; beyond that, reads are rejected with {@link AggregateHubOverloadedException}
+ * rather than piling up behind a database that does not keep up. Idle pool threads end after a minute.
+ * </p>
+ * The thread mode is resolved per read from the database's strategy, so databases added or reconfigured at runtime
+ * are picked up immediately. {@code aggregate-hub.source-executor.thread-modes} overrides it per strategy type.
+ */
+@Component
+public class SourceExecutor {
+
+    /**
+     * Name prefix of the virtual threads reading a database, followed by the database name.
+     */
+    public static final String SOURCE_THREAD_PREFIX = "source-";
+
+    /**
+     * Name prefix of the platform threads streaming a database, followed by the database name.
+     */
+    public static final String STREAM_THREAD_PREFIX = "stream-";
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceExecutor.class);
+    private static final Duration IDLE_THREAD_TIMEOUT = Duration.ofMinutes(1);
+    private static final Duration REJECTED_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final DataSourceRegistry dataSourceRegistry;
+    private final Map<String, ThreadMode> threadModes;
+    private final int platformThreads;
+    private final int platformQueueCapacity;
+    private final Map<String, ThreadPoolExecutor> platformPools = new ConcurrentHashMap<>();
+
+    public SourceExecutor(DataSourceRegistry dataSourceRegistry, SourceExecutorProperties properties) {
+        this.dataSourceRegistry = dataSourceRegistry;
+        this.threadModes = new LinkedHashMap<>();
+        properties.threadModes().forEach((type, mode) -> threadModes.put(type.toLowerCase(), mode));
+        this.platformThreads = properties.platformThreads();
+        this.platformQueueCapacity = properties.platformQueueCapacity();
+    }
+
+    /**
+     * Returns the thread mode a database is read with.
+     *
+     * @param dbName the database name
+     * @return the thread mode, {@link ThreadMode#VIRTUAL} for unknown databases
+     */
+    public ThreadMode threadMode(String dbName) {
+        Optional<DataSourceRegistry.Lease> lease = dataSourceRegistry.lease(dbName);
+        if (lease.isEmpty()) {
+            return ThreadMode.VIRTUAL;
+        }
+        try (DataSourceRegistry.Lease leased = lease.get()) {
+            String type = leased.config().strategy();
+            ThreadMode override = type != null ? threadModes.get(type.toLowerCase()) : null;
+            if (override != null) {
+                return override;
+            }
+            DatabaseStrategy strategy = leased.strategy();
+            return strategy != null && strategy.pinsVirtualThreads() ? ThreadMode.PLATFORM : ThreadMode.VIRTUAL;
+        }
+    }
+
+    /**
+     * Returns the thread mode of every registered database.
+     *
+     * @return the thread modes keyed by database name, in configuration order
+     */
+    public Map<String, ThreadMode> threadModes() {
+        Map<String, ThreadMode> modes = new LinkedHashMap<>();
+        for (String dbName : dataSourceRegistry.getDatabaseNames()) {
+            modes.put(dbName, threadMode(dbName));
+        }
+        return modes;
+    }
+
+    /**
+     * Returns an executor running tasks that read a database on the thread mode of that database.
+     * The returned executor is not tied to a fan-out; nothing waits for its tasks.
+     *
+     * @param dbName the database name
+     * @return the executor, which throws {@link AggregateHubOverloadedException} when the platform pool of the
+     * database has no room left for the task
+     */
+    public Executor executorFor(String dbName) {
+        if (threadMode(dbName) == ThreadMode.PLATFORM) {
+            return platformPool(dbName);
+        }
+        return task -> Thread.ofVirtual().name(SOURCE_THREAD_PREFIX + dbName).start(task);
+    }
+
+    private ThreadPoolExecutor platformPool(String dbName) {
+        // Pools of removed databases stay in the map, but hold no thread once idle
+        return platformPools.computeIfAbsent(dbName, name -> {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(platformThreads, platformThreads,
+                    IDLE_THREAD_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(platformQueueCapacity),
+                    Thread.ofPlatform().name("jdbc-" + name + "-", 0).daemon().factory(),
+                    (task, executor) -> {
+                        logger.warn("Rejecting a read of database '{}': {} reads are already queued", name,
+                                executor.getQueue().size());
+                        throw new AggregateHubOverloadedException("Database '" + name + "' has too many reads queued",
+                                REJECTED_RETRY_AFTER);
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        });
+    }
+
+    /**
+     * Returns an executor for reads that stay open as long as a client keeps consuming them, such as streams.
+     * <p>
+     * Each task gets a thread of its own, so a slow client never occupies a thread of the bounded platform pools
+     * that short fan-outs depend on. Databases read on platform threads get a new platform thread named
+     * {@code stream-<database>}, the others a virtual thread. Tasks run under the {@link QueryDeadline} and
+     * {@link HubPath} of the thread submitting them.
+     * </p>
+     *
+     * @param dbName the database name
+     * @return the executor
+     */
+    public Executor streamExecutorFor(String dbName) {
+        boolean platform = threadMode(dbName) == ThreadMode.PLATFORM;
+        return task -> {
+            Long deadlineNanos = QueryDeadline.current();
+            String hubPath = HubPath.current();
+            Thread.Builder builder = platform
+                    ? Thread.ofPlatform().name(STREAM_THREAD_PREFIX + dbName).daemon()
+                    : Thread.ofVirtual().name(SOURCE_THREAD_PREFIX + dbName);
+            builder.start(() -> {
+                try (QueryDeadline ignored = QueryDeadline.at(deadlineNanos);
+                     HubPath ignoredPath = HubPath.within(hubPath)) {
+                    task.run();
+                }
+            });
+        };
+    }
+
+    /**
+     * Starts a fan-out. Closing it waits for every task submitted through it, like closing an
+     * {@link ExecutorService}. Its tasks run under the {@link QueryDeadline} and {@link HubPath} of the
+     * calling thread.
+     *
+     * @return the fan-out
+     */
+    public Fanout fanout() {
+        return new Fanout();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        platformPools.values().forEach(ExecutorService::shutdownNow);
+        logger.debug("Shut down the platform thread pools of the source executor");
+    }
+
+    /**
+     * The tasks of one fan-out across databases.
+     */
+    public final class Fanout implements AutoCloseable {
+
+        private final List<FutureTask<Void>> tasks = new ArrayList<>();
+        private final Long deadlineNanos = QueryDeadline.current();
+        private final String hubPath = HubPath.current();
+
+        private Fanout() {
+        }
+
+        /**
+         * Returns an executor running tasks on the thread mode of a database, as part of this fan-out.
+         *
+         * @param dbName the database name
+         * @return the executor
+         */
+        public Executor executorFor(String dbName) {
+            Executor executor = SourceExecutor.this.executorFor(dbName);
+            return task -> {
+                FutureTask<Void> future = new FutureTask<>(() -> {
+                    try (QueryDeadline ignored = QueryDeadline.at(deadlineNanos);
+                         HubPath ignoredPath = HubPath.within(hubPath)) {
+                        task.run();
+                    }
+                }, null);
+                synchronized (tasks) {
+                    tasks.add(future);
+                }
+                try {
+                    executor.execute(future);
+                } catch (RuntimeException e) {
+                    // Never runs, so closing the fan-out must not wait for it
+                    synchronized (tasks) {
+                        tasks.remove(future);
+                    }
+                    throw e;
+                }
+            };
+        }
+
+        /**
+         * Waits for every task of the fan-out. If interrupted while waiting, cancels the remaining tasks and
+         * restores the interrupt status.
+         */
+        @Override
+        public void close() {
+            List<FutureTask<Void>> submitted;
+            synchronized (tasks) {
+                submitted = List.copyOf(tasks);
+            }
+            boolean interrupted = false;
+            for (FutureTask<Void> task : submitted) {
+                try {
+                    task.get();
+                } catch (ExecutionException | CancellationException e) {
+                    // Failures are reported through the futures the caller composed on top of the tasks
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    submitted.forEach(remaining -> remaining.cancel(true));
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
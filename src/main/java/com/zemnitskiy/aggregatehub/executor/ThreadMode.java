@@ -0,0 +1,17 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+/**
+ * Kind of thread a database is read on.
+ */
+public enum ThreadMode {
+
+    /**
+     * A new virtual thread per read; the default for drivers that do not block inside {@code synchronized}.
+     */
+    VIRTUAL,
+
+    /**
+     * A thread of a bounded platform pool, for drivers that would pin the carrier of a virtual thread.
+     */
+    PLATFORM
+}
@@ -0,0 +1,165 @@
+package com.zemnitskiy.aggregatehub.limit;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to observed latency using additive increase, multiplicative decrease.
+ * <p>
+ * While queries stay fast and the limit is actually used, the limit grows by one per limit's worth of
+ * completed queries. When a query is slow or fails, the limit is multiplied by the backoff ratio. A query
+ * is slow when its latency exceeds the tolerance times the lowest recently observed latency; that baseline
+ * drifts slowly upwards so it follows a database that became slower for good.
+ * </p>
+ * Callers that find the limit used up wait in FIFO order, up to a timeout.
+ */
+public final class AimdLimiter {
+
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long minSlowLatencyNanos;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double baselineNanos = Double.NaN;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance,
+                       long minSlowLatencyNanos) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.minSlowLatencyNanos = minSlowLatencyNanos;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    /**
+     * Takes a slot, waiting up to the timeout for one to become free.
+     *
+     * @param timeoutNanos the longest time to wait
+     * @return {@code false} if no slot became free in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees a slot and adapts the limit to the outcome of the query that held it.
+     *
+     * @param latencyNanos the observed latency of the query
+     * @param failed       whether the query failed
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            boolean slow = isSlow(latencyNanos);
+            if (failed || slow) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight * 2 >= limit) {
+                // Only grow while at least half of the limit is in use, otherwise the limit is not what bounds us
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            if (!failed) {
+                updateBaseline(latencyNanos);
+            }
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees a slot without adapting the limit, for queries that were abandoned before producing a latency.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the lowest recently observed latency.
+     *
+     * @return the baseline latency in nanoseconds, or {@code 0} before the first query completed
+     */
+    public long getBaselineLatencyNanos() {
+        lock.lock();
+        try {
+            return Double.isNaN(baselineNanos) ? 0 : (long) baselineNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isSlow(long latencyNanos) {
+        return !Double.isNaN(baselineNanos)
+                && latencyNanos > minSlowLatencyNanos
+                && latencyNanos > baselineNanos * latencyTolerance;
+    }
+
+    private void updateBaseline(long latencyNanos) {
+        if (Double.isNaN(baselineNanos) || latencyNanos < baselineNanos) {
+            baselineNanos = latencyNanos;
+        } else {
+            baselineNanos += (latencyNanos - baselineNanos) * BASELINE_DRIFT;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.zemnitskiy.aggregatehub.limit;
+
+/**
+ * Current state of a concurrency limit.
+ *
+ * @param limit                 the current limit of concurrent queries
+ * @param inFlight              the number of running queries
+ * @param waiting               the number of queries waiting for a slot
+ * @param baselineLatencyMillis the lowest recently observed query latency
+ */
+public record LimiterState(int limit, int inFlight, int waiting, double baselineLatencyMillis) {
+
+    static LimiterState of(AimdLimiter limiter) {
+        return new LimiterState(limiter.getLimit(), limiter.getInFlight(), limiter.getWaiting(),
+                limiter.getBaselineLatencyNanos() / 1_000_000.0);
+    }
+}
@@ -0,0 +1,159 @@
+package com.zemnitskiy.aggregatehub.limit;
+
+import com.zemnitskiy.aggregatehub.cache.SourceChangedEvent;
+import com.zemnitskiy.aggregatehub.config.ConcurrencyLimitProperties;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubDatabaseFetchException;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adaptive limits on concurrent database queries, one per database and one for all databases together.
+ * <p>
+ * A query first takes a slot of its database, then a global slot, waiting up to the configured queue wait
+ * for each. When no slot frees up in time the request is rejected with {@link AggregateHubOverloadedException}
+ * instead of piling more load on a congested database. Each limit adapts to the latency until the first row
+ * of the queries it admits, see {@link AimdLimiter}.
+ * </p>
+ */
+@Component
+public class QueryConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryConcurrencyLimiter.class);
+    private static final String GLOBAL = "global";
+
+    private final ConcurrencyLimitProperties properties;
+    private final AimdLimiter globalLimiter;
+    private final Map<String, AimdLimiter> sourceLimiters = new ConcurrentHashMap<>();
+
+    public QueryConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        this.properties = properties;
+        ConcurrencyLimitProperties.Global global = properties.global();
+        this.globalLimiter = newLimiter(global.initialLimit(), global.minLimit(), global.maxLimit());
+    }
+
+    /**
+     * Takes a slot for a query against a database. The returned permit must be closed when the query is done.
+     *
+     * @param dbName the database name
+     * @return the permit
+     * @throws AggregateHubOverloadedException if no slot became free within the configured queue wait
+     */
+    public Permit acquire(String dbName) {
+        if (!properties.enabled()) {
+            return new Permit(null, null);
+        }
+        AimdLimiter sourceLimiter = sourceLimiters.computeIfAbsent(dbName, key -> {
+            ConcurrencyLimitProperties.PerSource perSource = properties.perSource();
+            return newLimiter(perSource.initialLimit(), perSource.minLimit(), perSource.maxLimit());
+        });
+
+        long deadline = System.nanoTime() + properties.maxQueueWait().toNanos();
+        try {
+            if (!sourceLimiter.acquire(deadline - System.nanoTime())) {
+                logger.warn("Database '{}' is at its concurrency limit of {}", dbName, sourceLimiter.getLimit());
+                throw new AggregateHubOverloadedException("Database " + dbName + " is at its concurrency limit",
+                        properties.maxQueueWait());
+            }
+            if (!globalLimiter.acquire(deadline - System.nanoTime())) {
+                sourceLimiter.release();
+                logger.warn("Global concurrency limit of {} reached", globalLimiter.getLimit());
+                throw new AggregateHubOverloadedException("Too many concurrent database queries",
+                        properties.maxQueueWait());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AggregateHubDatabaseFetchException("Interrupted while waiting for database: " + dbName, e);
+        }
+        return new Permit(sourceLimiter, globalLimiter);
+    }
+
+    /**
+     * Returns whether queries are currently waiting for the global limit or the limit of any database.
+     *
+     * @return {@code true} if some limit is exhausted
+     */
+    public boolean isCongested() {
+        if (globalLimiter.getWaiting() > 0) {
+            return true;
+        }
+        for (AimdLimiter limiter : sourceLimiters.values()) {
+            if (limiter.getWaiting() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the state of the global limit and of every database limit.
+     *
+     * @return the limiter states keyed by database name, plus {@code global}
+     */
+    public Map<String, LimiterState> getStates() {
+        Map<String, LimiterState> states = new LinkedHashMap<>();
+        states.put(GLOBAL, LimiterState.of(globalLimiter));
+        sourceLimiters.forEach((dbName, limiter) -> states.put(dbName, LimiterState.of(limiter)));
+        return states;
+    }
+
+    /**
+     * Starts a reconfigured database from a fresh limit, since what was learned about the old one no longer applies.
+     *
+     * @param event the change event
+     */
+    @EventListener(condition = "#event.reconfigured")
+    public void onSourceReconfigured(SourceChangedEvent event) {
+        sourceLimiters.remove(event.dbName());
+    }
+
+    private AimdLimiter newLimiter(int initialLimit, int minLimit, int maxLimit) {
+        return new AimdLimiter(initialLimit, minLimit, maxLimit, properties.backoffRatio(),
+                properties.latencyTolerance(), properties.minSlowLatency().toNanos());
+    }
+
+    /**
+     * A slot held by one query. The query reports when its first row arrived; a query closed before that
+     * counts as failed.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private final AimdLimiter sourceLimiter;
+        private final AimdLimiter globalLimiter;
+        private final long start = System.nanoTime();
+        private long latencyNanos = -1;
+        private boolean closed;
+
+        private Permit(AimdLimiter sourceLimiter, AimdLimiter globalLimiter) {
+            this.sourceLimiter = sourceLimiter;
+            this.globalLimiter = globalLimiter;
+        }
+
+        /**
+         * Records the latency of the query when its first row arrived or it completed, whichever comes first.
+         */
+        public void responded() {
+            if (latencyNanos < 0) {
+                latencyNanos = System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed || sourceLimiter == null) {
+                return;
+            }
+            closed = true;
+            boolean failed = latencyNanos < 0;
+            long latency = failed ? System.nanoTime() - start : latencyNanos;
+            globalLimiter.release(latency, failed);
+            sourceLimiter.release(latency, failed);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.zemnitskiy.aggregatehub.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+
+/**
+ * File formats supported by export jobs. Every export is gzip-compressed.
+ */
+public enum ExportFormat {
+
+    CSV("csv", "text/csv"),
+    NDJSON("ndjson", "application/x-ndjson");
+
+    private final String extension;
+    private final String contentType;
+
+    ExportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    @JsonValue
+    public String extension() {
+        return extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    @JsonCreator
+    public static ExportFormat fromValue(String value) {
+        for (ExportFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new AggregateHubServiceException("Unsupported export format: " + value);
+    }
+}
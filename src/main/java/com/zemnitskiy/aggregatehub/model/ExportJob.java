@@ -0,0 +1,86 @@
+package com.zemnitskiy.aggregatehub.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * State of an asynchronous export of users from all databases into a compressed file.
+ */
+@Schema(description = "Status of an export job")
+@Getter
+public class ExportJob {
+
+    @Schema(description = "Job identifier", example = "3f6c1a52-2a4b-4c2e-9a51-0d7a3c1c9e0b")
+    private final String id;
+
+    @Schema(description = "Filter applied to every database")
+    private final UserFilter filter;
+
+    @Schema(description = "Export file format", example = "ndjson")
+    private final ExportFormat format;
+
+    @Schema(description = "Time the job was submitted")
+    private final Instant createdAt;
+
+    @Schema(description = "Current job status", example = "COMPLETED")
+    private volatile ExportJobStatus status = ExportJobStatus.PENDING;
+
+    @Schema(description = "Time the job finished")
+    private volatile Instant completedAt;
+
+    @Schema(description = "Number of exported users", example = "125000")
+    private volatile long rowCount;
+
+    @Schema(description = "Size of the compressed export file in bytes", example = "1048576")
+    private volatile long sizeBytes;
+
+    @Schema(description = "Failure reason if the job failed")
+    private volatile String error;
+
+    @JsonIgnore
+    private final Path file;
+
+    @JsonIgnore
+    private volatile boolean cancelled;
+
+    public ExportJob(String id, UserFilter filter, ExportFormat format, Path file) {
+        this.id = id;
+        this.filter = filter;
+        this.format = format;
+        this.file = file;
+        this.createdAt = Instant.now();
+    }
+
+    public void markRunning() {
+        this.status = ExportJobStatus.RUNNING;
+    }
+
+    public void markCompleted(long rowCount, long sizeBytes) {
+        this.rowCount = rowCount;
+        this.sizeBytes = sizeBytes;
+        this.completedAt = Instant.now();
+        this.status = ExportJobStatus.COMPLETED;
+    }
+
+    public void markFailed(String error) {
+        this.error = error;
+        this.completedAt = Instant.now();
+        this.status = ExportJobStatus.FAILED;
+    }
+
+    /**
+     * Asks a pending or running job to stop; the job discards its file once it notices.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    @JsonIgnore
+    public String getFileName() {
+        return "users-" + id + "." + format.extension() + ".gz";
+    }
+}
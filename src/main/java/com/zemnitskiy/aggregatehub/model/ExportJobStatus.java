@@ -0,0 +1,11 @@
+package com.zemnitskiy.aggregatehub.model;
+
+/**
+ * Lifecycle of an export job.
+ */
+public enum ExportJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
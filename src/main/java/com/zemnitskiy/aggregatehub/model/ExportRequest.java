@@ -0,0 +1,26 @@
+package com.zemnitskiy.aggregatehub.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Request body for submitting an export job.
+ *
+ * @param id       the user ID to filter by (optional)
+ * @param name     the name to filter by (optional)
+ * @param surname  the surname to filter by (optional)
+ * @param username the username to filter by (optional)
+ * @param format   the file format, defaults to NDJSON
+ */
+@Schema(description = "Filter and format of an export job")
+public record ExportRequest(
+        @Schema(description = "ID of the user to filter by", example = "1") String id,
+        @Schema(description = "Name of the user to filter by", example = "John") String name,
+        @Schema(description = "Surname of the user to filter by", example = "Doe") String surname,
+        @Schema(description = "Username of the user to filter by", example = "johndoe") String username,
+        @Schema(description = "Export file format", example = "ndjson", allowableValues = {"csv", "ndjson"})
+        ExportFormat format) {
+
+    public UserFilter toFilter() {
+        return new UserFilter(id, name, surname, username);
+    }
+}
@@ -0,0 +1,22 @@
+package com.zemnitskiy.aggregatehub.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Whether the column behind a {@code /users} filter of a database is indexed.
+ *
+ * @param database      the database name
+ * @param table         the physical user table
+ * @param field         the filter parameter, e.g. {@code surname}
+ * @param column        the physical column the field is mapped to
+ * @param definition    what the index covers: the column, or the expression over it that prefix and
+ *                      case-insensitive criteria compare, e.g. {@code lower(name) text_pattern_ops}
+ * @param indexed       whether an index starts with the definition
+ * @param index         the existing index, or the name of the index that would be created
+ * @param estimatedRows the (estimated) number of rows scanned by a filter on an unindexed column,
+ *                      or {@code null} if unknown
+ */
+@Schema(description = "Index status of a filter column")
+public record IndexAdvice(String database, String table, String field, String column, String definition,
+                          boolean indexed, String index, Long estimatedRows) {
+}
@@ -0,0 +1,71 @@
+package com.zemnitskiy.aggregatehub.model;
+
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+
+/**
+ * Optional filter criteria applied to users in every database.
+ * <p>
+ * {@code name}, {@code surname} and {@code username} match exactly by default; {@code prefix} and
+ * {@code ignoreCase} relax how they match. The ID always matches exactly.
+ * </p>
+ *
+ * @param id         the user ID to filter by, or {@code null}
+ * @param name       the name to filter by, or {@code null}
+ * @param surname    the surname to filter by, or {@code null}
+ * @param username   the username to filter by, or {@code null}
+ * @param prefix     whether the text criteria match values starting with them
+ * @param ignoreCase whether the text criteria match regardless of case
+ * @param limit      the maximum number of users returned by each database and in total, or {@code null}
+ */
+public record UserFilter(String id, String name, String surname, String username, boolean prefix,
+                         boolean ignoreCase, Integer limit) {
+
+    public UserFilter {
+        if (limit != null && limit <= 0) {
+            throw new AggregateHubServiceException("limit must be positive, got: " + limit);
+        }
+    }
+
+    public UserFilter(String id, String name, String surname, String username) {
+        this(id, name, surname, username, false, false, null);
+    }
+
+    /**
+     * Tells whether the text criteria match exactly and case-sensitively, the default.
+     *
+     * @return {@code true} if neither {@code prefix} nor {@code ignoreCase} is set
+     */
+    public boolean exactText() {
+        return !prefix && !ignoreCase;
+    }
+
+    /**
+     * Tells whether the filter reads whole tables, having neither criteria nor a limit.
+     *
+     * @return {@code true} if every user of every database is read
+     */
+    public boolean readsAllRows() {
+        return id == null && name == null && surname == null && username == null && limit == null;
+    }
+
+    /**
+     * Tells whether a value satisfies a text criterion of this filter, applying {@code prefix} and
+     * {@code ignoreCase}.
+     *
+     * @param criterion the criterion, or {@code null} to match every value
+     * @param value     the value of the user
+     * @return {@code true} if the value matches
+     */
+    public boolean matchesText(String criterion, String value) {
+        if (criterion == null) {
+            return true;
+        }
+        if (value == null) {
+            return false;
+        }
+        if (prefix) {
+            return value.regionMatches(ignoreCase, 0, criterion, 0, criterion.length());
+        }
+        return ignoreCase ? value.equalsIgnoreCase(criterion) : value.equals(criterion);
+    }
+}
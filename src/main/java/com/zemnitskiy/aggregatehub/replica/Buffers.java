@@ -0,0 +1,58 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Helpers for the off-heap buffers backing {@link ColumnarUserStore}.
+ * All buffers use little-endian byte order so that stored files are portable between machines.
+ */
+final class Buffers {
+
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private Buffers() {
+    }
+
+    /**
+     * Copies the first {@code length} bytes into a new direct buffer.
+     */
+    static ByteBuffer direct(byte[] data, int length) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length).order(ORDER);
+        buffer.put(data, 0, length).flip();
+        return buffer;
+    }
+
+    /**
+     * Copies the first {@code length} ints into a new direct buffer.
+     */
+    static ByteBuffer direct(int[] data, int length) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length * Integer.BYTES).order(ORDER);
+        buffer.asIntBuffer().put(data, 0, length);
+        return buffer;
+    }
+
+    /**
+     * Returns an int view of the whole buffer, independent of the buffer's position and byte order.
+     */
+    static IntBuffer ints(ByteBuffer buffer) {
+        return buffer.duplicate().clear().order(ORDER).asIntBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the whole buffer, independent of the buffer's position.
+     */
+    static ByteBuffer view(ByteBuffer buffer) {
+        return buffer.asReadOnlyBuffer().clear().order(ORDER);
+    }
+
+    static int[] grow(int[] array, int minCapacity) {
+        return minCapacity <= array.length ? array : Arrays.copyOf(array, Math.max(minCapacity, array.length * 2));
+    }
+
+    static byte[] grow(byte[] array, int minCapacity) {
+        return minCapacity <= array.length ? array : Arrays.copyOf(array, Math.max(minCapacity, array.length * 2));
+    }
+}
@@ -0,0 +1,291 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable, compact copy of the users of one database, stored column by column outside the Java heap.
+ * <p>
+ * {@code id} and {@code username} are kept as UTF-8 string columns with hash indexes; {@code name} and
+ * {@code surname}, which repeat heavily, are dictionary-encoded with int posting lists per distinct value.
+ * Only the dictionaries live on the heap, so millions of rows add almost nothing to GC work.
+ * {@link User} objects are created only for rows returned by a query.
+ * </p>
+ * A query walks the most selective index available: the {@code id} chain, then the {@code username} chain,
+ * then the shorter of the {@code name}/{@code surname} posting lists, and checks the remaining filters on
+ * the rows it visits.
+ */
+public final class ColumnarUserStore {
+
+    /**
+     * Number of buffers returned by {@link #sections()}.
+     */
+    public static final int SECTIONS = 10 + 2 * DictionaryColumn.SECTIONS;
+
+    private final StringColumn ids;
+    private final HashIndex idIndex;
+    private final StringColumn usernames;
+    private final HashIndex usernameIndex;
+    private final DictionaryColumn names;
+    private final DictionaryColumn surnames;
+
+    private ColumnarUserStore(StringColumn ids, HashIndex idIndex, StringColumn usernames, HashIndex usernameIndex,
+                              DictionaryColumn names, DictionaryColumn surnames) {
+        this.ids = ids;
+        this.idIndex = idIndex;
+        this.usernames = usernames;
+        this.usernameIndex = usernameIndex;
+        this.names = names;
+        this.surnames = surnames;
+    }
+
+    /**
+     * Creates a builder accumulating rows for a new store.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Wraps buffers previously returned by {@link #sections()}, e.g. slices of a memory-mapped file,
+     * without copying them.
+     *
+     * @param sections the buffers, in the order of {@link #sections()}
+     * @return the store
+     */
+    public static ColumnarUserStore read(List<ByteBuffer> sections) {
+        if (sections.size() != SECTIONS) {
+            throw new IllegalArgumentException("Expected " + SECTIONS + " sections, got " + sections.size());
+        }
+        return new ColumnarUserStore(StringColumn.read(sections, 0), HashIndex.read(sections, 3),
+                StringColumn.read(sections, 5), HashIndex.read(sections, 8),
+                DictionaryColumn.read(sections, 10), DictionaryColumn.read(sections, 10 + DictionaryColumn.SECTIONS));
+    }
+
+    /**
+     * Returns every buffer backing the store in a fixed order, so the store can be persisted as is.
+     *
+     * @return the buffers
+     */
+    public List<ByteBuffer> sections() {
+        List<ByteBuffer> sections = new ArrayList<>(SECTIONS);
+        sections.addAll(ids.buffers());
+        sections.addAll(idIndex.buffers());
+        sections.addAll(usernames.buffers());
+        sections.addAll(usernameIndex.buffers());
+        sections.addAll(names.buffers());
+        sections.addAll(surnames.buffers());
+        return sections;
+    }
+
+    /**
+     * Emits the users matching the filter, at most {@link UserFilter#limit()} of them.
+     *
+     * @param filter   the filter criteria
+     * @param consumer the consumer receiving each matching user
+     */
+    public void query(UserFilter filter, Consumer<User> consumer) {
+        int limit = filter.limit() != null ? filter.limit() : Integer.MAX_VALUE;
+        int[] emitted = new int[1];
+        Consumer<User> limited = user -> {
+            emitted[0]++;
+            consumer.accept(user);
+        };
+        if (filter.exactText()) {
+            queryExact(filter, limited, () -> emitted[0] >= limit);
+        } else {
+            queryText(filter, limited, () -> emitted[0] >= limit);
+        }
+    }
+
+    private void queryExact(UserFilter filter, Consumer<User> consumer, BooleanSupplier full) {
+        byte[] id = encode(filter.id());
+        byte[] username = encode(filter.username());
+        int nameCode = filter.name() != null ? names.codeOf(filter.name()) : -1;
+        int surnameCode = filter.surname() != null ? surnames.codeOf(filter.surname()) : -1;
+        if ((filter.name() != null && nameCode < 0) || (filter.surname() != null && surnameCode < 0)) {
+            return;
+        }
+
+        IntConsumer emitIfMatching = row -> {
+            if (!full.getAsBoolean()
+                    && (id == null || ids.equalsAt(row, id))
+                    && (username == null || usernames.equalsAt(row, username))
+                    && (filter.name() == null || names.codeAt(row) == nameCode)
+                    && (filter.surname() == null || surnames.codeAt(row) == surnameCode)) {
+                consumer.accept(userAt(row));
+            }
+        };
+
+        if (id != null) {
+            idIndex.forEachMatch(ids, id, emitIfMatching);
+        } else if (username != null) {
+            usernameIndex.forEachMatch(usernames, username, emitIfMatching);
+        } else if (filter.name() != null
+                && (filter.surname() == null || names.postingCount(nameCode) <= surnames.postingCount(surnameCode))) {
+            names.forEachPosting(nameCode, emitIfMatching);
+        } else if (filter.surname() != null) {
+            surnames.forEachPosting(surnameCode, emitIfMatching);
+        } else {
+            for (int row = 0; row < size() && !full.getAsBoolean(); row++) {
+                consumer.accept(userAt(row));
+            }
+        }
+    }
+
+    /**
+     * Answers prefix and case-insensitive criteria. The matching names and surnames are found in the small
+     * dictionaries, and the rows are read from the posting lists of the shorter side; the username has no
+     * usable index for these criteria and is checked on the rows visited.
+     */
+    private void queryText(UserFilter filter, Consumer<User> consumer, BooleanSupplier full) {
+        byte[] id = encode(filter.id());
+        boolean[] nameCodes = matchingCodes(names, filter, filter.name());
+        boolean[] surnameCodes = matchingCodes(surnames, filter, filter.surname());
+
+        IntConsumer emitIfMatching = row -> {
+            if (!full.getAsBoolean()
+                    && (id == null || ids.equalsAt(row, id))
+                    && (nameCodes == null || hasCode(nameCodes, names.codeAt(row)))
+                    && (surnameCodes == null || hasCode(surnameCodes, surnames.codeAt(row)))
+                    && filter.matchesText(filter.username(), filter.username() != null ? usernames.get(row) : null)) {
+                consumer.accept(userAt(row));
+            }
+        };
+
+        if (id != null) {
+            idIndex.forEachMatch(ids, id, emitIfMatching);
+        } else if (nameCodes != null
+                && (surnameCodes == null || postingCount(names, nameCodes) <= postingCount(surnames, surnameCodes))) {
+            forEachPosting(names, nameCodes, emitIfMatching, full);
+        } else if (surnameCodes != null) {
+            forEachPosting(surnames, surnameCodes, emitIfMatching, full);
+        } else {
+            for (int row = 0; row < size() && !full.getAsBoolean(); row++) {
+                emitIfMatching.accept(row);
+            }
+        }
+    }
+
+    private static boolean[] matchingCodes(DictionaryColumn column, UserFilter filter, String criterion) {
+        if (criterion == null) {
+            return null;
+        }
+        int[] codes = column.codesMatching(value -> filter.matchesText(criterion, value));
+        boolean[] matching = new boolean[codes.length > 0 ? codes[codes.length - 1] + 1 : 0];
+        for (int code : codes) {
+            matching[code] = true;
+        }
+        return matching;
+    }
+
+    private static boolean hasCode(boolean[] codes, int code) {
+        return code >= 0 && code < codes.length && codes[code];
+    }
+
+    private static long postingCount(DictionaryColumn column, boolean[] codes) {
+        long count = 0;
+        for (int code = 0; code < codes.length; code++) {
+            if (codes[code]) {
+                count += column.postingCount(code);
+            }
+        }
+        return count;
+    }
+
+    private static void forEachPosting(DictionaryColumn column, boolean[] codes, IntConsumer consumer,
+                                       BooleanSupplier full) {
+        for (int code = 0; code < codes.length && !full.getAsBoolean(); code++) {
+            if (codes[code]) {
+                column.forEachPosting(code, consumer);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of stored users.
+     *
+     * @return the row count
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Returns the number of off-heap bytes used by the columns and indexes.
+     *
+     * @return the off-heap footprint in bytes
+     */
+    public long offHeapBytes() {
+        return ids.capacity() + idIndex.capacity() + usernames.capacity() + usernameIndex.capacity()
+                + names.capacity() + surnames.capacity();
+    }
+
+    private User userAt(int row) {
+        return new User(ids.get(row), usernames.get(row), names.get(row), surnames.get(row));
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Accumulates rows and builds the off-heap columns and indexes.
+     * Values are buffered on the heap as compact arrays, never as {@link User} objects.
+     */
+    public static final class Builder {
+
+        private final StringColumn.Builder ids = new StringColumn.Builder();
+        private final StringColumn.Builder usernames = new StringColumn.Builder();
+        private final DictionaryColumn.Builder names = new DictionaryColumn.Builder();
+        private final DictionaryColumn.Builder surnames = new DictionaryColumn.Builder();
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * Appends a row.
+         *
+         * @param user the user to append
+         */
+        public void add(User user) {
+            ids.add(user.getId());
+            usernames.add(user.getUsername());
+            names.add(user.getName());
+            surnames.add(user.getSurname());
+            size++;
+        }
+
+        /**
+         * Returns the number of appended rows.
+         *
+         * @return the row count
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Builds the store.
+         *
+         * @return the store
+         */
+        public ColumnarUserStore build() {
+            StringColumn idColumn = ids.build();
+            StringColumn usernameColumn = usernames.build();
+            return new ColumnarUserStore(idColumn, HashIndex.build(idColumn), usernameColumn,
+                    HashIndex.build(usernameColumn), names.build(), surnames.build());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Off-heap dictionary-encoded string column for low-cardinality values such as names and surnames.
+ * <p>
+ * Every distinct value is stored once in a dictionary; rows hold an int code, {@code -1} for {@code null}.
+ * For each code, a posting list of the rows having that value is kept in CSR form: {@code postingOffsets}
+ * delimits the slice of {@code postingRows} belonging to a code.
+ * </p>
+ */
+final class DictionaryColumn {
+
+    static final int SECTIONS = 8;
+    private static final int NULL_CODE = -1;
+
+    private final ByteBuffer codeBuffer;
+    private final StringColumn dictionary;
+    private final HashIndex dictionaryIndex;
+    private final ByteBuffer postingOffsetBuffer;
+    private final ByteBuffer postingRowBuffer;
+    private final IntBuffer codes;
+    private final IntBuffer postingOffsets;
+    private final IntBuffer postingRows;
+    private final String[] values;
+
+    DictionaryColumn(ByteBuffer codeBuffer, StringColumn dictionary, HashIndex dictionaryIndex,
+                     ByteBuffer postingOffsetBuffer, ByteBuffer postingRowBuffer) {
+        this.codeBuffer = codeBuffer;
+        this.dictionary = dictionary;
+        this.dictionaryIndex = dictionaryIndex;
+        this.postingOffsetBuffer = postingOffsetBuffer;
+        this.postingRowBuffer = postingRowBuffer;
+        this.codes = Buffers.ints(codeBuffer);
+        this.postingOffsets = Buffers.ints(postingOffsetBuffer);
+        this.postingRows = Buffers.ints(postingRowBuffer);
+        // The dictionary is small, so decoded values are cached to avoid decoding them for every row
+        this.values = new String[dictionary.size()];
+        for (int code = 0; code < values.length; code++) {
+            values[code] = dictionary.get(code);
+        }
+    }
+
+    static DictionaryColumn read(List<ByteBuffer> sections, int from) {
+        return new DictionaryColumn(sections.get(from), StringColumn.read(sections, from + 1),
+                HashIndex.read(sections, from + 4), sections.get(from + 6), sections.get(from + 7));
+    }
+
+    List<ByteBuffer> buffers() {
+        List<ByteBuffer> buffers = new ArrayList<>(SECTIONS);
+        buffers.add(codeBuffer);
+        buffers.addAll(dictionary.buffers());
+        buffers.addAll(dictionaryIndex.buffers());
+        buffers.add(postingOffsetBuffer);
+        buffers.add(postingRowBuffer);
+        return buffers;
+    }
+
+    /**
+     * Returns the code of the value, or {@code -1} if no row has this value.
+     */
+    int codeOf(String value) {
+        return dictionaryIndex.firstMatch(dictionary, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the codes of the values accepted by the predicate. Only the dictionary is scanned, not the rows.
+     */
+    int[] codesMatching(Predicate<String> predicate) {
+        return IntStream.range(0, values.length).filter(code -> predicate.test(values[code])).toArray();
+    }
+
+    int codeAt(int row) {
+        return codes.get(row);
+    }
+
+    String get(int row) {
+        int code = codes.get(row);
+        return code == NULL_CODE ? null : values[code];
+    }
+
+    int postingCount(int code) {
+        return postingOffsets.get(code + 1) - postingOffsets.get(code);
+    }
+
+    void forEachPosting(int code, IntConsumer consumer) {
+        for (int i = postingOffsets.get(code), end = postingOffsets.get(code + 1); i < end; i++) {
+            consumer.accept(postingRows.get(i));
+        }
+    }
+
+    long capacity() {
+        return codeBuffer.capacity() + dictionary.capacity() + dictionaryIndex.capacity()
+                + postingOffsetBuffer.capacity() + postingRowBuffer.capacity();
+    }
+
+    /**
+     * Accumulates codes on the heap and copies the column off-heap when built.
+     */
+    static final class Builder {
+
+        private final Map<String, Integer> dictionaryCodes = new HashMap<>();
+        private final StringColumn.Builder dictionary = new StringColumn.Builder();
+        private int[] codes = new int[1024];
+        private int size;
+
+        void add(String value) {
+            codes = Buffers.grow(codes, size + 1);
+            codes[size++] = value == null
+                    ? NULL_CODE
+                    : dictionaryCodes.computeIfAbsent(value, dictionary::add);
+        }
+
+        DictionaryColumn build() {
+            int dictionarySize = dictionary.size();
+            int[] postingOffsets = new int[dictionarySize + 1];
+            for (int row = 0; row < size; row++) {
+                if (codes[row] != NULL_CODE) {
+                    postingOffsets[codes[row] + 1]++;
+                }
+            }
+            for (int code = 0; code < dictionarySize; code++) {
+                postingOffsets[code + 1] += postingOffsets[code];
+            }
+
+            int[] postingRows = new int[postingOffsets[dictionarySize]];
+            int[] cursor = postingOffsets.clone();
+            for (int row = 0; row < size; row++) {
+                if (codes[row] != NULL_CODE) {
+                    postingRows[cursor[codes[row]]++] = row;
+                }
+            }
+
+            StringColumn dictionaryColumn = dictionary.build();
+            return new DictionaryColumn(
+                    Buffers.direct(codes, size),
+                    dictionaryColumn,
+                    HashIndex.build(dictionaryColumn),
+                    Buffers.direct(postingOffsets, dictionarySize + 1),
+                    Buffers.direct(postingRows, postingRows.length));
+        }
+    }
+}
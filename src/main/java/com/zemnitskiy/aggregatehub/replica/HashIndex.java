@@ -0,0 +1,85 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Off-heap chained hash index over a {@link StringColumn}.
+ * <p>
+ * {@code heads} maps a hash bucket to the first row of its chain and {@code next} links every row to the
+ * following row of the same bucket, {@code -1} ending a chain. Chains are in ascending row order.
+ * </p>
+ */
+final class HashIndex {
+
+    private static final int EMPTY = -1;
+
+    private final ByteBuffer headBuffer;
+    private final ByteBuffer nextBuffer;
+    private final IntBuffer heads;
+    private final IntBuffer next;
+    private final int mask;
+
+    HashIndex(ByteBuffer headBuffer, ByteBuffer nextBuffer) {
+        this.headBuffer = headBuffer;
+        this.nextBuffer = nextBuffer;
+        this.heads = Buffers.ints(headBuffer);
+        this.next = Buffers.ints(nextBuffer);
+        this.mask = heads.limit() - 1;
+    }
+
+    static HashIndex read(List<ByteBuffer> sections, int from) {
+        return new HashIndex(sections.get(from), sections.get(from + 1));
+    }
+
+    static HashIndex build(StringColumn column) {
+        int size = column.size();
+        int capacity = Integer.highestOneBit(Math.max(16, size * 2 - 1)) << 1;
+        int[] heads = new int[capacity];
+        int[] next = new int[size];
+        Arrays.fill(heads, EMPTY);
+        Arrays.fill(next, EMPTY);
+        for (int row = size - 1; row >= 0; row--) {
+            if (!column.isNull(row)) {
+                int bucket = column.hashAt(row) & (capacity - 1);
+                next[row] = heads[bucket];
+                heads[bucket] = row;
+            }
+        }
+        return new HashIndex(Buffers.direct(heads, capacity), Buffers.direct(next, size));
+    }
+
+    List<ByteBuffer> buffers() {
+        return List.of(headBuffer, nextBuffer);
+    }
+
+    /**
+     * Calls the consumer with every row of the column equal to the value, in ascending order.
+     */
+    void forEachMatch(StringColumn column, byte[] value, IntConsumer consumer) {
+        for (int row = heads.get(StringColumn.hash(value) & mask); row != EMPTY; row = next.get(row)) {
+            if (column.equalsAt(row, value)) {
+                consumer.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Returns the first row of the column equal to the value, or {@code -1}.
+     */
+    int firstMatch(StringColumn column, byte[] value) {
+        for (int row = heads.get(StringColumn.hash(value) & mask); row != EMPTY; row = next.get(row)) {
+            if (column.equalsAt(row, value)) {
+                return row;
+            }
+        }
+        return EMPTY;
+    }
+
+    long capacity() {
+        return headBuffer.capacity() + (long) nextBuffer.capacity();
+    }
+}
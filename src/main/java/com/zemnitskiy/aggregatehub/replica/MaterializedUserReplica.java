@@ -0,0 +1,296 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import com.zemnitskiy.aggregatehub.cache.SourceChangedEvent;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.config.ReplicaProperties;
+import com.zemnitskiy.aggregatehub.executor.QueryDeadline;
+import com.zemnitskiy.aggregatehub.executor.SourceExecutor;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Local materialized copy of every configured database, used to answer {@code consistency=local} requests
+ * from memory.
+ * <p>
+ * On the first refresh every database is bulk-loaded in parallel. Afterwards each database's watermark
+ * is polled, and only databases whose watermark changed are refreshed. Databases detecting changes with a change
+ * column only read the rows whose column moved since the last refresh and merge them into their copy by ID; the
+ * others, and column databases that lost rows, are reloaded in full. Each database is swapped in atomically, so
+ * queries always see a complete snapshot of a database.
+ * </p>
+ * <p>
+ * A transaction can commit a change column value below the maximum an earlier refresh already saw. To pick up such
+ * late commits, each catch-up re-reads the rows since the mark before the last one rather than the last one, and
+ * every database is reloaded in full at least every {@code full-reload-interval}, which bounds how long a change
+ * the watermark cannot see stays hidden.
+ * </p>
+ * <p>
+ * Text criteria are matched by the {@link ColumnarUserStore}: exactly, or with Unicode case folding for
+ * {@code ignoreCase}. Databases whose column collations also ignore accents or trailing spaces can therefore
+ * match more rows live than from the local copy.
+ * </p>
+ * <p>
+ * When snapshots are enabled, every reloaded database is also written to a snapshot file. On startup the
+ * snapshots written for the current configuration of their database are memory-mapped and served immediately;
+ * snapshots of a changed configuration or with corrupt data are deleted. The first refresh then only reloads the
+ * databases whose watermark moved since their snapshot was written, instead of re-reading every database after
+ * each restart.
+ * </p>
+ */
+@Service
+public class MaterializedUserReplica {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaterializedUserReplica.class);
+    private static final UserFilter ALL_USERS = new UserFilter(null, null, null, null);
+
+    private final MultiDatabaseUserDao userDao;
+    private final SourceExecutor sourceExecutor;
+    private final boolean enabled;
+    private final Duration fullReloadInterval;
+    private final Duration loadTimeout;
+    private final ReplicaSnapshotStore snapshotStore;
+    private final Map<String, ReplicaSource> sources = new ConcurrentHashMap<>();
+    // Bumped when a database is reconfigured, so loads started before the change are not published
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    public MaterializedUserReplica(MultiDatabaseUserDao userDao, ReplicaProperties replicaProperties,
+                                   SourceExecutor sourceExecutor) {
+        this.userDao = userDao;
+        this.sourceExecutor = sourceExecutor;
+        this.enabled = replicaProperties.enabled();
+        this.fullReloadInterval = replicaProperties.fullReloadInterval();
+        this.loadTimeout = replicaProperties.loadTimeout();
+        this.snapshotStore = replicaProperties.snapshot().enabled()
+                ? new ReplicaSnapshotStore(replicaProperties.snapshot().directory())
+                : null;
+    }
+
+    /**
+     * Restores the replicated databases from their snapshot files, if any.
+     */
+    @PostConstruct
+    public void restoreSnapshots() {
+        if (!enabled || snapshotStore == null) {
+            return;
+        }
+        for (DatabaseConfig dbConfig : userDao.getDatabaseConfigs()) {
+            String dbName = dbConfig.name();
+            try {
+                snapshotStore.read(dbName, ReplicaSnapshotStore.configHash(dbConfig)).ifPresent(snapshot -> {
+                    sources.put(dbName, new ReplicaSource(snapshot.store(), snapshot.watermark(), -1, null, null,
+                            System.nanoTime()));
+                    logger.info("Restored {} users of database '{}' from snapshot", snapshot.store().size(), dbName);
+                });
+            } catch (IOException e) {
+                logger.warn("Discarding snapshot of database '{}': {}", dbName, e.getMessage());
+                deleteSnapshot(dbName);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the replica is enabled.
+     *
+     * @return {@code true} if the replica is maintained
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Emits the users of a database that match the filter from the local copy.
+     *
+     * @param dbName   the database name
+     * @param filter   the filter criteria
+     * @param consumer the consumer receiving each matching user
+     * @return {@code false} if the database has not been loaded yet and must be queried live
+     */
+    public boolean query(String dbName, UserFilter filter, Consumer<User> consumer) {
+        ReplicaSource source = sources.get(dbName);
+        if (source == null) {
+            return false;
+        }
+        source.store().query(filter, consumer);
+        return true;
+    }
+
+    /**
+     * Tells whether the local copy of a database is loaded and can serve queries.
+     *
+     * @param dbName the database name
+     * @return {@code true} if the database is loaded
+     */
+    public boolean isLoaded(String dbName) {
+        return sources.containsKey(dbName);
+    }
+
+    /**
+     * Returns the watermark of the database at the time its local copy was loaded.
+     *
+     * @param dbName the database name
+     * @return the watermark, or {@code null} if the database is not loaded or has no watermark
+     */
+    public String watermark(String dbName) {
+        ReplicaSource source = sources.get(dbName);
+        return source != null ? source.watermark() : null;
+    }
+
+    /**
+     * Loads databases that are not replicated yet and reloads those whose watermark changed.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${aggregate-hub.replica.refresh-interval:5s}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        List<String> databaseNames = userDao.getDatabaseNames();
+        sources.keySet().retainAll(databaseNames);
+
+        try (SourceExecutor.Fanout fanout = sourceExecutor.fanout()) {
+            List<CompletableFuture<Void>> futures = databaseNames.stream()
+                    .map(dbName -> CompletableFuture.runAsync(() -> refreshSource(dbName), fanout.executorFor(dbName)))
+                    .toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        }
+    }
+
+    /**
+     * Drops the local copy of a database that was reconfigured at runtime; it is queried live until reloaded.
+     *
+     * @param event the change event
+     */
+    @EventListener(condition = "#event.reconfigured")
+    public synchronized void onSourceReconfigured(SourceChangedEvent event) {
+        generations.merge(event.dbName(), 1L, Long::sum);
+        sources.remove(event.dbName());
+    }
+
+    private void refreshSource(String dbName) {
+        try (QueryDeadline ignored = QueryDeadline.within(loadTimeout)) {
+            long generation = generations.getOrDefault(dbName, 0L);
+            String configHash = userDao.getDatabaseConfig(dbName).map(ReplicaSnapshotStore::configHash).orElse(null);
+            // Read the watermark first, so changes made while loading are picked up by the next refresh
+            MultiDatabaseUserDao.ChangeMark mark = userDao.fetchChangeMark(dbName);
+            String watermark = mark != null ? mark.watermark() : null;
+            ReplicaSource current = sources.get(dbName);
+            long start = System.nanoTime();
+            boolean fullReloadDue = current != null && start - current.loadedAt() >= fullReloadInterval.toNanos();
+            if (current != null && watermark != null && watermark.equals(current.watermark()) && !fullReloadDue) {
+                return;
+            }
+
+            ColumnarUserStore store = !fullReloadDue && current != null && current.catchUpFrom() != null
+                    && mark != null && mark.columnMax() != null
+                    ? loadChanges(dbName, current, mark)
+                    : null;
+            boolean delta = store != null;
+            if (store == null) {
+                ColumnarUserStore.Builder builder = ColumnarUserStore.builder();
+                userDao.streamUsers(dbName, ALL_USERS, builder::add);
+                store = builder.build();
+            }
+            // The next catch-up starts from this mark's predecessor, so commits landing below it are read again
+            Object catchUpFrom = mark == null || mark.columnMax() == null ? null
+                    : delta ? current.columnMax() : mark.columnMax();
+            ReplicaSource loaded = mark != null
+                    ? new ReplicaSource(store, watermark, mark.rowCount(), mark.columnMax(), catchUpFrom,
+                            delta ? current.loadedAt() : start)
+                    : new ReplicaSource(store, null, -1, null, null, start);
+            if (!publish(dbName, generation, loaded)) {
+                logger.info("Discarded the replica of database '{}', it was reconfigured while loading", dbName);
+                return;
+            }
+            logger.info("Replicated {} users from database '{}' ({}) in {} ms ({} bytes off-heap)", store.size(),
+                    dbName, delta ? "changes" : "full load", (System.nanoTime() - start) / 1_000_000,
+                    store.offHeapBytes());
+            writeSnapshot(dbName, configHash, watermark, store);
+        } catch (Exception e) {
+            logger.warn("Failed to refresh replica of database '{}': {}", dbName, e.getMessage());
+        }
+    }
+
+    /**
+     * Merges the rows whose change column moved since the mark before the current copy's into it.
+     *
+     * @return the merged copy, or {@code null} if rows were deleted and the database must be reloaded in full
+     */
+    private ColumnarUserStore loadChanges(String dbName, ReplicaSource current,
+                                          MultiDatabaseUserDao.ChangeMark mark) {
+        Map<String, User> changed = new LinkedHashMap<>();
+        userDao.streamChangedUsers(dbName, current.catchUpFrom(), mark.columnMax(),
+                user -> changed.put(user.getId(), user));
+        ColumnarUserStore.Builder builder = ColumnarUserStore.builder();
+        current.store().query(ALL_USERS, user -> {
+            if (!changed.containsKey(user.getId())) {
+                builder.add(user);
+            }
+        });
+        changed.values().forEach(builder::add);
+        if (builder.size() != mark.rowCount()) {
+            // Deleted rows leave no trace in the change column
+            logger.debug("Database '{}' has {} rows but the merged copy has {}, reloading it", dbName,
+                    mark.rowCount(), builder.size());
+            return null;
+        }
+        logger.debug("Merged {} changed users of database '{}'", changed.size(), dbName);
+        return builder.build();
+    }
+
+    /**
+     * Swaps in a loaded copy unless its database was reconfigured or removed since the load started.
+     */
+    private synchronized boolean publish(String dbName, long generation, ReplicaSource loaded) {
+        if (generations.getOrDefault(dbName, 0L) != generation || !userDao.getDatabaseNames().contains(dbName)) {
+            return false;
+        }
+        sources.put(dbName, loaded);
+        return true;
+    }
+
+    private void writeSnapshot(String dbName, String configHash, String watermark, ColumnarUserStore store) {
+        // Without a watermark a snapshot could never be trusted after a restart
+        if (snapshotStore == null || configHash == null || watermark == null) {
+            return;
+        }
+        try {
+            snapshotStore.write(dbName, configHash, watermark, store);
+        } catch (IOException e) {
+            logger.warn("Failed to write snapshot of database '{}': {}", dbName, e.getMessage());
+        }
+    }
+
+    private void deleteSnapshot(String dbName) {
+        try {
+            snapshotStore.delete(dbName);
+        } catch (IOException e) {
+            logger.warn("Failed to delete snapshot of database '{}': {}", dbName, e.getMessage());
+        }
+    }
+
+    /**
+     * @param rowCount    the number of rows at the watermark, {@code -1} if unknown
+     * @param columnMax   the change column value at the watermark, {@code null} unless changes are tracked by column
+     * @param catchUpFrom the change column value the next catch-up reads from, one mark behind {@code columnMax}
+     *                    after a catch-up, {@code null} if the database must be reloaded in full
+     * @param loadedAt    the {@link System#nanoTime} of the last full load
+     */
+    private record ReplicaSource(ColumnarUserStore store, String watermark, long rowCount, Object columnMax,
+                                 Object catchUpFrom, long loadedAt) {
+    }
+}
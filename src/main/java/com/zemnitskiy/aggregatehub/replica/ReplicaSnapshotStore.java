@@ -0,0 +1,238 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshot files of replicated databases, one file per database, used to restore the replica after a restart
+ * without re-reading every database.
+ * <p>
+ * A file holds the sections of a {@link ColumnarUserStore} as they are laid out in memory, preceded by a header:
+ * </p>
+ * <pre>
+ * int magic, int format version, [int length, UTF-8 bytes] database name, [int length, UTF-8 bytes] config hash,
+ * [int length, UTF-8 bytes] watermark, long CRC-32C of the section data, int section count,
+ * long[count] section offsets, long[count] section lengths, section data (8-byte aligned)
+ * </pre>
+ * Restoring maps every section of the file read-only and verifies the checksum over the mapped data. A snapshot
+ * written for a different configuration of the database (connection, table, mapping or change detection) or whose
+ * checksum does not match is rejected, so the database is reloaded instead. Files are written to a temporary file
+ * and atomically moved into place, so a crash while writing never leaves a truncated snapshot behind.
+ */
+final class ReplicaSnapshotStore {
+
+    private static final int MAGIC = 0x53534841; // "AHSS"
+    private static final int FORMAT_VERSION = 2;
+    private static final String EXTENSION = ".snapshot";
+    private static final int ALIGNMENT = 8;
+
+    private final Path directory;
+
+    ReplicaSnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Hashes the settings of a database that determine the rows of its snapshot.
+     *
+     * @param dbConfig the database configuration
+     * @return the hex-encoded hash
+     */
+    static String configHash(DatabaseConfig dbConfig) {
+        Map<String, String> mapping = dbConfig.mapping() != null ? new TreeMap<>(dbConfig.mapping()) : Map.of();
+        DatabaseListConfig.ChangeDetection changeDetection = dbConfig.changeDetectionOrDefault();
+        List<String> parts = List.of(String.valueOf(dbConfig.strategy()), String.valueOf(dbConfig.url()),
+                String.valueOf(dbConfig.user()), dbConfig.tableName(), mapping.toString(),
+                changeDetection.mode().name(), String.valueOf(changeDetection.column()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Writes the store of a database together with its configuration hash and the watermark it was loaded at,
+     * replacing any previous snapshot.
+     */
+    void write(String dbName, String configHash, String watermark, ColumnarUserStore store) throws IOException {
+        Files.createDirectories(directory);
+        List<ByteBuffer> sections = store.sections();
+        byte[] name = dbName.getBytes(StandardCharsets.UTF_8);
+        byte[] hash = configHash.getBytes(StandardCharsets.UTF_8);
+        byte[] mark = watermark.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer header = ByteBuffer
+                .allocate(align(6 * Integer.BYTES + name.length + hash.length + mark.length
+                        + Long.BYTES + 2 * Long.BYTES * sections.size()))
+                .order(Buffers.ORDER);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION);
+        header.putInt(name.length).put(name);
+        header.putInt(hash.length).put(hash);
+        header.putInt(mark.length).put(mark);
+        header.putLong(checksum(sections));
+        header.putInt(sections.size());
+        long offset = header.capacity();
+        for (ByteBuffer section : sections) {
+            header.putLong(offset);
+            offset = align(offset + section.capacity());
+        }
+        for (ByteBuffer section : sections) {
+            header.putLong(section.capacity());
+        }
+        header.clear();
+
+        Path file = fileOf(dbName);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            for (ByteBuffer section : sections) {
+                writeFully(channel, section.duplicate().clear());
+                writeFully(channel, ByteBuffer.allocate((int) (align(channel.position()) - channel.position())));
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps the snapshot of a database.
+     *
+     * @param configHash the {@link #configHash configuration hash} of the database as it is configured now
+     * @return the restored store and its watermark, or empty if there is no snapshot of the database
+     * @throws IOException if the snapshot cannot be read, was written by an incompatible version or for a different
+     *                     configuration, or its data does not match its checksum
+     */
+    Optional<Snapshot> read(String dbName, String configHash) throws IOException {
+        Path file = fileOf(dbName);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer fixed = readFully(channel, 0, 2 * Integer.BYTES);
+            if (fixed.getInt() != MAGIC || fixed.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format in " + file);
+            }
+            long position = 2 * Integer.BYTES;
+            String storedName = readString(channel, position);
+            position += Integer.BYTES + storedName.getBytes(StandardCharsets.UTF_8).length;
+            if (!storedName.equals(dbName)) {
+                throw new IOException("Snapshot " + file + " belongs to database '" + storedName + "'");
+            }
+            String storedHash = readString(channel, position);
+            position += Integer.BYTES + storedHash.getBytes(StandardCharsets.UTF_8).length;
+            if (!storedHash.equals(configHash)) {
+                throw new IOException("Snapshot " + file + " was written for a different configuration");
+            }
+            String watermark = readString(channel, position);
+            position += Integer.BYTES + watermark.getBytes(StandardCharsets.UTF_8).length;
+            long storedChecksum = readFully(channel, position, Long.BYTES).getLong();
+            position += Long.BYTES;
+
+            int count = readFully(channel, position, Integer.BYTES).getInt();
+            if (count != ColumnarUserStore.SECTIONS) {
+                throw new IOException("Unexpected section count " + count + " in " + file);
+            }
+            ByteBuffer table = readFully(channel, position + Integer.BYTES, 2 * Long.BYTES * count);
+            List<ByteBuffer> sections = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long offset = table.getLong(i * Long.BYTES);
+                long length = table.getLong((count + i) * Long.BYTES);
+                if (offset < 0 || length < 0 || offset + length > fileSize) {
+                    throw new IOException("Truncated snapshot " + file);
+                }
+                // Each section is mapped separately, which keeps every section under the 2 GB mapping limit
+                sections.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(Buffers.ORDER));
+            }
+            if (checksum(sections) != storedChecksum) {
+                throw new IOException("Checksum mismatch in snapshot " + file);
+            }
+            return Optional.of(new Snapshot(ColumnarUserStore.read(sections), watermark));
+        }
+    }
+
+    /**
+     * Deletes the snapshot of a database, if any.
+     */
+    void delete(String dbName) throws IOException {
+        Files.deleteIfExists(fileOf(dbName));
+    }
+
+    private Path fileOf(String dbName) {
+        return directory.resolve(dbName.replaceAll("[^A-Za-z0-9._-]", "_") + EXTENSION);
+    }
+
+    private static long checksum(List<ByteBuffer> sections) {
+        CRC32C crc = new CRC32C();
+        for (ByteBuffer section : sections) {
+            crc.update(section.duplicate().clear());
+        }
+        return crc.getValue();
+    }
+
+    private static String readString(FileChannel channel, long position) throws IOException {
+        int length = readFully(channel, position, Integer.BYTES).getInt();
+        if (length < 0 || position + Integer.BYTES + length > channel.size()) {
+            throw new IOException("Corrupt snapshot header");
+        }
+        return StandardCharsets.UTF_8.decode(readFully(channel, position + Integer.BYTES, length)).toString();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(Buffers.ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int align(int value) {
+        return (int) align((long) value);
+    }
+
+    private static long align(long value) {
+        return (value + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * A store restored from disk and the watermark of the database when it was written.
+     */
+    record Snapshot(ColumnarUserStore store, String watermark) {
+    }
+}
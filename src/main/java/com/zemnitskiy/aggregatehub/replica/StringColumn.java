@@ -0,0 +1,132 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Off-heap column of UTF-8 strings.
+ * <p>
+ * Backed by three buffers: {@code size + 1} int offsets into the byte buffer, the concatenated UTF-8 bytes,
+ * and a bitmap marking {@code null} values.
+ * </p>
+ */
+final class StringColumn {
+
+    private final ByteBuffer offsetBuffer;
+    private final ByteBuffer bytes;
+    private final ByteBuffer nulls;
+    private final IntBuffer offsets;
+    private final int size;
+
+    StringColumn(ByteBuffer offsetBuffer, ByteBuffer bytes, ByteBuffer nulls) {
+        this.offsetBuffer = offsetBuffer;
+        this.bytes = Buffers.view(bytes);
+        this.nulls = Buffers.view(nulls);
+        this.offsets = Buffers.ints(offsetBuffer);
+        this.size = offsets.limit() - 1;
+    }
+
+    static StringColumn read(List<ByteBuffer> sections, int from) {
+        return new StringColumn(sections.get(from), sections.get(from + 1), sections.get(from + 2));
+    }
+
+    List<ByteBuffer> buffers() {
+        return List.of(offsetBuffer, bytes, nulls);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isNull(int row) {
+        return (nulls.get(row >>> 3) & (1 << (row & 7))) != 0;
+    }
+
+    String get(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        int start = offsets.get(row);
+        byte[] value = new byte[offsets.get(row + 1) - start];
+        bytes.get(start, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    boolean equalsAt(int row, byte[] value) {
+        int start = offsets.get(row);
+        if (offsets.get(row + 1) - start != value.length || isNull(row)) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (bytes.get(start + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int hashAt(int row) {
+        int hash = 0;
+        for (int i = offsets.get(row), end = offsets.get(row + 1); i < end; i++) {
+            hash = 31 * hash + bytes.get(i);
+        }
+        return mix(hash);
+    }
+
+    long capacity() {
+        return offsetBuffer.capacity() + (long) bytes.capacity() + nulls.capacity();
+    }
+
+    static int hash(byte[] value) {
+        int hash = 0;
+        for (byte b : value) {
+            hash = 31 * hash + b;
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Accumulates values on the heap and copies them off-heap when built.
+     */
+    static final class Builder {
+
+        private byte[] data = new byte[64 * 1024];
+        private int length;
+        private int[] offsets = new int[1024];
+        private byte[] nulls = new byte[128];
+        private int size;
+
+        int add(String value) {
+            offsets = Buffers.grow(offsets, size + 2);
+            nulls = Buffers.grow(nulls, (size >>> 3) + 1);
+            if (value == null) {
+                nulls[size >>> 3] |= (byte) (1 << (size & 7));
+            } else {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                data = Buffers.grow(data, length + encoded.length);
+                System.arraycopy(encoded, 0, data, length, encoded.length);
+                length += encoded.length;
+            }
+            offsets[size + 1] = length;
+            return size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        StringColumn build() {
+            return new StringColumn(
+                    Buffers.direct(offsets, size + 1),
+                    Buffers.direct(data, length),
+                    Buffers.direct(nulls, (size + 7) >>> 3));
+        }
+    }
+}
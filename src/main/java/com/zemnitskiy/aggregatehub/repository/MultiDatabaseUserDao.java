@@ -1,20 +1,47 @@
 package com.zemnitskiy.aggregatehub.repository;
 
+import com.zemnitskiy.aggregatehub.cache.SourceChangedEvent;
+import com.zemnitskiy.aggregatehub.config.AggregationProperties;
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.ChangeDetection;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
 import com.zemnitskiy.aggregatehub.exception.AggregateHubDatabaseFetchException;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
+import com.zemnitskiy.aggregatehub.executor.QueryDeadline;
+import com.zemnitskiy.aggregatehub.limit.QueryConcurrencyLimiter;
 import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
+import com.zemnitskiy.aggregatehub.strategy.TextCondition;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object for User entities across multiple databases.
@@ -24,58 +51,498 @@ import java.util.concurrent.CompletableFuture;
 public class MultiDatabaseUserDao {
 
     private static final Logger logger = LoggerFactory.getLogger(MultiDatabaseUserDao.class);
-    private final Map<String, EntityManagerFactory> entityManagerFactoryMap;
+    private final DataSourceRegistry dataSourceRegistry;
+    private final QueryConcurrencyLimiter concurrencyLimiter;
+    private final int fetchSize;
+    private final boolean fuseColocated;
+    private final Set<List<String>> unfusable = ConcurrentHashMap.newKeySet();
 
-    public MultiDatabaseUserDao(Map<String, EntityManagerFactory> entityManagerFactoryMap) {
-        this.entityManagerFactoryMap = entityManagerFactoryMap;
+    public MultiDatabaseUserDao(DataSourceRegistry dataSourceRegistry, QueryConcurrencyLimiter concurrencyLimiter,
+                                AggregationProperties aggregationProperties) {
+        this.dataSourceRegistry = dataSourceRegistry;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.fetchSize = aggregationProperties.fetchSize();
+        this.fuseColocated = aggregationProperties.fuseColocated();
     }
 
     /**
-     * Fetches users from a specific database asynchronously based on the given filters.
+     * Streams users matching the given filter from a specific database.
+     * <p>
+     * Rows are read with a JDBC fetch size and handed to the consumer one by one on the calling thread,
+     * so the full result of the database is never held in memory at once. Drivers that only honour the fetch size
+     * inside a transaction are read in a read-only transaction (see
+     * {@link DatabaseStrategy#fetchesInBatchesOnlyInTransaction()}). The query holds a slot of the
+     * {@link QueryConcurrencyLimiter} until it is done.
+     * </p>
      *
      * @param dbName   the database name
-     * @param id       optional user ID to filter by
-     * @param name     optional username to filter by
-     * @param surname  optional user surname to filter by
-     * @param username optional username to filter by
-     * @return a CompletableFuture containing a list of users matching the criteria
+     * @param filter   the filter criteria
+     * @param consumer the consumer receiving each matching user
      */
-    public CompletableFuture<List<User>> fetchUsersFromDatabaseAsync(String dbName, String id, String name, String surname, String username) {
-        return CompletableFuture.supplyAsync(() -> {
-            EntityManagerFactory emf = entityManagerFactoryMap.get(dbName);
-            if (emf == null) {
-                logger.error("EntityManagerFactory not found for database '{}'", dbName);
-                throw new AggregateHubDatabaseFetchException("EntityManagerFactory not found for database: " + dbName);
+    public void streamUsers(String dbName, UserFilter filter, Consumer<User> consumer) {
+        try (QueryConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(dbName);
+             DataSourceRegistry.Lease lease = lease(dbName)) {
+            if (lease.userSource() != null) {
+                lease.userSource().streamUsers(filter, user -> {
+                    permit.responded();
+                    consumer.accept(user);
+                });
+            } else {
+                try (EntityManager em = lease.entityManagerFactory().createEntityManager()) {
+                    boolean transactional = lease.strategy().fetchesInBatchesOnlyInTransaction();
+                    if (transactional) {
+                        beginReadOnly(em);
+                    }
+                    try (Stream<User> users = fetchUsers(em, lease, filter)) {
+                        users.forEach(user -> {
+                            permit.responded();
+                            em.detach(user);
+                            consumer.accept(user);
+                        });
+                    } finally {
+                        if (transactional) {
+                            em.getTransaction().rollback();
+                        }
+                    }
+                }
             }
+            permit.responded();
+        } catch (AggregateHubDatabaseFetchException | AggregateHubOverloadedException | CancellationException ex) {
+            // A cancelled consumer stopped the read on purpose; it is not a database error
+            throw ex;
+        } catch (Exception ex) {
+            logger.error("Error fetching users from database '{}': {}", dbName, ex.getMessage(), ex);
+            throw new AggregateHubDatabaseFetchException("Error fetching users from database: " + dbName, ex);
+        }
+    }
 
-            try (EntityManager em = emf.createEntityManager()) {
-                return fetchUsers(em, id, name, surname, username);
-            } catch (Exception ex) {
-                logger.error("Error fetching users from database '{}': {}", dbName, ex.getMessage(), ex);
-                throw new AggregateHubDatabaseFetchException("Error fetching users from database: " + dbName, ex);
+    /**
+     * Groups databases that live on the same server, see {@link #streamColocatedUsers}. Databases are co-located
+     * when they share the strategy, the {@link DatabaseStrategy#serverKey server key} and the credentials.
+     *
+     * @param dbNames the databases to group
+     * @return the groups in order of their first database; databases read on their own form singleton groups
+     */
+    public List<List<String>> colocatedGroups(List<String> dbNames) {
+        if (!fuseColocated) {
+            return dbNames.stream().map(List::of).toList();
+        }
+        Map<Object, List<String>> groups = new LinkedHashMap<>();
+        for (String dbName : dbNames) {
+            Object key = dbName;
+            try (DataSourceRegistry.Lease lease = dataSourceRegistry.lease(dbName).orElse(null)) {
+                DatabaseStrategy strategy = lease != null ? lease.strategy() : null;
+                String server = strategy != null ? strategy.serverKey(lease.config()) : null;
+                if (server != null) {
+                    DatabaseConfig config = lease.config();
+                    key = List.of(config.strategy().toLowerCase(), server, String.valueOf(config.user()),
+                            String.valueOf(config.password()));
+                }
             }
-        });
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(dbName);
+        }
+
+        List<List<String>> result = new ArrayList<>();
+        for (List<String> group : groups.values()) {
+            if (group.size() > 1 && unfusable.contains(group)) {
+                group.forEach(dbName -> result.add(List.of(dbName)));
+            } else {
+                result.add(List.copyOf(group));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Streams users matching the filter from several databases on the same server with a single {@code UNION ALL}
+     * statement over one connection of the first database, tagging every row with its database.
+     * <p>
+     * The statement takes one slot of the first database's concurrency limit. If the server rejects it, e.g.
+     * because the mapped columns of the databases have incompatible types, the databases are read one by one
+     * instead and the group is not fused again until one of its databases is reconfigured.
+     * </p>
+     *
+     * @param dbNames  the databases, as grouped by {@link #colocatedGroups}
+     * @param filter   the filter criteria
+     * @param consumer the consumer receiving the database name and each matching user
+     */
+    public void streamColocatedUsers(List<String> dbNames, UserFilter filter, BiConsumer<String, User> consumer) {
+        if (dbNames.size() > 1 && streamFused(dbNames, filter, consumer)) {
+            return;
+        }
+        for (String dbName : dbNames) {
+            streamUsers(dbName, filter, user -> consumer.accept(dbName, user));
+        }
+    }
+
+    private boolean streamFused(List<String> dbNames, UserFilter filter, BiConsumer<String, User> consumer) {
+        List<DataSourceRegistry.Lease> leases = new ArrayList<>(dbNames.size());
+        try (QueryConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(dbNames.getFirst())) {
+            List<UnionAllQuery.Branch> branches = new ArrayList<>(dbNames.size());
+            for (String dbName : dbNames) {
+                DataSourceRegistry.Lease lease = lease(dbName);
+                leases.add(lease);
+                if (lease.strategy() == null) {
+                    return false;
+                }
+                DatabaseConfig config = lease.config();
+                branches.add(new UnionAllQuery.Branch(dbName, lease.strategy().qualifiedTableName(config),
+                        config.mapping(), lease.columnCollations()));
+            }
+            DatabaseStrategy strategy = leases.getFirst().strategy();
+            UnionAllQuery query = UnionAllQuery.of(branches, filter, strategy);
+
+            try (Connection connection = leases.getFirst().dataSource().getConnection()) {
+                boolean transactional = strategy.fetchesInBatchesOnlyInTransaction();
+                if (transactional) {
+                    // The pool restores read-only and autocommit when the connection is returned
+                    connection.setReadOnly(true);
+                    connection.setAutoCommit(false);
+                }
+                try (PreparedStatement statement = query.prepare(connection)) {
+                    statement.setFetchSize(fetchSize);
+                    statement.setQueryTimeout(QueryDeadline.timeoutSeconds());
+                    ResultSet resultSet;
+                    try {
+                        resultSet = statement.executeQuery();
+                    } catch (SQLException ex) {
+                        if (QueryDeadline.hasPassed()) {
+                            // Cancelled at the request's deadline, the statement itself is fine
+                            throw ex;
+                        }
+                        unfusable.add(dbNames);
+                        logger.warn("Could not read databases {} with one statement, reading them one by one: {}",
+                                dbNames, ex.getMessage());
+                        return false;
+                    }
+                    try (resultSet) {
+                        while (resultSet.next()) {
+                            permit.responded();
+                            consumer.accept(resultSet.getString(UnionAllQuery.SOURCE_COLUMN),
+                                    new User(resultSet.getString("id"), resultSet.getString("username"),
+                                            resultSet.getString("name"), resultSet.getString("surname")));
+                        }
+                    }
+                } finally {
+                    if (transactional) {
+                        connection.rollback();
+                    }
+                }
+            }
+            permit.responded();
+            return true;
+        } catch (AggregateHubDatabaseFetchException | AggregateHubOverloadedException | CancellationException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            logger.error("Error fetching users from databases {}: {}", dbNames, ex.getMessage(), ex);
+            throw new AggregateHubDatabaseFetchException("Error fetching users from databases: " + dbNames, ex);
+        } finally {
+            leases.forEach(DataSourceRegistry.Lease::close);
+        }
+    }
+
+    /**
+     * Fuses a group again after one of its databases was reconfigured, since the reason it failed may be gone.
+     *
+     * @param event the change event
+     */
+    @EventListener(condition = "#event.reconfigured")
+    public void onSourceReconfigured(SourceChangedEvent event) {
+        unfusable.removeIf(group -> group.contains(event.dbName()));
+    }
+
+    /**
+     * Tells whether the watermark of a database moves on every change of its users, so an unchanged watermark
+     * proves an unchanged result. That only holds for sources that version themselves: the checksum misses rows
+     * updated in place, and a change column misses transactions that commit a value below its current maximum,
+     * see {@link #tracksChangesByColumn}.
+     *
+     * @param dbName the database name
+     * @return {@code true} if the watermark of the database is exact
+     */
+    public boolean hasExactWatermark(String dbName) {
+        return dataSourceRegistry.lease(dbName)
+                .map(lease -> {
+                    try (lease) {
+                        return lease.userSource() != null;
+                    }
+                })
+                .orElse(false);
+    }
+
+    /**
+     * Tells whether a database detects changes with {@link ChangeDetection.Mode#COLUMN}. Its watermark moves on
+     * every change except one committed late: a transaction that wrote a column value below the maximum another
+     * transaction already committed leaves the watermark unchanged until the next change.
+     *
+     * @param dbName the database name
+     * @return {@code true} if the database detects changes by column
+     */
+    public boolean tracksChangesByColumn(String dbName) {
+        return dataSourceRegistry.lease(dbName)
+                .map(lease -> {
+                    try (lease) {
+                        return lease.userSource() == null
+                                && lease.config().changeDetectionOrDefault().mode() == ChangeDetection.Mode.COLUMN;
+                    }
+                })
+                .orElse(false);
     }
 
-    private List<User> fetchUsers(EntityManager em, String id, String name, String surname, String username) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
+    /**
+     * Reads a cheap watermark of a database's user table using the database's change detection settings:
+     * the row count plus either the highest ID or the highest value of the configured change column.
+     * The watermark changes whenever the detection mode can observe a change.
+     *
+     * @param dbName the database name
+     * @return the current watermark, or {@code null} if change detection is disabled for the database
+     */
+    public String fetchWatermark(String dbName) {
+        ChangeMark mark = fetchChangeMark(dbName);
+        return mark != null ? mark.watermark() : null;
+    }
+
+    /**
+     * Reads the watermark of a database like {@link #fetchWatermark}, together with the values it is built from.
+     *
+     * @param dbName the database name
+     * @return the current change mark, or {@code null} if change detection is disabled for the database
+     */
+    public ChangeMark fetchChangeMark(String dbName) {
+        try (QueryConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(dbName);
+             DataSourceRegistry.Lease lease = lease(dbName)) {
+            if (lease.userSource() != null) {
+                String watermark = lease.userSource().fetchWatermark();
+                permit.responded();
+                return watermark != null ? new ChangeMark(watermark, -1, null) : null;
+            }
+            return fetchChangeMark(lease, permit);
+        } catch (AggregateHubDatabaseFetchException | AggregateHubOverloadedException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            logger.error("Error reading watermark of database '{}': {}", dbName, ex.getMessage(), ex);
+            throw new AggregateHubDatabaseFetchException("Error reading watermark of database: " + dbName, ex);
+        }
+    }
+
+    private ChangeMark fetchChangeMark(DataSourceRegistry.Lease lease, QueryConcurrencyLimiter.Permit permit) {
+        try (EntityManager em = lease.entityManagerFactory().createEntityManager()) {
+            DatabaseConfig dbConfig = lease.config();
+            ChangeDetection changeDetection = dbConfig.changeDetectionOrDefault();
+            if (changeDetection.mode() == ChangeDetection.Mode.NONE) {
+                permit.responded();
+                return null;
+            }
+
+            boolean column = changeDetection.mode() == ChangeDetection.Mode.COLUMN;
+            DatabaseStrategy strategy = lease.strategy();
+            Object[] result = column
+                    ? (Object[]) em.createNativeQuery("select count(*), max("
+                            + strategy.quoteIdentifier(changeDetection.column()) + ") from "
+                            + strategy.quoteIdentifier(dbConfig.tableName())).getSingleResult()
+                    : em.createQuery("select count(u), max(u.id) from User u", Object[].class).getSingleResult();
+            permit.responded();
+            return new ChangeMark(result[0] + ":" + result[1], ((Number) result[0]).longValue(),
+                    column ? result[1] : null);
+        }
+    }
+
+    /**
+     * Streams the users whose change column moved into a range since an earlier {@link ChangeMark}. Only
+     * available for databases detecting changes with {@link ChangeDetection.Mode#COLUMN}.
+     * <p>
+     * Like {@link #streamUsers}, rows are read with the JDBC fetch size, in a read-only transaction for drivers that
+     * only honour it inside one, and with a query timeout from the {@link QueryDeadline} of the calling thread.
+     * </p>
+     *
+     * @param dbName   the database name
+     * @param after    the change column value of the earlier mark, excluded
+     * @param upTo     the change column value of the current mark, included
+     * @param consumer the consumer receiving each changed user
+     */
+    public void streamChangedUsers(String dbName, Object after, Object upTo, Consumer<User> consumer) {
+        try (QueryConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(dbName);
+             DataSourceRegistry.Lease lease = lease(dbName)) {
+            DatabaseConfig dbConfig = lease.config();
+            ChangeDetection changeDetection = dbConfig.changeDetectionOrDefault();
+            if (lease.dataSource() == null || changeDetection.mode() != ChangeDetection.Mode.COLUMN) {
+                throw new IllegalStateException("Database does not track changes by column: " + dbName);
+            }
+            DatabaseStrategy strategy = lease.strategy();
+            UnionAllQuery.Branch table = new UnionAllQuery.Branch(dbName, dbConfig.tableName(), dbConfig.mapping());
+            String changeColumn = strategy.quoteIdentifier(changeDetection.column());
+            String sql = "select " + Stream.of("id", "username", "name", "surname")
+                    .map(column -> strategy.quoteIdentifier(table.column(column)))
+                    .collect(Collectors.joining(", "))
+                    + " from " + strategy.quoteIdentifier(table.table())
+                    + " where " + changeColumn + " > ? and " + changeColumn + " <= ?";
+            try (Connection connection = lease.dataSource().getConnection()) {
+                boolean transactional = strategy.fetchesInBatchesOnlyInTransaction();
+                if (transactional) {
+                    // The pool restores read-only and autocommit when the connection is returned
+                    connection.setReadOnly(true);
+                    connection.setAutoCommit(false);
+                }
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setFetchSize(fetchSize);
+                    statement.setQueryTimeout(QueryDeadline.timeoutSeconds());
+                    statement.setObject(1, after);
+                    statement.setObject(2, upTo);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            permit.responded();
+                            consumer.accept(new User(resultSet.getString(1), resultSet.getString(2),
+                                    resultSet.getString(3), resultSet.getString(4)));
+                        }
+                    }
+                } finally {
+                    if (transactional) {
+                        connection.rollback();
+                    }
+                }
+            }
+            permit.responded();
+        } catch (AggregateHubDatabaseFetchException | AggregateHubOverloadedException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            logger.error("Error fetching changed users from database '{}': {}", dbName, ex.getMessage(), ex);
+            throw new AggregateHubDatabaseFetchException("Error fetching changed users from database: " + dbName, ex);
+        }
+    }
+
+    /**
+     * Opens connections in the pool of a database by holding them all at once, so later queries do not pay for
+     * the connection handshake. Does nothing for sources that are not relational databases.
+     *
+     * @param dbName the database name
+     * @param count  the number of connections to open
+     */
+    public void openConnections(String dbName, int count) {
+        List<Connection> connections = new ArrayList<>(count);
+        try (DataSourceRegistry.Lease lease = lease(dbName)) {
+            if (lease.dataSource() == null) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                connections.add(lease.dataSource().getConnection());
+            }
+        } catch (SQLException ex) {
+            logger.error("Error opening connections to database '{}': {}", dbName, ex.getMessage(), ex);
+            throw new AggregateHubDatabaseFetchException("Error opening connections to database: " + dbName, ex);
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException ex) {
+                    logger.warn("Failed to return a connection of database '{}': {}", dbName, ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a read-only transaction, so the driver reads the result through a cursor. The pool restores
+     * read-only and autocommit when the session returns the connection.
+     */
+    private static void beginReadOnly(EntityManager em) {
+        em.getTransaction().begin();
+        em.unwrap(Session.class).doWork(connection -> connection.setReadOnly(true));
+    }
+
+    private Stream<User> fetchUsers(EntityManager em, DataSourceRegistry.Lease lease, UserFilter filter) {
+        DatabaseStrategy strategy = lease.strategy();
+        UnionAllQuery.Branch table = new UnionAllQuery.Branch(lease.config().name(), lease.config().tableName(),
+                lease.config().mapping(), lease.columnCollations());
+        HibernateCriteriaBuilder cb = em.unwrap(Session.class).getCriteriaBuilder();
         var cq = cb.createQuery(User.class);
         Root<User> root = cq.from(User.class);
 
         List<Predicate> predicates = new ArrayList<>();
-        if (id != null) predicates.add(cb.equal(root.get("id"), id));
-        if (name != null) predicates.add(cb.equal(root.get("name"), name));
-        if (surname != null) predicates.add(cb.equal(root.get("surname"), surname));
-        if (username != null) predicates.add(cb.equal(root.get("username"), username));
+        if (filter.id() != null) predicates.add(cb.equal(root.get("id"), filter.id()));
+        addTextPredicates(predicates, cb, strategy, root.get("name"), filter.name(), filter,
+                table.collation("name"));
+        addTextPredicates(predicates, cb, strategy, root.get("surname"), filter.surname(), filter,
+                table.collation("surname"));
+        addTextPredicates(predicates, cb, strategy, root.get("username"), filter.username(), filter,
+                table.collation("username"));
 
         if (!predicates.isEmpty()) {
             cq.where(cb.and(predicates.toArray(new Predicate[0])));
         }
 
-        return em.createQuery(cq).getResultList();
+        TypedQuery<User> query = em.createQuery(cq)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        int timeout = QueryDeadline.timeoutSeconds();
+        if (timeout > 0) {
+            query.setHint(HibernateHints.HINT_TIMEOUT, timeout);
+        }
+        if (filter.limit() != null) {
+            query.setMaxResults(filter.limit());
+        }
+        return query.getResultStream();
+    }
+
+    private static void addTextPredicates(List<Predicate> predicates, HibernateCriteriaBuilder cb,
+                                          DatabaseStrategy strategy, Expression<String> column, String value,
+                                          UserFilter filter, String columnCollation) {
+        if (value == null) {
+            return;
+        }
+        for (TextCondition condition : strategy.textConditions(value, filter.prefix(), filter.ignoreCase(),
+                columnCollation)) {
+            Expression<String> compared = condition.collation() != null
+                    ? cb.collate(column, condition.collation())
+                    : column;
+            if (condition.lowerCase()) {
+                compared = cb.lower(compared);
+            }
+            predicates.add(condition.like()
+                    ? cb.like(compared, condition.value(), TextCondition.ESCAPE)
+                    : cb.equal(compared, condition.value()));
+        }
     }
 
     public List<String> getDatabaseNames() {
-        return new ArrayList<>(entityManagerFactoryMap.keySet());
+        return dataSourceRegistry.getDatabaseNames();
+    }
+
+    /**
+     * Returns the current configuration of every database.
+     *
+     * @return the database configurations
+     */
+    public List<DatabaseConfig> getDatabaseConfigs() {
+        return dataSourceRegistry.getDatabaseConfigs();
+    }
+
+    /**
+     * Returns the current configuration of a database.
+     *
+     * @param dbName the database name
+     * @return the configuration, or empty if no such database is registered
+     */
+    public Optional<DatabaseConfig> getDatabaseConfig(String dbName) {
+        return getDatabaseConfigs().stream()
+                .filter(dbConfig -> dbConfig.name().equals(dbName))
+                .findFirst();
+    }
+
+    /**
+     * A watermark with the values it is built from.
+     *
+     * @param watermark the watermark
+     * @param rowCount  the number of rows, or {@code -1} if the source does not report it
+     * @param columnMax the highest value of the change column in {@link ChangeDetection.Mode#COLUMN} mode,
+     *                  {@code null} otherwise
+     */
+    public record ChangeMark(String watermark, long rowCount, Object columnMax) {
+    }
+
+    private DataSourceRegistry.Lease lease(String dbName) {
+        return dataSourceRegistry.lease(dbName).orElseThrow(() -> {
+            logger.error("EntityManagerFactory not found for database '{}'", dbName);
+            return new AggregateHubDatabaseFetchException("EntityManagerFactory not found for database: " + dbName);
+        });
     }
 }
\ No newline at end of file
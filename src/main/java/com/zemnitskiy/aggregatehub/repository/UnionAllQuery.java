@@ -0,0 +1,141 @@
+package com.zemnitskiy.aggregatehub.repository;
+
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
+import com.zemnitskiy.aggregatehub.strategy.TextCondition;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A single statement reading the users of several databases on the same server, one {@code UNION ALL} branch per
+ * database.
+ * <p>
+ * Each branch selects from the table of its database with that database's column mapping, aliased to the logical
+ * columns {@code id, username, name, surname}, and is tagged with the database name in a {@code source_name}
+ * column. The filter is applied in every branch with bind parameters, in the form the strategy of the server
+ * answers from an index given the collations of that database's columns, so each database can use its own
+ * indexes. A limit applies to the whole statement.
+ * </p>
+ */
+final class UnionAllQuery {
+
+    static final String SOURCE_COLUMN = "source_name";
+    private static final String[] COLUMNS = {"id", "username", "name", "surname"};
+
+    private final String sql;
+    private final List<String> binds;
+
+    private UnionAllQuery(String sql, List<String> binds) {
+        this.sql = sql;
+        this.binds = binds;
+    }
+
+    /**
+     * Builds the statement.
+     *
+     * @param branches the databases to read, in the order their branches appear
+     * @param filter   the filter applied in every branch
+     * @param strategy the strategy of the shared server
+     * @return the statement
+     */
+    static UnionAllQuery of(List<Branch> branches, UserFilter filter, DatabaseStrategy strategy) {
+        String[] texts = {filter.username(), filter.name(), filter.surname()};
+        StringBuilder sql = new StringBuilder();
+        List<String> binds = new ArrayList<>();
+        for (Branch branch : branches) {
+            if (!sql.isEmpty()) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT '").append(branch.source().replace("'", "''")).append("' AS ").append(SOURCE_COLUMN);
+            for (String column : COLUMNS) {
+                sql.append(", ").append(branch.column(column)).append(" AS ").append(column);
+            }
+            sql.append(" FROM ").append(branch.table());
+
+            List<String> conditions = new ArrayList<>();
+            if (filter.id() != null) {
+                conditions.add(branch.column("id") + " = ?");
+                binds.add(filter.id());
+            }
+            for (int i = 0; i < texts.length; i++) {
+                if (texts[i] == null) {
+                    continue;
+                }
+                String column = COLUMNS[i + 1];
+                for (TextCondition condition : strategy.textConditions(texts[i], filter.prefix(),
+                        filter.ignoreCase(), branch.collation(column))) {
+                    conditions.add(condition.toSql(branch.column(column)));
+                    binds.add(condition.value());
+                }
+            }
+            if (!conditions.isEmpty()) {
+                sql.append(" WHERE ").append(String.join(" AND ", conditions));
+            }
+        }
+        if (filter.limit() != null) {
+            sql.append(" LIMIT ").append(filter.limit().intValue());
+        }
+        return new UnionAllQuery(sql.toString(), List.copyOf(binds));
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    List<String> binds() {
+        return binds;
+    }
+
+    /**
+     * Prepares the statement on a connection and binds the filter values.
+     *
+     * @param connection the connection to the shared server
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            for (int i = 0; i < binds.size(); i++) {
+                statement.setString(i + 1, binds.get(i));
+            }
+            return statement;
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    /**
+     * One database of the statement.
+     *
+     * @param source     the database name, returned in {@code source_name}
+     * @param table      the table, qualified so it resolves on the shared connection
+     * @param mapping    the physical column of each logical column; unmapped columns keep their logical name
+     * @param collations the collation of each physical column, keyed by lower-case column name
+     */
+    record Branch(String source, String table, Map<String, String> mapping, Map<String, String> collations) {
+
+        Branch(String source, String table, Map<String, String> mapping) {
+            this(source, table, mapping, Map.of());
+        }
+
+        String column(String logicalName) {
+            String mapped = mapping != null ? mapping.get(logicalName) : null;
+            return mapped != null && !mapped.isBlank() ? mapped : logicalName;
+        }
+
+        /**
+         * Returns the collation of the physical column behind a logical column, or {@code null} if unknown.
+         */
+        String collation(String logicalName) {
+            return collations.get(column(logicalName).toLowerCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.zemnitskiy.aggregatehub.schema;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.config.SchemaProperties;
+import com.zemnitskiy.aggregatehub.model.User;
+import org.hibernate.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decides how Hibernate checks the user table of a database when its EntityManagerFactory is built.
+ * <p>
+ * A full {@code hbm2ddl} validation or update introspects the schema through many catalog queries on every start.
+ * In {@link SchemaProperties.Mode#VERIFY} mode the table is instead fingerprinted with a single catalog query
+ * over its columns, together with the table name and column mapping of the database and a hash of the
+ * {@link User} entity mapping and Hibernate version. When the fingerprint equals the one recorded after the last
+ * successful check, Hibernate skips schema management entirely; otherwise the configured fallback runs and the new
+ * fingerprint is recorded once the EntityManagerFactory was built. Fingerprints are only recorded in a configured
+ * directory, which has to outlive redeploys; without one the fallback runs on every start.
+ * </p>
+ */
+@Component
+public class SchemaVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaVerifier.class);
+    private static final String EXTENSION = ".fingerprint";
+
+    private final SchemaProperties properties;
+    private final String entityMapping;
+
+    @Autowired
+    public SchemaVerifier(SchemaProperties properties) {
+        this(properties, entityMapping(User.class));
+    }
+
+    SchemaVerifier(SchemaProperties properties, String entityMapping) {
+        this.properties = properties;
+        this.entityMapping = entityMapping;
+        if (properties.mode() == SchemaProperties.Mode.VERIFY && properties.directory() == null) {
+            logger.warn("aggregate-hub.schema.directory is not set, so schema fingerprints cannot be recorded and "
+                    + "hbm2ddl {} runs on every start", properties.fallback().name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Returns the {@code hibernate.hbm2ddl.auto} action for a database.
+     *
+     * @param dbConfig   the database configuration
+     * @param dataSource the pool of the database
+     * @return {@code none}, {@code validate} or {@code update}
+     */
+    public String schemaAction(DatabaseConfig dbConfig, DataSource dataSource) {
+        return switch (properties.mode()) {
+            case NONE -> "none";
+            case VALIDATE -> "validate";
+            case UPDATE -> "update";
+            case VERIFY -> {
+                String fallback = properties.fallback().name().toLowerCase(Locale.ROOT);
+                if (properties.directory() == null) {
+                    yield fallback;
+                }
+                try {
+                    String fingerprint = fingerprint(dbConfig, dataSource);
+                    if (fingerprint.equals(recorded(dbConfig.name()))) {
+                        logger.info("Schema of database '{}' is unchanged, skipping schema management", dbConfig.name());
+                        yield "none";
+                    }
+                    logger.info("Schema fingerprint of database '{}' changed, running hbm2ddl {}", dbConfig.name(), fallback);
+                } catch (SQLException | IOException e) {
+                    logger.warn("Failed to verify the schema of database '{}', running hbm2ddl {}: {}",
+                            dbConfig.name(), fallback, e.getMessage());
+                }
+                yield fallback;
+            }
+        };
+    }
+
+    /**
+     * Records the fingerprint of a database after its EntityManagerFactory was built, so the next start can
+     * skip schema management while it stays the same.
+     *
+     * @param dbConfig   the database configuration
+     * @param dataSource the pool of the database
+     * @param action     the action returned by {@link #schemaAction}
+     */
+    public void verified(DatabaseConfig dbConfig, DataSource dataSource, String action) {
+        if (properties.mode() != SchemaProperties.Mode.VERIFY || properties.directory() == null
+                || action.equals("none")) {
+            return;
+        }
+        try {
+            // Fingerprinted again, since an update may have changed the table
+            String fingerprint = fingerprint(dbConfig, dataSource);
+            Files.createDirectories(properties.directory());
+            Path file = fileOf(dbConfig.name());
+            Path temporary = properties.directory().resolve(file.getFileName() + ".tmp");
+            Files.writeString(temporary, fingerprint, StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SQLException | IOException e) {
+            logger.warn("Failed to record the schema fingerprint of database '{}': {}", dbConfig.name(), e.getMessage());
+        }
+    }
+
+    private String recorded(String dbName) throws IOException {
+        Path file = fileOf(dbName);
+        return Files.isRegularFile(file) ? Files.readString(file, StandardCharsets.UTF_8).trim() : null;
+    }
+
+    private Path fileOf(String dbName) {
+        return properties.directory().resolve(dbName.replaceAll("[^A-Za-z0-9._-]", "_") + EXTENSION);
+    }
+
+    /**
+     * Describes how an entity is mapped: its annotations and the name, type and annotations of every persistent
+     * field, together with the Hibernate version that interprets them.
+     *
+     * @param entity the entity class
+     * @return the description, which changes whenever the mapping does
+     */
+    static String entityMapping(Class<?> entity) {
+        StringBuilder mapping = new StringBuilder(Version.getVersionString()).append(' ').append(entity.getName());
+        Arrays.stream(entity.getAnnotations()).map(Annotation::toString).sorted()
+                .forEach(annotation -> mapping.append(' ').append(annotation));
+        Arrays.stream(entity.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()))
+                .sorted(Comparator.comparing(Field::getName))
+                .forEach(field -> {
+                    mapping.append(';').append(field.getName()).append(':').append(field.getGenericType().getTypeName());
+                    Arrays.stream(field.getAnnotations()).map(Annotation::toString).sorted()
+                            .forEach(annotation -> mapping.append(' ').append(annotation));
+                });
+        return mapping.toString();
+    }
+
+    /**
+     * Hashes the entity mapping, the table name, the column mapping and every column of the table as reported by
+     * the catalog.
+     */
+    private String fingerprint(DatabaseConfig dbConfig, DataSource dataSource) throws SQLException {
+        List<String> parts = new ArrayList<>();
+        parts.add(entityMapping);
+        parts.add(dbConfig.strategy());
+        parts.add(dbConfig.tableName());
+        Map<String, String> mapping = dbConfig.mapping() != null ? new TreeMap<>(dbConfig.mapping()) : Map.of();
+        parts.add(mapping.toString());
+
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = dbConfig.tableName();
+            String catalogTable = metaData.storesLowerCaseIdentifiers() ? table.toLowerCase(Locale.ROOT)
+                    : metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT)
+                    : table;
+            List<String> columns = new ArrayList<>();
+            try (ResultSet rows = metaData.getColumns(connection.getCatalog(), connection.getSchema(), catalogTable, null)) {
+                while (rows.next()) {
+                    columns.add(rows.getString("COLUMN_NAME") + " " + rows.getString("TYPE_NAME") + "("
+                            + rows.getInt("COLUMN_SIZE") + ") " + rows.getString("IS_NULLABLE"));
+                }
+            }
+            columns.sort(null);
+            parts.addAll(columns);
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
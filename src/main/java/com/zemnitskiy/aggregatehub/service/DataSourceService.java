@@ -0,0 +1,68 @@
+package com.zemnitskiy.aggregatehub.service;
+
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubNotFoundException;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Service for adding, updating and removing databases at runtime.
+ */
+@Service
+public class DataSourceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceService.class);
+
+    private final DataSourceRegistry dataSourceRegistry;
+
+    public DataSourceService(DataSourceRegistry dataSourceRegistry) {
+        this.dataSourceRegistry = dataSourceRegistry;
+    }
+
+    /**
+     * Returns the configuration of every registered database.
+     *
+     * @return the database configurations
+     */
+    public List<DatabaseConfig> getDataSources() {
+        return dataSourceRegistry.getDatabaseConfigs();
+    }
+
+    /**
+     * Adds a database, or replaces the database of the same name. The new pool is built while queries keep
+     * using the current one; the replaced pool is closed once its running queries are done.
+     *
+     * @param name     the database name
+     * @param dbConfig the database configuration; its name is ignored in favour of {@code name}
+     * @return the registered configuration
+     * @throws AggregateHubServiceException if the database cannot be configured
+     */
+    public DatabaseConfig putDataSource(String name, DatabaseConfig dbConfig) {
+        DatabaseConfig named = new DatabaseConfig(name, dbConfig.strategy(), dbConfig.url(), dbConfig.user(),
+                dbConfig.table(), dbConfig.password(), dbConfig.mapping(), dbConfig.changeDetection());
+        try {
+            dataSourceRegistry.put(named);
+            return named;
+        } catch (RuntimeException e) {
+            logger.error("Failed to configure database '{}': {}", name, e.getMessage(), e);
+            throw new AggregateHubServiceException("Failed to configure database " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Removes a database. Queries already reading it finish before its pool is closed.
+     *
+     * @param name the database name
+     * @throws AggregateHubNotFoundException if no such database is registered
+     */
+    public void removeDataSource(String name) {
+        if (!dataSourceRegistry.remove(name)) {
+            throw new AggregateHubNotFoundException("Database not found: " + name);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.zemnitskiy.aggregatehub.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zemnitskiy.aggregatehub.config.ExportProperties;
+import com.zemnitskiy.aggregatehub.encoding.UserJson;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubNotFoundException;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
+import com.zemnitskiy.aggregatehub.executor.SourceExecutor;
+import com.zemnitskiy.aggregatehub.model.ExportFormat;
+import com.zemnitskiy.aggregatehub.model.ExportJob;
+import com.zemnitskiy.aggregatehub.model.ExportRequest;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service running asynchronous exports of users from all databases into gzip-compressed files.
+ * <p>
+ * Every database is written in parallel to its own gzip member; the members are then concatenated
+ * into a single file, which is a valid multi-member gzip stream. Finished files stay on disk for the configured
+ * retention, so they can be downloaded repeatedly without querying the databases again.
+ * </p>
+ * Jobs beyond the concurrency limit wait in a bounded queue; submissions beyond it are rejected. Deleting a
+ * job that is still pending or running cancels it, and the job removes whatever it already wrote.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+    private static final String CSV_HEADER = "id,username,name,surname\n";
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(30);
+    // Finished files are named <job id>.<format>.gz; parts and temporary files are left over by crashed jobs
+    private static final Pattern EXPORT_FILE = Pattern.compile("[0-9a-f-]{36}(\\.[a-z]+\\.gz(\\.tmp)?|-.+\\.part)");
+
+    private final MultiDatabaseUserDao userDao;
+    private final SourceExecutor sourceExecutor;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final Duration retention;
+    private final ExecutorService jobExecutor;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    public ExportService(MultiDatabaseUserDao userDao, ObjectMapper objectMapper, ExportProperties exportProperties,
+                         SourceExecutor sourceExecutor) {
+        this.userDao = userDao;
+        this.sourceExecutor = sourceExecutor;
+        this.objectMapper = objectMapper;
+        this.directory = exportProperties.directory();
+        this.retention = exportProperties.retention();
+        this.jobExecutor = new ThreadPoolExecutor(exportProperties.maxConcurrentJobs(),
+                exportProperties.maxConcurrentJobs(), 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(exportProperties.maxPendingJobs()),
+                Thread.ofPlatform().name("export-job-", 0).daemon().factory());
+    }
+
+    /**
+     * Submits a new export job.
+     *
+     * @param request the filter and format of the export
+     * @return the submitted job
+     * @throws AggregateHubOverloadedException if too many jobs are already waiting
+     */
+    public ExportJob submit(ExportRequest request) {
+        String id = UUID.randomUUID().toString();
+        ExportFormat format = request.format() != null ? request.format() : ExportFormat.NDJSON;
+        ExportJob job = new ExportJob(id, request.toFilter(), format, directory.resolve(id + "." + format.extension() + ".gz"));
+        jobs.put(id, job);
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            throw new AggregateHubOverloadedException("Too many export jobs are waiting, try again later", RETRY_AFTER);
+        }
+        logger.info("Submitted export job {} in format {}", id, format);
+        return job;
+    }
+
+    /**
+     * Returns an export job by its identifier.
+     *
+     * @param id the job identifier
+     * @return the job
+     * @throws AggregateHubNotFoundException if no such job exists
+     */
+    public ExportJob getJob(String id) {
+        ExportJob job = jobs.get(id);
+        if (job == null) {
+            throw new AggregateHubNotFoundException("Export job not found: " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Returns all known export jobs.
+     *
+     * @return the jobs
+     */
+    public Collection<ExportJob> getJobs() {
+        return jobs.values();
+    }
+
+    /**
+     * Removes an export job and deletes its file. A pending or running job is cancelled and deletes the file it
+     * is writing itself.
+     *
+     * @param id the job identifier
+     * @throws AggregateHubNotFoundException if no such job exists
+     */
+    public void delete(String id) {
+        ExportJob job = jobs.remove(id);
+        if (job == null) {
+            throw new AggregateHubNotFoundException("Export job not found: " + id);
+        }
+        job.cancel();
+        deleteQuietly(job.getFile());
+    }
+
+    /**
+     * Removes finished jobs older than the retention with their files, and export files of the directory that no
+     * job refers to anymore, e.g. those of a previous run.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${aggregate-hub.export.sweep-interval:5m}")
+    public void sweepExpired() {
+        Instant expiry = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.getCompletedAt() == null || job.getCompletedAt().isAfter(expiry)) {
+                return false;
+            }
+            deleteQuietly(job.getFile());
+            logger.info("Export job {} expired", job.getId());
+            return true;
+        });
+
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> EXPORT_FILE.matcher(file.getFileName().toString()).matches())
+                    .filter(file -> !jobs.containsKey(file.getFileName().toString().substring(0, 36)))
+                    .filter(file -> modifiedBefore(file, expiry))
+                    .forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            logger.warn("Failed to list export directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    private void run(ExportJob job) {
+        if (job.isCancelled()) {
+            return;
+        }
+        job.markRunning();
+        List<Path> parts = new ArrayList<>();
+        AtomicLong rowCount = new AtomicLong();
+        try {
+            Files.createDirectories(directory);
+            if (job.getFormat() == ExportFormat.CSV) {
+                Path header = createPart(job, "header");
+                parts.add(header);
+                try (Writer writer = gzipWriter(header)) {
+                    writer.write(CSV_HEADER);
+                }
+            }
+
+            List<String> databaseNames = userDao.getDatabaseNames();
+            for (int i = 0; i < databaseNames.size(); i++) {
+                parts.add(createPart(job, "source" + i));
+            }
+
+            try (SourceExecutor.Fanout fanout = sourceExecutor.fanout()) {
+                int offset = parts.size() - databaseNames.size();
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < databaseNames.size(); i++) {
+                    String dbName = databaseNames.get(i);
+                    Path part = parts.get(offset + i);
+                    futures.add(CompletableFuture.runAsync(
+                            () -> rowCount.addAndGet(writePart(job, dbName, part)),
+                            fanout.executorFor(dbName)));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            }
+
+            long size = concatenate(parts, job.getFile());
+            job.markCompleted(rowCount.get(), size);
+            logger.info("Export job {} completed: {} users, {} bytes", job.getId(), rowCount.get(), size);
+        } catch (Exception e) {
+            if (job.isCancelled()) {
+                logger.info("Export job {} was cancelled", job.getId());
+            } else {
+                logger.error("Export job {} failed: {}", job.getId(), e.getMessage(), e);
+                job.markFailed(e.getMessage());
+            }
+        } finally {
+            parts.forEach(this::deleteQuietly);
+            if (job.isCancelled()) {
+                // The job was deleted while running, possibly after its file was already written
+                deleteQuietly(job.getFile());
+                deleteQuietly(job.getFile().resolveSibling(job.getFile().getFileName() + ".tmp"));
+            }
+        }
+    }
+
+    private long writePart(ExportJob job, String dbName, Path part) {
+        AtomicLong rows = new AtomicLong();
+        UserFilter filter = job.getFilter();
+        try (Writer writer = gzipWriter(part)) {
+            if (job.getFormat() == ExportFormat.CSV) {
+                userDao.streamUsers(dbName, filter, user -> {
+                    checkNotCancelled(job);
+                    writeCsvRow(writer, user);
+                    rows.incrementAndGet();
+                });
+            } else {
+                try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+                    generator.setRootValueSeparator(null);
+                    userDao.streamUsers(dbName, filter, user -> {
+                        checkNotCancelled(job);
+                        writeJsonLine(generator, user);
+                        rows.incrementAndGet();
+                    });
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write export for database: " + dbName, e);
+        }
+        logger.debug("Exported {} users from database '{}'", rows.get(), dbName);
+        return rows.get();
+    }
+
+    private static void checkNotCancelled(ExportJob job) {
+        if (job.isCancelled()) {
+            throw new CancellationException("Export job " + job.getId() + " was deleted");
+        }
+    }
+
+    private void writeCsvRow(Writer writer, User user) {
+        try {
+            writer.write(csvValue(user.getId()));
+            writer.write(',');
+            writer.write(csvValue(user.getUsername()));
+            writer.write(',');
+            writer.write(csvValue(user.getName()));
+            writer.write(',');
+            writer.write(csvValue(user.getSurname()));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeJsonLine(JsonGenerator generator, User user) {
+        try {
+            UserJson.write(generator, user);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csvValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Concatenates the gzip members into the target file using channel-to-channel transfers.
+     */
+    private long concatenate(List<Path> parts, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path part : parts) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(target);
+    }
+
+    private Path createPart(ExportJob job, String suffix) throws IOException {
+        return Files.createTempFile(directory, job.getId() + "-" + suffix + "-", ".part");
+    }
+
+    private static Writer gzipWriter(Path path) throws IOException {
+        OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(path)), 64 * 1024);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static boolean modifiedBefore(Path file, Instant instant) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(instant);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete export file {}: {}", path, e.getMessage());
+        }
+    }
+}
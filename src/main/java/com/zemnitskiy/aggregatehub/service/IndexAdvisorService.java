@@ -0,0 +1,311 @@
+package com.zemnitskiy.aggregatehub.service;
+
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.IndexAdvisorProperties;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubNotFoundException;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
+import com.zemnitskiy.aggregatehub.model.IndexAdvice;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
+import com.zemnitskiy.aggregatehub.strategy.RowCountQuery;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that the columns behind the {@code /users} filters are indexed in every database, and creates
+ * missing indexes on request.
+ * <p>
+ * Columns are resolved through the Hibernate mapping of each database, so the check sees the same physical
+ * table and column names the queries use after {@code table} and {@code mapping} were applied. A column counts
+ * as indexed when it is the leading column of any index, since only then can a filter on it use the index.
+ * Where a plain index cannot serve prefix and case-insensitive criteria (see
+ * {@link DatabaseStrategy#textSearchIndexDefinition}), the {@code username}, {@code name} and {@code surname}
+ * columns also need an index leading with the expression those criteria compare. Expressions are matched as the
+ * catalog reports them, without casts and operator classes. Indexes the database does not use, such as those left
+ * invalid by a failed online build (see {@link DatabaseStrategy#invalidIndexes}), do not count, and are dropped
+ * before an index of the same name is created again.
+ * </p>
+ */
+@Service
+public class IndexAdvisorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexAdvisorService.class);
+    private static final List<String> FILTER_FIELDS = List.of("id", "username", "name", "surname");
+    private static final List<String> TEXT_FIELDS = List.of("username", "name", "surname");
+    private static final Pattern OPERATOR_CLASS = Pattern.compile("\\s+\\w+_ops$");
+    private static final Pattern CAST = Pattern.compile("::[\\w ]+");
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\s\"()]");
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final int MAX_INDEX_NAME_LENGTH = 63;
+
+    private final DataSourceRegistry dataSourceRegistry;
+    private final IndexAdvisorProperties properties;
+
+    public IndexAdvisorService(DataSourceRegistry dataSourceRegistry, IndexAdvisorProperties properties) {
+        this.dataSourceRegistry = dataSourceRegistry;
+        this.properties = properties;
+    }
+
+    /**
+     * Checks every database in the background once the application is ready, logging missing indexes and
+     * creating them if configured to.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkOnStartup() {
+        if (!properties.checkOnStartup()) {
+            return;
+        }
+        Thread.ofVirtual().name("index-advisor").start(() -> {
+            for (String dbName : dataSourceRegistry.getDatabaseNames()) {
+                try {
+                    List<IndexAdvice> missing = advise(dbName).stream().filter(advice -> !advice.indexed()).toList();
+                    for (IndexAdvice advice : missing) {
+                        logger.warn("{} of table {} behind filter '{}' of database '{}' is not indexed; "
+                                        + "filtering by it scans about {} rows",
+                                advice.definition(), advice.table(), advice.field(), dbName, advice.estimatedRows());
+                    }
+                    if (!missing.isEmpty() && properties.createMissing()) {
+                        createMissingIndexes(dbName);
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Index check of database '{}' failed: {}", dbName, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Reports the index status of every filter column of every database. Databases that cannot be checked
+     * are left out.
+     *
+     * @return the index status of every filter column
+     */
+    public List<IndexAdvice> adviseAll() {
+        List<IndexAdvice> advice = new ArrayList<>();
+        for (String dbName : dataSourceRegistry.getDatabaseNames()) {
+            try {
+                advice.addAll(advise(dbName));
+            } catch (AggregateHubServiceException | AggregateHubNotFoundException e) {
+                logger.warn("Skipping database '{}': {}", dbName, e.getMessage());
+            }
+        }
+        return advice;
+    }
+
+    /**
+     * Reports the index status of every filter column of a database. Sources that are not relational
+     * databases have no indexes to report.
+     *
+     * @param dbName the database name
+     * @return the index status of every filter column
+     * @throws AggregateHubNotFoundException if no such database is registered
+     * @throws AggregateHubServiceException  if the catalog cannot be read
+     */
+    public List<IndexAdvice> advise(String dbName) {
+        try (DataSourceRegistry.Lease lease = lease(dbName)) {
+            return lease.dataSource() != null ? advise(dbName, lease) : List.of();
+        }
+    }
+
+    private List<IndexAdvice> advise(String dbName, DataSourceRegistry.Lease lease) {
+        try (Connection connection = lease.dataSource().getConnection()) {
+            UserTable userTable = resolve(lease.entityManagerFactory());
+            Set<String> invalid = lease.strategy().invalidIndexes(connection, userTable.table());
+            if (!invalid.isEmpty()) {
+                logger.warn("Ignoring invalid indexes {} of table {} in database '{}'", invalid, userTable.table(),
+                        dbName);
+            }
+            Map<String, String> indexes = leadingIndexes(connection, userTable.table(), invalid);
+            List<IndexAdvice> advice = new ArrayList<>();
+            userTable.columns().forEach((field, column) -> {
+                advice.add(advice(dbName, userTable.table(), field, column, column, indexes));
+                String textSearch = lease.strategy().textSearchIndexDefinition(column);
+                if (textSearch != null && TEXT_FIELDS.contains(field)) {
+                    advice.add(advice(dbName, userTable.table(), field, column, textSearch, indexes));
+                }
+            });
+            if (advice.stream().allMatch(IndexAdvice::indexed)) {
+                return advice;
+            }
+            Long estimatedRows = estimateRows(connection, lease.strategy(), dbName, userTable.table());
+            return advice.stream()
+                    .map(each -> each.indexed() ? each : new IndexAdvice(each.database(), each.table(), each.field(),
+                            each.column(), each.definition(), false, each.index(), estimatedRows))
+                    .toList();
+        } catch (SQLException e) {
+            logger.error("Failed to read the indexes of database '{}': {}", dbName, e.getMessage(), e);
+            throw new AggregateHubServiceException("Failed to read the indexes of database " + dbName + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private static IndexAdvice advice(String dbName, String table, String field, String column, String definition,
+                                      Map<String, String> indexes) {
+        String index = indexes.get(indexKey(definition));
+        return index != null
+                ? new IndexAdvice(dbName, table, field, column, definition, true, index, null)
+                : new IndexAdvice(dbName, table, field, column, definition, false,
+                indexName(table, column, definition.equals(column) ? "idx" : "search_idx"), null);
+    }
+
+    /**
+     * Creates an index for every unindexed filter column of a database, online where the database allows it.
+     *
+     * @param dbName the database name
+     * @return the index status of every filter column afterwards
+     * @throws AggregateHubNotFoundException if no such database is registered
+     * @throws AggregateHubServiceException  if an index cannot be created
+     */
+    public List<IndexAdvice> createMissingIndexes(String dbName) {
+        List<IndexAdvice> current = advise(dbName);
+        List<IndexAdvice> missing = current.stream().filter(advice -> !advice.indexed()).toList();
+        if (missing.isEmpty()) {
+            // Also covers sources that are not relational databases, which have no indexes
+            return current;
+        }
+        try (DataSourceRegistry.Lease lease = lease(dbName);
+             Connection connection = lease.dataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            Set<String> invalid = lease.strategy().invalidIndexes(connection, missing.getFirst().table());
+            for (IndexAdvice advice : missing) {
+                if (!IDENTIFIER.matcher(advice.table()).matches() || !IDENTIFIER.matcher(advice.column()).matches()) {
+                    throw new AggregateHubServiceException("Refusing to create an index on " + advice.table() + "."
+                            + advice.column() + ": not a plain identifier");
+                }
+                if (invalid.contains(advice.index().toLowerCase(Locale.ROOT))) {
+                    logger.info("Dropping invalid index {} of database '{}'", advice.index(), dbName);
+                    statement.execute(lease.strategy().dropIndexStatement(advice.index(), advice.table()));
+                }
+                logger.info("Creating index {} on {} ({}) of database '{}'", advice.index(), advice.table(),
+                        advice.definition(), dbName);
+                statement.execute(lease.strategy().createIndexStatement(advice.index(), advice.table(),
+                        advice.definition()));
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to create indexes in database '{}': {}", dbName, e.getMessage(), e);
+            throw new AggregateHubServiceException("Failed to create indexes in database " + dbName + ": "
+                    + e.getMessage(), e);
+        }
+        return advise(dbName);
+    }
+
+    private DataSourceRegistry.Lease lease(String dbName) {
+        return dataSourceRegistry.lease(dbName)
+                .orElseThrow(() -> new AggregateHubNotFoundException("Database not found: " + dbName));
+    }
+
+    /**
+     * Reads the physical user table and filter columns from the Hibernate mapping of a database.
+     */
+    private static UserTable resolve(EntityManagerFactory entityManagerFactory) {
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(User.class);
+        Map<String, String> columns = new LinkedHashMap<>();
+        for (String field : FILTER_FIELDS) {
+            columns.put(field, field.equals("id")
+                    ? persister.getIdentifierColumnNames()[0]
+                    : persister.getPropertyColumnNames(field)[0]);
+        }
+        return new UserTable(persister.getTableName(), columns);
+    }
+
+    /**
+     * Returns the first index found for each column or expression that leads an index, keyed by
+     * {@link #indexKey}, leaving out the invalid ones. The qualifier of a qualified table names its schema, or its
+     * catalog on databases without schemas (MySQL).
+     */
+    private static Map<String, String> leadingIndexes(Connection connection, String table, Set<String> invalid)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String catalog = connection.getCatalog();
+        String schema = connection.getSchema();
+        String name = table;
+        int dot = table.lastIndexOf('.');
+        if (dot >= 0) {
+            String qualifier = catalogName(metaData, table.substring(0, dot));
+            if (metaData.supportsSchemasInTableDefinitions()) {
+                schema = qualifier;
+            } else {
+                catalog = qualifier;
+            }
+            name = table.substring(dot + 1);
+        }
+        Map<String, String> indexes = new HashMap<>();
+        try (ResultSet rows = metaData.getIndexInfo(catalog, schema, catalogName(metaData, name), false, true)) {
+            while (rows.next()) {
+                String column = rows.getString("COLUMN_NAME");
+                String index = rows.getString("INDEX_NAME");
+                if (column != null && rows.getShort("ORDINAL_POSITION") == 1
+                        && (index == null || !invalid.contains(index.toLowerCase(Locale.ROOT)))) {
+                    indexes.putIfAbsent(indexKey(column), index);
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static String catalogName(DatabaseMetaData metaData, String name) throws SQLException {
+        return metaData.storesLowerCaseIdentifiers() ? name.toLowerCase(Locale.ROOT)
+                : metaData.storesUpperCaseIdentifiers() ? name.toUpperCase(Locale.ROOT)
+                : name;
+    }
+
+    private static Long estimateRows(Connection connection, DatabaseStrategy strategy, String dbName, String table) {
+        RowCountQuery query = strategy.rowCountQuery(table);
+        try (PreparedStatement statement = connection.prepareStatement(query.sql())) {
+            for (int i = 0; i < query.parameters().size(); i++) {
+                statement.setString(i + 1, query.parameters().get(i));
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                if (rows.next()) {
+                    long count = rows.getLong(1);
+                    return rows.wasNull() ? null : count;
+                }
+                return null;
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to estimate the rows of {} in database '{}': {}", table, dbName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reduces a column or index expression to what the catalog reports of it, e.g. {@code lower(name)
+     * text_pattern_ops} and {@code lower((name)::text)} both to {@code lowername}.
+     */
+    private static String indexKey(String definition) {
+        String expression = OPERATOR_CLASS.matcher(definition.toLowerCase(Locale.ROOT).trim()).replaceAll("");
+        return PUNCTUATION.matcher(CAST.matcher(expression).replaceAll("")).replaceAll("");
+    }
+
+    private static String indexName(String table, String column, String suffix) {
+        String name = "ah_" + table + "_" + column + "_" + suffix;
+        return name.length() <= MAX_INDEX_NAME_LENGTH ? name : name.substring(0, MAX_INDEX_NAME_LENGTH);
+    }
+
+    private record UserTable(String table, Map<String, String> columns) {
+    }
+}
@@ -1,16 +1,43 @@
 package com.zemnitskiy.aggregatehub.service;
 
+import com.zemnitskiy.aggregatehub.aggregation.ConflictResolution;
+import com.zemnitskiy.aggregatehub.aggregation.Consistency;
+import com.zemnitskiy.aggregatehub.aggregation.DedupeMode;
+import com.zemnitskiy.aggregatehub.aggregation.MemoryGovernor;
+import com.zemnitskiy.aggregatehub.aggregation.MergingUserPublisher;
+import com.zemnitskiy.aggregatehub.aggregation.SpillableUserBuffer;
+import com.zemnitskiy.aggregatehub.aggregation.UserDeduplicator;
+import com.zemnitskiy.aggregatehub.cache.SourceResultCache;
+import com.zemnitskiy.aggregatehub.config.AggregationProperties;
+import com.zemnitskiy.aggregatehub.config.CacheProperties;
+import com.zemnitskiy.aggregatehub.executor.QueryDeadline;
+import com.zemnitskiy.aggregatehub.executor.SourceExecutor;
 import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
 import com.zemnitskiy.aggregatehub.exception.AggregateHubServiceException;
 import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.replica.MaterializedUserReplica;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Service class for managing users across multiple databases using virtual threads.
@@ -19,50 +46,341 @@ import java.util.concurrent.Executors;
 public class UserService {
 
     private final MultiDatabaseUserDao userDao;
+    private final AggregationProperties aggregationProperties;
+    private final MemoryGovernor memoryGovernor;
+    private final MaterializedUserReplica replica;
+    private final SourceResultCache resultCache;
+    private final SourceExecutor sourceExecutor;
+    private final CacheProperties cacheProperties;
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
-    public UserService(MultiDatabaseUserDao userDao) {
+    public UserService(MultiDatabaseUserDao userDao, AggregationProperties aggregationProperties,
+                       MemoryGovernor memoryGovernor, MaterializedUserReplica replica,
+                       SourceResultCache resultCache, SourceExecutor sourceExecutor,
+                       CacheProperties cacheProperties) {
         this.userDao = userDao;
+        this.aggregationProperties = aggregationProperties;
+        this.memoryGovernor = memoryGovernor;
+        this.replica = replica;
+        this.resultCache = resultCache;
+        this.sourceExecutor = sourceExecutor;
+        this.cacheProperties = cacheProperties;
     }
 
     /**
-     * Retrieves users asynchronously from all databases based on filter criteria with timeout using virtual threads.
+     * Retrieves users from all databases based on filter criteria using virtual threads, optionally removing
+     * users that are present in several databases.
+     * <p>
+     * Rows are collected into a {@link SpillableUserBuffer} that stays within the configured memory budgets
+     * and spills to disk when they are exceeded. The caller must close the returned buffer.
+     * </p>
      *
-     * @param id       the user ID (optional filter)
-     * @param name     the username (optional filter)
-     * @param surname  the user surname (optional filter)
-     * @param username the user username (optional filter)
-     * @return a list of users matching the criteria from all databases
+     * @param filter             the filter criteria
+     * @param consistency        whether to query the databases live or serve from the local replica
+     * @param dedupeMode         the key used to detect duplicates, or {@code null} to keep all rows
+     * @param conflictResolution how to choose between duplicates, or {@code null} for the configured default
+     * @return a buffer with the users matching the criteria from all databases
      * @throws AggregateHubServiceException if an error occurs while retrieving users
      */
-    public List<User> getAllUsersFromAllDatabases(String id, String name, String surname, String username) {
-        List<CompletableFuture<List<User>>> futures;
+    public SpillableUserBuffer getAllUsersFromAllDatabases(UserFilter filter, Consistency consistency,
+                                                           DedupeMode dedupeMode,
+                                                           ConflictResolution conflictResolution) {
+        checkConsistency(consistency);
+        SpillableUserBuffer buffer = new SpillableUserBuffer(memoryGovernor, aggregationProperties.spillDirectory());
+        try {
+            if (dedupeMode == null) {
+                fetchAll(filter, consistency, buffer);
+            } else {
+                fetchDeduplicated(filter, consistency, dedupeMode, conflictResolution, buffer);
+            }
+            if (buffer.isSpilled()) {
+                logger.info("Aggregated {} users exceeded the memory budget and were spilled to disk", buffer.size());
+            }
+            return buffer;
+        } catch (RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Streams users matching the filter from all databases as they arrive, with backpressure.
+     * <p>
+     * Unlike {@link #getAllUsersFromAllDatabases}, nothing is buffered beyond one JDBC fetch size: while the
+     * subscriber is slow, the databases are not read further. Deduplication needs the complete result and is
+     * therefore not available on this path.
+     * </p>
+     * <p>
+     * Every database is read on a thread of its own rather than the bounded platform pool, since a stream lasts as
+     * long as its client reads. The stream fails once the {@link QueryDeadline} of the subscribing thread has
+     * passed, or once the subscriber took no row for {@code aggregate-hub.aggregation.stream-stall-timeout}.
+     * </p>
+     *
+     * @param filter      the filter criteria
+     * @param consistency whether to query the databases live or serve from the local replica
+     * @return a single-subscriber publisher of the matching users
+     * @throws AggregateHubServiceException if the consistency is not available
+     */
+    public Flow.Publisher<User> streamUsersFromAllDatabases(UserFilter filter, Consistency consistency) {
+        checkConsistency(consistency);
+        Map<String, List<String>> units = readUnits(userDao.getDatabaseNames(), consistency);
+        AtomicInteger taken = new AtomicInteger();
+        return new MergingUserPublisher(List.copyOf(units.keySet()),
+                (unit, consumer) -> fetchUnit(units.get(unit), filter, consistency, (dbName, user) -> {
+                    if (!withinLimit(filter, taken)) {
+                        throw new CancellationException("Reached the limit of " + filter.limit() + " users");
+                    }
+                    if (QueryDeadline.hasPassed()) {
+                        throw new AggregateHubOverloadedException("The stream did not complete within its deadline",
+                                Duration.ZERO);
+                    }
+                    consumer.accept(user);
+                }),
+                aggregationProperties.fetchSize(), sourceExecutor::streamExecutorFor,
+                aggregationProperties.streamStallTimeout());
+    }
+
+    /**
+     * Computes the entity tag of the current result of a query without running it, to check a conditional request.
+     * <p>
+     * The tag is a digest of the query parameters and a version vector holding the change watermark of every
+     * database, probed live on all databases in parallel; only {@code consistency=local} uses the version of the
+     * loaded replica, which is what it serves. The watermarks the result cache polled are never used here, since
+     * they lag behind by up to the poll interval.
+     * </p>
+     * <p>
+     * Tags are only issued when every database either versions itself exactly or detects changes by column, see
+     * {@link MultiDatabaseUserDao#hasExactWatermark}. A column watermark misses transactions committed late, so
+     * tags involving such a database are weak and include the current period of
+     * {@code aggregate-hub.cache.column-tag-max-age}: a late commit is hidden for at most that long.
+     * </p>
+     *
+     * @param filter             the filter criteria
+     * @param consistency        the read path
+     * @param dedupeMode         the deduplication key, or {@code null}
+     * @param conflictResolution the conflict resolution, or {@code null}
+     * @return the quoted entity tag, or {@code null} if the version of some database is unknown or not exact
+     */
+    public String currentETag(UserFilter filter, Consistency consistency, DedupeMode dedupeMode,
+                              ConflictResolution conflictResolution) {
+        return resultETag(filter, consistency, dedupeMode, conflictResolution, dbName -> {
+            String version = consistency == Consistency.LOCAL ? replica.watermark(dbName) : null;
+            return version != null ? version : userDao.fetchWatermark(dbName);
+        });
+    }
+
+    /**
+     * Computes the entity tag of the result a query is served, from the watermarks the hub already holds: the
+     * loaded replica for {@code consistency=local}, otherwise the result cache when it is enabled. Nothing is
+     * probed. Like {@link #currentETag}, but describing the version the cache or replica answers with, which may
+     * be older than the current one; a client sending it back is then answered in full again.
+     *
+     * @param filter             the filter criteria
+     * @param consistency        the read path
+     * @param dedupeMode         the deduplication key, or {@code null}
+     * @param conflictResolution the conflict resolution, or {@code null}
+     * @return the quoted entity tag, or {@code null} if the hub holds no exact version of some database
+     */
+    public String servedETag(UserFilter filter, Consistency consistency, DedupeMode dedupeMode,
+                             ConflictResolution conflictResolution) {
+        return resultETag(filter, consistency, dedupeMode, conflictResolution, dbName -> {
+            String version = consistency == Consistency.LOCAL ? replica.watermark(dbName) : null;
+            return version != null ? version : resultCache.servedWatermark(dbName);
+        });
+    }
+
+    private String resultETag(UserFilter filter, Consistency consistency, DedupeMode dedupeMode,
+                              ConflictResolution conflictResolution, Function<String, String> version) {
+        List<String> databaseNames = userDao.getDatabaseNames();
+        List<String> columnTracked = databaseNames.stream().filter(userDao::tracksChangesByColumn).toList();
+        if (!databaseNames.stream().allMatch(dbName -> columnTracked.contains(dbName)
+                || userDao.hasExactWatermark(dbName))) {
+            return null;
+        }
+        List<String> versions;
+        try (SourceExecutor.Fanout fanout = sourceExecutor.fanout()) {
+            List<CompletableFuture<String>> futures = databaseNames.stream()
+                    .map(dbName -> CompletableFuture.supplyAsync(() -> version.apply(dbName),
+                            fanout.executorFor(dbName)))
+                    .toList();
+            versions = futures.stream().map(CompletableFuture::join).toList();
+        } catch (Exception e) {
+            logger.debug("Could not compute the version vector, skipping conditional request: {}", e.getMessage());
+            return null;
+        }
+        if (versions.contains(null)) {
+            return null;
+        }
+
+        MessageDigest digest = sha256();
+        digest.update((filter + "|" + consistency + "|" + dedupeMode + "|" + conflictResolution)
+                .getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < databaseNames.size(); i++) {
+            digest.update(("|" + databaseNames.get(i) + "=" + versions.get(i)).getBytes(StandardCharsets.UTF_8));
+        }
+        String tag = "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16);
+        if (columnTracked.isEmpty()) {
+            return tag + "\"";
+        }
+        // The period bounds how long a commit the column watermarks did not see can hide behind a matching tag
+        long period = System.currentTimeMillis() / Math.max(1, cacheProperties.columnTagMaxAge().toMillis());
+        return "W/" + tag + "-" + Long.toString(period, 36) + "\"";
+    }
 
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            futures = userDao.getDatabaseNames().stream()
-                    .map(dbName -> CompletableFuture.supplyAsync(
-                            () -> userDao.fetchUsersFromDatabaseAsync(dbName, id, name, surname, username).join(), executor
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void fetchAll(UserFilter filter, Consistency consistency, SpillableUserBuffer buffer) {
+        AtomicInteger taken = new AtomicInteger();
+        try (SourceExecutor.Fanout fanout = sourceExecutor.fanout()) {
+            List<CompletableFuture<Void>> futures = readUnits(userDao.getDatabaseNames(), consistency).values().stream()
+                    .map(unit -> CompletableFuture.runAsync(
+                            () -> fetchUnit(unit, filter, consistency, (dbName, user) -> {
+                                // Every database already returns at most the limit; only the merge is capped here
+                                if (withinLimit(filter, taken)) {
+                                    buffer.add(user);
+                                }
+                            }),
+                            fanout.executorFor(unit.getFirst())
                     ))
                     .toList();
 
-            CompletableFuture<Void> allFutures = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-            try {
-                allFutures.join();
-
-                return futures.stream()
-                        .map(CompletableFuture::join)
-                        .flatMap(List::stream)
-                        .toList();
-            } catch (Exception e) {
-                logger.error("An error occurred while fetching users: {}", e.getMessage(), e);
-                // Cancel all futures that haven't completed
-                futures.forEach(f -> {
-                    if (!f.isDone()) {
-                        f.cancel(true);
-                    }
-                });
-                throw new AggregateHubServiceException("Error fetching users from databases", e);
+            awaitAll(futures);
+        }
+    }
+
+    private void fetchDeduplicated(UserFilter filter, Consistency consistency, DedupeMode dedupeMode,
+                                   ConflictResolution conflictResolution, SpillableUserBuffer buffer) {
+        AggregationProperties.Dedupe dedupe = aggregationProperties.dedupe();
+        ConflictResolution resolution = conflictResolution != null ? conflictResolution : dedupe.conflictResolution();
+        List<String> priorities = sourcePriorities();
+
+        try (SourceExecutor.Fanout fanout = sourceExecutor.fanout();
+             UserDeduplicator deduplicator = new UserDeduplicator(dedupeMode, resolution,
+                     dedupe.maxKeysInMemory(), dedupe.spillPartitions(), aggregationProperties.spillDirectory(),
+                     memoryGovernor)) {
+            // Rows are merged as soon as they arrive, so first-wins keeps the earliest arrival
+            List<CompletableFuture<Void>> futures = readUnits(priorities, consistency).values().stream()
+                    .map(unit -> CompletableFuture.runAsync(
+                            () -> fetchUnit(unit, filter, consistency,
+                                    (dbName, user) -> deduplicator.add(priorities.indexOf(dbName), user)),
+                            fanout.executorFor(unit.getFirst())
+                    ))
+                    .toList();
+
+            awaitAll(futures);
+            AtomicInteger taken = new AtomicInteger();
+            deduplicator.drainTo(user -> {
+                if (withinLimit(filter, taken)) {
+                    buffer.add(user);
+                }
+            });
+            logger.debug("Deduplicated users by {} using {}: {} unique users", dedupeMode, resolution, buffer.size());
+        }
+    }
+
+    private static boolean withinLimit(UserFilter filter, AtomicInteger taken) {
+        return filter.limit() == null || taken.getAndIncrement() < filter.limit();
+    }
+
+    private void checkConsistency(Consistency consistency) {
+        if (consistency == Consistency.LOCAL && !replica.isEnabled()) {
+            throw new AggregateHubServiceException("Local consistency requires aggregate-hub.replica.enabled=true");
+        }
+    }
+
+    /**
+     * Splits the databases into units read by one task each. Databases served by the local replica are read on
+     * their own; the others are grouped by server, so co-located databases are read with one statement.
+     *
+     * @return the units keyed by their first database, in the order of the given databases
+     */
+    private Map<String, List<String>> readUnits(List<String> databaseNames, Consistency consistency) {
+        Map<String, List<String>> units = new LinkedHashMap<>();
+        List<String> live = new ArrayList<>();
+        for (String dbName : databaseNames) {
+            if (consistency == Consistency.LOCAL && replica.isLoaded(dbName)) {
+                units.put(dbName, List.of(dbName));
+            } else {
+                live.add(dbName);
+            }
+        }
+        for (List<String> group : userDao.colocatedGroups(live)) {
+            units.put(group.getFirst(), group);
+        }
+        return units;
+    }
+
+    private void fetchUnit(List<String> dbNames, UserFilter filter, Consistency consistency,
+                           BiConsumer<String, User> target) {
+        // A cancelled fan-out interrupts its tasks; stop reading at the next row
+        BiConsumer<String, User> consumer = (dbName, user) -> {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("The request was cancelled");
+            }
+            target.accept(dbName, user);
+        };
+        if (dbNames.size() == 1) {
+            String dbName = dbNames.getFirst();
+            fetchSource(dbName, filter, consistency, user -> consumer.accept(dbName, user));
+        } else {
+            resultCache.streamUsers(dbNames, filter, consumer);
+        }
+    }
+
+    private void fetchSource(String dbName, UserFilter filter, Consistency consistency, Consumer<User> consumer) {
+        if (consistency == Consistency.LOCAL && replica.query(dbName, filter, consumer)) {
+            return;
+        }
+        resultCache.streamUsers(dbName, filter, consumer);
+    }
+
+    private void awaitAll(List<? extends CompletableFuture<?>> futures) {
+        CompletableFuture<Void> allFutures = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        try {
+            allFutures.get();
+        } catch (InterruptedException e) {
+            // The request timed out; closing the fan-out cancels the tasks still reading
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new AggregateHubOverloadedException("The request was cancelled at its deadline", Duration.ZERO);
+        } catch (Exception e) {
+            logger.error("An error occurred while fetching users: {}", e.getMessage(), e);
+            // Cancel all futures that haven't completed
+            futures.forEach(f -> {
+                if (!f.isDone()) {
+                    f.cancel(true);
+                }
+            });
+            if (e.getCause() instanceof AggregateHubOverloadedException overloaded) {
+                throw overloaded;
+            }
+            throw new AggregateHubServiceException("Error fetching users from databases", e);
+        }
+    }
+
+    /**
+     * Orders the configured databases by priority: explicitly prioritised databases first,
+     * then the remaining ones in configuration order.
+     */
+    private List<String> sourcePriorities() {
+        List<String> databaseNames = userDao.getDatabaseNames();
+        List<String> ordered = new ArrayList<>();
+        for (String dbName : aggregationProperties.dedupe().sourcePriority()) {
+            if (databaseNames.contains(dbName) && !ordered.contains(dbName)) {
+                ordered.add(dbName);
+            }
+        }
+        for (String dbName : databaseNames) {
+            if (!ordered.contains(dbName)) {
+                ordered.add(dbName);
             }
         }
+        return ordered;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package com.zemnitskiy.aggregatehub.slowquery;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A recorded slow query.
+ *
+ * @param database       the database the query ran against
+ * @param capturedAt     when the query finished executing
+ * @param durationMillis the execution time until the first rows were available
+ * @param sql            the statement as sent to the database
+ * @param binds          the bind values in parameter order, or {@code ***} for each value when masked
+ * @param plan           the execution plan, or {@code null} if the query was not sampled or its plan is pending
+ */
+public record SlowQuery(String database, Instant capturedAt, double durationMillis, String sql, List<String> binds,
+                        String plan) {
+}
@@ -0,0 +1,194 @@
+package com.zemnitskiy.aggregatehub.slowquery;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * {@link DataSource} timing every prepared statement of a database and reporting it to the {@link SlowQueryRecorder}.
+ * <p>
+ * Connections and prepared statements are wrapped in dynamic proxies that remember the bind values set on a
+ * statement and measure each execution. For queries the measured time ends when the first rows are available,
+ * so reading a large result does not make a query look slow.
+ * </p>
+ */
+final class SlowQueryDataSource implements DataSource, AutoCloseable {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate");
+
+    private final String dbName;
+    private final DataSource delegate;
+    private final UnaryOperator<String> explain;
+    private final SlowQueryRecorder recorder;
+    private final AtomicLong lastExplainNanos = new AtomicLong(Long.MIN_VALUE);
+
+    SlowQueryDataSource(String dbName, DataSource delegate, UnaryOperator<String> explain, SlowQueryRecorder recorder) {
+        this.dbName = dbName;
+        this.delegate = delegate;
+        this.explain = explain;
+        this.recorder = recorder;
+    }
+
+    String dbName() {
+        return dbName;
+    }
+
+    /**
+     * Returns the data source without timing, used to run {@code EXPLAIN} without recording it.
+     */
+    DataSource delegate() {
+        return delegate;
+    }
+
+    String explainStatement(String sql) {
+        return explain.apply(sql);
+    }
+
+    /**
+     * Claims the next {@code EXPLAIN} of this database if the last one ran at least the interval ago.
+     */
+    boolean tryClaimExplain(long intervalNanos) {
+        long now = System.nanoTime();
+        long last = lastExplainNanos.get();
+        return (last == Long.MIN_VALUE || now - last >= intervalNanos) && lastExplainNanos.compareAndSet(last, now);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(delegate.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(delegate.getConnection(username, password));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        return type.isInstance(this) ? type.cast(this) : delegate.unwrap(type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) throws SQLException {
+        return type.isInstance(this) || delegate.isWrapperFor(type);
+    }
+
+    /**
+     * Closes the underlying pool.
+     */
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof PreparedStatement statement && method.getName().startsWith("prepare")) {
+                        return wrap(statement, (String) args[0], method.getReturnType());
+                    }
+                    return result;
+                });
+    }
+
+    private Object wrap(PreparedStatement statement, String sql, Class<?> type) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                new StatementHandler(statement, sql));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A bind value set with {@code setNull}, with its SQL type, which some drivers need to bind the null again.
+     *
+     * @param sqlType the {@link java.sql.Types} code
+     */
+    record NullValue(int sqlType) {
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    /**
+     * Remembers the bind values of a prepared statement and times its executions.
+     */
+    private final class StatementHandler implements InvocationHandler {
+
+        private final PreparedStatement statement;
+        private final String sql;
+        private final Map<Integer, Object> binds = new TreeMap<>();
+
+        StatementHandler(PreparedStatement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (args != null && args.length >= 2 && name.startsWith("set") && args[0] instanceof Integer index
+                    && method.getParameterTypes()[0] == int.class) {
+                binds.put(index, name.equals("setNull") ? new NullValue((Integer) args[1]) : args[1]);
+            } else if (name.equals("clearParameters")) {
+                binds.clear();
+            } else if ((args == null || args.length == 0) && EXECUTE_METHODS.contains(name)) {
+                long start = System.nanoTime();
+                Object result = SlowQueryDataSource.invoke(statement, method, null);
+                recorder.executed(SlowQueryDataSource.this, sql, new ArrayList<>(binds.values()),
+                        System.nanoTime() - start);
+                return result;
+            }
+            return SlowQueryDataSource.invoke(statement, method, args);
+        }
+    }
+}
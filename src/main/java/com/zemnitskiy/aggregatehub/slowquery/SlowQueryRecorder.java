@@ -0,0 +1,152 @@
+package com.zemnitskiy.aggregatehub.slowquery;
+
+import com.zemnitskiy.aggregatehub.config.SlowQueryProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.function.UnaryOperator;
+
+/**
+ * Records database statements exceeding their database's latency threshold, with their bind values, and
+ * samples their execution plans. Bind values are masked when listed unless {@code mask-binds} is turned off.
+ * <p>
+ * The latest slow queries are kept in a bounded ring buffer, the oldest being dropped first. At most one
+ * {@code EXPLAIN} per database and {@code explain-interval} is run, in the background on a separate connection,
+ * with the same bind values as the slow statement, so a burst of slow queries cannot add a burst of plan
+ * queries to an already struggling database.
+ * </p>
+ */
+@Component
+public class SlowQueryRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryRecorder.class);
+    private static final int MAX_PLAN_ROWS = 200;
+    private static final String MASKED = "***";
+
+    private final SlowQueryProperties properties;
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    public SlowQueryRecorder(SlowQueryProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Wraps the pool of a database so its statements are timed.
+     *
+     * @param dbName     the database name
+     * @param dataSource the pool of the database
+     * @param explain    turns a statement into the dialect's {@code EXPLAIN} statement
+     * @return the timed data source, or {@code dataSource} itself if recording is disabled; closing it closes the pool
+     */
+    public DataSource instrument(String dbName, DataSource dataSource, UnaryOperator<String> explain) {
+        return properties.enabled() ? new SlowQueryDataSource(dbName, dataSource, explain, this) : dataSource;
+    }
+
+    /**
+     * Returns the recorded slow queries, the most recent first.
+     *
+     * @return the slow queries
+     */
+    public List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> slowQueries = new ArrayList<>();
+        synchronized (entries) {
+            entries.descendingIterator()
+                    .forEachRemaining(entry -> slowQueries.add(entry.toSlowQuery(properties.maskBinds())));
+        }
+        return slowQueries;
+    }
+
+    /**
+     * Drops every recorded slow query.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    void executed(SlowQueryDataSource source, String sql, List<Object> binds, long durationNanos) {
+        Duration threshold = properties.thresholds().getOrDefault(source.dbName(), properties.threshold());
+        if (durationNanos < threshold.toNanos()) {
+            return;
+        }
+        Entry entry = new Entry(source.dbName(), Instant.now(), durationNanos, sql, binds);
+        synchronized (entries) {
+            if (entries.size() >= properties.capacity()) {
+                entries.removeFirst();
+            }
+            entries.addLast(entry);
+        }
+        logger.warn("Slow query on database '{}' took {} ms", source.dbName(), durationNanos / 1_000_000);
+
+        if (source.tryClaimExplain(properties.explainInterval().toNanos())) {
+            Thread.ofVirtual().name("explain-" + source.dbName()).start(() -> explain(source, entry));
+        }
+    }
+
+    private static void explain(SlowQueryDataSource source, Entry entry) {
+        try (Connection connection = source.delegate().getConnection();
+             PreparedStatement statement = connection.prepareStatement(source.explainStatement(entry.sql))) {
+            for (int i = 0; i < entry.binds.size(); i++) {
+                if (entry.binds.get(i) instanceof SlowQueryDataSource.NullValue nullValue) {
+                    // PgJDBC cannot infer the type of an untyped null
+                    statement.setNull(i + 1, nullValue.sqlType());
+                } else {
+                    statement.setObject(i + 1, entry.binds.get(i));
+                }
+            }
+            StringJoiner plan = new StringJoiner("\n");
+            try (ResultSet rows = statement.executeQuery()) {
+                int columns = rows.getMetaData().getColumnCount();
+                for (int row = 0; row < MAX_PLAN_ROWS && rows.next(); row++) {
+                    StringJoiner line = new StringJoiner(" | ");
+                    for (int column = 1; column <= columns; column++) {
+                        line.add(Objects.toString(rows.getObject(column)));
+                    }
+                    plan.add(line.toString());
+                }
+            }
+            entry.plan = plan.toString();
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Failed to explain slow query on database '{}': {}", source.dbName(), e.getMessage());
+            entry.plan = "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    private static final class Entry {
+
+        private final String dbName;
+        private final Instant capturedAt;
+        private final long durationNanos;
+        private final String sql;
+        private final List<Object> binds;
+        private volatile String plan;
+
+        Entry(String dbName, Instant capturedAt, long durationNanos, String sql, List<Object> binds) {
+            this.dbName = dbName;
+            this.capturedAt = capturedAt;
+            this.durationNanos = durationNanos;
+            this.sql = sql;
+            this.binds = binds;
+        }
+
+        SlowQuery toSlowQuery(boolean maskBinds) {
+            return new SlowQuery(dbName, capturedAt, durationNanos / 1_000_000.0, sql,
+                    binds.stream().map(bind -> maskBinds ? MASKED : String.valueOf(bind)).toList(), plan);
+        }
+    }
+}
@@ -1,17 +1,27 @@
 package com.zemnitskiy.aggregatehub.strategy;
 
 import com.zemnitskiy.aggregatehub.config.DatabaseListConfig;
+import com.zemnitskiy.aggregatehub.model.User;
 import com.zemnitskiy.aggregatehub.strategy.naming.CustomPhysicalNamingStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 /**
  * Strategy interface for configuring database-specific components such as DataSource,
@@ -24,8 +34,6 @@ public interface DatabaseStrategy {
     // Hibernate property constants
     String HIBERNATE_DIALECT = "hibernate.dialect";
     String HIBERNATE_HBM2DDL_AUTO = "hibernate.hbm2ddl.auto";
-    String HIBERNATE_SHOW_SQL = "hibernate.show_sql";
-    String HIBERNATE_FORMAT_SQL = "hibernate.format_sql";
 
     /**
      * Creates a {@link DataSource} based on the provided {@link DatabaseListConfig.DatabaseConfig}.
@@ -54,12 +62,11 @@ public interface DatabaseStrategy {
 
         LocalContainerEntityManagerFactoryBean emf = new LocalContainerEntityManagerFactoryBean();
         emf.setDataSource(dataSource);
-        emf.setPackagesToScan("com.zemnitskiy.aggregatehub.model");
+        // Listing the entity avoids a classpath scan for every database, and works the same under AOT
+        emf.setManagedTypes(PersistenceManagedTypes.of(User.class.getName()));
         emf.setPersistenceUnitName(persistenceUnitName);
 
-        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
-        vendorAdapter.setShowSql(true);
-        emf.setJpaVendorAdapter(vendorAdapter);
+        emf.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
 
         Properties jpaProperties = getJpaProperties();
         configureNamingStrategy(jpaProperties, mapping, tableName);
@@ -68,6 +75,176 @@ public interface DatabaseStrategy {
         return emf;
     }
 
+    /**
+     * Turns a statement into the statement returning its execution plan, with the same bind parameters.
+     *
+     * @param sql the statement
+     * @return the {@code EXPLAIN} statement of this database
+     */
+    default String explainStatement(String sql) {
+        return "EXPLAIN " + sql;
+    }
+
+    /**
+     * Quotes a table or column name for use in native SQL, part by part if it is qualified with dots. Quoting must
+     * not change which object the name refers to compared to the unquoted name Hibernate uses.
+     *
+     * @param identifier the table or column name
+     * @return the quoted name
+     */
+    default String quoteIdentifier(String identifier) {
+        return quoteParts(identifier, '"', part -> part);
+    }
+
+    /**
+     * Returns a query whose single value is the (estimated) number of rows of a table. Counts all rows by
+     * default; strategies may read a cheaper estimate from the catalog.
+     *
+     * @param table the table name, optionally qualified by its schema
+     * @return the row count query
+     */
+    default RowCountQuery rowCountQuery(String table) {
+        return new RowCountQuery("SELECT COUNT(*) FROM " + quoteIdentifier(table), List.of());
+    }
+
+    /**
+     * Returns the statement creating a single-column index, without blocking writes where the database allows it.
+     *
+     * @param index  the index name
+     * @param table  the table name
+     * @param column the indexed column, or an expression over it
+     * @return the {@code CREATE INDEX} statement
+     */
+    default String createIndexStatement(String index, String table, String column) {
+        return "CREATE INDEX " + index + " ON " + table + " (" + column + ")";
+    }
+
+    /**
+     * Returns the statement dropping an index.
+     *
+     * @param index the index name
+     * @param table the table name
+     * @return the {@code DROP INDEX} statement
+     */
+    default String dropIndexStatement(String index, String table) {
+        return "DROP INDEX " + index;
+    }
+
+    /**
+     * Reads the names of the indexes of a table that exist but are not used by queries, such as indexes whose
+     * online build failed. Empty by default, for databases that roll failed builds back.
+     *
+     * @param connection a connection to the database
+     * @param table      the table name, optionally qualified by its schema
+     * @return the lower-case index names
+     * @throws SQLException if the catalog cannot be read
+     */
+    default Set<String> invalidIndexes(Connection connection, String table) throws SQLException {
+        return Set.of();
+    }
+
+    /**
+     * Returns the index definition serving the prefix and case-insensitive {@link #textConditions} of a column,
+     * when a plain index on the column cannot serve them.
+     *
+     * @param column the column
+     * @return what goes between the parentheses of {@code CREATE INDEX}, or {@code null} if a plain index on the
+     * column serves every condition
+     */
+    default String textSearchIndexDefinition(String column) {
+        return null;
+    }
+
+    /**
+     * Returns the conditions a text column must meet to match a criterion of {@code /users}, in a form the
+     * database can answer from an index. By default, case-insensitive criteria compare the lower-cased column
+     * and prefixes use {@code LIKE 'abc%'}, which is portable SQL; strategies adapt the conditions to the way
+     * their database compares text.
+     *
+     * @param value           the criterion
+     * @param prefix          whether values starting with the criterion match
+     * @param ignoreCase      whether the case of the values is ignored
+     * @param columnCollation the collation of the column as read by {@link #columnCollations}, or {@code null}
+     *                        if unknown
+     * @return the conditions, all of which must hold
+     */
+    default List<TextCondition> textConditions(String value, boolean prefix, boolean ignoreCase,
+                                               String columnCollation) {
+        String text = ignoreCase ? value.toLowerCase(Locale.ROOT) : value;
+        return List.of(new TextCondition(null, ignoreCase, prefix, prefix ? TextCondition.prefixPattern(text) : text));
+    }
+
+    /**
+     * Reads the collation of every column of a table whose comparisons depend on one. Empty by default, for
+     * databases whose conditions do not depend on the column collation.
+     *
+     * @param connection a connection to the database
+     * @param table      the table name, optionally qualified by its schema
+     * @return the collations keyed by lower-case column name
+     * @throws SQLException if the catalog cannot be read
+     */
+    default Map<String, String> columnCollations(Connection connection, String table) throws SQLException {
+        return Map.of();
+    }
+
+    /**
+     * Identifies the server a database lives on, for reading several databases on the same server with one
+     * statement over one connection. Databases with the same key, strategy and credentials must be readable through
+     * each other's connections using {@link #qualifiedTableName}.
+     *
+     * @param config the database configuration
+     * @return the server key, or {@code null} if the database is always queried on its own
+     */
+    default String serverKey(DatabaseListConfig.DatabaseConfig config) {
+        return null;
+    }
+
+    /**
+     * Returns the user table of a database, qualified so it resolves on a connection to another database with
+     * the same {@link #serverKey}.
+     *
+     * @param config the database configuration
+     * @return the table name
+     */
+    default String qualifiedTableName(DatabaseListConfig.DatabaseConfig config) {
+        return config.tableName();
+    }
+
+    /**
+     * Tells whether the JDBC driver honours the fetch size only inside a transaction and otherwise loads the whole
+     * result into memory. Streaming reads of such databases run in a read-only transaction.
+     *
+     * @return {@code true} if streaming reads need a transaction
+     */
+    default boolean fetchesInBatchesOnlyInTransaction() {
+        return false;
+    }
+
+    /**
+     * Tells whether the JDBC driver blocks on I/O while holding a monitor, which pins a virtual thread to its
+     * carrier for the whole round trip. Reads of such databases run on platform threads.
+     *
+     * @return {@code true} if the driver pins virtual threads
+     */
+    default boolean pinsVirtualThreads() {
+        return false;
+    }
+
+    /**
+     * Splits a name at its dots and wraps every part in the quote character, doubling the quote character inside.
+     *
+     * @param identifier the name
+     * @param quote      the quote character
+     * @param normalizer applied to every part before quoting
+     * @return the quoted name
+     */
+    static String quoteParts(String identifier, char quote, UnaryOperator<String> normalizer) {
+        String doubled = String.valueOf(quote).repeat(2);
+        return Arrays.stream(identifier.split("\\.", -1))
+                .map(part -> quote + normalizer.apply(part).replace(String.valueOf(quote), doubled) + quote)
+                .collect(Collectors.joining("."));
+    }
+
     /**
      * Configures the physical naming strategy using {@link CustomPhysicalNamingStrategy}.
      *
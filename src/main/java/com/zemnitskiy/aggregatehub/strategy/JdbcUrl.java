@@ -0,0 +1,50 @@
+package com.zemnitskiy.aggregatehub.strategy;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Optional;
+
+/**
+ * The parts of a single-host JDBC URL such as {@code jdbc:mysql://host:3306/db?useSSL=false}.
+ *
+ * @param host       the server host
+ * @param port       the server port, or the default port of the driver if the URL has none
+ * @param database   the database (catalog) name, or {@code null}
+ * @param parameters the query string, or {@code null}
+ */
+public record JdbcUrl(String host, int port, String database, String parameters) {
+
+    /**
+     * Parses a JDBC URL.
+     *
+     * @param url         the JDBC URL
+     * @param defaultPort the port used when the URL has none
+     * @return the parsed URL, or empty if it is not a single-host {@code jdbc:<driver>://host[:port]/...} URL
+     */
+    public static Optional<JdbcUrl> parse(String url, int defaultPort) {
+        if (url == null || !url.startsWith("jdbc:")) {
+            return Optional.empty();
+        }
+        try {
+            URI uri = new URI(url.substring("jdbc:".length()));
+            if (uri.getHost() == null) {
+                return Optional.empty();
+            }
+            String path = uri.getPath();
+            String database = path != null && path.length() > 1 ? path.substring(1) : null;
+            return Optional.of(new JdbcUrl(uri.getHost(), uri.getPort() >= 0 ? uri.getPort() : defaultPort,
+                    database, uri.getQuery()));
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns {@code host:port}, followed by the query string if there is one.
+     *
+     * @return the server address with its connection parameters
+     */
+    public String server() {
+        return host + ":" + port + (parameters != null ? "?" + parameters : "");
+    }
+}
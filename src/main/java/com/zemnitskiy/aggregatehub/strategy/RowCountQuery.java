@@ -0,0 +1,14 @@
+package com.zemnitskiy.aggregatehub.strategy;
+
+import java.util.List;
+
+/**
+ * A query whose single value is the (estimated) number of rows of a table, produced by
+ * {@link DatabaseStrategy#rowCountQuery}. Names looked up in the catalog are passed as bind parameters rather than
+ * written into the SQL.
+ *
+ * @param sql        the SQL, with one {@code ?} per parameter
+ * @param parameters the values of the {@code ?} placeholders, in order
+ */
+public record RowCountQuery(String sql, List<String> parameters) {
+}
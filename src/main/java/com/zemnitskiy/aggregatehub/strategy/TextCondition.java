@@ -0,0 +1,51 @@
+package com.zemnitskiy.aggregatehub.strategy;
+
+/**
+ * One condition on a text column, produced by {@link DatabaseStrategy#textConditions} and rendered either as
+ * a Criteria API predicate or as SQL: the column, optionally under a collation and lower-cased, compared with
+ * {@code =} or with {@code LIKE ... ESCAPE '!'}.
+ *
+ * @param collation the collation applied to the column, or {@code null}
+ * @param lowerCase whether the column is lower-cased
+ * @param like      whether {@code value} is a {@code LIKE} pattern rather than a value compared with {@code =}
+ * @param value     the value or pattern
+ */
+public record TextCondition(String collation, boolean lowerCase, boolean like, String value) {
+
+    /**
+     * Escape character of the {@code LIKE} patterns.
+     */
+    public static final char ESCAPE = '!';
+
+    /**
+     * Returns the {@code LIKE} pattern matching values that start with the given text.
+     *
+     * @param text the text, matched literally
+     * @return the pattern
+     */
+    public static String prefixPattern(String text) {
+        StringBuilder pattern = new StringBuilder(text.length() + 1);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ESCAPE || c == '%' || c == '_') {
+                pattern.append(ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    /**
+     * Renders the condition as SQL with a single {@code ?} for the value.
+     *
+     * @param column the column
+     * @return the SQL condition
+     */
+    public String toSql(String column) {
+        String expression = collation != null ? column + " COLLATE " + collation : column;
+        if (lowerCase) {
+            expression = "lower(" + expression + ")";
+        }
+        return like ? expression + " LIKE ? ESCAPE '" + ESCAPE + "'" : expression + " = ?";
+    }
+}
@@ -0,0 +1,37 @@
+package com.zemnitskiy.aggregatehub.strategy;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * A source of users that is not read through JDBC, created by a {@link UserSourceStrategy}.
+ */
+public interface UserSource extends AutoCloseable {
+
+    /**
+     * Streams the users matching the filter to the consumer on the calling thread. Stops reading when the
+     * consumer throws.
+     *
+     * @param filter   the filter criteria
+     * @param consumer the consumer receiving each matching user
+     * @throws IOException if the source cannot be read
+     */
+    void streamUsers(UserFilter filter, Consumer<User> consumer) throws IOException;
+
+    /**
+     * Reads a cheap value that changes whenever the users of the source change.
+     *
+     * @return the watermark, or {@code null} if the source cannot tell
+     * @throws IOException if the source cannot be read
+     */
+    String fetchWatermark() throws IOException;
+
+    /**
+     * Releases the resources of the source.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,23 @@
+package com.zemnitskiy.aggregatehub.strategy;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig;
+
+/**
+ * Strategy for sources that are not relational databases, such as other AggregateHub instances.
+ * <p>
+ * Unlike a {@link DatabaseStrategy}, such a strategy creates neither a DataSource nor an EntityManagerFactory;
+ * the hub reads the source through the {@link UserSource} it opens. Implementations are registered as beans
+ * named after the {@code strategy} value they serve.
+ * </p>
+ */
+public interface UserSourceStrategy {
+
+    /**
+     * Opens a source based on the provided {@link DatabaseListConfig.DatabaseConfig}.
+     *
+     * @param config the source configuration
+     * @return the opened source
+     * @throws IllegalArgumentException if the configuration is invalid for this strategy
+     */
+    UserSource open(DatabaseListConfig.DatabaseConfig config);
+}
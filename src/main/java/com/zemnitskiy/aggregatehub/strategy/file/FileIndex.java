@@ -0,0 +1,193 @@
+package com.zemnitskiy.aggregatehub.strategy.file;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Record offsets and hash indexes over a memory-mapped file of users.
+ * <p>
+ * A record is a line, except in delimited files, where a quoted value may span line breaks. Only the start and
+ * length of every record are kept, plus two chained hash indexes over the {@code id} and {@code username} fields
+ * ({@code heads} maps a bucket to its first record, {@code next} links a record to the following record of the same
+ * bucket, in file order). Field values are never held in memory: a filter on {@code id} or {@code username} walks
+ * the chain of its bucket and parses only those records, while other filters parse every record. About 20 bytes of
+ * heap are used per record, however long the records are.
+ * </p>
+ */
+final class FileIndex {
+
+    private static final int EMPTY = -1;
+
+    private final MappedFile file;
+    private final FileLayout layout;
+    private final String version;
+    private final int rows;
+    private final long[] starts;
+    private final int[] lengths;
+    private final int[] idHeads;
+    private final int[] idNext;
+    private final int[] usernameHeads;
+    private final int[] usernameNext;
+
+    private FileIndex(MappedFile file, FileLayout layout, String version, int rows, long[] starts, int[] lengths,
+                      int[] idHeads, int[] idNext, int[] usernameHeads, int[] usernameNext) {
+        this.file = file;
+        this.layout = layout;
+        this.version = version;
+        this.rows = rows;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.idHeads = idHeads;
+        this.idNext = idNext;
+        this.usernameHeads = usernameHeads;
+        this.usernameNext = usernameNext;
+    }
+
+    /**
+     * Maps the file and indexes every non-empty record.
+     *
+     * @param path      the file
+     * @param delimiter the delimiter of delimited files
+     * @param mapping   the field layout, see {@link FileLayout}
+     * @param version   the version of the file being indexed
+     */
+    static FileIndex build(Path path, char delimiter, Map<String, String> mapping, String version) throws IOException {
+        MappedFile file = new MappedFile(path);
+        long position = 0;
+        FileLayout layout;
+        boolean fixedWidth = FileLayout.isFixedWidth(mapping);
+        if (fixedWidth) {
+            layout = FileLayout.fixedWidth(mapping);
+        } else {
+            long headerEnd = file.recordEnd(0);
+            layout = FileLayout.delimited(delimiter, mapping, file.bytes(0, lineLength(file, 0, headerEnd)));
+            position = headerEnd + 1;
+        }
+
+        int rows = 0;
+        long[] starts = new long[1024];
+        int[] lengths = new int[1024];
+        int[] idHashes = new int[1024];
+        int[] usernameHashes = new int[1024];
+        BitSet nullIds = new BitSet();
+        BitSet nullUsernames = new BitSet();
+        while (position < file.size()) {
+            long end = fixedWidth ? file.lineEnd(position) : file.recordEnd(position);
+            int length = lineLength(file, position, end);
+            if (length > 0) {
+                if (rows == starts.length) {
+                    int capacity = Math.min(Integer.MAX_VALUE - 8, rows * 2);
+                    starts = Arrays.copyOf(starts, capacity);
+                    lengths = Arrays.copyOf(lengths, capacity);
+                    idHashes = Arrays.copyOf(idHashes, capacity);
+                    usernameHashes = Arrays.copyOf(usernameHashes, capacity);
+                }
+                String[] fields = layout.parse(file.bytes(position, length));
+                starts[rows] = position;
+                lengths[rows] = length;
+                idHashes[rows] = hash(fields[FileLayout.ID]);
+                usernameHashes[rows] = hash(fields[FileLayout.USERNAME]);
+                nullIds.set(rows, fields[FileLayout.ID] == null);
+                nullUsernames.set(rows, fields[FileLayout.USERNAME] == null);
+                rows++;
+            }
+            position = end + 1;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(16, rows * 2 - 1)) << 1;
+        int[] idHeads = new int[capacity];
+        int[] idNext = new int[rows];
+        int[] usernameHeads = new int[capacity];
+        int[] usernameNext = new int[rows];
+        chain(idHashes, nullIds, rows, idHeads, idNext);
+        chain(usernameHashes, nullUsernames, rows, usernameHeads, usernameNext);
+        return new FileIndex(file, layout, version, rows, Arrays.copyOf(starts, rows), Arrays.copyOf(lengths, rows),
+                idHeads, idNext, usernameHeads, usernameNext);
+    }
+
+    String version() {
+        return version;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    FileLayout layout() {
+        return layout;
+    }
+
+    /**
+     * Emits the users matching the filter, with the same matching semantics as the database queries, in file order,
+     * at most {@link UserFilter#limit()} of them.
+     */
+    void forEachMatch(UserFilter filter, Consumer<User> consumer) {
+        int limit = filter.limit() != null ? filter.limit() : Integer.MAX_VALUE;
+        int emitted = 0;
+        if (filter.id() != null || (filter.username() != null && filter.exactText())) {
+            boolean byId = filter.id() != null;
+            int[] heads = byId ? idHeads : usernameHeads;
+            int[] next = byId ? idNext : usernameNext;
+            String value = byId ? filter.id() : filter.username();
+            for (int row = heads[hash(value) & (heads.length - 1)]; row != EMPTY && emitted < limit; row = next[row]) {
+                if (emitIfMatching(row, filter, consumer)) {
+                    emitted++;
+                }
+            }
+        } else {
+            for (int row = 0; row < rows && emitted < limit; row++) {
+                if (emitIfMatching(row, filter, consumer)) {
+                    emitted++;
+                }
+            }
+        }
+    }
+
+    private boolean emitIfMatching(int row, UserFilter filter, Consumer<User> consumer) {
+        String[] fields = layout.parse(file.bytes(starts[row], lengths[row]));
+        if ((filter.id() == null || filter.id().equals(fields[FileLayout.ID]))
+                && filter.matchesText(filter.username(), fields[FileLayout.USERNAME])
+                && filter.matchesText(filter.name(), fields[FileLayout.NAME])
+                && filter.matchesText(filter.surname(), fields[FileLayout.SURNAME])) {
+            consumer.accept(new User(fields[FileLayout.ID], fields[FileLayout.USERNAME], fields[FileLayout.NAME],
+                    fields[FileLayout.SURNAME]));
+            return true;
+        }
+        return false;
+    }
+
+    private static void chain(int[] hashes, BitSet nulls, int rows, int[] heads, int[] next) {
+        Arrays.fill(heads, EMPTY);
+        Arrays.fill(next, EMPTY);
+        for (int row = rows - 1; row >= 0; row--) {
+            if (!nulls.get(row)) {
+                int bucket = hashes[row] & (heads.length - 1);
+                next[row] = heads[bucket];
+                heads[bucket] = row;
+            }
+        }
+    }
+
+    private static int lineLength(MappedFile file, long start, long end) throws IOException {
+        long length = end - start;
+        if (length > 0 && file.get(end - 1) == '\r') {
+            length--;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Record at offset " + start + " is longer than 2 GB");
+        }
+        return (int) length;
+    }
+
+    private static int hash(String value) {
+        int hash = value != null ? value.hashCode() : 0;
+        return hash ^ (hash >>> 16);
+    }
+}
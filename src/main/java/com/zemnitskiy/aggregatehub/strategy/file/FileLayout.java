@@ -0,0 +1,140 @@
+package com.zemnitskiy.aggregatehub.strategy.file;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * How the {@code id}, {@code username}, {@code name} and {@code surname} fields are laid out in a line of a file.
+ * <p>
+ * When every {@code mapping} value is a byte range such as {@code 0-10} (start inclusive, end exclusive), lines are
+ * fixed-width and each field is the trimmed range. Otherwise lines are delimited, by tabs for {@code .tsv} files and
+ * by commas for others, with RFC 4180 quoting, so quoted values may contain delimiters, doubled quotes and line
+ * breaks; the first record is a header, and each {@code mapping} value names the header column of a field, which
+ * defaults to the field name. Empty fields are {@code null}.
+ * </p>
+ */
+final class FileLayout {
+
+    static final List<String> FIELDS = List.of("id", "username", "name", "surname");
+    static final int ID = 0;
+    static final int USERNAME = 1;
+    static final int NAME = 2;
+    static final int SURNAME = 3;
+
+    private static final Pattern RANGE = Pattern.compile("(\\d+)-(\\d+)");
+
+    private final char delimiter;
+    private final int[] columns;
+    private final int[] starts;
+    private final int[] ends;
+
+    private FileLayout(char delimiter, int[] columns, int[] starts, int[] ends) {
+        this.delimiter = delimiter;
+        this.columns = columns;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    static boolean isFixedWidth(Map<String, String> mapping) {
+        return mapping != null && mapping.keySet().containsAll(FIELDS)
+                && mapping.values().stream().allMatch(value -> value != null && RANGE.matcher(value.trim()).matches());
+    }
+
+    static FileLayout fixedWidth(Map<String, String> mapping) {
+        int[] starts = new int[FIELDS.size()];
+        int[] ends = new int[FIELDS.size()];
+        for (int field = 0; field < FIELDS.size(); field++) {
+            Matcher range = RANGE.matcher(mapping.get(FIELDS.get(field)).trim());
+            range.matches();
+            starts[field] = Integer.parseInt(range.group(1));
+            ends[field] = Integer.parseInt(range.group(2));
+            if (ends[field] <= starts[field]) {
+                throw new IllegalArgumentException("Empty range for field " + FIELDS.get(field) + ": " + range.group());
+            }
+        }
+        return new FileLayout((char) 0, null, starts, ends);
+    }
+
+    static FileLayout delimited(char delimiter, Map<String, String> mapping, byte[] headerLine) {
+        List<String> header = split(headerLine, delimiter);
+        int[] columns = new int[FIELDS.size()];
+        for (int field = 0; field < FIELDS.size(); field++) {
+            String name = mapping != null && mapping.get(FIELDS.get(field)) != null
+                    ? mapping.get(FIELDS.get(field)) : FIELDS.get(field);
+            columns[field] = header.indexOf(name);
+            if (columns[field] < 0) {
+                throw new IllegalArgumentException("Column " + name + " of field " + FIELDS.get(field)
+                        + " not found in header " + header);
+            }
+        }
+        return new FileLayout(delimiter, columns, null, null);
+    }
+
+    /**
+     * Returns the fields of a record, without its line terminator, in the order of {@link #FIELDS}.
+     */
+    String[] parse(byte[] line) {
+        String[] fields = new String[FIELDS.size()];
+        if (columns == null) {
+            for (int field = 0; field < fields.length; field++) {
+                int start = Math.min(starts[field], line.length);
+                int end = Math.min(ends[field], line.length);
+                fields[field] = emptyToNull(new String(line, start, end - start, StandardCharsets.UTF_8).trim());
+            }
+        } else {
+            List<String> values = split(line, delimiter);
+            for (int field = 0; field < fields.length; field++) {
+                fields[field] = columns[field] < values.size() ? emptyToNull(values.get(columns[field])) : null;
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Splits a delimited record, unquoting quoted values and their doubled quotes.
+     */
+    private static List<String> split(byte[] record, char delimiter) {
+        String text = new String(record, StandardCharsets.UTF_8);
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    @Override
+    public String toString() {
+        return columns != null
+                ? "delimited by '" + delimiter + "', columns " + Arrays.toString(columns)
+                : "fixed-width, ranges " + Arrays.toString(starts) + " to " + Arrays.toString(ends);
+    }
+}
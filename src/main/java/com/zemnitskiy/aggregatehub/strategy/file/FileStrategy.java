@@ -0,0 +1,53 @@
+package com.zemnitskiy.aggregatehub.strategy.file;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import com.zemnitskiy.aggregatehub.strategy.UserSourceStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * {@link UserSourceStrategy} serving a CSV, TSV or fixed-width dump of users straight from a memory-mapped file,
+ * without loading it into a database first.
+ * <p>
+ * The {@code url} of the source is the path of the file, either plain or as a {@code file:} URI. Its
+ * {@code mapping} locates the fields in a line, see {@link FileLayout}.
+ * </p>
+ */
+@Component("file")
+public class FileStrategy implements UserSourceStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileStrategy.class);
+
+    /**
+     * Maps and indexes the file of the source.
+     *
+     * @param config the source configuration
+     * @return the file source
+     * @throws IllegalArgumentException if the file does not exist or its layout does not match the mapping
+     * @throws UncheckedIOException     if the file cannot be read
+     */
+    @Override
+    public UserSource open(DatabaseConfig config) {
+        if (config.url() == null || config.url().isBlank()) {
+            throw new IllegalArgumentException("File source " + config.name() + " requires the file path as url");
+        }
+        Path path = config.url().startsWith("file:") ? Path.of(URI.create(config.url())) : Path.of(config.url());
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("File of source " + config.name() + " not found: " + path);
+        }
+        logger.info("Creating file source for: {}", path);
+        try {
+            return new FileUserSource(config, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to index file " + path + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.zemnitskiy.aggregatehub.strategy.file;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.ChangeDetection;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A flat file of users served from a memory-mapped {@link FileIndex}.
+ * <p>
+ * The file is indexed when the source is opened. Its size and modification time are its watermark; when they
+ * change, the next read indexes the new file before serving it. Files should be replaced by an atomic move rather
+ * than rewritten in place, so a read never sees a half-written file.
+ * </p>
+ */
+final class FileUserSource implements UserSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileUserSource.class);
+
+    private final String name;
+    private final Path path;
+    private final char delimiter;
+    private final Map<String, String> mapping;
+    private final boolean detectChanges;
+    // Indexing reads the whole file; unlike a monitor, waiting on this lock does not pin virtual threads
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private volatile FileIndex index;
+
+    FileUserSource(DatabaseConfig config, Path path) throws IOException {
+        this.name = config.name();
+        this.path = path;
+        this.delimiter = path.getFileName().toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        this.mapping = config.mapping();
+        // Size and modification time follow every replacement, so versioning is on unless turned off explicitly
+        this.detectChanges = config.changeDetection() == null
+                || config.changeDetection().mode() != ChangeDetection.Mode.NONE;
+        this.index = load(version());
+    }
+
+    @Override
+    public void streamUsers(UserFilter filter, Consumer<User> consumer) throws IOException {
+        current().forEachMatch(filter, consumer);
+    }
+
+    @Override
+    public String fetchWatermark() throws IOException {
+        return detectChanges ? version() : null;
+    }
+
+    /**
+     * Nothing to release eagerly: mappings are unmapped once the index becomes unreachable.
+     */
+    @Override
+    public void close() {
+    }
+
+    private FileIndex current() throws IOException {
+        String version = version();
+        FileIndex current = index;
+        if (current.version().equals(version)) {
+            return current;
+        }
+        reloadLock.lock();
+        try {
+            if (!index.version().equals(version)) {
+                index = load(version);
+            }
+            return index;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private FileIndex load(String version) throws IOException {
+        long start = System.nanoTime();
+        FileIndex loaded = FileIndex.build(path, delimiter, mapping, version);
+        logger.info("Indexed {} users of file source '{}' ({}) in {} ms", loaded.rows(), name, loaded.layout(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return loaded;
+    }
+
+    private String version() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+    }
+}
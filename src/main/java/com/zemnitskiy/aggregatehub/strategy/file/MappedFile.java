@@ -0,0 +1,89 @@
+package com.zemnitskiy.aggregatehub.strategy.file;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only memory-mapped file of any size.
+ * <p>
+ * A single mapping is limited to 2 GB, so the file is mapped in chunks of 1 GB addressed by a {@code long}
+ * position; reads spanning two chunks are stitched together. Pages are loaded by the operating system on
+ * first access and can be evicted under memory pressure, so a file larger than the heap costs no heap.
+ * </p>
+ */
+final class MappedFile {
+
+    private static final int CHUNK_BITS = 30;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    MappedFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, size - offset));
+            }
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    /**
+     * Returns the position of the next line feed at or after the position, or the file size if there is none.
+     */
+    long lineEnd(long position) {
+        while (position < size && get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position of the next line feed at or after the position that is not inside a double-quoted
+     * value, or the file size if there is none. A doubled quote inside a quoted value flips the state twice, so it
+     * needs no special case.
+     */
+    long recordEnd(long position) {
+        boolean quoted = false;
+        while (position < size) {
+            byte b = get(position);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted) {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Copies {@code length} bytes starting at the position.
+     */
+    byte[] bytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long at = position + copied;
+            MappedByteBuffer chunk = chunks[(int) (at >>> CHUNK_BITS)];
+            int offset = (int) (at & (CHUNK_SIZE - 1));
+            int count = Math.min(length - copied, chunk.capacity() - offset);
+            chunk.get(offset, bytes, copied, count);
+            copied += count;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,50 @@
+package com.zemnitskiy.aggregatehub.strategy.hub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import com.zemnitskiy.aggregatehub.strategy.UserSourceStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+
+/**
+ * {@link UserSourceStrategy} reading another AggregateHub instance as a source, so hubs can be tiered:
+ * a global hub aggregates regional hubs instead of holding pools to every database itself.
+ * <p>
+ * The {@code url} of the source is the base URL of the other hub, e.g. {@code http://eu-hub:8080}.
+ * When {@code user} is set, requests authenticate with HTTP basic authentication.
+ * </p>
+ */
+@Component("hub")
+public class HubStrategy implements UserSourceStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(HubStrategy.class);
+
+    private final ObjectMapper objectMapper;
+
+    public HubStrategy(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Opens a source reading the hub at the configured URL.
+     *
+     * @param config the source configuration
+     * @return the hub source
+     * @throws IllegalArgumentException if the URL is not an absolute HTTP(S) URL
+     */
+    @Override
+    public UserSource open(DatabaseConfig config) {
+        URI baseUri = config.url() != null ? URI.create(config.url().replaceAll("/+$", "")) : null;
+        if (baseUri == null || baseUri.getHost() == null
+                || !("http".equals(baseUri.getScheme()) || "https".equals(baseUri.getScheme()))) {
+            throw new IllegalArgumentException("Hub source " + config.name() + " requires an http(s) url, got: "
+                    + config.url());
+        }
+        logger.info("Creating hub source for URL: {}", baseUri);
+        return new HubUserSource(config, baseUri, objectMapper);
+    }
+}
@@ -0,0 +1,192 @@
+package com.zemnitskiy.aggregatehub.strategy.hub;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.zemnitskiy.aggregatehub.admission.AdmissionGate;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.ChangeDetection;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.executor.HubPath;
+import com.zemnitskiy.aggregatehub.executor.QueryDeadline;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Another AggregateHub read over HTTP.
+ * <p>
+ * Users are read from {@code GET /users/stream}, which the remote hub answers as newline-delimited JSON while it
+ * reads its own databases, and are parsed one line at a time, so neither hub holds the whole result. The stream is
+ * requested with a trailer line holding the number of users sent; a stream ending without it, or with another
+ * count, was cut off and fails rather than passing for a complete result. Closing the stream early, e.g. when the
+ * consumer throws, aborts the remote request. All requests share one {@link HttpClient}, which keeps connections
+ * to the remote hub open for reuse.
+ * </p>
+ * <p>
+ * Requests carry the {@link QueryDeadline} of the reading thread, as the request timeout and as the deadline of
+ * the remote hub, and its {@link HubPath}, so hubs configured as sources of each other refuse the request instead
+ * of forwarding it forever.
+ * </p>
+ * The watermark is the entity tag of the remote hub, a digest of the versions of all its databases. It is
+ * probed with {@code If-None-Match: *} and a fixed filter matching no user, so the remote hub answers {@code 304}
+ * without reading any rows, or an empty result if it cannot version its databases. The remote tag also digests
+ * the filter, which is why the probe filter never changes.
+ */
+final class HubUserSource implements UserSource {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(30);
+    private static final String TRAILER_HEADER = "X-Stream-Trailer";
+    private static final UserFilter PROBE_FILTER = new UserFilter(new UUID(0, 0).toString(), null, null, null);
+
+    private final String name;
+    private final URI baseUri;
+    private final String authorization;
+    private final boolean detectChanges;
+    private final ObjectReader userReader;
+    private final HttpClient httpClient;
+
+    HubUserSource(DatabaseConfig config, URI baseUri, ObjectMapper objectMapper) {
+        this.name = config.name();
+        this.baseUri = baseUri;
+        this.authorization = config.user() != null
+                ? "Basic " + Base64.getEncoder().encodeToString(
+                (config.user() + ":" + (config.password() != null ? config.password() : ""))
+                        .getBytes(StandardCharsets.UTF_8))
+                : null;
+        // The remote entity tag is exact, so versioning is on unless turned off explicitly
+        this.detectChanges = config.changeDetection() == null
+                || config.changeDetection().mode() != ChangeDetection.Mode.NONE;
+        this.userReader = objectMapper.readerFor(User.class);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public void streamUsers(UserFilter filter, Consumer<User> consumer) throws IOException {
+        HttpRequest.Builder builder = request("/users/stream" + query(filter))
+                // JSON as well, so errors reach this side with their status rather than as 500
+                .header("Accept", "application/x-ndjson, application/json")
+                .header(TRAILER_HEADER, "count");
+        Duration remaining = QueryDeadline.remaining();
+        if (remaining != null) {
+            builder.timeout(remaining)
+                    .header(AdmissionGate.DEADLINE_HEADER, Long.toString(remaining.toMillis()));
+        }
+        HttpResponse<InputStream> response = send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Hub " + name + " answered " + response.statusCode() + ": "
+                        + new String(body.readNBytes(1024), StandardCharsets.UTF_8));
+            }
+            readUsers(body, consumer);
+        }
+    }
+
+    private void readUsers(InputStream body, Consumer<User> consumer) throws IOException {
+        long received = 0;
+        Long trailer = null;
+        try (JsonParser parser = userReader.createParser(body)) {
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                if (trailer != null) {
+                    throw new IOException("Hub " + name + " sent data after the end of its stream");
+                }
+                if (token == JsonToken.VALUE_NUMBER_INT) {
+                    trailer = parser.getLongValue();
+                } else {
+                    consumer.accept(userReader.readValue(parser));
+                    received++;
+                }
+            }
+        }
+        if (trailer == null || trailer != received) {
+            throw new IOException("Stream of hub " + name + " was cut off after " + received + " users"
+                    + (trailer != null ? " of " + trailer : ""));
+        }
+    }
+
+    @Override
+    public String fetchWatermark() throws IOException {
+        if (!detectChanges) {
+            return null;
+        }
+        Duration remaining = QueryDeadline.remaining();
+        HttpRequest request = request("/users" + query(PROBE_FILTER))
+                .header("If-None-Match", "*")
+                .timeout(remaining != null && remaining.compareTo(PROBE_TIMEOUT) < 0 ? remaining : PROBE_TIMEOUT)
+                .build();
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200 && response.statusCode() != 304) {
+            throw new IOException("Hub " + name + " answered " + response.statusCode() + " to the version probe");
+        }
+        return response.headers().firstValue("ETag").orElse(null);
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+
+    private HttpRequest.Builder request(String pathAndQuery) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUri + pathAndQuery)).GET();
+        if (authorization != null) {
+            builder.header("Authorization", authorization);
+        }
+        String path = HubPath.current();
+        if (path != null) {
+            builder.header(HubPath.HEADER, path);
+        }
+        return builder;
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        try {
+            return httpClient.send(request, bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading hub " + name);
+        }
+    }
+
+    private static String query(UserFilter filter) {
+        StringJoiner query = new StringJoiner("&", "?", "").setEmptyValue("");
+        append(query, "id", filter.id());
+        append(query, "username", filter.username());
+        append(query, "name", filter.name());
+        append(query, "surname", filter.surname());
+        if (filter.prefix()) {
+            query.add("prefix=true");
+        }
+        if (filter.ignoreCase()) {
+            query.add("ignoreCase=true");
+        }
+        if (filter.limit() != null) {
+            query.add("limit=" + filter.limit());
+        }
+        return query.toString();
+    }
+
+    private static void append(StringJoiner query, String parameter, String value) {
+        if (value != null) {
+            query.add(parameter + "=" + URLEncoder.encode(value, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.zemnitskiy.aggregatehub.strategy.mysql;
 
 import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
 import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
+import com.zemnitskiy.aggregatehub.strategy.JdbcUrl;
+import com.zemnitskiy.aggregatehub.strategy.RowCountQuery;
+import com.zemnitskiy.aggregatehub.strategy.TextCondition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,6 +12,14 @@ import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -18,16 +29,27 @@ import java.util.Properties;
 @Component("mysql")
 public class MySqlStrategy implements DatabaseStrategy {
 
+    private static final int DEFAULT_PORT = 3306;
+    private static final String CURSOR_FETCH = "useCursorFetch";
+
     @Value("${database-strategies.mysql.driver}")
     private String driver;
 
     @Value("${database-strategies.mysql.dialect}")
     private String dialect;
 
+    @Value("${database-strategies.mysql.case-insensitive-collation:utf8mb4_0900_as_ci}")
+    private String caseInsensitiveCollation;
+
+    @Value("${database-strategies.mysql.case-sensitive-collation:}")
+    private String caseSensitiveCollation;
+
     private static final Logger logger = LoggerFactory.getLogger(MySqlStrategy.class);
 
     /**
      * Creates a {@link DataSource} instance for MySQL using the provided {@link DatabaseConfig}.
+     * Connector/J reads the whole result of a query into memory unless cursor fetching is enabled, so
+     * {@code useCursorFetch=true} is added to URLs that do not set it.
      *
      * @param config the database configuration containing connection details
      * @return a configured {@link DataSource}
@@ -37,15 +59,154 @@ public class MySqlStrategy implements DatabaseStrategy {
         logger.info("Creating MySQL DataSource with URL: {}", config.url());
         return DataSourceBuilder.create()
                 .driverClassName(driver)
-                .url(config.url())
+                .url(withCursorFetch(config.url()))
                 .username(config.user())
                 .password(config.password())
                 .build();
     }
 
+    static String withCursorFetch(String url) {
+        if (url == null || url.contains(CURSOR_FETCH + "=")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + CURSOR_FETCH + "=true";
+    }
+
+    /**
+     * Quotes with backticks; MySQL resolves quoted and unquoted names alike.
+     *
+     * @param identifier the table or column name
+     * @return the quoted name
+     */
+    @Override
+    public String quoteIdentifier(String identifier) {
+        return DatabaseStrategy.quoteParts(identifier, '`', part -> part);
+    }
+
     /**
-     * Provides JPA properties specific to MySQL, including dialect, schema management,
-     * and SQL formatting options.
+     * MySQL compares by the collation of the column, which is what its index is ordered by, so a condition only
+     * names a collation when the column's own does not compare the way the criterion asks. Case-insensitive
+     * criteria compare under {@code case-insensitive-collation}. Other criteria compare under the column's own
+     * collation, as exact matches always have, unless {@code case-sensitive-collation} is set; MySQL's default
+     * collations ignore case, so by default they do too. Under a configured collation:
+     * <ul>
+     *     <li>on a column with exactly that collation, the column is compared as is;</li>
+     *     <li>on a column whose collation ignores case (or is unknown), the rows are narrowed down on the index
+     *     and then rechecked under the collation;</li>
+     *     <li>on a column whose collation respects case, case-sensitive criteria compare the column as is and
+     *     case-insensitive ones compare under the collation without the index, which cannot serve them.</li>
+     * </ul>
+     * Columns of another character set than the configured collations use that character set's
+     * {@code _general_ci} and {@code _bin} collations instead, since MySQL rejects a collation of another one.
+     *
+     * @param value           the criterion
+     * @param prefix          whether values starting with the criterion match
+     * @param ignoreCase      whether the case of the values is ignored
+     * @param columnCollation the collation of the column, or {@code null} if unknown
+     * @return the conditions
+     */
+    @Override
+    public List<TextCondition> textConditions(String value, boolean prefix, boolean ignoreCase,
+                                              String columnCollation) {
+        String compared = prefix ? TextCondition.prefixPattern(value) : value;
+        TextCondition onIndex = new TextCondition(null, false, prefix, compared);
+        if (!ignoreCase && (caseSensitiveCollation == null || caseSensitiveCollation.isBlank())) {
+            return List.of(onIndex);
+        }
+        String collation = ignoreCase
+                ? collationFor(columnCollation, caseInsensitiveCollation, "_general_ci")
+                : collationFor(columnCollation, caseSensitiveCollation, "_bin");
+        if (collation.equalsIgnoreCase(columnCollation)) {
+            return List.of(onIndex);
+        }
+        TextCondition underCollation = new TextCondition(collation, false, prefix, compared);
+        if (columnCollation != null && !columnCollation.endsWith("_ci")) {
+            return List.of(ignoreCase ? underCollation : onIndex);
+        }
+        return List.of(onIndex, underCollation);
+    }
+
+    /**
+     * Returns the configured collation if it belongs to the character set of the column, otherwise the collation
+     * of that character set with the given suffix.
+     */
+    private static String collationFor(String columnCollation, String configured, String suffix) {
+        if (columnCollation == null) {
+            return configured;
+        }
+        int underscore = columnCollation.indexOf('_');
+        String charset = underscore > 0 ? columnCollation.substring(0, underscore) : columnCollation;
+        return configured.startsWith(charset + "_") ? configured : charset + suffix;
+    }
+
+    /**
+     * Reads the collations from {@code information_schema.COLUMNS}. A table qualified by its database is looked
+     * up in that database, any other in the database of the connection.
+     *
+     * @param connection a connection to the database
+     * @param table      the table name, optionally qualified by its database
+     * @return the collations keyed by lower-case column name
+     * @throws SQLException if the catalog cannot be read
+     */
+    @Override
+    public Map<String, String> columnCollations(Connection connection, String table) throws SQLException {
+        Map<String, String> collations = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COLUMN_NAME, COLLATION_NAME "
+                + "FROM information_schema.COLUMNS WHERE " + tableCondition(table)
+                + " AND COLLATION_NAME IS NOT NULL")) {
+            List<String> parameters = tableParameters(table);
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setString(i + 1, parameters.get(i));
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    collations.put(rows.getString(1).toLowerCase(Locale.ROOT), rows.getString(2));
+                }
+            }
+        }
+        return collations;
+    }
+
+    /**
+     * MySQL databases are schemas of one server, so every database on the same host and port can be read through
+     * one connection.
+     *
+     * @param config the database configuration
+     * @return {@code host:port} with the connection parameters, or {@code null} for URLs naming several hosts
+     */
+    @Override
+    public String serverKey(DatabaseConfig config) {
+        return JdbcUrl.parse(config.url(), DEFAULT_PORT).map(JdbcUrl::server).orElse(null);
+    }
+
+    /**
+     * Prefixes the table with the database of the URL, unless the table is already qualified.
+     *
+     * @param config the database configuration
+     * @return the qualified table name
+     */
+    @Override
+    public String qualifiedTableName(DatabaseConfig config) {
+        String table = config.tableName();
+        String database = JdbcUrl.parse(config.url(), DEFAULT_PORT).map(JdbcUrl::database).orElse(null);
+        return database == null || table.contains(".") ? table : database + "." + table;
+    }
+
+    /**
+     * Connector/J 8.0 guards socket reads and writes with {@code synchronized}, so every query pins the virtual
+     * thread running it. Later releases replaced those monitors with locks.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean pinsVirtualThreads() {
+        return true;
+    }
+
+    /**
+     * Provides JPA properties specific to MySQL, which is the dialect.
+     * Statements are not logged; slow ones are recorded by the slow query recorder. Schema management is chosen
+     * per database by the schema verifier.
      *
      * @return a {@link Properties} instance with MySQL-specific JPA properties
      */
@@ -53,11 +214,59 @@ public class MySqlStrategy implements DatabaseStrategy {
     public Properties getJpaProperties() {
         Properties jpaProperties = new Properties();
         jpaProperties.put(HIBERNATE_DIALECT, dialect);
-        jpaProperties.put(HIBERNATE_HBM2DDL_AUTO, "update");
-        jpaProperties.put(HIBERNATE_SHOW_SQL, "true");
-        jpaProperties.put(HIBERNATE_FORMAT_SQL, "true");
 
         logger.debug("Configured JPA properties for MySQL: {}", jpaProperties);
         return jpaProperties;
     }
-}
\ No newline at end of file
+
+    /**
+     * Reads the estimate of {@code information_schema.TABLES} instead of counting the rows. A table qualified
+     * by its database is looked up in that database, any other in the database of the connection.
+     *
+     * @param table the table name, optionally qualified by its database
+     * @return the row estimate query
+     */
+    @Override
+    public RowCountQuery rowCountQuery(String table) {
+        return new RowCountQuery("SELECT TABLE_ROWS FROM information_schema.TABLES WHERE " + tableCondition(table),
+                tableParameters(table));
+    }
+
+    /**
+     * Returns the {@code information_schema} condition selecting a table, with one {@code ?} per
+     * {@link #tableParameters} value.
+     */
+    private static String tableCondition(String table) {
+        return (table.indexOf('.') < 0 ? "TABLE_SCHEMA = DATABASE()" : "TABLE_SCHEMA = ?") + " AND TABLE_NAME = ?";
+    }
+
+    private static List<String> tableParameters(String table) {
+        int dot = table.lastIndexOf('.');
+        return dot < 0 ? List.of(table) : List.of(table.substring(0, dot), table.substring(dot + 1));
+    }
+
+    /**
+     * Creates the index with the in-place algorithm without locking, so writes continue while it is built.
+     *
+     * @param index  the index name
+     * @param table  the table name
+     * @param column the indexed column, or an expression over it
+     * @return the {@code CREATE INDEX} statement
+     */
+    @Override
+    public String createIndexStatement(String index, String table, String column) {
+        return "CREATE INDEX " + index + " ON " + table + " (" + column + ") ALGORITHM=INPLACE LOCK=NONE";
+    }
+
+    /**
+     * MySQL names the table of the index to drop.
+     *
+     * @param index the index name
+     * @param table the table name
+     * @return the {@code DROP INDEX} statement
+     */
+    @Override
+    public String dropIndexStatement(String index, String table) {
+        return "DROP INDEX " + index + " ON " + table;
+    }
+}
@@ -2,6 +2,8 @@ package com.zemnitskiy.aggregatehub.strategy.postgres;
 
 import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
 import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
+import com.zemnitskiy.aggregatehub.strategy.JdbcUrl;
+import com.zemnitskiy.aggregatehub.strategy.RowCountQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,7 +11,15 @@ import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * PostgreSQL-specific implementation of {@link DatabaseStrategy} for configuring DataSource
@@ -18,6 +28,8 @@ import java.util.Properties;
 @Component("postgres")
 public class PostgresStrategy implements DatabaseStrategy {
 
+    private static final int DEFAULT_PORT = 5432;
+
     @Value("${database-strategies.postgres.driver}")
     private String driver;
 
@@ -44,8 +56,9 @@ public class PostgresStrategy implements DatabaseStrategy {
     }
 
     /**
-     * Provides JPA properties specific to PostgreSQL, including dialect, schema management,
-     * and SQL formatting options.
+     * Provides JPA properties specific to PostgreSQL, which is the dialect.
+     * Statements are not logged; slow ones are recorded by the slow query recorder. Schema management is chosen
+     * per database by the schema verifier.
      *
      * @return a {@link Properties} instance with PostgreSQL-specific JPA properties
      */
@@ -53,11 +66,122 @@ public class PostgresStrategy implements DatabaseStrategy {
     public Properties getJpaProperties() {
         Properties jpaProperties = new Properties();
         jpaProperties.put(HIBERNATE_DIALECT, dialect);
-        jpaProperties.put(HIBERNATE_HBM2DDL_AUTO, "update");
-        jpaProperties.put(HIBERNATE_SHOW_SQL, "true");
-        jpaProperties.put(HIBERNATE_FORMAT_SQL, "true");
 
         logger.debug("Configured JPA properties for PostgreSQL: {}", jpaProperties);
         return jpaProperties;
     }
-}
\ No newline at end of file
+
+    /**
+     * A PostgreSQL connection only sees the database it was opened on, so only schemas and tables of the same
+     * database can be read together.
+     *
+     * @param config the database configuration
+     * @return {@code host:port/database} with the connection parameters, or {@code null} for URLs naming several
+     * hosts
+     */
+    @Override
+    public String serverKey(DatabaseConfig config) {
+        return JdbcUrl.parse(config.url(), DEFAULT_PORT)
+                .filter(url -> url.database() != null)
+                .map(url -> url.host() + ":" + url.port() + "/" + url.database()
+                        + (url.parameters() != null ? "?" + url.parameters() : ""))
+                .orElse(null);
+    }
+
+    /**
+     * PgJDBC only reads through a cursor, fetching the fetch size at a time, when autocommit is off.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean fetchesInBatchesOnlyInTransaction() {
+        return true;
+    }
+
+    /**
+     * Quotes with double quotes after lower-casing, since PostgreSQL folds unquoted names to lower case.
+     *
+     * @param identifier the table or column name
+     * @return the quoted name
+     */
+    @Override
+    public String quoteIdentifier(String identifier) {
+        return DatabaseStrategy.quoteParts(identifier, '"', part -> part.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Reads the planner's estimate from {@code pg_class} instead of counting the rows. The table is bound as
+     * a quoted name, so {@code to_regclass} resolves it the way the queries do.
+     *
+     * @param table the table name, optionally qualified by its schema
+     * @return the row estimate query
+     */
+    @Override
+    public RowCountQuery rowCountQuery(String table) {
+        return new RowCountQuery("SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE oid = to_regclass(?)",
+                List.of(quoteIdentifier(table)));
+    }
+
+    /**
+     * The default conditions compare {@code lower(column)} for case-insensitive criteria and use
+     * {@code LIKE 'abc%'} for prefixes. A B-tree index only serves {@code LIKE} under the {@code C} collation or
+     * with the {@code text_pattern_ops} operator class, and only an index on {@code lower(column)} serves
+     * {@code lower(column)}, so neither is served by a plain index on the column.
+     *
+     * @param column the column
+     * @return {@code lower(column) text_pattern_ops}
+     */
+    @Override
+    public String textSearchIndexDefinition(String column) {
+        return "lower(" + column + ") text_pattern_ops";
+    }
+
+    /**
+     * A {@code CREATE INDEX CONCURRENTLY} that fails leaves the index behind, marked invalid: queries do not use
+     * it, but {@code IF NOT EXISTS} still skips it, so it has to be dropped before it can be built again.
+     *
+     * @param connection a connection to the database
+     * @param table      the table name, optionally qualified by its schema
+     * @return the lower-case names of the invalid indexes
+     * @throws SQLException if the catalog cannot be read
+     */
+    @Override
+    public Set<String> invalidIndexes(Connection connection, String table) throws SQLException {
+        Set<String> invalid = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT c.relname FROM pg_index i "
+                + "JOIN pg_class c ON c.oid = i.indexrelid WHERE i.indrelid = to_regclass(?) AND NOT i.indisvalid")) {
+            statement.setString(1, quoteIdentifier(table));
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    invalid.add(rows.getString(1).toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Drops the index with {@code CONCURRENTLY}, so writes continue while it is dropped.
+     *
+     * @param index the index name
+     * @param table the table name
+     * @return the {@code DROP INDEX} statement
+     */
+    @Override
+    public String dropIndexStatement(String index, String table) {
+        return "DROP INDEX CONCURRENTLY IF EXISTS " + index;
+    }
+
+    /**
+     * Creates the index with {@code CONCURRENTLY}, so writes continue while it is built.
+     *
+     * @param index  the index name
+     * @param table  the table name
+     * @param column the indexed column, or an expression over it
+     * @return the {@code CREATE INDEX} statement
+     */
+    @Override
+    public String createIndexStatement(String index, String table, String column) {
+        return "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + index + " ON " + table + " (" + column + ")";
+    }
+}
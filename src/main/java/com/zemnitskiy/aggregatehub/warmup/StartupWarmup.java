@@ -0,0 +1,161 @@
+package com.zemnitskiy.aggregatehub.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zemnitskiy.aggregatehub.aggregation.Consistency;
+import com.zemnitskiy.aggregatehub.aggregation.DedupeMode;
+import com.zemnitskiy.aggregatehub.aggregation.SpillableUserBuffer;
+import com.zemnitskiy.aggregatehub.config.WarmupProperties;
+import com.zemnitskiy.aggregatehub.encoding.UserEncoding;
+import com.zemnitskiy.aggregatehub.encoding.UserWriter;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import com.zemnitskiy.aggregatehub.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms the read path up before the application reports itself ready for traffic.
+ * <p>
+ * Spring Boot reports readiness only after every {@link ApplicationRunner} has returned, so while this runner
+ * works, the readiness state stays {@code REFUSING_TRAFFIC} and no load balancer sends requests. For every
+ * database in parallel, the warm-up opens pool connections and runs the query of every filter combination once,
+ * which performs the driver handshake and builds the Hibernate query plans. It then runs synthetic aggregations
+ * through {@link UserService} and encodes synthetic users in every {@link UserEncoding}, so the merge and serialization code is compiled
+ * before the first real request. Failures are logged and never prevent startup.
+ * </p>
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    // Matches no row, so priming queries are as cheap as possible while still building plans and statements
+    private static final String NO_MATCH = "__aggregate-hub-warmup__";
+
+    private final WarmupProperties properties;
+    private final MultiDatabaseUserDao userDao;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    public StartupWarmup(WarmupProperties properties, MultiDatabaseUserDao userDao, UserService userService,
+                         ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.userDao = userDao;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.enabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + properties.timeout().toNanos();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<CompletableFuture<Void>> sources = userDao.getDatabaseNames().stream()
+                    .map(dbName -> CompletableFuture.runAsync(() -> warmUpSource(dbName), executor))
+                    .toList();
+            CompletableFuture.allOf(sources.toArray(new CompletableFuture[0]))
+                    .get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            CompletableFuture.runAsync(this::warmUpAggregation, executor)
+                    .get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            logger.info("Warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (TimeoutException e) {
+            logger.warn("Warm-up did not finish within {}, reporting readiness anyway", properties.timeout());
+        } catch (ExecutionException e) {
+            logger.warn("Warm-up failed, reporting readiness anyway: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void warmUpSource(String dbName) {
+        long start = System.nanoTime();
+        try {
+            userDao.openConnections(dbName, properties.connections());
+            for (UserFilter filter : filterCombinations()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // The warm-up timed out; stop querying a database the application already serves
+                    logger.info("Warm-up of database '{}' abandoned", dbName);
+                    return;
+                }
+                userDao.streamUsers(dbName, filter, user -> {
+                });
+            }
+            logger.info("Warmed up database '{}' in {} ms", dbName,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            logger.warn("Warm-up of database '{}' failed: {}", dbName, e.getMessage());
+        }
+    }
+
+    private void warmUpAggregation() {
+        UserFilter filter = new UserFilter(NO_MATCH, null, null, null);
+        List<User> synthetic = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            synthetic.add(new User("warmup-" + i, "warmup" + i, "Warm", "Up"));
+        }
+        try {
+            for (int i = 0; i < properties.aggregations(); i++) {
+                try (SpillableUserBuffer users = userService.getAllUsersFromAllDatabases(
+                        filter, Consistency.LIVE, i % 2 == 0 ? null : DedupeMode.ID, null)) {
+                    users.forEach(user -> {
+                    });
+                }
+                for (UserEncoding encoding : UserEncoding.values()) {
+                    try (UserWriter writer = encoding.writer(OutputStream.nullOutputStream(), objectMapper.getFactory())) {
+                        for (User user : synthetic) {
+                            writer.write(user);
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException | IOException e) {
+            logger.warn("Warm-up aggregation failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a filter for every combination of filtered fields, since each combination is a distinct query.
+     * Combinations with a text field are also returned as prefix and case-insensitive searches, whose conditions
+     * differ from exact matches.
+     */
+    private static List<UserFilter> filterCombinations() {
+        List<UserFilter> filters = new ArrayList<>(64);
+        for (int fields = 0; fields < 16; fields++) {
+            boolean text = (fields & ~1) != 0;
+            for (int shape = 0; shape < (text ? 4 : 1); shape++) {
+                filters.add(new UserFilter(
+                        (fields & 1) != 0 ? NO_MATCH : null,
+                        (fields & 2) != 0 ? NO_MATCH : null,
+                        (fields & 4) != 0 ? NO_MATCH : null,
+                        (fields & 8) != 0 ? NO_MATCH : null,
+                        (shape & 1) != 0, (shape & 2) != 0, null));
+            }
+        }
+        return filters;
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+}
@@ -0,0 +1,79 @@
+package com.zemnitskiy.aggregatehub;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Conditional requests with the result cache enabled, whose change tracker polls far less often than the test
+ * changes its file source.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CachedConditionalRequestIntegrationTest {
+
+    private static final Path DIRECTORY = createDirectory();
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @DynamicPropertySource
+    static void registerProperties(DynamicPropertyRegistry registry) throws IOException {
+        Path users = Files.writeString(DIRECTORY.resolve("users.csv"), "id,username,name,surname\n1,jdoe,John,Doe\n");
+        registry.add("aggregate-hub.data-sources[0].name", () -> "file");
+        registry.add("aggregate-hub.data-sources[0].strategy", () -> "file");
+        registry.add("aggregate-hub.data-sources[0].url", users::toString);
+        registry.add("aggregate-hub.cache.enabled", () -> "true");
+        registry.add("aggregate-hub.cache.poll-interval", () -> "1h");
+    }
+
+    @Test
+    @DisplayName("A conditional GET sees a change the cache has not polled yet")
+    void testConditionalGetProbesLive() throws IOException {
+        ResponseEntity<User[]> first = get("\"0\"", User[].class);
+        String eTag = first.getHeaders().getETag();
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(eTag).isNotNull();
+        assertThat(get(eTag, String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        Path replacement = Files.writeString(DIRECTORY.resolve("users.tmp"),
+                "id,username,name,surname\n1,jdoe,John,Doe\n2,asmith,Anna,Smith\n");
+        Files.move(replacement, DIRECTORY.resolve("users.csv"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        assertThat(get(eTag, String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private <T> ResponseEntity<T> get(String ifNoneMatch, Class<T> type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(ifNoneMatch);
+        return restTemplate.exchange("/users", HttpMethod.GET, new HttpEntity<>(headers), type);
+    }
+
+    private static Path createDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("cached-conditional-request-test");
+            directory.toFile().deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.zemnitskiy.aggregatehub;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Conditional requests against file sources, whose watermarks are exact, with neither the result cache nor the
+ * replica holding them.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ConditionalRequestIntegrationTest {
+
+    private static final Path DIRECTORY = createDirectory();
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @DynamicPropertySource
+    static void registerProperties(DynamicPropertyRegistry registry) throws IOException {
+        Path first = Files.writeString(DIRECTORY.resolve("first.csv"), "id,username,name,surname\n1,jdoe,John,Doe\n");
+        Path second = Files.writeString(DIRECTORY.resolve("second.csv"), "id,username,name,surname\n2,asmith,Anna,Smith\n");
+        registry.add("aggregate-hub.data-sources[0].name", () -> "file-1");
+        registry.add("aggregate-hub.data-sources[0].strategy", () -> "file");
+        registry.add("aggregate-hub.data-sources[0].url", first::toString);
+        registry.add("aggregate-hub.data-sources[1].name", () -> "file-2");
+        registry.add("aggregate-hub.data-sources[1].strategy", () -> "file");
+        registry.add("aggregate-hub.data-sources[1].url", second::toString);
+    }
+
+    @Test
+    @DisplayName("Conditional GET returns 304 until a source changes, and plain GETs probe nothing")
+    void testConditionalGet() throws IOException {
+        ResponseEntity<User[]> plain = restTemplate.getForEntity("/users", User[].class);
+        assertThat(plain.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(plain.getBody()).hasSize(2);
+        assertThat(plain.getHeaders().getETag()).isNull();
+
+        ResponseEntity<User[]> first = get("/users", "\"0\"", User[].class);
+        String eTag = first.getHeaders().getETag();
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(eTag).isNotNull();
+
+        ResponseEntity<String> notModified = get("/users", eTag, String.class);
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getBody()).isNull();
+        assertThat(get("/users?name=John", eTag, String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        Path replacement = Files.writeString(DIRECTORY.resolve("second.tmp"),
+                "id,username,name,surname\n2,asmith,Anna,Smith\n3,bking,Ben,King\n");
+        Files.move(replacement, DIRECTORY.resolve("second.csv"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        ResponseEntity<User[]> changed = get("/users", eTag, User[].class);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getBody()).hasSize(3);
+        assertThat(changed.getHeaders().getETag()).isNotNull().isNotEqualTo(eTag);
+    }
+
+    private <T> ResponseEntity<T> get(String url, String ifNoneMatch, Class<T> type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(ifNoneMatch);
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), type);
+    }
+
+    private static Path createDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("conditional-request-test");
+            directory.toFile().deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.zemnitskiy.aggregatehub;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Export jobs over two file sources, downloaded and decompressed the way clients read the multi-member gzip files.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ExportIntegrationTest {
+
+    private static final Path DIRECTORY = createDirectory();
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @DynamicPropertySource
+    static void registerProperties(DynamicPropertyRegistry registry) throws IOException {
+        Path first = Files.writeString(DIRECTORY.resolve("first.csv"),
+                "id,username,name,surname\n1,jdoe,John,Doe\n3,\"o'neil, jr\",John,\"O\"\"Neil\"\n");
+        Path second = Files.writeString(DIRECTORY.resolve("second.csv"), "id,username,name,surname\n2,asmith,Anna,Smith\n");
+        registry.add("aggregate-hub.data-sources[0].name", () -> "file-1");
+        registry.add("aggregate-hub.data-sources[0].strategy", () -> "file");
+        registry.add("aggregate-hub.data-sources[0].url", first::toString);
+        registry.add("aggregate-hub.data-sources[1].name", () -> "file-2");
+        registry.add("aggregate-hub.data-sources[1].strategy", () -> "file");
+        registry.add("aggregate-hub.data-sources[1].url", second::toString);
+        registry.add("aggregate-hub.export.directory", () -> DIRECTORY.resolve("exports").toString());
+    }
+
+    @Test
+    @DisplayName("A CSV export is one gzip member per source after the header and decompresses as a whole")
+    void testCsvExport() throws Exception {
+        String id = submit(Map.of("format", "csv"));
+        byte[] file = download(id);
+
+        assertThat(memberCount(file)).isEqualTo(3);
+        assertThat(gunzip(file)).isEqualTo("""
+                id,username,name,surname
+                1,jdoe,John,Doe
+                3,"o'neil, jr",John,"O""Neil"
+                2,asmith,Anna,Smith
+                """);
+        assertThat(restTemplate.getForObject("/exports/" + id, Map.class)).containsEntry("rowCount", 3);
+    }
+
+    @Test
+    @DisplayName("A filtered NDJSON export holds one line per matching user and is gone once deleted")
+    void testNdjsonExportAndDelete() throws Exception {
+        String id = submit(Map.of("format", "ndjson", "name", "John"));
+        byte[] file = download(id);
+
+        assertThat(memberCount(file)).isEqualTo(2);
+        assertThat(gunzip(file).lines().toList()).containsExactly(
+                "{\"id\":\"1\",\"username\":\"jdoe\",\"name\":\"John\",\"surname\":\"Doe\"}",
+                "{\"id\":\"3\",\"username\":\"o'neil, jr\",\"name\":\"John\",\"surname\":\"O\\\"Neil\"}");
+
+        restTemplate.delete("/exports/" + id);
+        assertThat(restTemplate.getForEntity("/exports/" + id, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        try (var files = Files.list(DIRECTORY.resolve("exports"))) {
+            assertThat(files.map(path -> path.getFileName().toString())).noneMatch(name -> name.startsWith(id));
+        }
+    }
+
+    private String submit(Map<String, String> request) throws InterruptedException {
+        ResponseEntity<Map> submitted = restTemplate.postForEntity("/exports", request, Map.class);
+        assertThat(submitted.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        String id = (String) submitted.getBody().get("id");
+
+        for (int attempt = 0; attempt < 250; attempt++) {
+            Object status = restTemplate.getForObject("/exports/" + id, Map.class).get("status");
+            if ("COMPLETED".equals(status)) {
+                return id;
+            }
+            assertThat(status).isIn("PENDING", "RUNNING");
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Export job " + id + " did not complete");
+    }
+
+    private byte[] download(String id) {
+        ResponseEntity<byte[]> response = restTemplate.getForEntity("/exports/" + id + "/file", byte[].class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).hasToString("application/gzip");
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(response.getBody().length);
+        return response.getBody();
+    }
+
+    private static String gunzip(byte[] file) throws IOException {
+        // GZIPInputStream reads on across concatenated members, like gunzip and zcat
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Walks the gzip members one by one, checking every member's CRC, and returns how many there are.
+     * The members carry no optional header fields, as written by {@link java.util.zip.GZIPOutputStream}.
+     */
+    private static int memberCount(byte[] file) throws DataFormatException {
+        ByteBuffer buffer = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        int members = 0;
+        while (buffer.hasRemaining()) {
+            assertThat(buffer.getShort() & 0xffff).as("gzip magic").isEqualTo(0x8b1f);
+            assertThat(buffer.get()).as("deflate method").isEqualTo((byte) 8);
+            assertThat(buffer.get()).as("header flags").isZero();
+            buffer.position(buffer.position() + 6);
+
+            Inflater inflater = new Inflater(true);
+            inflater.setInput(file, buffer.position(), buffer.remaining());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                content.write(chunk, 0, inflater.inflate(chunk));
+            }
+            buffer.position(file.length - inflater.getRemaining());
+            inflater.end();
+
+            CRC32 crc = new CRC32();
+            crc.update(content.toByteArray());
+            assertThat(buffer.getInt() & 0xffffffffL).as("member CRC").isEqualTo(crc.getValue());
+            assertThat(buffer.getInt()).as("member size").isEqualTo(content.size());
+            members++;
+        }
+        return members;
+    }
+
+    private static Path createDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("export-integration-test");
+            directory.toFile().deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.zemnitskiy.aggregatehub;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.executor.HubPath;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import com.zemnitskiy.aggregatehub.strategy.hub.HubStrategy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Watermarks of a hub source probed against a real AggregateHub, which reads a file source.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class HubWatermarkIntegrationTest {
+
+    private static final Path DIRECTORY = createDirectory();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private HubStrategy hubStrategy;
+
+    @DynamicPropertySource
+    static void registerProperties(DynamicPropertyRegistry registry) throws IOException {
+        Path users = Files.writeString(DIRECTORY.resolve("users.csv"), "id,username,name,surname\n1,jdoe,John,Doe\n");
+        registry.add("aggregate-hub.data-sources[0].name", () -> "file");
+        registry.add("aggregate-hub.data-sources[0].strategy", () -> "file");
+        registry.add("aggregate-hub.data-sources[0].url", users::toString);
+    }
+
+    @Test
+    @DisplayName("The watermark of a hub stays the same until its data changes")
+    void testWatermarkIsStable() throws IOException {
+        try (UserSource source = hubStrategy.open(new DatabaseConfig("remote", "hub", "http://localhost:" + port,
+                null, null, null, null, null))) {
+            String watermark = source.fetchWatermark();
+            assertThat(watermark).isNotNull();
+            assertThat(source.fetchWatermark()).isEqualTo(watermark);
+
+            Path replacement = Files.writeString(DIRECTORY.resolve("users.tmp"),
+                    "id,username,name,surname\n1,jdoe,John,Doe\n2,asmith,Anna,Smith\n");
+            Files.move(replacement, DIRECTORY.resolve("users.csv"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            String changed = source.fetchWatermark();
+            assertThat(changed).isNotNull().isNotEqualTo(watermark);
+            assertThat(source.fetchWatermark()).isEqualTo(changed);
+        }
+    }
+
+    @Test
+    @DisplayName("A stream is read up to its trailer, and a request looping back to the hub is refused")
+    void testStreamAndLoop() throws IOException {
+        try (UserSource source = hubStrategy.open(new DatabaseConfig("remote", "hub", "http://localhost:" + port,
+                null, null, null, null, null))) {
+            List<String> ids = new ArrayList<>();
+            source.streamUsers(new UserFilter("1", null, null, null), user -> ids.add(user.getId()));
+            assertThat(ids).containsExactly("1");
+
+            // As if this request had been received by the hub it is sent to
+            try (HubPath ignored = HubPath.within(HubPath.received(null))) {
+                assertThatThrownBy(() -> source.streamUsers(new UserFilter("1", null, null, null), user -> {
+                })).isInstanceOf(IOException.class).hasMessageContaining("400");
+            }
+        }
+    }
+
+    private static Path createDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("hub-watermark-test");
+            directory.toFile().deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
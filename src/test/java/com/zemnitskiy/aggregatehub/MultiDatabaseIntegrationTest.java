@@ -9,6 +9,9 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.DynamicPropertyRegistry;
@@ -115,12 +118,15 @@ class MultiDatabaseIntegrationTest {
 
     @DynamicPropertySource
     static void registerProperties(DynamicPropertyRegistry registry) {
+        // MySQL filters respect case only when asked to, so they match the other databases
+        registry.add("database-strategies.mysql.case-sensitive-collation", () -> "utf8mb4_bin");
         // PostgreSQL DB1 with default mapping
         registry.add("aggregate-hub.data-sources[0].name", () -> "postgres-db-1");
         registry.add("aggregate-hub.data-sources[0].strategy", () -> "postgres");
         registry.add("aggregate-hub.data-sources[0].url", postgres1::getJdbcUrl);
         registry.add("aggregate-hub.data-sources[0].user", postgres1::getUsername);
         registry.add("aggregate-hub.data-sources[0].password", postgres1::getPassword);
+        registry.add("aggregate-hub.data-sources[0].change-detection.mode", () -> "checksum");
 
         // PostgreSQL DB2
         registry.add("aggregate-hub.data-sources[1].name", () -> "postgres-db-2");
@@ -128,6 +134,7 @@ class MultiDatabaseIntegrationTest {
         registry.add("aggregate-hub.data-sources[1].url", postgres2::getJdbcUrl);
         registry.add("aggregate-hub.data-sources[1].user", postgres2::getUsername);
         registry.add("aggregate-hub.data-sources[1].password", postgres2::getPassword);
+        registry.add("aggregate-hub.data-sources[1].change-detection.mode", () -> "checksum");
         registry.add("aggregate-hub.data-sources[1].table", () -> "Postgres2User");
         registry.add("aggregate-hub.data-sources[1].mapping.id", () -> "Postgres2id");
         registry.add("aggregate-hub.data-sources[1].mapping.username", () -> "Postgres2Username");
@@ -140,6 +147,7 @@ class MultiDatabaseIntegrationTest {
         registry.add("aggregate-hub.data-sources[2].url", mysql1::getJdbcUrl);
         registry.add("aggregate-hub.data-sources[2].user", mysql1::getUsername);
         registry.add("aggregate-hub.data-sources[2].password", mysql1::getPassword);
+        registry.add("aggregate-hub.data-sources[2].change-detection.mode", () -> "checksum");
         registry.add("aggregate-hub.data-sources[2].table", () -> "MySql1User");
         registry.add("aggregate-hub.data-sources[2].mapping.id", () -> "MySql1id");
         registry.add("aggregate-hub.data-sources[2].mapping.username", () -> "MySql1Username");
@@ -152,6 +160,7 @@ class MultiDatabaseIntegrationTest {
         registry.add("aggregate-hub.data-sources[3].url", mysql2::getJdbcUrl);
         registry.add("aggregate-hub.data-sources[3].user", mysql2::getUsername);
         registry.add("aggregate-hub.data-sources[3].password", mysql2::getPassword);
+        registry.add("aggregate-hub.data-sources[3].change-detection.mode", () -> "checksum");
         registry.add("aggregate-hub.data-sources[3].table", () -> "testtablename");
         registry.add("aggregate-hub.data-sources[3].mapping.id", () -> "MySql2id");
         registry.add("aggregate-hub.data-sources[3].mapping.username", () -> "MySql2Username");
@@ -335,6 +344,64 @@ class MultiDatabaseIntegrationTest {
         assertThat(filteredNone).isEmpty();
     }
 
+    @Test
+    @DisplayName("Text filters respect case as asked and accents always, whatever the column collation")
+    void testTextFiltersOnEveryDatabase() {
+        List<User> users = List.of(new User("8", "rene1", "René", "Dupont"), new User("9", "rene2", "RENÉ", "Dupont"),
+                new User("10", "rene3", "Rene", "Dupont"));
+        for (String dbName : List.of("postgres-db-1", "postgres-db-2", "mysql-db-1", "mysql-db-2")) {
+            users.forEach(user -> addUserDirectly(dbName, user));
+        }
+
+        assertThat(ids("/users?name=René")).containsOnly("8").hasSize(4);
+        assertThat(ids("/users?name=RE&prefix=true")).containsOnly("9").hasSize(4);
+        assertThat(ids("/users?name=rené&ignoreCase=true")).containsOnly("8", "9").hasSize(8);
+        assertThat(ids("/users?name=rené&prefix=true&ignoreCase=true")).containsOnly("8", "9").hasSize(8);
+    }
+
+    private List<String> ids(String url) {
+        ResponseEntity<User[]> response = restTemplate.getForEntity(url, User[].class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return Arrays.stream(response.getBody()).map(User::getId).toList();
+    }
+
+    @Test
+    @DisplayName("Deduplicate Users via REST API")
+    void testDeduplicateUsersViaApi() {
+        User user1 = new User("6", "evamiller", "Eva", "Miller");
+        User user2 = new User("7", "frankdavis", "Frank", "Davis");
+
+        addUserDirectly("postgres-db-1", user1);
+        addUserDirectly("postgres-db-2", user1);
+        addUserDirectly("mysql-db-1", user2);
+        addUserDirectly("mysql-db-2", user1);
+        addUserDirectly("mysql-db-2", user2);
+
+        ResponseEntity<User[]> responseById = restTemplate.getForEntity("/users?dedupe=id", User[].class);
+        assertThat(responseById.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(responseById.getBody()).isNotNull().hasSize(2);
+
+        ResponseEntity<User[]> responseByUsername =
+                restTemplate.getForEntity("/users?dedupe=username&conflict=source-priority", User[].class);
+        assertThat(responseByUsername.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(responseByUsername.getBody()).isNotNull().hasSize(2);
+
+        ResponseEntity<String> responseInvalid = restTemplate.getForEntity("/users?dedupe=surname", String.class);
+        assertThat(responseInvalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    @DisplayName("Databases detecting changes by checksum get no entity tag, since updates would go unnoticed")
+    void testNoETagForChecksumDatabases() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("\"0\"");
+        ResponseEntity<User[]> response =
+                restTemplate.exchange("/users", HttpMethod.GET, new HttpEntity<>(headers), User[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isNull();
+    }
+
     private String getMappedTableNameForTest(String dbName, String tableName) {
         TableSchema schema = expectedSchemas.get(dbName);
         if (schema == null) {
@@ -0,0 +1,103 @@
+package com.zemnitskiy.aggregatehub;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import com.zemnitskiy.aggregatehub.strategy.UserSourceStrategy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Readiness while the startup warm-up runs: a source probes the readiness endpoint over HTTP from within the
+ * queries the warm-up sends it, when the web server already listens but the runners have not returned yet.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ReadinessIntegrationTest {
+
+    private static final AtomicInteger PORT = new AtomicInteger();
+    private static final AtomicReference<String> READINESS_DURING_WARMUP = new AtomicReference<>();
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @DynamicPropertySource
+    static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("aggregate-hub.data-sources[0].name", () -> "probe");
+        registry.add("aggregate-hub.data-sources[0].strategy", () -> "probe");
+        registry.add("aggregate-hub.data-sources[0].url", () -> "probe");
+    }
+
+    @Test
+    @DisplayName("Readiness refuses traffic while the warm-up runs and accepts it once the runner returned")
+    void testReadinessFollowsWarmup() {
+        assertThat(READINESS_DURING_WARMUP.get()).startsWith("503 ").contains("REFUSING_TRAFFIC");
+
+        ResponseEntity<String> ready = restTemplate.getForEntity("/admin/readiness", String.class);
+        assertThat(ready.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(ready.getBody()).contains("ACCEPTING_TRAFFIC");
+    }
+
+    @TestConfiguration
+    static class ProbeConfiguration {
+
+        @Bean
+        ApplicationListener<WebServerInitializedEvent> portListener() {
+            return event -> PORT.set(event.getWebServer().getPort());
+        }
+
+        @Bean("probe")
+        UserSourceStrategy probeStrategy() {
+            return config -> new UserSource() {
+                @Override
+                public void streamUsers(UserFilter filter, Consumer<User> consumer) throws IOException {
+                    if (READINESS_DURING_WARMUP.get() == null) {
+                        READINESS_DURING_WARMUP.compareAndSet(null, readiness());
+                    }
+                }
+
+                @Override
+                public String fetchWatermark() {
+                    return "0";
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        private static String readiness() throws IOException {
+            try (HttpClient client = HttpClient.newHttpClient()) {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + PORT.get() + "/admin/readiness")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                return response.statusCode() + " " + response.body();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}
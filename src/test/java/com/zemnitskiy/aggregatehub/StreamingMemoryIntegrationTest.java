@@ -0,0 +1,118 @@
+package com.zemnitskiy.aggregatehub;
+
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.JdbcDatabaseContainer;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Streams a table far larger than the allowed heap growth from each driver, to verify the drivers fetch rows in
+ * batches instead of loading the whole result.
+ */
+@Testcontainers
+@SpringBootTest
+class StreamingMemoryIntegrationTest {
+
+    private static final int ROWS = 50_000;
+    private static final int PAYLOAD = 1_000;
+    private static final long MAX_HEAP_GROWTH = 32L * 1024 * 1024;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.3")
+            .withDatabaseName("db1")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @Container
+    private static final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0.32")
+            .withDatabaseName("db1")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @Autowired
+    private MultiDatabaseUserDao userDao;
+
+    @DynamicPropertySource
+    static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("aggregate-hub.data-sources[0].name", () -> "postgres-large");
+        registry.add("aggregate-hub.data-sources[0].strategy", () -> "postgres");
+        registry.add("aggregate-hub.data-sources[0].url", postgres::getJdbcUrl);
+        registry.add("aggregate-hub.data-sources[0].user", postgres::getUsername);
+        registry.add("aggregate-hub.data-sources[0].password", postgres::getPassword);
+
+        registry.add("aggregate-hub.data-sources[1].name", () -> "mysql-large");
+        registry.add("aggregate-hub.data-sources[1].strategy", () -> "mysql");
+        registry.add("aggregate-hub.data-sources[1].url", mysql::getJdbcUrl);
+        registry.add("aggregate-hub.data-sources[1].user", mysql::getUsername);
+        registry.add("aggregate-hub.data-sources[1].password", mysql::getPassword);
+    }
+
+    @BeforeAll
+    static void fillTables() throws SQLException {
+        execute(postgres, "CREATE TABLE users (id VARCHAR(255) PRIMARY KEY, username VARCHAR(255), "
+                + "name VARCHAR(" + PAYLOAD + "), surname VARCHAR(" + PAYLOAD + "))");
+        execute(postgres, "INSERT INTO users SELECT g::text, 'user' || g, repeat('n', " + PAYLOAD + "), "
+                + "repeat('s', " + PAYLOAD + ") FROM generate_series(1, " + ROWS + ") g");
+
+        execute(mysql, "CREATE TABLE users (id VARCHAR(255) PRIMARY KEY, username VARCHAR(255), "
+                + "name VARCHAR(" + PAYLOAD + "), surname VARCHAR(" + PAYLOAD + "))");
+        execute(mysql, "SET SESSION cte_max_recursion_depth = " + ROWS,
+                "INSERT INTO users WITH RECURSIVE seq(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < "
+                        + ROWS + ") SELECT n, CONCAT('user', n), REPEAT('n', " + PAYLOAD + "), REPEAT('s', "
+                        + PAYLOAD + ") FROM seq");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"postgres-large", "mysql-large"})
+    @DisplayName("Streaming a large table keeps the heap bounded by the fetch size, not the table size")
+    void testStreamingKeepsHeapBounded(String dbName) {
+        long baseline = usedHeap();
+        AtomicLong rows = new AtomicLong();
+        AtomicLong peak = new AtomicLong();
+
+        userDao.streamUsers(dbName, new UserFilter(null, null, null, null), user -> {
+            if (rows.incrementAndGet() % 5_000 == 0) {
+                peak.accumulateAndGet(usedHeap() - baseline, Math::max);
+            }
+        });
+
+        // The whole result is about 100 MB of row data; a driver loading it at once exceeds the bound by far
+        assertThat(rows.get()).isEqualTo(ROWS);
+        assertThat(peak.get()).isLessThan(MAX_HEAP_GROWTH);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void execute(JdbcDatabaseContainer<?> container, String... statements) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(container.getJdbcUrl(), container.getUsername(),
+                container.getPassword());
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.zemnitskiy.aggregatehub.admission;
+
+import com.zemnitskiy.aggregatehub.config.AdmissionProperties;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
+import com.zemnitskiy.aggregatehub.limit.QueryConcurrencyLimiter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionGateTest {
+
+    private static final Duration SLOW = Duration.ofMillis(300);
+
+    @Test
+    @DisplayName("Without admission control only requests sending a deadline have one")
+    void testDisabledAppliesNoDefaultDeadline() {
+        AdmissionGate gate = gate(false, 1);
+
+        assertThat(gate.deadlineOf(RequestPriority.INTERACTIVE, null)).isNull();
+        assertThat(gate.deadlineOf(RequestPriority.INTERACTIVE, Duration.ofSeconds(2))).isEqualTo(Duration.ofSeconds(2));
+        try (AdmissionGate.Admission first = gate.admit(RequestPriority.INTERACTIVE, null, true);
+             AdmissionGate.Admission second = gate.admit(RequestPriority.INTERACTIVE, null, true)) {
+            assertThat(first.remaining()).isNull();
+            assertThat(second.remaining()).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("A slow request does not shed later requests while a slot is free")
+    void testSlowEstimateOnlyShedsBehindBacklog() {
+        AdmissionGate gate = gate(true, 1);
+        completeSlowly(gate, Duration.ofSeconds(5));
+
+        // The estimate exceeds the deadline, but nothing is queued ahead
+        Duration deadline = Duration.ofMillis(200);
+        try (AdmissionGate.Admission admitted = gate.admit(RequestPriority.INTERACTIVE, deadline, true)) {
+            assertThat(admitted.remaining()).isPositive();
+
+            // Behind the request holding the only slot, the same request cannot make it
+            assertThatThrownBy(() -> gate.admit(RequestPriority.INTERACTIVE, deadline, true))
+                    .isInstanceOf(AggregateHubOverloadedException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("Lookups are not judged by the latency of full scans")
+    void testLookupsAndScansAreEstimatedApart() {
+        AdmissionGate gate = gate(true, 1);
+        completeSlowly(gate, Duration.ofSeconds(5));
+
+        AdmissionGate.Admission holder = gate.admit(RequestPriority.INTERACTIVE, Duration.ofSeconds(5), false);
+        // Waiting one slow fan-out plus another slow scan does not fit, waiting for one plus a lookup does
+        assertThatThrownBy(() -> gate.admit(RequestPriority.INTERACTIVE, Duration.ofMillis(500), true))
+                .isInstanceOf(AggregateHubOverloadedException.class);
+        Thread.ofVirtual().start(() -> {
+            sleep(Duration.ofMillis(50));
+            holder.close();
+        });
+        try (AdmissionGate.Admission lookup = gate.admit(RequestPriority.INTERACTIVE, Duration.ofMillis(500), false)) {
+            assertThat(lookup.remaining()).isPositive();
+        }
+    }
+
+    @Test
+    @DisplayName("Batch requests are shed while the databases are congested")
+    void testShedsBatchUnderCongestion() {
+        QueryConcurrencyLimiter limiter = mock(QueryConcurrencyLimiter.class);
+        when(limiter.isCongested()).thenReturn(true);
+        AdmissionGate gate = new AdmissionGate(properties(true, 1), limiter);
+
+        assertThatThrownBy(() -> gate.admit(RequestPriority.BATCH, Duration.ofSeconds(60), false))
+                .isInstanceOf(AggregateHubOverloadedException.class);
+        gate.admit(RequestPriority.INTERACTIVE, Duration.ofSeconds(5), false).close();
+    }
+
+    private static void completeSlowly(AdmissionGate gate, Duration deadline) {
+        try (AdmissionGate.Admission admission = gate.admit(RequestPriority.INTERACTIVE, deadline, true)) {
+            sleep(SLOW);
+            admission.completed();
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static AdmissionGate gate(boolean enabled, int maxConcurrent) {
+        return new AdmissionGate(properties(enabled, maxConcurrent), mock(QueryConcurrencyLimiter.class));
+    }
+
+    private static AdmissionProperties properties(boolean enabled, int maxConcurrent) {
+        return new AdmissionProperties(enabled,
+                new AdmissionProperties.Interactive(maxConcurrent, Duration.ofSeconds(5)),
+                new AdmissionProperties.Batch(maxConcurrent, Duration.ofSeconds(60)));
+    }
+}
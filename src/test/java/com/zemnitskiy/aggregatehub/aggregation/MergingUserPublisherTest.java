@@ -0,0 +1,122 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MergingUserPublisherTest {
+
+    @Test
+    @DisplayName("Rows of every database are merged and the stream completes")
+    void testMergesAllDatabases() throws InterruptedException {
+        MergingUserPublisher publisher = new MergingUserPublisher(List.of("a", "b", "c"),
+                (dbName, consumer) -> emit(dbName, 500, consumer), 16);
+        Received received = new Received();
+
+        publisher.subscribe(received.subscriber(Long.MAX_VALUE));
+
+        assertThat(received.done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(received.ids).hasSize(1_500).contains("a-0", "b-499", "c-250");
+    }
+
+    @Test
+    @DisplayName("Databases are read no further than the buffer while the subscriber does not request")
+    void testBackpressureAndCancel() throws InterruptedException {
+        AtomicInteger produced = new AtomicInteger();
+        CountDownLatch stopped = new CountDownLatch(1);
+        MergingUserPublisher publisher = new MergingUserPublisher(List.of("a"), (dbName, consumer) -> {
+            try {
+                emit(dbName, 100_000, user -> {
+                    produced.incrementAndGet();
+                    consumer.accept(user);
+                });
+            } finally {
+                stopped.countDown();
+            }
+        }, 8);
+        Received received = new Received();
+
+        publisher.subscribe(received.subscriber(4));
+        Thread.sleep(200);
+
+        assertThat(received.ids).hasSize(4);
+        assertThat(produced.get()).isLessThan(100);
+        received.subscription.cancel();
+        assertThat(stopped.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(produced.get()).isLessThan(100);
+    }
+
+    @Test
+    @DisplayName("A subscriber that stops requesting fails the stream after the stall timeout")
+    void testStallTimeout() throws InterruptedException {
+        CountDownLatch stopped = new CountDownLatch(1);
+        MergingUserPublisher publisher = new MergingUserPublisher(List.of("a"), (dbName, consumer) -> {
+            try {
+                emit(dbName, 100_000, consumer);
+            } finally {
+                stopped.countDown();
+            }
+        }, 8, null, Duration.ofMillis(100));
+        Received received = new Received();
+
+        publisher.subscribe(received.subscriber(4));
+
+        assertThat(stopped.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(received.done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(received.error).isInstanceOf(TimeoutException.class);
+        assertThat(received.ids).hasSize(4);
+    }
+
+    private static void emit(String dbName, int count, Consumer<User> consumer) {
+        for (int i = 0; i < count; i++) {
+            consumer.accept(new User(dbName + "-" + i, "user" + i, "Name", "Surname"));
+        }
+    }
+
+    private static final class Received {
+
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        Flow.Subscriber<User> subscriber(long demand) {
+            return new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    Received.this.subscription = subscription;
+                    subscription.request(demand);
+                }
+
+                @Override
+                public void onNext(User user) {
+                    ids.add(user.getId());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    error = throwable;
+                    done.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    done.countDown();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.config.AggregationProperties;
+import com.zemnitskiy.aggregatehub.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpillableUserBufferTest {
+
+    @TempDir
+    private Path spillDirectory;
+
+    @Test
+    @DisplayName("Rows beyond the request budget are spilled to disk and read back in order")
+    void testSpillOverRequestBudget() {
+        MemoryGovernor governor = governor(DataSize.ofKilobytes(16), DataSize.ofMegabytes(1));
+        List<String> ids = new ArrayList<>();
+
+        try (SpillableUserBuffer buffer = new SpillableUserBuffer(governor, spillDirectory)) {
+            for (int i = 0; i < 1_000; i++) {
+                buffer.add(new User(String.valueOf(i), "user" + i, "Name", "Surname"));
+            }
+            assertThat(buffer.isSpilled()).isTrue();
+            assertThat(buffer.size()).isEqualTo(1_000);
+            assertThat(governor.reservedBytes()).isZero();
+
+            buffer.forEach(user -> ids.add(user.getId()));
+        }
+
+        assertThat(ids).hasSize(1_000).startsWith("0", "1", "2").endsWith("999");
+    }
+
+    @Test
+    @DisplayName("A request spills when the global budget is taken by other requests")
+    void testSpillWhenGlobalBudgetExhausted() {
+        MemoryGovernor governor = governor(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1));
+        assertThat(governor.tryReserve(DataSize.ofMegabytes(1).toBytes())).isTrue();
+
+        try (SpillableUserBuffer buffer = new SpillableUserBuffer(governor, spillDirectory)) {
+            buffer.add(new User("1", "alice", "Alice", "Smith"));
+            assertThat(buffer.isSpilled()).isTrue();
+        }
+
+        governor.release(DataSize.ofMegabytes(1).toBytes());
+        try (SpillableUserBuffer buffer = new SpillableUserBuffer(governor, spillDirectory)) {
+            buffer.add(new User("1", "alice", "Alice", "Smith"));
+            assertThat(buffer.isSpilled()).isFalse();
+            assertThat(governor.reservedBytes()).isPositive();
+        }
+        assertThat(governor.reservedBytes()).isZero();
+    }
+
+    private MemoryGovernor governor(DataSize requestBudget, DataSize globalBudget) {
+        return new MemoryGovernor(new AggregationProperties(spillDirectory,
+                new AggregationProperties.Dedupe(ConflictResolution.FIRST_WINS, List.of(), 1_000, 4),
+                new AggregationProperties.Memory(requestBudget, globalBudget), 1_000, true,
+                Duration.ofSeconds(30)));
+    }
+}
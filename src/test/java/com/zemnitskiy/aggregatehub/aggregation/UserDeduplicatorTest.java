@@ -0,0 +1,113 @@
+package com.zemnitskiy.aggregatehub.aggregation;
+
+import com.zemnitskiy.aggregatehub.config.AggregationProperties;
+import com.zemnitskiy.aggregatehub.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDeduplicatorTest {
+
+    @TempDir
+    private Path spillDirectory;
+
+    @Test
+    @DisplayName("First-wins keeps the first row seen for each key")
+    void testFirstWins() {
+        List<User> result = deduplicate(ConflictResolution.FIRST_WINS, 100, List.of(
+                new Row(1, new User("1", "alice", "Alice", "FromSecond")),
+                new Row(0, new User("1", "alice", "Alice", "FromFirst")),
+                new Row(0, new User("2", "bob", "Bob", "Brown"))
+        ));
+
+        assertThat(result).hasSize(2);
+        assertThat(result).filteredOn(u -> u.getId().equals("1"))
+                .singleElement().extracting(User::getSurname).isEqualTo("FromSecond");
+    }
+
+    @Test
+    @DisplayName("Source priority keeps the row from the highest priority database")
+    void testSourcePriority() {
+        List<User> result = deduplicate(ConflictResolution.SOURCE_PRIORITY, 100, List.of(
+                new Row(1, new User("1", "alice", "Alice", "FromSecond")),
+                new Row(0, new User("1", "alice", "Alice", "FromFirst")),
+                new Row(2, new User("1", "alice", "Alice", "FromThird"))
+        ));
+
+        assertThat(result).singleElement().extracting(User::getSurname).isEqualTo("FromFirst");
+    }
+
+    @Test
+    @DisplayName("Spilling to disk produces the same result as an in-memory merge")
+    void testSpillToDisk() {
+        List<Row> rows = new ArrayList<>();
+        for (int source = 3; source >= 0; source--) {
+            for (int i = 0; i < 1_000; i++) {
+                rows.add(new Row(source, new User(String.valueOf(i), "user" + i, "Name", "Source" + source)));
+            }
+        }
+        rows.add(new Row(0, new User(null, "anonymous", "No", "Id")));
+
+        List<User> inMemory = deduplicate(ConflictResolution.SOURCE_PRIORITY, 10_000, rows);
+        List<User> spilled = deduplicate(ConflictResolution.SOURCE_PRIORITY, 50, rows);
+
+        assertThat(spilled).hasSize(1_001);
+        assertThat(spilled).map(UserDeduplicatorTest::describe)
+                .containsExactlyInAnyOrderElementsOf(inMemory.stream().map(UserDeduplicatorTest::describe).toList());
+        assertThat(spilled).filteredOn(u -> u.getId() != null).allMatch(u -> u.getSurname().equals("Source0"));
+    }
+
+    @Test
+    @DisplayName("The key set spills when the memory budget is exhausted and returns its reservation")
+    void testSpillOverMemoryBudget() {
+        MemoryGovernor governor = governor(DataSize.ofKilobytes(16));
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            rows.add(new Row(0, new User(String.valueOf(i), "user" + i, "Name", "Surname")));
+        }
+
+        List<User> result = new ArrayList<>();
+        try (UserDeduplicator deduplicator = new UserDeduplicator(DedupeMode.ID, ConflictResolution.FIRST_WINS,
+                10_000, 4, spillDirectory, governor)) {
+            rows.forEach(row -> deduplicator.add(row.priority(), row.user()));
+            assertThat(governor.reservedBytes()).isZero();
+            assertThat(spillDirectory).isNotEmptyDirectory();
+            deduplicator.drainTo(result::add);
+        }
+
+        assertThat(result).hasSize(1_000);
+        assertThat(governor.reservedBytes()).isZero();
+    }
+
+    private List<User> deduplicate(ConflictResolution resolution, int maxKeysInMemory, List<Row> rows) {
+        List<User> result = new ArrayList<>();
+        try (UserDeduplicator deduplicator = new UserDeduplicator(DedupeMode.ID, resolution, maxKeysInMemory, 4,
+                spillDirectory, governor(DataSize.ofMegabytes(64)))) {
+            rows.forEach(row -> deduplicator.add(row.priority(), row.user()));
+            deduplicator.drainTo(result::add);
+        }
+        return result;
+    }
+
+    private static MemoryGovernor governor(DataSize requestBudget) {
+        return new MemoryGovernor(new AggregationProperties(null, new AggregationProperties.Dedupe(
+                ConflictResolution.FIRST_WINS, List.of(), 500_000, 32),
+                new AggregationProperties.Memory(requestBudget, DataSize.ofMegabytes(512)), 1000, true,
+                Duration.ofSeconds(30)));
+    }
+
+    private static String describe(User user) {
+        return user.getId() + "/" + user.getUsername() + "/" + user.getName() + "/" + user.getSurname();
+    }
+
+    private record Row(int priority, User user) {
+    }
+}
@@ -0,0 +1,98 @@
+package com.zemnitskiy.aggregatehub.cache;
+
+import com.zemnitskiy.aggregatehub.config.CacheProperties;
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.SourceExecutorProperties;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubDatabaseFetchException;
+import com.zemnitskiy.aggregatehub.executor.SourceExecutor;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SourceChangeTrackerTest {
+
+    private final MultiDatabaseUserDao userDao = mock(MultiDatabaseUserDao.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private SourceExecutor sourceExecutor;
+    private SourceChangeTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        DataSourceRegistry registry = mock(DataSourceRegistry.class);
+        when(registry.lease(any())).thenReturn(Optional.empty());
+        sourceExecutor = new SourceExecutor(registry, new SourceExecutorProperties(1, 16, Map.of(),
+                new SourceExecutorProperties.Pinning(false, Duration.ofMillis(20))));
+        tracker = new SourceChangeTracker(userDao, eventPublisher, new CacheProperties(true, Duration.ofSeconds(5),
+                1000, 10_000, DataSize.ofMegabytes(64), Duration.ofSeconds(30), Duration.ofMinutes(1)),
+                sourceExecutor);
+        when(userDao.getDatabaseNames()).thenReturn(List.of("a", "b"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sourceExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Only the database whose watermark moved is reported as changed")
+    void testPublishesChangedDatabasesOnly() {
+        when(userDao.fetchWatermark("a")).thenReturn("1:1");
+        when(userDao.fetchWatermark("b")).thenReturn("5:5");
+        tracker.poll();
+        clearInvocations(eventPublisher);
+
+        when(userDao.fetchWatermark("b")).thenReturn("6:6");
+        tracker.poll();
+
+        verify(eventPublisher).publishEvent(new SourceChangedEvent("b", false));
+        verify(eventPublisher, never()).publishEvent(new SourceChangedEvent("a", false));
+        assertThat(tracker.watermark("a")).isEqualTo("1:1");
+        assertThat(tracker.watermark("b")).isEqualTo("6:6");
+    }
+
+    @Test
+    @DisplayName("A failed check forgets the watermark, so nothing derived from it is trusted")
+    void testFailedCheckForgetsWatermark() {
+        when(userDao.fetchWatermark("a")).thenReturn("1:1");
+        when(userDao.fetchWatermark("b")).thenReturn("5:5");
+        tracker.poll();
+        clearInvocations(eventPublisher);
+
+        when(userDao.fetchWatermark("a")).thenThrow(new AggregateHubDatabaseFetchException("down"));
+        tracker.poll();
+
+        assertThat(tracker.watermark("a")).isNull();
+        assertThat(tracker.watermark("b")).isEqualTo("5:5");
+        verify(eventPublisher).publishEvent(new SourceChangedEvent("a", false));
+    }
+
+    @Test
+    @DisplayName("Databases that were removed are forgotten")
+    void testForgetsRemovedDatabases() {
+        when(userDao.fetchWatermark("a")).thenReturn("1:1");
+        when(userDao.fetchWatermark("b")).thenReturn("5:5");
+        tracker.poll();
+
+        when(userDao.getDatabaseNames()).thenReturn(List.of("a"));
+        tracker.poll();
+
+        assertThat(tracker.watermark("b")).isNull();
+    }
+}
@@ -0,0 +1,134 @@
+package com.zemnitskiy.aggregatehub.cache;
+
+import com.zemnitskiy.aggregatehub.aggregation.ConflictResolution;
+import com.zemnitskiy.aggregatehub.aggregation.MemoryGovernor;
+import com.zemnitskiy.aggregatehub.config.AggregationProperties;
+import com.zemnitskiy.aggregatehub.config.CacheProperties;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SourceResultCacheTest {
+
+    private static final String DB = "db";
+    private static final UserFilter JOHN = new UserFilter(null, "John", null, null);
+    private static final UserFilter ANNA = new UserFilter(null, "Anna", null, null);
+
+    private final MultiDatabaseUserDao userDao = mock(MultiDatabaseUserDao.class);
+    private final SourceChangeTracker changeTracker = mock(SourceChangeTracker.class);
+
+    @Test
+    @DisplayName("Results are served from the cache until the watermark of their database moves")
+    void testServesUntilWatermarkMoves() {
+        MemoryGovernor governor = governor(DataSize.ofMegabytes(1));
+        SourceResultCache cache = cache(DataSize.ofMegabytes(1), governor);
+        when(changeTracker.watermark(DB)).thenReturn("1:1");
+        rows(JOHN, new User("1", "jdoe", "John", "Doe"));
+
+        assertThat(read(cache, JOHN)).containsExactly("1");
+        assertThat(read(cache, JOHN)).containsExactly("1");
+        verify(userDao, times(1)).streamUsers(eq(DB), eq(JOHN), any());
+        assertThat(cache.cachedBytes()).isPositive().isEqualTo(governor.reservedBytes());
+
+        when(changeTracker.watermark(DB)).thenReturn("2:2");
+        assertThat(read(cache, JOHN)).containsExactly("1");
+        verify(userDao, times(2)).streamUsers(eq(DB), eq(JOHN), any());
+    }
+
+    @Test
+    @DisplayName("Invalidating a database returns its bytes to the memory governor")
+    void testInvalidationReleasesMemory() {
+        MemoryGovernor governor = governor(DataSize.ofMegabytes(1));
+        SourceResultCache cache = cache(DataSize.ofMegabytes(1), governor);
+        when(changeTracker.watermark(DB)).thenReturn("1:1");
+        rows(JOHN, new User("1", "jdoe", "John", "Doe"));
+        read(cache, JOHN);
+
+        cache.onSourceChanged(new SourceChangedEvent(DB, false));
+
+        assertThat(cache.cachedBytes()).isZero();
+        assertThat(governor.reservedBytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("A full cache evicts the least recently used result of the database")
+    void testEvictsLeastRecentlyUsedWhenFull() {
+        MemoryGovernor governor = governor(DataSize.ofMegabytes(1));
+        // Room for one of the results below, not for two
+        SourceResultCache cache = cache(DataSize.ofBytes(400), governor);
+        when(changeTracker.watermark(DB)).thenReturn("1:1");
+        rows(JOHN, new User("1", "jdoe", "John", "Doe"));
+        rows(ANNA, new User("2", "asmith", "Anna", "Smith"));
+
+        read(cache, JOHN);
+        read(cache, ANNA);
+        read(cache, ANNA);
+        read(cache, JOHN);
+
+        verify(userDao, times(1)).streamUsers(eq(DB), eq(ANNA), any());
+        verify(userDao, times(2)).streamUsers(eq(DB), eq(JOHN), any());
+        assertThat(cache.cachedBytes()).isPositive().isLessThanOrEqualTo(400).isEqualTo(governor.reservedBytes());
+    }
+
+    @Test
+    @DisplayName("Nothing is cached while the memory governor has no budget left")
+    void testRespectsMemoryGovernor() {
+        MemoryGovernor governor = governor(DataSize.ofBytes(100));
+        SourceResultCache cache = cache(DataSize.ofMegabytes(1), governor);
+        when(changeTracker.watermark(DB)).thenReturn("1:1");
+        rows(JOHN, new User("1", "jdoe", "John", "Doe"));
+
+        read(cache, JOHN);
+        read(cache, JOHN);
+
+        verify(userDao, times(2)).streamUsers(eq(DB), eq(JOHN), any());
+        assertThat(cache.cachedBytes()).isZero();
+        assertThat(governor.reservedBytes()).isZero();
+    }
+
+    private void rows(UserFilter filter, User... users) {
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(2);
+            for (User user : users) {
+                consumer.accept(user);
+            }
+            return null;
+        }).when(userDao).streamUsers(eq(DB), eq(filter), any());
+    }
+
+    private static List<String> read(SourceResultCache cache, UserFilter filter) {
+        List<String> ids = new ArrayList<>();
+        cache.streamUsers(DB, filter, user -> ids.add(user.getId()));
+        return ids;
+    }
+
+    private SourceResultCache cache(DataSize maxBytes, MemoryGovernor governor) {
+        when(userDao.getDatabaseConfig(any())).thenReturn(Optional.empty());
+        return new SourceResultCache(userDao, changeTracker, new CacheProperties(true, Duration.ofSeconds(5), 1000,
+                10_000, maxBytes, Duration.ofSeconds(30), Duration.ofMinutes(1)), governor);
+    }
+
+    private static MemoryGovernor governor(DataSize globalBudget) {
+        return new MemoryGovernor(new AggregationProperties(null, new AggregationProperties.Dedupe(
+                ConflictResolution.FIRST_WINS, List.of(), 500_000, 32),
+                new AggregationProperties.Memory(globalBudget, globalBudget), 1000, true, Duration.ofSeconds(30)));
+    }
+}
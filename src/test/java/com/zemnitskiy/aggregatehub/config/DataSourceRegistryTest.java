@@ -0,0 +1,155 @@
+package com.zemnitskiy.aggregatehub.config;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import com.zemnitskiy.aggregatehub.strategy.UserSourceStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DataSourceRegistryTest {
+
+    private static final DatabaseConfig FIRST = config("first.csv");
+    private static final DatabaseConfig SECOND = config("second.csv");
+
+    private final UserSourceStrategy strategy = mock(UserSourceStrategy.class);
+    private final DataSourceRegistry registry = registry(Duration.ofSeconds(30));
+
+    @AfterEach
+    void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    @DisplayName("A replaced source is closed only once the queries leasing it are done")
+    void testDrainsReplacedSource() {
+        UserSource first = mock(UserSource.class);
+        UserSource second = mock(UserSource.class);
+        when(strategy.open(FIRST)).thenReturn(first);
+        when(strategy.open(SECOND)).thenReturn(second);
+        registry.put(FIRST);
+        DataSourceRegistry.Lease lease = registry.lease("dump").orElseThrow();
+
+        registry.put(SECOND);
+
+        assertThat(registry.lease("dump").map(DataSourceRegistry.Lease::userSource)).contains(second);
+        verify(first, after(300).never()).close();
+        lease.close();
+        verify(first, timeout(2_000)).close();
+        verify(second, never()).close();
+    }
+
+    @Test
+    @DisplayName("A source still leased when the drain timeout ends is closed anyway")
+    void testDrainTimeout() {
+        DataSourceRegistry impatient = registry(Duration.ofMillis(200));
+        UserSource first = mock(UserSource.class);
+        when(strategy.open(FIRST)).thenReturn(first);
+        when(strategy.open(SECOND)).thenReturn(mock(UserSource.class));
+        impatient.put(FIRST);
+        DataSourceRegistry.Lease lease = impatient.lease("dump").orElseThrow();
+
+        impatient.put(SECOND);
+
+        verify(first, timeout(2_000)).close();
+        lease.close();
+        impatient.close();
+    }
+
+    @Test
+    @DisplayName("An update that is slower to build than a later one does not overwrite it")
+    void testSlowUpdateDoesNotOverwriteLaterOne() throws Exception {
+        UserSource first = mock(UserSource.class);
+        UserSource second = mock(UserSource.class);
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(strategy.open(FIRST)).thenAnswer(invocation -> {
+            opening.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return first;
+        });
+        when(strategy.open(SECOND)).thenReturn(second);
+
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> registry.put(FIRST));
+        assertThat(opening.await(5, TimeUnit.SECONDS)).isTrue();
+        registry.put(SECOND);
+        release.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+
+        assertThat(registry.getDatabaseConfigs()).containsExactly(SECOND);
+        verify(first).close();
+        verify(second, never()).close();
+    }
+
+    @Test
+    @DisplayName("An update still being built when its database is removed does not bring it back")
+    void testSlowUpdateDoesNotUndoRemoval() throws Exception {
+        UserSource first = mock(UserSource.class);
+        UserSource second = mock(UserSource.class);
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(strategy.open(FIRST)).thenReturn(first);
+        when(strategy.open(SECOND)).thenAnswer(invocation -> {
+            opening.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return second;
+        });
+        registry.put(FIRST);
+
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> registry.put(SECOND));
+        assertThat(opening.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(registry.remove("dump")).isTrue();
+        release.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+
+        assertThat(registry.lease("dump")).isEmpty();
+        verify(first, timeout(2_000)).close();
+        verify(second).close();
+
+        // A database removed once can be added again by a later update
+        when(strategy.open(SECOND)).thenReturn(second);
+        registry.put(SECOND);
+        assertThat(registry.getDatabaseConfigs()).containsExactly(SECOND);
+    }
+
+    @Test
+    @DisplayName("A removed source cannot be leased and is closed once its last lease is released")
+    void testRemoveDrainsSource() {
+        UserSource first = mock(UserSource.class);
+        when(strategy.open(FIRST)).thenReturn(first);
+        registry.put(FIRST);
+        DataSourceRegistry.Lease lease = registry.lease("dump").orElseThrow();
+
+        assertThat(registry.remove("dump")).isTrue();
+        assertThat(registry.remove("dump")).isFalse();
+
+        assertThat(registry.lease("dump")).isEmpty();
+        verify(first, after(300).never()).close();
+        lease.close();
+        verify(first, timeout(2_000)).close();
+    }
+
+    private DataSourceRegistry registry(Duration drainTimeout) {
+        return new DataSourceRegistry(Map.of(), Map.of("file", strategy), mock(ApplicationEventPublisher.class),
+                null, null, drainTimeout);
+    }
+
+    private static DatabaseConfig config(String url) {
+        return new DatabaseConfig("dump", "file", url, null, null, null, null, null);
+    }
+}
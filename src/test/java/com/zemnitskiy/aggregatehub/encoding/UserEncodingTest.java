@@ -0,0 +1,104 @@
+package com.zemnitskiy.aggregatehub.encoding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zemnitskiy.aggregatehub.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserEncodingTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("The JSON writer produces the same document as the reflective serializer")
+    void testJsonMatchesObjectMapper() throws IOException {
+        List<User> users = users(3);
+        users.add(new User("q\"1", "line\nbreak", null, "Müller"));
+
+        assertThat(encode(UserEncoding.JSON, users)).asString(StandardCharsets.UTF_8)
+                .isEqualTo(objectMapper.writeValueAsString(users));
+    }
+
+    @Test
+    @DisplayName("Binary streams spanning several blocks decode to the same users")
+    void testBinaryRoundTrip() throws IOException {
+        List<User> users = users(BinaryUserFormat.BLOCK_ROWS * 2 + 17);
+        users.add(new User("ü-1", "", null, "Müller"));
+
+        byte[] encoded = encode(UserEncoding.BINARY, users);
+        List<User> decoded = new ArrayList<>();
+        BinaryUserFormat.read(new ByteArrayInputStream(encoded), decoded::add);
+
+        assertThat(decoded).usingRecursiveFieldByFieldElementComparator().isEqualTo(users);
+        assertThat(encoded.length).isLessThan(encode(UserEncoding.JSON, users).length / 2);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (UserWriter writer = UserEncoding.BINARY.writer(UserEncoding.gzip(compressed), objectMapper.getFactory())) {
+            for (User user : users) {
+                writer.write(user);
+            }
+        }
+        List<User> decompressed = new ArrayList<>();
+        BinaryUserFormat.read(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())), decompressed::add);
+        assertThat(decompressed).hasSize(users.size());
+
+        assertThatThrownBy(() -> BinaryUserFormat.read(
+                new ByteArrayInputStream(encoded, 0, encoded.length - 1), user -> {
+                })).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    @DisplayName("The representation follows Accept and Accept-Encoding")
+    void testNegotiation() {
+        assertThat(UserEncoding.negotiate(headers(HttpHeaders.ACCEPT, null))).isEqualTo(UserEncoding.JSON);
+        assertThat(UserEncoding.negotiate(headers(HttpHeaders.ACCEPT, "*/*"))).isEqualTo(UserEncoding.JSON);
+        assertThat(UserEncoding.negotiate(headers(HttpHeaders.ACCEPT,
+                "application/json;q=0.5, application/x-aggregatehub-users"))).isEqualTo(UserEncoding.BINARY);
+        assertThat(UserEncoding.negotiate(headers(HttpHeaders.ACCEPT, "not a media type"))).isEqualTo(UserEncoding.JSON);
+
+        assertThat(UserEncoding.acceptsGzip(headers(HttpHeaders.ACCEPT_ENCODING, "br, GZIP;q=0.8"))).isTrue();
+        assertThat(UserEncoding.acceptsGzip(headers(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, deflate"))).isFalse();
+        assertThat(UserEncoding.acceptsGzip(headers(HttpHeaders.ACCEPT_ENCODING, null))).isFalse();
+
+        assertThat(UserEncoding.JSON.eTagOf("\"abc\"", false)).isEqualTo("\"abc\"");
+        assertThat(UserEncoding.BINARY.eTagOf("\"abc\"", true)).isEqualTo("\"abc-bin-gzip\"");
+    }
+
+    private byte[] encode(UserEncoding encoding, List<User> users) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (UserWriter writer = encoding.writer(out, objectMapper.getFactory())) {
+            for (User user : users) {
+                writer.write(user);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User(String.valueOf(i), "user" + i, "Name" + (i % 10), i % 7 == 0 ? null : "Surname" + (i % 3)));
+        }
+        return users;
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        if (value != null) {
+            headers.add(name, value);
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,55 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+import com.zemnitskiy.aggregatehub.config.SourceExecutorProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PinningMonitorTest {
+
+    private final Object monitor = new Object();
+
+    @Test
+    @DisplayName("A virtual thread blocking inside synchronized is recorded against its database and frame")
+    void testRecordsPinnedSourceThreads() throws Exception {
+        PinningMonitor pinningMonitor = new PinningMonitor(new SourceExecutorProperties(1, 16, Map.of(),
+                new SourceExecutorProperties.Pinning(true, Duration.ofMillis(10))));
+        pinningMonitor.start();
+        try {
+            Thread.ofVirtual().name(SourceExecutor.SOURCE_THREAD_PREFIX + "mysql-db")
+                    .start(this::blockWhileHoldingMonitor).join();
+            Thread.ofVirtual().start(this::blockWhileHoldingMonitor).join();
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+            while (pinningMonitor.report().events() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            PinningReport report = pinningMonitor.report();
+            assertThat(report.recording()).isTrue();
+            assertThat(report.sources()).containsOnlyKeys("mysql-db", PinningMonitor.OTHER);
+            assertThat(report.sources().get("mysql-db").events()).isEqualTo(1);
+            assertThat(report.sources().get("mysql-db").maxPinnedMillis()).isGreaterThanOrEqualTo(30);
+            assertThat(report.frames()).containsEntry(
+                    PinningMonitorTest.class.getName() + ".blockWhileHoldingMonitor", 2L);
+
+            pinningMonitor.reset();
+            assertThat(pinningMonitor.report().events()).isZero();
+        } finally {
+            pinningMonitor.stop();
+        }
+    }
+
+    private void blockWhileHoldingMonitor() {
+        synchronized (monitor) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.SourceExecutorProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryDeadlineTest {
+
+    @Test
+    @DisplayName("Fan-out tasks run under the deadline of the thread that opened the fan-out")
+    void testFanoutCarriesDeadline() {
+        DataSourceRegistry registry = mock(DataSourceRegistry.class);
+        when(registry.lease(any())).thenReturn(Optional.empty());
+        SourceExecutor sourceExecutor = new SourceExecutor(registry, new SourceExecutorProperties(1, 16, Map.of(),
+                new SourceExecutorProperties.Pinning(false, Duration.ofMillis(20))));
+        AtomicInteger withDeadline = new AtomicInteger(-1);
+        AtomicInteger withoutDeadline = new AtomicInteger(-1);
+
+        try (QueryDeadline ignored = QueryDeadline.within(Duration.ofMillis(2_500));
+             SourceExecutor.Fanout fanout = sourceExecutor.fanout()) {
+            fanout.executorFor("db").execute(() -> withDeadline.set(QueryDeadline.timeoutSeconds()));
+        }
+        try (SourceExecutor.Fanout fanout = sourceExecutor.fanout()) {
+            fanout.executorFor("db").execute(() -> withoutDeadline.set(QueryDeadline.timeoutSeconds()));
+        }
+
+        assertThat(withDeadline.get()).isEqualTo(3);
+        assertThat(withoutDeadline.get()).isZero();
+        assertThat(QueryDeadline.timeoutSeconds()).isZero();
+        sourceExecutor.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+package com.zemnitskiy.aggregatehub.executor;
+
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.config.SourceExecutorProperties;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubOverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SourceExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SourceExecutor sourceExecutor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        sourceExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("A database whose platform pool and queue are full rejects reads without blocking the others")
+    void testPlatformPoolsAreBoundedPerDatabase() throws InterruptedException {
+        sourceExecutor = platformExecutor();
+        Executor slow = sourceExecutor.executorFor("slow");
+
+        CountDownLatch started = new CountDownLatch(1);
+        slow.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        slow.execute(() -> await(release));
+
+        assertThatThrownBy(() -> slow.execute(() -> {
+        })).isInstanceOf(AggregateHubOverloadedException.class);
+        CountDownLatch other = new CountDownLatch(1);
+        sourceExecutor.executorFor("other").execute(other::countDown);
+        assertThat(other.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("A fan-out does not wait for a read its database rejected")
+    void testFanoutSkipsRejectedReads() throws InterruptedException {
+        sourceExecutor = platformExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        Executor slow = sourceExecutor.executorFor("slow");
+        slow.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        slow.execute(() -> await(release));
+
+        try (SourceExecutor.Fanout fanout = sourceExecutor.fanout()) {
+            assertThatThrownBy(() -> fanout.executorFor("slow").execute(() -> {
+            })).isInstanceOf(AggregateHubOverloadedException.class);
+        }
+    }
+
+    private static SourceExecutor platformExecutor() {
+        DataSourceRegistry registry = mock(DataSourceRegistry.class);
+        DataSourceRegistry.Lease lease = mock(DataSourceRegistry.Lease.class);
+        when(lease.config()).thenReturn(new DatabaseConfig("db", "mysql", "jdbc:mysql://localhost/db",
+                null, null, null, null, null));
+        when(registry.lease(any())).thenReturn(Optional.of(lease));
+        return new SourceExecutor(registry, new SourceExecutorProperties(1, 1, Map.of("mysql", ThreadMode.PLATFORM),
+                new SourceExecutorProperties.Pinning(false, Duration.ofMillis(20))));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.zemnitskiy.aggregatehub.limit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AimdLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    @DisplayName("The limit grows while queries are fast and backs off when they slow down")
+    void testAdaptsToLatency() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 20, 0.5, 2.0, TimeUnit.MILLISECONDS.toNanos(10));
+
+        for (int round = 0; round < 50; round++) {
+            int limit = limiter.getLimit();
+            for (int i = 0; i < limit; i++) {
+                assertThat(limiter.acquire(0)).isTrue();
+            }
+            for (int i = 0; i < limit; i++) {
+                limiter.release(FAST, false);
+            }
+        }
+        assertThat(limiter.getLimit()).isEqualTo(20);
+
+        assertThat(limiter.acquire(0)).isTrue();
+        limiter.release(SLOW, false);
+        assertThat(limiter.getLimit()).isEqualTo(10);
+
+        assertThat(limiter.acquire(0)).isTrue();
+        limiter.release(FAST, true);
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Queries beyond the limit wait for a free slot and give up after the timeout")
+    void testQueueing() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(1, 1, 1, 0.9, 2.0, 0);
+
+        assertThat(limiter.acquire(0)).isTrue();
+        assertThat(limiter.acquire(TimeUnit.MILLISECONDS.toNanos(20))).isFalse();
+
+        Thread.ofVirtual().start(() -> {
+            sleep();
+            limiter.release(FAST, false);
+        });
+        assertThat(limiter.acquire(TimeUnit.SECONDS.toNanos(5))).isTrue();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the heap and GC cost of the columnar replica store with the former on-heap layout: a list of
+ * {@link User} objects with a hash map of row positions per filter column.
+ * <p>
+ * Not part of the regular build, since it needs a few hundred MB of heap and takes tens of seconds. Run it with
+ * {@code mvn test -Dtest=ColumnarUserStoreBenchmark -Dsurefire.failIfNoSpecifiedTests=false}; it prints one line
+ * per layout.
+ * </p>
+ */
+class ColumnarUserStoreBenchmark {
+
+    private static final int ROWS = 1_000_000;
+    private static final int FULL_GCS = 5;
+    private static final int QUERIES = 100_000;
+
+    @Test
+    @DisplayName("The columnar store retains less heap than on-heap rows")
+    void compareWithOnHeapRows() {
+        Result onHeap = measure("on-heap rows", () -> {
+            List<User> rows = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                rows.add(user(i));
+            }
+            return new OnHeapStore(rows);
+        }, OnHeapStore::query);
+
+        Result columnar = measure("columnar", () -> {
+            ColumnarUserStore.Builder builder = ColumnarUserStore.builder();
+            for (int i = 0; i < ROWS; i++) {
+                builder.add(user(i));
+            }
+            return builder.build();
+        }, (store, filter) -> {
+            List<User> users = new ArrayList<>();
+            store.query(filter, users::add);
+            return users.size();
+        });
+
+        assertThat(columnar.heapBytes()).isLessThan(onHeap.heapBytes());
+    }
+
+    private static <S> Result measure(String layout, Supplier<S> build, Query<S> query) {
+        long baseline = usedHeapAfterGc();
+        S store = build.get();
+        // Clamped at zero, since the store itself can be smaller than the noise between two measurements
+        long heapBytes = Math.max(0, usedHeapAfterGc() - baseline);
+        long offHeapBytes = store instanceof ColumnarUserStore columnar ? columnar.offHeapBytes() : 0;
+
+        long gcMillisBefore = gcMillis();
+        for (int i = 0; i < FULL_GCS; i++) {
+            System.gc();
+        }
+        double fullGcMillis = (gcMillis() - gcMillisBefore) / (double) FULL_GCS;
+
+        long matches = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            matches += query.run(store, new UserFilter(null, null, null, "user" + (i * 7919 % ROWS)));
+        }
+        double queryMicros = (System.nanoTime() - start) / 1_000.0 / QUERIES;
+
+        Result result = new Result(heapBytes, offHeapBytes, fullGcMillis, queryMicros);
+        System.out.printf("%-13s heap %,d bytes, off-heap %,d bytes, full GC %.1f ms, username lookup %.2f us "
+                + "(%d matches)%n", layout, result.heapBytes(), result.offHeapBytes(),
+                result.fullGcMillis(), result.queryMicros(), matches);
+        // Keep the store reachable until every measurement is done
+        assertThat(store).isNotNull();
+        return result;
+    }
+
+    private static User user(int i) {
+        return new User("00000000-0000-0000-0000-" + String.format("%012d", i), "user" + i,
+                "Name" + (i % 500), "Surname" + (i % 2_000));
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+
+    private interface Query<S> {
+        int run(S store, UserFilter filter);
+    }
+
+    private record Result(long heapBytes, long offHeapBytes, double fullGcMillis, double queryMicros) {
+    }
+
+    /**
+     * The layout the replica used before the columnar store.
+     */
+    private static final class OnHeapStore {
+
+        private final List<User> rows;
+        private final Map<String, int[]> idIndex;
+        private final Map<String, int[]> usernameIndex;
+        private final Map<String, int[]> nameIndex;
+        private final Map<String, int[]> surnameIndex;
+
+        OnHeapStore(List<User> rows) {
+            this.rows = rows;
+            this.idIndex = index(rows, User::getId);
+            this.usernameIndex = index(rows, User::getUsername);
+            this.nameIndex = index(rows, User::getName);
+            this.surnameIndex = index(rows, User::getSurname);
+        }
+
+        int query(UserFilter filter) {
+            int[] candidates = usernameIndex.getOrDefault(filter.username(), new int[0]);
+            int matches = 0;
+            for (int row : candidates) {
+                if (filter.username().equals(rows.get(row).getUsername())) {
+                    matches++;
+                }
+            }
+            return matches;
+        }
+
+        private static Map<String, int[]> index(List<User> rows, Function<User, String> column) {
+            Map<String, List<Integer>> positions = new HashMap<>();
+            for (int row = 0; row < rows.size(); row++) {
+                String value = column.apply(rows.get(row));
+                if (value != null) {
+                    positions.computeIfAbsent(value, key -> new ArrayList<>(1)).add(row);
+                }
+            }
+            Map<String, int[]> index = new HashMap<>(positions.size() * 2);
+            positions.forEach((value, list) -> index.put(value, list.stream().mapToInt(Integer::intValue).toArray()));
+            return index;
+        }
+    }
+}
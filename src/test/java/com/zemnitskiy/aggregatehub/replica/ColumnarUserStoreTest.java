@@ -0,0 +1,77 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarUserStoreTest {
+
+    private ColumnarUserStore store;
+
+    @BeforeEach
+    void setUp() {
+        ColumnarUserStore.Builder builder = ColumnarUserStore.builder();
+        for (int i = 0; i < 5_000; i++) {
+            builder.add(new User(String.valueOf(i), "user" + i, "Name" + (i % 10), i % 7 == 0 ? null : "Surname" + (i % 3)));
+        }
+        builder.add(new User("ü-1", "jürgen", "Jürgen", "Müller"));
+        store = builder.build();
+    }
+
+    @Test
+    @DisplayName("Rows are found through every index and the remaining filters are applied")
+    void testQueryByIndexes() {
+        assertThat(query(new UserFilter("44", null, null, null))).containsExactly("44/user44/Name4/Surname2");
+        assertThat(query(new UserFilter(null, null, null, "user43"))).containsExactly("43/user43/Name3/Surname1");
+        assertThat(query(new UserFilter("44", "Name3", null, null))).isEmpty();
+        assertThat(query(new UserFilter(null, "Name1", "Surname2", null))).hasSize(143)
+                .allMatch(user -> user.contains("/Name1/Surname2"));
+        assertThat(query(new UserFilter(null, "Jürgen", "Müller", "jürgen"))).containsExactly("ü-1/jürgen/Jürgen/Müller");
+    }
+
+    @Test
+    @DisplayName("Null values are kept and unknown values match nothing")
+    void testNullsAndUnknownValues() {
+        assertThat(query(new UserFilter("7", null, null, null))).containsExactly("7/user7/Name7/null");
+        assertThat(query(new UserFilter(null, "Unknown", null, null))).isEmpty();
+        assertThat(query(new UserFilter(null, null, null, null))).hasSize(5_001);
+        assertThat(store.size()).isEqualTo(5_001);
+        assertThat(store.offHeapBytes()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Prefix and case-insensitive criteria match through the dictionaries and honour the limit")
+    void testTextCriteriaAndLimit() {
+        assertThat(query(new UserFilter(null, "jür", "MÜLLER", null, true, true, null)))
+                .containsExactly("ü-1/jürgen/Jürgen/Müller");
+        assertThat(query(new UserFilter(null, null, null, "USER49", true, true, null))).hasSize(111)
+                .allMatch(user -> user.contains("/user49"));
+        assertThat(query(new UserFilter(null, "name1", null, null, false, false, null))).isEmpty();
+        assertThat(query(new UserFilter(null, "name1", null, null, false, true, null))).hasSize(500);
+        assertThat(query(new UserFilter(null, null, "Surname", null, true, false, 7))).hasSize(7);
+        assertThat(query(new UserFilter(null, null, null, null, false, false, 3))).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("Text criteria compare code points, unlike accent-insensitive or PAD SPACE collations")
+    void testMatchingIgnoresNoCollationRules() {
+        assertThat(query(new UserFilter(null, "Jurgen", null, null, false, true, null))).isEmpty();
+        assertThat(query(new UserFilter(null, "Jürgen ", null, null))).isEmpty();
+        assertThat(query(new UserFilter(null, "JÜRGEN", null, null, false, true, null)))
+                .containsExactly("ü-1/jürgen/Jürgen/Müller");
+    }
+
+    private List<String> query(UserFilter filter) {
+        List<String> users = new ArrayList<>();
+        store.query(filter, user -> users.add(
+                user.getId() + "/" + user.getUsername() + "/" + user.getName() + "/" + user.getSurname()));
+        return users;
+    }
+}
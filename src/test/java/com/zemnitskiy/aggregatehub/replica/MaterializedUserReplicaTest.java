@@ -0,0 +1,165 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import com.zemnitskiy.aggregatehub.cache.SourceChangedEvent;
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.ReplicaProperties;
+import com.zemnitskiy.aggregatehub.config.SourceExecutorProperties;
+import com.zemnitskiy.aggregatehub.executor.SourceExecutor;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao.ChangeMark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MaterializedUserReplicaTest {
+
+    private static final String DB = "db";
+
+    private final MultiDatabaseUserDao userDao = mock(MultiDatabaseUserDao.class);
+    private SourceExecutor sourceExecutor;
+    private MaterializedUserReplica replica;
+
+    @BeforeEach
+    void setUp() {
+        DataSourceRegistry registry = mock(DataSourceRegistry.class);
+        when(registry.lease(any())).thenReturn(Optional.empty());
+        sourceExecutor = new SourceExecutor(registry, new SourceExecutorProperties(1, 16, Map.of(),
+                new SourceExecutorProperties.Pinning(false, Duration.ofMillis(20))));
+        replica = replica(Duration.ofMinutes(15));
+        when(userDao.getDatabaseNames()).thenReturn(List.of(DB));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sourceExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Databases tracking a change column merge the changed rows instead of reloading")
+    void testChangedRowsAreMerged() {
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("2:10", 2, 10L));
+        stream(new User("1", "alice", "Alice", "Old"), new User("2", "bob", "Bob", "Brown"));
+        replica.refresh();
+
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("3:12", 3, 12L));
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(3);
+            consumer.accept(new User("1", "alice", "Alice", "New"));
+            consumer.accept(new User("3", "carol", "Carol", "White"));
+            return null;
+        }).when(userDao).streamChangedUsers(eq(DB), eq(10L), eq(12L), any());
+        replica.refresh();
+
+        verify(userDao, times(1)).streamUsers(eq(DB), any(), any());
+        assertThat(query()).containsExactlyInAnyOrder("1/New", "2/Brown", "3/White");
+        assertThat(replica.watermark(DB)).isEqualTo("3:12");
+    }
+
+    @Test
+    @DisplayName("A database that lost rows is reloaded in full")
+    void testDeletedRowsReload() {
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("2:10", 2, 10L));
+        stream(new User("1", "alice", "Alice", "Old"), new User("2", "bob", "Bob", "Brown"));
+        replica.refresh();
+
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("1:10", 1, 10L));
+        stream(new User("2", "bob", "Bob", "Brown"));
+        replica.refresh();
+
+        verify(userDao, times(2)).streamUsers(eq(DB), any(), any());
+        assertThat(query()).containsExactly("2/Brown");
+    }
+
+    @Test
+    @DisplayName("A load racing a reconfiguration of its database is not published")
+    void testLoadRacingReconfigurationIsDiscarded() {
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("1:1", 1, null));
+        doAnswer(invocation -> {
+            replica.onSourceReconfigured(new SourceChangedEvent(DB, true));
+            invocation.<Consumer<User>>getArgument(2).accept(new User("1", "alice", "Alice", "Old"));
+            return null;
+        }).when(userDao).streamUsers(eq(DB), any(), any());
+        replica.refresh();
+
+        assertThat(replica.isLoaded(DB)).isFalse();
+    }
+
+    @Test
+    @DisplayName("A catch-up re-reads the rows since the mark before the last, picking up late commits")
+    void testCatchUpOverlapsThePreviousMark() {
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("2:10", 2, 10L));
+        stream(new User("1", "alice", "Alice", "Old"), new User("2", "bob", "Bob", "Brown"));
+        replica.refresh();
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("2:12", 2, 12L));
+        replica.refresh();
+
+        // A transaction that wrote 11 committed after the mark of 12 was read
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("2:14", 2, 14L));
+        doAnswer(invocation -> {
+            invocation.<Consumer<User>>getArgument(3).accept(new User("2", "bob", "Bob", "Late"));
+            return null;
+        }).when(userDao).streamChangedUsers(eq(DB), eq(10L), eq(14L), any());
+        replica.refresh();
+
+        verify(userDao).streamChangedUsers(eq(DB), eq(10L), eq(12L), any());
+        verify(userDao).streamChangedUsers(eq(DB), eq(10L), eq(14L), any());
+        assertThat(query()).containsExactlyInAnyOrder("1/Old", "2/Late");
+    }
+
+    @Test
+    @DisplayName("A database is reloaded in full once the full reload interval has passed, even if unchanged")
+    void testPeriodicFullReload() {
+        replica = replica(Duration.ZERO);
+        when(userDao.fetchChangeMark(DB)).thenReturn(new ChangeMark("1:10", 1, 10L));
+        stream(new User("1", "alice", "Alice", "Old"));
+        replica.refresh();
+
+        stream(new User("1", "alice", "Alice", "New"));
+        replica.refresh();
+
+        verify(userDao, times(2)).streamUsers(eq(DB), any(), any());
+        assertThat(query()).containsExactly("1/New");
+    }
+
+    private MaterializedUserReplica replica(Duration fullReloadInterval) {
+        return new MaterializedUserReplica(userDao, new ReplicaProperties(true, Duration.ofSeconds(5),
+                fullReloadInterval, Duration.ofMinutes(10), new ReplicaProperties.Snapshot(false, null)),
+                sourceExecutor);
+    }
+
+    private void stream(User... users) {
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(2);
+            for (User user : users) {
+                consumer.accept(user);
+            }
+            return null;
+        }).when(userDao).streamUsers(eq(DB), any(), any());
+    }
+
+    private List<String> query() {
+        List<String> users = new ArrayList<>();
+        replica.query(DB, new UserFilter(null, null, null, null),
+                user -> users.add(user.getId() + "/" + user.getSurname()));
+        return users;
+    }
+}
@@ -0,0 +1,83 @@
+package com.zemnitskiy.aggregatehub.replica;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplicaSnapshotStoreTest {
+
+    private static final String HASH = ReplicaSnapshotStore.configHash(new DatabaseConfig("postgres-db-1", "postgres",
+            "jdbc:postgresql://localhost:5432/db1", "testuser", null, null, Map.of("username", "login"), null));
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("A written snapshot is mapped back with its watermark and answers queries")
+    void testWriteAndRead() throws IOException {
+        ColumnarUserStore.Builder builder = ColumnarUserStore.builder();
+        for (int i = 0; i < 1_000; i++) {
+            builder.add(new User(String.valueOf(i), "user" + i, "Name" + (i % 5), i == 3 ? null : "Surname"));
+        }
+        ReplicaSnapshotStore snapshotStore = new ReplicaSnapshotStore(directory);
+        snapshotStore.write("postgres-db-1", HASH, "1000:999", builder.build());
+
+        ReplicaSnapshotStore.Snapshot snapshot = snapshotStore.read("postgres-db-1", HASH).orElseThrow();
+        List<String> users = new ArrayList<>();
+        snapshot.store().query(new UserFilter(null, "Name3", null, null),
+                user -> users.add(user.getId() + "/" + user.getUsername() + "/" + user.getSurname()));
+
+        assertThat(snapshot.watermark()).isEqualTo("1000:999");
+        assertThat(snapshot.store().size()).isEqualTo(1_000);
+        assertThat(users).hasSize(200).startsWith("3/user3/null", "8/user8/Surname");
+        assertThat(snapshotStore.read("mysql-db-1", HASH)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A snapshot with an unknown format is rejected")
+    void testRejectUnknownFormat() throws IOException {
+        Files.write(directory.resolve("postgres-db-1.snapshot"), new byte[64]);
+
+        assertThatThrownBy(() -> new ReplicaSnapshotStore(directory).read("postgres-db-1", HASH))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Unsupported snapshot format");
+    }
+
+    @Test
+    @DisplayName("A snapshot written for another configuration or with corrupt data is rejected")
+    void testRejectMismatchingSnapshot() throws IOException {
+        ColumnarUserStore.Builder builder = ColumnarUserStore.builder();
+        builder.add(new User("1", "user1", "Name", "Surname"));
+        ReplicaSnapshotStore snapshotStore = new ReplicaSnapshotStore(directory);
+        snapshotStore.write("postgres-db-1", HASH, "1:1", builder.build());
+        String otherTable = ReplicaSnapshotStore.configHash(new DatabaseConfig("postgres-db-1", "postgres",
+                "jdbc:postgresql://localhost:5432/db1", "testuser", "accounts", null, Map.of("username", "login"), null));
+
+        assertThatThrownBy(() -> snapshotStore.read("postgres-db-1", otherTable))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("different configuration");
+
+        Path file = directory.resolve("postgres-db-1.snapshot");
+        byte[] bytes = Files.readAllBytes(file);
+        // Flip a bit past the header, inside the section data
+        bytes[bytes.length * 3 / 4] ^= 1;
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> snapshotStore.read("postgres-db-1", HASH))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Checksum mismatch");
+    }
+}
@@ -0,0 +1,89 @@
+package com.zemnitskiy.aggregatehub.repository;
+
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.DatabaseStrategy;
+import com.zemnitskiy.aggregatehub.strategy.JdbcUrl;
+import com.zemnitskiy.aggregatehub.strategy.mysql.MySqlStrategy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+
+class UnionAllQueryTest {
+
+    private static final DatabaseStrategy DEFAULT_STRATEGY = mock(DatabaseStrategy.class, CALLS_REAL_METHODS);
+
+    @Test
+    @DisplayName("Every branch reads its own table with its column mapping, tagged with its source and filtered")
+    void testBranchesUseTheirMappingAndFilter() {
+        UnionAllQuery query = UnionAllQuery.of(List.of(
+                new UnionAllQuery.Branch("mysql-db-1", "db1.users", null),
+                new UnionAllQuery.Branch("o'hara", "db2.mysql_db_2_user",
+                        Map.of("id", "MySql2id", "username", "Mysql2Username", "name", "Mysql2Name"))),
+                new UserFilter(null, "John", null, "jdoe"), DEFAULT_STRATEGY);
+
+        assertThat(query.sql()).isEqualTo(
+                "SELECT 'mysql-db-1' AS source_name, id AS id, username AS username, name AS name, surname AS surname"
+                        + " FROM db1.users WHERE username = ? AND name = ?"
+                        + " UNION ALL SELECT 'o''hara' AS source_name, MySql2id AS id, Mysql2Username AS username,"
+                        + " Mysql2Name AS name, surname AS surname"
+                        + " FROM db2.mysql_db_2_user WHERE Mysql2Username = ? AND Mysql2Name = ?");
+        assertThat(query.binds()).containsExactly("jdoe", "John", "jdoe", "John");
+    }
+
+    @Test
+    @DisplayName("Prefix and case-insensitive criteria are pushed down in the strategy's index-friendly form")
+    void testTextCriteriaArePushedDownPerStrategy() {
+        List<UnionAllQuery.Branch> branches = List.of(new UnionAllQuery.Branch("db", "users", null));
+        UserFilter filter = new UserFilter(null, "Jo_", null, null, true, true, 10);
+
+        UnionAllQuery generic = UnionAllQuery.of(branches, filter, DEFAULT_STRATEGY);
+        assertThat(generic.sql()).endsWith(" FROM users WHERE lower(name) LIKE ? ESCAPE '!' LIMIT 10");
+        assertThat(generic.binds()).containsExactly("jo!_%");
+
+        MySqlStrategy mySql = new MySqlStrategy();
+        ReflectionTestUtils.setField(mySql, "caseInsensitiveCollation", "utf8mb4_0900_as_ci");
+        ReflectionTestUtils.setField(mySql, "caseSensitiveCollation", "utf8mb4_bin");
+        assertThat(UnionAllQuery.of(branches, filter, mySql).sql())
+                .endsWith(" WHERE name LIKE ? ESCAPE '!'"
+                        + " AND name COLLATE utf8mb4_0900_as_ci LIKE ? ESCAPE '!' LIMIT 10");
+        UnionAllQuery caseSensitive = UnionAllQuery.of(branches,
+                new UserFilter(null, "Jo", null, null, true, false, null), mySql);
+        assertThat(caseSensitive.sql())
+                .endsWith(" WHERE name LIKE ? ESCAPE '!' AND name COLLATE utf8mb4_bin LIKE ? ESCAPE '!'");
+        assertThat(caseSensitive.binds()).containsExactly("Jo%", "Jo%");
+    }
+
+    @Test
+    @DisplayName("Every branch is compared under the collations of its own columns")
+    void testBranchesUseTheirCollations() {
+        MySqlStrategy mySql = new MySqlStrategy();
+        ReflectionTestUtils.setField(mySql, "caseInsensitiveCollation", "utf8mb4_0900_as_ci");
+        ReflectionTestUtils.setField(mySql, "caseSensitiveCollation", "utf8mb4_bin");
+        UnionAllQuery query = UnionAllQuery.of(List.of(
+                        new UnionAllQuery.Branch("db1", "db1.users", null, Map.of("name", "utf8mb4_0900_as_ci")),
+                        new UnionAllQuery.Branch("db2", "db2.users", Map.of("name", "FirstName"),
+                                Map.of("firstname", "latin1_bin"))),
+                new UserFilter(null, "Jo", null, null, false, true, null), mySql);
+
+        assertThat(query.sql()).contains(" FROM db1.users WHERE name = ? UNION ALL")
+                .endsWith(" FROM db2.users WHERE FirstName COLLATE latin1_general_ci = ?");
+        assertThat(query.binds()).containsExactly("Jo", "Jo");
+    }
+
+    @Test
+    @DisplayName("Single-host JDBC URLs are split into server, database and parameters")
+    void testParsesJdbcUrls() {
+        assertThat(JdbcUrl.parse("jdbc:mysql://localhost:3307/db2?useSSL=false", 3306))
+                .contains(new JdbcUrl("localhost", 3307, "db2", "useSSL=false"));
+        assertThat(JdbcUrl.parse("jdbc:postgresql://pg.internal/db1", 5432).map(JdbcUrl::server))
+                .contains("pg.internal:5432");
+        assertThat(JdbcUrl.parse("jdbc:mysql://host1:3306,host2:3306/db", 3306)).isEmpty();
+    }
+}
@@ -0,0 +1,125 @@
+package com.zemnitskiy.aggregatehub.schema;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.config.SchemaProperties;
+import com.zemnitskiy.aggregatehub.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SchemaVerifierTest {
+
+    private static final DatabaseConfig CONFIG =
+            new DatabaseConfig("db", "postgres", "jdbc:postgresql://db/users", null, null, null, null, null);
+
+    @TempDir
+    Path directory;
+
+    private final List<String> columns = new ArrayList<>(List.of("id", "username", "name", "surname"));
+
+    @Test
+    @DisplayName("Schema management is skipped while the recorded fingerprint matches, and runs when a column changes")
+    void testSkipsUntilColumnsChange() throws SQLException {
+        SchemaVerifier verifier = verifier(directory, "mapping");
+        DataSource dataSource = dataSource();
+
+        assertThat(verifier.schemaAction(CONFIG, dataSource)).isEqualTo("update");
+        verifier.verified(CONFIG, dataSource, "update");
+        assertThat(verifier.schemaAction(CONFIG, dataSource)).isEqualTo("none");
+
+        columns.add("email");
+        assertThat(verifier.schemaAction(CONFIG, dataSource)).isEqualTo("update");
+    }
+
+    @Test
+    @DisplayName("A changed entity mapping invalidates the recorded fingerprint")
+    void testEntityMappingChangeRunsFallback() throws SQLException {
+        DataSource dataSource = dataSource();
+        SchemaVerifier before = verifier(directory, "mapping");
+        before.verified(CONFIG, dataSource, before.schemaAction(CONFIG, dataSource));
+
+        assertThat(verifier(directory, "mapping").schemaAction(CONFIG, dataSource)).isEqualTo("none");
+        assertThat(verifier(directory, "changed mapping").schemaAction(CONFIG, dataSource)).isEqualTo("update");
+    }
+
+    @Test
+    @DisplayName("The entity mapping reflects the persistent fields of the entity")
+    void testEntityMapping() {
+        String mapping = SchemaVerifier.entityMapping(User.class);
+
+        assertThat(mapping).isEqualTo(SchemaVerifier.entityMapping(User.class))
+                .contains("username:java.lang.String", "users", "jakarta.persistence.Id");
+        assertThat(SchemaVerifier.entityMapping(WiderUser.class)).isNotEqualTo(mapping);
+    }
+
+    @Test
+    @DisplayName("Without a directory nothing is recorded and the fallback runs on every start")
+    void testNoDirectoryRunsFallback() throws SQLException {
+        SchemaVerifier verifier = verifier(null, "mapping");
+        DataSource dataSource = dataSource();
+
+        verifier.verified(CONFIG, dataSource, verifier.schemaAction(CONFIG, dataSource));
+
+        assertThat(verifier.schemaAction(CONFIG, dataSource)).isEqualTo("update");
+    }
+
+    @Test
+    @DisplayName("Fingerprints are written to the configured directory only")
+    void testRecordsInDirectory() throws Exception {
+        SchemaVerifier verifier = verifier(directory.resolve("schema"), "mapping");
+        DataSource dataSource = dataSource();
+
+        verifier.verified(CONFIG, dataSource, verifier.schemaAction(CONFIG, dataSource));
+
+        try (var files = Files.list(directory.resolve("schema"))) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactly("db.fingerprint");
+        }
+    }
+
+    private static SchemaVerifier verifier(Path directory, String entityMapping) {
+        return new SchemaVerifier(new SchemaProperties(SchemaProperties.Mode.VERIFY, SchemaProperties.Fallback.UPDATE,
+                directory), entityMapping);
+    }
+
+    private DataSource dataSource() throws SQLException {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getColumns(any(), any(), any(), any())).thenAnswer(invocation -> columns());
+        Connection connection = mock(Connection.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private ResultSet columns() throws SQLException {
+        List<String> names = List.copyOf(columns);
+        int[] row = {-1};
+        ResultSet rows = mock(ResultSet.class);
+        when(rows.next()).thenAnswer(invocation -> ++row[0] < names.size());
+        when(rows.getString("COLUMN_NAME")).thenAnswer(invocation -> names.get(row[0]));
+        when(rows.getString("TYPE_NAME")).thenReturn("varchar");
+        when(rows.getInt("COLUMN_SIZE")).thenReturn(255);
+        when(rows.getString("IS_NULLABLE")).thenReturn("YES");
+        return rows;
+    }
+
+    private static class WiderUser extends User {
+
+        private String email;
+    }
+}
@@ -0,0 +1,153 @@
+package com.zemnitskiy.aggregatehub.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zemnitskiy.aggregatehub.config.DataSourceRegistry;
+import com.zemnitskiy.aggregatehub.config.ExportProperties;
+import com.zemnitskiy.aggregatehub.config.SourceExecutorProperties;
+import com.zemnitskiy.aggregatehub.exception.AggregateHubNotFoundException;
+import com.zemnitskiy.aggregatehub.executor.SourceExecutor;
+import com.zemnitskiy.aggregatehub.model.ExportFormat;
+import com.zemnitskiy.aggregatehub.model.ExportJob;
+import com.zemnitskiy.aggregatehub.model.ExportJobStatus;
+import com.zemnitskiy.aggregatehub.model.ExportRequest;
+import com.zemnitskiy.aggregatehub.model.User;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExportServiceTest {
+
+    private static final ExportRequest CSV = new ExportRequest(null, null, null, null, ExportFormat.CSV);
+
+    @TempDir
+    Path directory;
+
+    private final MultiDatabaseUserDao userDao = mock(MultiDatabaseUserDao.class);
+    private SourceExecutor sourceExecutor;
+
+    @BeforeEach
+    void setUp() {
+        DataSourceRegistry registry = mock(DataSourceRegistry.class);
+        when(registry.lease(any())).thenReturn(Optional.empty());
+        sourceExecutor = new SourceExecutor(registry, new SourceExecutorProperties(1, 16, Map.of(),
+                new SourceExecutorProperties.Pinning(false, Duration.ofMillis(20))));
+        when(userDao.getDatabaseNames()).thenReturn(List.of("db"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sourceExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deleting a running job stops it and removes everything it wrote")
+    void testCancelRunningJob() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(2);
+            consumer.accept(new User("1", "jdoe", "John", "Doe"));
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            consumer.accept(new User("2", "asmith", "Anna", "Smith"));
+            return null;
+        }).when(userDao).streamUsers(eq("db"), any(), any());
+        ExportService service = service(Duration.ofHours(1));
+
+        try {
+            ExportJob job = service.submit(CSV);
+            assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(files()).isNotEmpty();
+
+            service.delete(job.getId());
+            release.countDown();
+
+            awaitTrue(() -> files().isEmpty());
+            assertThat(job.getStatus()).isEqualTo(ExportJobStatus.RUNNING);
+            assertThat(service.getJobs()).isEmpty();
+            assertThatThrownBy(() -> service.getJob(job.getId())).isInstanceOf(AggregateHubNotFoundException.class);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("The sweep removes expired jobs and stale export files, and leaves other files alone")
+    void testSweepExpired() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(2);
+            consumer.accept(new User("1", "jdoe", "John", "Doe"));
+            return null;
+        }).when(userDao).streamUsers(eq("db"), any(), any());
+        ExportService service = service(Duration.ZERO);
+        Path stale = Files.writeString(directory.resolve(UUID.randomUUID() + ".csv.gz"), "stale");
+        Files.setLastModifiedTime(stale, FileTime.from(Instant.now().minusSeconds(60)));
+        Path unrelated = Files.writeString(directory.resolve("notes.txt"), "keep");
+        Files.setLastModifiedTime(unrelated, FileTime.from(Instant.now().minusSeconds(60)));
+
+        try {
+            ExportJob job = service.submit(CSV);
+            awaitTrue(() -> job.getStatus() == ExportJobStatus.COMPLETED);
+            assertThat(job.getRowCount()).isEqualTo(1);
+            assertThat(job.getFile()).exists();
+
+            Thread.sleep(5);
+            service.sweepExpired();
+
+            assertThat(service.getJobs()).isEmpty();
+            assertThat(job.getFile()).doesNotExist();
+            assertThat(stale).doesNotExist();
+            assertThat(files()).containsExactly(unrelated);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private ExportService service(Duration retention) {
+        return new ExportService(userDao, new ObjectMapper(),
+                new ExportProperties(directory, 1, 4, retention, Duration.ofMinutes(5)), sourceExecutor);
+    }
+
+    private List<Path> files() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.zemnitskiy.aggregatehub.slowquery;
+
+import com.zemnitskiy.aggregatehub.config.SlowQueryProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SlowQueryRecorderTest {
+
+    @Test
+    @DisplayName("Statements over their database's threshold are recorded with their bind values and explained")
+    void testRecordsSlowStatementsWithBinds() throws Exception {
+        SlowQueryRecorder recorder = new SlowQueryRecorder(new SlowQueryProperties(true, Duration.ofHours(1),
+                Map.of("slow-db", Duration.ofMillis(20)), 2, Duration.ofHours(1), false));
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenAnswer(invocation -> {
+            Thread.sleep(30);
+            return mock(ResultSet.class);
+        });
+        ResultSetMetaData planColumns = mock(ResultSetMetaData.class);
+        when(planColumns.getColumnCount()).thenReturn(1);
+        ResultSet planRows = mock(ResultSet.class);
+        when(planRows.getMetaData()).thenReturn(planColumns);
+        when(planRows.next()).thenReturn(true, false);
+        when(planRows.getObject(1)).thenReturn("Seq Scan on users");
+        PreparedStatement explain = mock(PreparedStatement.class);
+        when(explain.executeQuery()).thenReturn(planRows);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(connection.prepareStatement(startsWith("EXPLAIN"))).thenReturn(explain);
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenReturn(connection);
+
+        for (String dbName : new String[]{"slow-db", "other-db"}) {
+            DataSource dataSource = recorder.instrument(dbName, pool, sql -> "EXPLAIN " + sql);
+            try (Connection timed = dataSource.getConnection();
+                 PreparedStatement query = timed.prepareStatement("select * from users where name = ? and id = ?")) {
+                query.setString(1, "John");
+                query.setNull(2, Types.VARCHAR);
+                query.executeQuery();
+            }
+        }
+
+        assertThat(recorder.getSlowQueries()).singleElement().satisfies(slowQuery -> {
+            assertThat(slowQuery.database()).isEqualTo("slow-db");
+            assertThat(slowQuery.sql()).isEqualTo("select * from users where name = ? and id = ?");
+            assertThat(slowQuery.binds()).containsExactly("John", "null");
+            assertThat(slowQuery.durationMillis()).isGreaterThanOrEqualTo(20);
+        });
+
+        // The plan is sampled in the background
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (recorder.getSlowQueries().getFirst().plan() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(recorder.getSlowQueries().getFirst().plan()).isEqualTo("Seq Scan on users");
+        verify(explain).setObject(1, "John");
+        verify(explain).setNull(2, Types.VARCHAR);
+    }
+
+    @Test
+    @DisplayName("Bind values are masked by default")
+    void testMasksBindsByDefault() throws Exception {
+        SlowQueryRecorder recorder = new SlowQueryRecorder(new SlowQueryProperties(true, Duration.ZERO, Map.of(), 2,
+                Duration.ofHours(1), true));
+        PreparedStatement statement = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenReturn(connection);
+
+        try (Connection timed = recorder.instrument("db", pool, sql -> "EXPLAIN " + sql).getConnection();
+             PreparedStatement query = timed.prepareStatement("select * from users where name = ?")) {
+            query.setString(1, "John");
+            query.executeQuery();
+        }
+
+        assertThat(recorder.getSlowQueries()).singleElement()
+                .satisfies(slowQuery -> assertThat(slowQuery.binds()).containsExactly("***"));
+    }
+}
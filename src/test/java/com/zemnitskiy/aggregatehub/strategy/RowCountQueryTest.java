@@ -0,0 +1,37 @@
+package com.zemnitskiy.aggregatehub.strategy;
+
+import com.zemnitskiy.aggregatehub.strategy.mysql.MySqlStrategy;
+import com.zemnitskiy.aggregatehub.strategy.postgres.PostgresStrategy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RowCountQueryTest {
+
+    @Test
+    @DisplayName("MySQL looks up a qualified table in its own database, passing both names as parameters")
+    void testMySqlSplitsQualifiedTable() {
+        MySqlStrategy strategy = new MySqlStrategy();
+
+        RowCountQuery plain = strategy.rowCountQuery("users");
+        RowCountQuery qualified = strategy.rowCountQuery("hub.users");
+        RowCountQuery hostile = strategy.rowCountQuery("users' OR '1'='1");
+
+        assertThat(plain.sql()).contains("TABLE_SCHEMA = DATABASE()").doesNotContain("users");
+        assertThat(plain.parameters()).containsExactly("users");
+        assertThat(qualified.sql()).contains("TABLE_SCHEMA = ?").doesNotContain("hub");
+        assertThat(qualified.parameters()).containsExactly("hub", "users");
+        assertThat(hostile.sql()).doesNotContain("'1'");
+        assertThat(hostile.parameters()).containsExactly("users' OR '1'='1");
+    }
+
+    @Test
+    @DisplayName("PostgreSQL binds the quoted table name to to_regclass")
+    void testPostgresBindsQuotedTable() {
+        RowCountQuery query = new PostgresStrategy().rowCountQuery("Hub.Users");
+
+        assertThat(query.sql()).endsWith("to_regclass(?)");
+        assertThat(query.parameters()).containsExactly("\"hub\".\"users\"");
+    }
+}
@@ -0,0 +1,75 @@
+package com.zemnitskiy.aggregatehub.strategy;
+
+import com.zemnitskiy.aggregatehub.strategy.mysql.MySqlStrategy;
+import com.zemnitskiy.aggregatehub.strategy.postgres.PostgresStrategy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextConditionsTest {
+
+    @Test
+    @DisplayName("MySQL only names a collation where the column's own does not compare as asked")
+    void testMySqlCollations() {
+        MySqlStrategy strategy = new MySqlStrategy();
+        ReflectionTestUtils.setField(strategy, "caseInsensitiveCollation", "utf8mb4_0900_as_ci");
+        ReflectionTestUtils.setField(strategy, "caseSensitiveCollation", "utf8mb4_bin");
+
+        // The column already compares as asked, so the index answers alone
+        assertThat(sql(strategy.textConditions("Jo", false, true, "utf8mb4_0900_as_ci")))
+                .containsExactly("name = ?");
+        assertThat(sql(strategy.textConditions("Jo", true, false, "utf8mb4_bin")))
+                .containsExactly("name LIKE ? ESCAPE '!'");
+        // Case-insensitive columns narrow down on the index and are rechecked, exact matches and prefixes alike
+        assertThat(sql(strategy.textConditions("Jo", false, false, "utf8mb4_0900_ai_ci")))
+                .containsExactly("name = ?", "name COLLATE utf8mb4_bin = ?");
+        assertThat(sql(strategy.textConditions("Jo", true, false, "utf8mb4_0900_ai_ci")))
+                .containsExactly("name LIKE ? ESCAPE '!'", "name COLLATE utf8mb4_bin LIKE ? ESCAPE '!'");
+        assertThat(sql(strategy.textConditions("Jo", false, true, "utf8mb4_0900_ai_ci")))
+                .containsExactly("name = ?", "name COLLATE utf8mb4_0900_as_ci = ?");
+        // A case-sensitive column cannot serve case-insensitive criteria from its index
+        assertThat(sql(strategy.textConditions("Jo", false, true, "utf8mb4_0900_as_cs")))
+                .containsExactly("name COLLATE utf8mb4_0900_as_ci = ?");
+        // Other character sets use their own collations
+        assertThat(sql(strategy.textConditions("Jo", false, false, "latin1_swedish_ci")))
+                .containsExactly("name = ?", "name COLLATE latin1_bin = ?");
+        assertThat(sql(strategy.textConditions("Jo", false, true, "latin1_bin")))
+                .containsExactly("name COLLATE latin1_general_ci = ?");
+        // Unknown columns are assumed to ignore case, as MySQL's default collations do
+        assertThat(sql(strategy.textConditions("Jo", false, false, null)))
+                .containsExactly("name = ?", "name COLLATE utf8mb4_bin = ?");
+    }
+
+    @Test
+    @DisplayName("Without a case-sensitive collation, MySQL compares other criteria under the column's own")
+    void testMySqlDefaultsToColumnCollation() {
+        MySqlStrategy strategy = new MySqlStrategy();
+        ReflectionTestUtils.setField(strategy, "caseInsensitiveCollation", "utf8mb4_0900_as_ci");
+        ReflectionTestUtils.setField(strategy, "caseSensitiveCollation", "");
+
+        assertThat(sql(strategy.textConditions("Jo", false, false, "utf8mb4_0900_ai_ci"))).containsExactly("name = ?");
+        assertThat(sql(strategy.textConditions("Jo", true, false, null))).containsExactly("name LIKE ? ESCAPE '!'");
+        assertThat(sql(strategy.textConditions("Jo", false, true, "utf8mb4_0900_ai_ci")))
+                .containsExactly("name = ?", "name COLLATE utf8mb4_0900_as_ci = ?");
+    }
+
+    @Test
+    @DisplayName("PostgreSQL compares the lower-cased column regardless of its collation")
+    void testPostgresLowerCases() {
+        PostgresStrategy strategy = new PostgresStrategy();
+
+        List<TextCondition> ignoringCase = strategy.textConditions("Jo_", true, true, "en_US.utf8");
+        assertThat(sql(ignoringCase)).containsExactly("lower(name) LIKE ? ESCAPE '!'");
+        assertThat(ignoringCase.getFirst().value()).isEqualTo("jo!_%");
+        assertThat(sql(strategy.textConditions("Jo", false, false, null))).containsExactly("name = ?");
+        assertThat(strategy.textSearchIndexDefinition("name")).isEqualTo("lower(name) text_pattern_ops");
+    }
+
+    private static List<String> sql(List<TextCondition> conditions) {
+        return conditions.stream().map(condition -> condition.toSql("name")).toList();
+    }
+}
@@ -0,0 +1,109 @@
+package com.zemnitskiy.aggregatehub.strategy.file;
+
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileStrategyTest {
+
+    @TempDir
+    Path directory;
+
+    private final FileStrategy strategy = new FileStrategy();
+
+    @Test
+    @DisplayName("CSV rows are found through the id and username indexes and by full scan")
+    void testDelimitedFile() throws IOException {
+        StringBuilder content = new StringBuilder("login,user_id,first,last\r\n");
+        for (int i = 0; i < 3_000; i++) {
+            content.append("user").append(i).append(',').append(i).append(",Name").append(i % 10)
+                    .append(',').append(i % 7 == 0 ? "" : "Surname" + (i % 3)).append("\r\n");
+        }
+        content.append("\"o\"\"brien, jr\",ü-1,Jürgen,Müller\n\n");
+        Path file = Files.writeString(directory.resolve("users.csv"), content);
+
+        try (UserSource source = strategy.open(config(file.toString(),
+                Map.of("id", "user_id", "username", "login", "name", "first", "surname", "last")))) {
+            assertThat(query(source, new UserFilter("44", null, null, null))).containsExactly("44/user44/Name4/Surname2");
+            assertThat(query(source, new UserFilter(null, null, null, "user43"))).containsExactly("43/user43/Name3/Surname1");
+            assertThat(query(source, new UserFilter("44", "Name3", null, null))).isEmpty();
+            assertThat(query(source, new UserFilter("7", null, null, null))).containsExactly("7/user7/Name7/null");
+            assertThat(query(source, new UserFilter(null, "Name1", "Surname2", null))).hasSize(86);
+            assertThat(query(source, new UserFilter(null, null, null, "o\"brien, jr")))
+                    .containsExactly("ü-1/o\"brien, jr/Jürgen/Müller");
+            assertThat(query(source, new UserFilter(null, null, null, null))).hasSize(3_001);
+        }
+    }
+
+    @Test
+    @DisplayName("Quoted values spanning line breaks stay within their record")
+    void testQuotedLineBreaks() throws IOException {
+        Path file = Files.writeString(directory.resolve("users.csv"),
+                "id,username,name,surname\r\n1,jdoe,\"John\r\nJr\",Doe\r\n2,\"a\"\"b\nc\",Anna,Smith\n3,bob,Bob,\n");
+
+        try (UserSource source = strategy.open(config(file.toString(), null))) {
+            assertThat(query(source, new UserFilter(null, null, null, null)))
+                    .containsExactly("1/jdoe/John\r\nJr/Doe", "2/a\"b\nc/Anna/Smith", "3/bob/Bob/null");
+            assertThat(query(source, new UserFilter(null, null, null, "a\"b\nc"))).containsExactly("2/a\"b\nc/Anna/Smith");
+            assertThat(query(source, new UserFilter("3", null, null, null))).containsExactly("3/bob/Bob/null");
+        }
+    }
+
+    @Test
+    @DisplayName("Fixed-width files are read by byte ranges and re-indexed when replaced")
+    void testFixedWidthFileReload() throws IOException {
+        Path file = Files.writeString(directory.resolve("users.dat"), "1    alice     Alice     Smith     \n");
+        Map<String, String> ranges = Map.of("id", "0-5", "username", "5-15", "name", "15-25", "surname", "25-35");
+
+        try (UserSource source = strategy.open(config("file:" + file.toUri().getPath(), ranges))) {
+            assertThat(query(source, new UserFilter("1", null, null, null))).containsExactly("1/alice/Alice/Smith");
+            String watermark = source.fetchWatermark();
+
+            Path replacement = Files.writeString(directory.resolve("users.tmp"),
+                    "1    alice     Alice     Smith     \n2    bob       Bob\n");
+            Files.setLastModifiedTime(replacement, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+            Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            assertThat(source.fetchWatermark()).isNotEqualTo(watermark);
+            assertThat(query(source, new UserFilter(null, null, null, "bob"))).containsExactly("2/bob/Bob/null");
+        }
+    }
+
+    @Test
+    @DisplayName("Missing files and unknown header columns are rejected")
+    void testInvalidSources() throws IOException {
+        assertThatThrownBy(() -> strategy.open(config(directory.resolve("missing.csv").toString(), null)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        Path file = Files.writeString(directory.resolve("users.tsv"), "id\tusername\tname\n");
+        assertThatThrownBy(() -> strategy.open(config(file.toString(), null)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("surname");
+    }
+
+    private static DatabaseConfig config(String url, Map<String, String> mapping) {
+        return new DatabaseConfig("dump", "file", url, null, null, null, mapping, null);
+    }
+
+    private static List<String> query(UserSource source, UserFilter filter) throws IOException {
+        List<String> users = new ArrayList<>();
+        source.streamUsers(filter, user -> users.add(
+                user.getId() + "/" + user.getUsername() + "/" + user.getName() + "/" + user.getSurname()));
+        return users;
+    }
+}
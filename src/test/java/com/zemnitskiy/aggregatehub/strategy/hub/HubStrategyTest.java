@@ -0,0 +1,119 @@
+package com.zemnitskiy.aggregatehub.strategy.hub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import com.zemnitskiy.aggregatehub.admission.AdmissionGate;
+import com.zemnitskiy.aggregatehub.config.DatabaseListConfig.DatabaseConfig;
+import com.zemnitskiy.aggregatehub.executor.HubPath;
+import com.zemnitskiy.aggregatehub.executor.QueryDeadline;
+import com.zemnitskiy.aggregatehub.model.UserFilter;
+import com.zemnitskiy.aggregatehub.strategy.UserSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HubStrategyTest {
+
+    private HttpServer server;
+    private final List<String> queries = new ArrayList<>();
+    private final List<Headers> headers = new ArrayList<>();
+    private volatile String trailer = "2\n";
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/users/stream", exchange -> {
+            queries.add(exchange.getRequestURI().getRawQuery());
+            headers.add(exchange.getRequestHeaders());
+            byte[] body = ("""
+                    {"id":"1","username":"jdoe","name":"John","surname":"Doe"}
+                    {"id":"2","username":"adoe","name":"Anna","surname":"Doe"}
+                    """ + trailer).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/users", exchange -> {
+            // Like AggregateHub, the tag digests the filter as well as the data
+            exchange.getResponseHeaders().add("ETag", "\"v1-" + exchange.getRequestURI().getRawQuery() + "\"");
+            exchange.sendResponseHeaders("*".equals(exchange.getRequestHeaders().getFirst("If-None-Match")) ? 304 : 200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Users of another hub are streamed with the filters forwarded")
+    void testStreamsUsersOfAnotherHub() throws IOException {
+        List<String> usernames = new ArrayList<>();
+        try (UserSource source = open("http://localhost:" + server.getAddress().getPort() + "/")) {
+            source.streamUsers(new UserFilter(null, null, "Doe", "j doe"), user -> usernames.add(user.getUsername()));
+            assertThat(source.fetchWatermark()).startsWith("\"v1-").isEqualTo(source.fetchWatermark());
+        }
+
+        assertThat(usernames).containsExactly("jdoe", "adoe");
+        assertThat(queries).containsExactly("username=j+doe&surname=Doe");
+        assertThat(headers.getFirst().getFirst("X-Stream-Trailer")).isEqualTo("count");
+        assertThat(headers.getFirst().containsKey(HubPath.HEADER)).isFalse();
+    }
+
+    @Test
+    @DisplayName("A stream without its trailer, or with another count, was cut off and fails")
+    void testTruncatedStreamFails() {
+        try (UserSource source = open("http://localhost:" + server.getAddress().getPort())) {
+            trailer = "";
+            assertThatThrownBy(() -> source.streamUsers(new UserFilter(null, null, null, null), user -> {
+            })).isInstanceOf(IOException.class).hasMessageContaining("cut off after 2 users");
+
+            trailer = "3\n";
+            assertThatThrownBy(() -> source.streamUsers(new UserFilter(null, null, null, null), user -> {
+            })).isInstanceOf(IOException.class).hasMessageContaining("of 3");
+        }
+    }
+
+    @Test
+    @DisplayName("The deadline and hub path of the reading thread are forwarded")
+    void testForwardsDeadlineAndPath() throws IOException {
+        try (UserSource source = open("http://localhost:" + server.getAddress().getPort());
+             QueryDeadline ignored = QueryDeadline.within(Duration.ofSeconds(30));
+             HubPath ignoredPath = HubPath.within("a,b")) {
+            source.streamUsers(new UserFilter(null, null, null, null), user -> {
+            });
+        }
+
+        long deadlineMillis = Long.parseLong(headers.getFirst().getFirst(AdmissionGate.DEADLINE_HEADER));
+        assertThat(deadlineMillis).isPositive().isLessThanOrEqualTo(30_000);
+        assertThat(headers.getFirst().getFirst(HubPath.HEADER)).isEqualTo("a,b");
+    }
+
+    @Test
+    @DisplayName("Only absolute http(s) URLs are accepted")
+    void testRejectsInvalidUrl() {
+        assertThatThrownBy(() -> open("jdbc:postgresql://localhost/db")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static UserSource open(String url) {
+        return new HubStrategy(new ObjectMapper()).open(
+                new DatabaseConfig("remote", "hub", url, null, null, null, null, null));
+    }
+}
@@ -0,0 +1,84 @@
+package com.zemnitskiy.aggregatehub.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zemnitskiy.aggregatehub.aggregation.SpillableUserBuffer;
+import com.zemnitskiy.aggregatehub.config.WarmupProperties;
+import com.zemnitskiy.aggregatehub.repository.MultiDatabaseUserDao;
+import com.zemnitskiy.aggregatehub.service.UserService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class StartupWarmupTest {
+
+    private final MultiDatabaseUserDao userDao = mock(MultiDatabaseUserDao.class);
+    private final UserService userService = mock(UserService.class);
+
+    @Test
+    @DisplayName("Every database runs every query shape before the aggregations are warmed up")
+    void testWarmsUpEveryDatabase() {
+        when(userDao.getDatabaseNames()).thenReturn(List.of("a", "b"));
+        when(userService.getAllUsersFromAllDatabases(any(), any(), any(), any())).thenReturn(mock(SpillableUserBuffer.class));
+
+        warmup(Duration.ofSeconds(30)).run(null);
+
+        for (String dbName : List.of("a", "b")) {
+            verify(userDao).openConnections(dbName, 2);
+            // 2 shapes without a text field, 14 combinations with one in 4 shapes each
+            verify(userDao, times(58)).streamUsers(eq(dbName), any(), any());
+        }
+        verify(userService, times(3)).getAllUsersFromAllDatabases(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("A warm-up that overruns its timeout returns, so readiness follows, and stops querying")
+    void testTimeout() throws InterruptedException {
+        when(userDao.getDatabaseNames()).thenReturn(List.of("slow"));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            try {
+                Thread.sleep(Duration.ofMinutes(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interrupted.countDown();
+            }
+            return null;
+        }).when(userDao).openConnections(eq("slow"), eq(2));
+
+        long start = System.nanoTime();
+        warmup(Duration.ofMillis(200)).run(null);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isBetween(Duration.ofMillis(200), Duration.ofSeconds(5));
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        verify(userDao, after(100).never()).streamUsers(any(), any(), any());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    @DisplayName("A disabled warm-up touches nothing")
+    void testDisabled() {
+        new StartupWarmup(new WarmupProperties(false, Duration.ofSeconds(30), 2, 3), userDao, userService,
+                new ObjectMapper()).run(null);
+
+        verifyNoInteractions(userDao, userService);
+    }
+
+    private StartupWarmup warmup(Duration timeout) {
+        return new StartupWarmup(new WarmupProperties(true, timeout, 2, 3), userDao, userService, new ObjectMapper());
+    }
+}